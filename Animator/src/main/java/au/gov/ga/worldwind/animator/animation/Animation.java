@@ -270,6 +270,12 @@ public interface Animation extends AnimationObject, XmlSerializable<Animation>,
 	 */
 	void applyFrame(int frame);
 	
+	/**
+	 * @return The table of interpolated parameter values for this animation,
+	 *         used when applying frames
+	 */
+	AnimationEvaluationPlan getEvaluationPlan();
+	
 	/**
 	 * Record a key frame at the given frame with the current value of all <em>enabled</em> parameters.
 	 * <p/>
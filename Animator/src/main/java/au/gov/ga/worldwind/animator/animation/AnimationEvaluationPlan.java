@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+import au.gov.ga.worldwind.common.util.Validate;
+
+/**
+ * A table of the interpolated value of every {@link Parameter} of an
+ * {@link Animation} at every frame, stored as a flat
+ * <code>double[frame][parameter]</code> array.
+ * <p/>
+ * Applying a frame, drawing the camera path or drawing a parameter curve can
+ * read values from this table instead of looking up the surrounding key
+ * frames and creating an interpolator and a parameter value for each
+ * parameter at each frame.
+ * <p/>
+ * The table is invalidated incrementally: when a key frame value changes,
+ * only the frames between the key frames either side of it are marked dirty
+ * for that parameter. Dirty parameters are recalculated (in parallel, one task
+ * per parameter) by {@link #update()}, or lazily when a dirty value is read.
+ * Adding or removing animatable objects, or changing the frame count, causes
+ * the whole table to be rebuilt.
+ * <p/>
+ * Parameters without any key frames are not tabulated, as their default
+ * values may be dynamic (eg the current view position). For these parameters
+ * (and for frames outside the animation) the table returns {@link Double#NaN}
+ * and the caller should fall back to {@link Parameter#getValueAtFrame(int)}.
+ */
+public class AnimationEvaluationPlan
+{
+	private static final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime()
+			.availableProcessors(), new DaemonThreadFactory("Animation Evaluator"));
+
+	private final Animation animation;
+
+	//guarded by this
+	private Parameter[] parameters = new Parameter[0];
+	private double[][] table = new double[0][0];
+
+	//guarded by dirtyLock (replaced while holding both locks); never held while waiting on anything else,
+	//so the animation can invalidate the plan while it holds its key frame lock
+	private final Object dirtyLock = new Object();
+	private Map<Parameter, Integer> columns = new HashMap<Parameter, Integer>();
+	private int[] dirtyStart = new int[0];
+	private int[] dirtyEnd = new int[0];
+	private int frameCount = 0;
+	private boolean rebuild = true;
+
+	public AnimationEvaluationPlan(Animation animation)
+	{
+		Validate.notNull(animation, "An animation is required");
+		this.animation = animation;
+	}
+
+	/**
+	 * Mark the whole table as invalid. The parameter list and frame count are
+	 * re-read from the animation on the next update.
+	 */
+	public void invalidateAll()
+	{
+		synchronized (dirtyLock)
+		{
+			rebuild = true;
+		}
+	}
+
+	/**
+	 * Mark the values of the parameter that depend on a key frame value at
+	 * the given frame as invalid. This is the range between the parameter's
+	 * key frames either side of the frame (or the start/end of the animation
+	 * if there are none).
+	 * 
+	 * @param parameter
+	 *            Parameter whose key frame value has changed
+	 * @param frame
+	 *            Frame of the changed key frame value
+	 */
+	public void invalidate(Parameter parameter, int frame)
+	{
+		KeyFrame previous = animation.getKeyFrameWithParameterBeforeFrame(parameter, frame, false);
+		KeyFrame next = animation.getKeyFrameWithParameterAfterFrame(parameter, frame, false);
+		int start = previous == null ? 0 : previous.getFrame();
+		int end = next == null ? Integer.MAX_VALUE : next.getFrame();
+
+		synchronized (dirtyLock)
+		{
+			if (rebuild)
+			{
+				return;
+			}
+			Integer column = columns.get(parameter);
+			if (column == null)
+			{
+				rebuild = true;
+				return;
+			}
+			dirtyStart[column] = Math.max(0, Math.min(dirtyStart[column], start));
+			dirtyEnd[column] = Math.min(frameCount - 1, Math.max(dirtyEnd[column], end));
+		}
+	}
+
+	/**
+	 * Recalculate all invalid values in the table. Each dirty parameter is
+	 * recalculated in a separate task.
+	 */
+	public synchronized void update()
+	{
+		rebuildIfRequired();
+
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		synchronized (dirtyLock)
+		{
+			for (int i = 0; i < parameters.length; i++)
+			{
+				if (dirtyStart[i] <= dirtyEnd[i])
+				{
+					final int column = i;
+					tasks.add(Executors.callable(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							updateColumn(column);
+						}
+					}));
+				}
+			}
+		}
+
+		if (tasks.size() == 1)
+		{
+			try
+			{
+				tasks.get(0).call();
+			}
+			catch (Exception e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+		else if (!tasks.isEmpty())
+		{
+			try
+			{
+				for (Future<Object> future : executor.invokeAll(tasks))
+				{
+					future.get();
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException e)
+			{
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Get the value of the parameter at the given frame from the table,
+	 * recalculating the parameter first if it is dirty.
+	 * 
+	 * @return The value of the parameter at the frame, or {@link Double#NaN}
+	 *         if the parameter or frame is not in the table
+	 */
+	public synchronized double getValue(Parameter parameter, int frame)
+	{
+		rebuildIfRequired();
+
+		Integer column = columns.get(parameter);
+		if (column == null || frame < 0 || frame >= table.length)
+		{
+			return Double.NaN;
+		}
+		updateColumn(column);
+		return table[frame][column];
+	}
+
+	/**
+	 * Get the values of the parameter between the given frames, inclusive.
+	 * Values are copied from the table if the parameter is tabulated;
+	 * otherwise they are calculated using
+	 * {@link Parameter#getDoubleValuesBetweenFrames(int, int, double[])}.
+	 * 
+	 * @param parameter
+	 *            Parameter to get the values for
+	 * @param startFrame
+	 *            Start frame (inclusive)
+	 * @param endFrame
+	 *            End frame (inclusive)
+	 * @param array
+	 *            Array to put values in (if null or doesn't contain enough
+	 *            space, a new array is returned)
+	 * @return Values of the parameter for the frames provided
+	 */
+	public double[] getValues(Parameter parameter, int startFrame, int endFrame, double[] array)
+	{
+		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
+
+		if (array == null || array.length < (endFrame - startFrame + 1))
+		{
+			array = new double[endFrame - startFrame + 1];
+		}
+		if (copyValues(parameter, startFrame, endFrame, array))
+		{
+			return array;
+		}
+		//calculate outside of the lock, as default values may be dynamic
+		return parameter.getDoubleValuesBetweenFrames(startFrame, endFrame, array);
+	}
+
+	private synchronized boolean copyValues(Parameter parameter, int startFrame, int endFrame, double[] array)
+	{
+		rebuildIfRequired();
+
+		Integer column = columns.get(parameter);
+		if (column == null || startFrame < 0 || endFrame >= table.length)
+		{
+			return false;
+		}
+		updateColumn(column);
+		if (Double.isNaN(table[startFrame][column]))
+		{
+			return false;
+		}
+		for (int frame = startFrame; frame <= endFrame; frame++)
+		{
+			array[frame - startFrame] = table[frame][column];
+		}
+		return true;
+	}
+
+	private void rebuildIfRequired()
+	{
+		synchronized (dirtyLock)
+		{
+			if (!rebuild)
+			{
+				return;
+			}
+			rebuild = false;
+		}
+
+		Parameter[] parameters = animation.getAllParameters().toArray(new Parameter[0]);
+		int frameCount = Math.max(0, animation.getFrameCount());
+		Map<Parameter, Integer> columns = new HashMap<Parameter, Integer>();
+		for (int i = 0; i < parameters.length; i++)
+		{
+			columns.put(parameters[i], i);
+		}
+
+		int[] dirtyStart = new int[parameters.length];
+		int[] dirtyEnd = new int[parameters.length];
+		Arrays.fill(dirtyEnd, frameCount - 1);
+
+		synchronized (dirtyLock)
+		{
+			this.columns = columns;
+			this.dirtyStart = dirtyStart;
+			this.dirtyEnd = dirtyEnd;
+			this.frameCount = frameCount;
+		}
+		this.parameters = parameters;
+		this.table = new double[frameCount][parameters.length];
+	}
+
+	/**
+	 * Recalculate the dirty range of a single parameter. This object's lock is
+	 * held while this is called, either by the calling thread or by the thread
+	 * waiting for the update task; tasks for different columns run at once.
+	 */
+	private void updateColumn(int column)
+	{
+		int start, end;
+		synchronized (dirtyLock)
+		{
+			start = dirtyStart[column];
+			end = dirtyEnd[column];
+			if (start > end)
+			{
+				return;
+			}
+			dirtyStart[column] = Integer.MAX_VALUE;
+			dirtyEnd[column] = Integer.MIN_VALUE;
+		}
+
+		Parameter parameter = parameters[column];
+		if (animation.hasKeyFrame(parameter))
+		{
+			double[] values = parameter.getDoubleValuesBetweenFrames(start, end, null);
+			for (int frame = start; frame <= end; frame++)
+			{
+				table[frame][column] = values[frame - start];
+			}
+		}
+		else
+		{
+			for (int frame = start; frame <= end; frame++)
+			{
+				table[frame][column] = Double.NaN;
+			}
+		}
+	}
+}
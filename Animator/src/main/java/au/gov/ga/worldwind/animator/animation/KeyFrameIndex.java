@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
+
+/**
+ * An index of the {@link KeyFrame}s that contain a value for each
+ * {@link Parameter}, ordered by frame.
+ * <p/>
+ * Allows the key frames either side of a frame to be found for a parameter
+ * with a single lookup in that parameter's index, rather than testing each key
+ * frame of the animation for a value. The index is updated incrementally as
+ * key frames are inserted and removed, and as values are added to and removed
+ * from key frames.
+ * <p/>
+ * This class is not thread safe; the owning animation is responsible for
+ * locking.
+ */
+public class KeyFrameIndex
+{
+	private final Map<Parameter, NavigableMap<Integer, KeyFrame>> index =
+			new HashMap<Parameter, NavigableMap<Integer, KeyFrame>>();
+
+	/**
+	 * Add each of the key frame's parameter values to the index.
+	 */
+	public void addKeyFrame(KeyFrame keyFrame)
+	{
+		for (ParameterValue value : keyFrame.getParameterValues())
+		{
+			addValue(value.getOwner(), keyFrame);
+		}
+	}
+
+	/**
+	 * Remove the key frame from the index of each parameter it is indexed
+	 * under.
+	 */
+	public void removeKeyFrame(KeyFrame keyFrame)
+	{
+		//values may have been removed from the key frame since it was indexed, so check every parameter
+		for (Parameter parameter : new ArrayList<Parameter>(index.keySet()))
+		{
+			removeValue(parameter, keyFrame);
+		}
+	}
+
+	/**
+	 * Record that the key frame contains a value for the parameter.
+	 */
+	public void addValue(Parameter parameter, KeyFrame keyFrame)
+	{
+		NavigableMap<Integer, KeyFrame> keyFrames = index.get(parameter);
+		if (keyFrames == null)
+		{
+			keyFrames = new TreeMap<Integer, KeyFrame>();
+			index.put(parameter, keyFrames);
+		}
+		keyFrames.put(keyFrame.getFrame(), keyFrame);
+	}
+
+	/**
+	 * Record that the key frame no longer contains a value for the parameter.
+	 */
+	public void removeValue(Parameter parameter, KeyFrame keyFrame)
+	{
+		NavigableMap<Integer, KeyFrame> keyFrames = index.get(parameter);
+		if (keyFrames != null && keyFrames.get(keyFrame.getFrame()) == keyFrame)
+		{
+			keyFrames.remove(keyFrame.getFrame());
+			if (keyFrames.isEmpty())
+			{
+				index.remove(parameter);
+			}
+		}
+	}
+
+	/**
+	 * Remove all key frames from the index.
+	 */
+	public void clear()
+	{
+		index.clear();
+	}
+
+	/**
+	 * @return The last key frame before (or at, if <code>inclusive</code>) the
+	 *         frame that contains a value for the parameter, or
+	 *         <code>null</code> if there is none
+	 */
+	public KeyFrame getKeyFrameBeforeFrame(Parameter parameter, int frame, boolean inclusive)
+	{
+		NavigableMap<Integer, KeyFrame> keyFrames = index.get(parameter);
+		if (keyFrames == null)
+		{
+			return null;
+		}
+		return value(inclusive ? keyFrames.floorEntry(frame) : keyFrames.lowerEntry(frame));
+	}
+
+	/**
+	 * @return The first key frame after (or at, if <code>inclusive</code>) the
+	 *         frame that contains a value for the parameter, or
+	 *         <code>null</code> if there is none
+	 */
+	public KeyFrame getKeyFrameAfterFrame(Parameter parameter, int frame, boolean inclusive)
+	{
+		NavigableMap<Integer, KeyFrame> keyFrames = index.get(parameter);
+		if (keyFrames == null)
+		{
+			return null;
+		}
+		return value(inclusive ? keyFrames.ceilingEntry(frame) : keyFrames.higherEntry(frame));
+	}
+
+	/**
+	 * @return The key frames that contain a value for the parameter, ordered
+	 *         by frame
+	 */
+	public List<KeyFrame> getKeyFrames(Parameter parameter)
+	{
+		NavigableMap<Integer, KeyFrame> keyFrames = index.get(parameter);
+		if (keyFrames == null)
+		{
+			return new ArrayList<KeyFrame>();
+		}
+		return new ArrayList<KeyFrame>(keyFrames.values());
+	}
+
+	/**
+	 * @return Whether any key frame contains a value for the parameter
+	 */
+	public boolean hasKeyFrame(Parameter parameter)
+	{
+		return index.containsKey(parameter);
+	}
+
+	private static KeyFrame value(Entry<Integer, KeyFrame> entry)
+	{
+		return entry == null ? null : entry.getValue();
+	}
+}
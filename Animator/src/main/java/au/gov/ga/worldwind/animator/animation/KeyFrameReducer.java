@@ -0,0 +1,423 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import au.gov.ga.worldwind.animator.animation.parameter.BasicBezierParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.BezierParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValueType;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+import au.gov.ga.worldwind.common.util.Validate;
+
+/**
+ * Reduces the number of key frames in an animation by replacing dense runs of
+ * parameter values (such as those created when recording a flight, which
+ * records a key frame every frame) with a smaller number of Bezier values
+ * that reproduce the original curve within a tolerance.
+ * <p/>
+ * Each parameter is reduced independently (and in parallel, one task per
+ * parameter) in a Douglas-Peucker style: the values between the first and
+ * last key frames are fitted with a single Bezier segment, and if the fitted
+ * curve differs from the original curve by more than the parameter's
+ * tolerance at any frame, the segment is split at the key frame nearest to the
+ * largest error and each half is fitted again.
+ * <p/>
+ * The control points of each segment are placed at a third of the way along
+ * the interval, which makes the segment's time component linear. The value at
+ * a frame is then a cubic polynomial in the frame's percent of the interval,
+ * so the control values can be found with a linear least-squares fit to the
+ * original values.
+ * <p/>
+ * The original curve is sampled before any values are changed, so the result
+ * doesn't depend on the order in which parameters are reduced.
+ */
+public class KeyFrameReducer
+{
+	private static final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime()
+			.availableProcessors(), new DaemonThreadFactory("Key Frame Reducer"));
+
+	/** Percent of the interval at which the fitted control points are placed */
+	private static final double CONTROL_PERCENT = 1d / 3d;
+
+	/** Percent used when mimicking a linear value with a Bezier control point */
+	private static final double LINEAR_CONTROL_PERCENT = 0.4;
+
+	/** Relative error allowed on top of the tolerance, to absorb rounding */
+	private static final double EPSILON = 1e-9;
+
+	/**
+	 * Create a tolerance for each of the given parameters that is a fraction
+	 * of the range of the parameter's key frame values. Parameters without any
+	 * key frames are not included.
+	 * 
+	 * @param animation
+	 *            Animation containing the parameters
+	 * @param parameters
+	 *            Parameters to create tolerances for
+	 * @param fraction
+	 *            Fraction of each parameter's value range to allow as error
+	 * @return Map of parameter to tolerance
+	 */
+	public static Map<Parameter, Double> createRelativeTolerances(Animation animation,
+			Collection<Parameter> parameters, double fraction)
+	{
+		Validate.notNull(animation, "An animation is required");
+		Validate.isTrue(fraction >= 0, "Fraction must not be negative");
+
+		Map<Parameter, Double> tolerances = new HashMap<Parameter, Double>();
+		for (Parameter parameter : parameters)
+		{
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			for (KeyFrame keyFrame : animation.getKeyFrames(parameter))
+			{
+				double value = keyFrame.getValueForParameter(parameter).getValue();
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+			if (min <= max)
+			{
+				tolerances.put(parameter, (max - min) * fraction);
+			}
+		}
+		return tolerances;
+	}
+
+	/**
+	 * Reduce the key frames of the given parameters. Key frames left without
+	 * any parameter values are removed from the animation.
+	 * 
+	 * @param animation
+	 *            Animation to reduce
+	 * @param tolerances
+	 *            Maximum error allowed for each parameter, in the parameter's
+	 *            units; parameters not in the map are left unchanged
+	 * @return The number of parameter values removed
+	 */
+	public static int reduce(Animation animation, Map<Parameter, Double> tolerances)
+	{
+		Validate.notNull(animation, "An animation is required");
+		Validate.notNull(tolerances, "Tolerances are required");
+
+		List<Reduction> reductions = new ArrayList<Reduction>();
+		for (Entry<Parameter, Double> entry : tolerances.entrySet())
+		{
+			List<KeyFrame> keyFrames = animation.getKeyFrames(entry.getKey());
+			if (keyFrames.size() > 2 && entry.getValue() != null && entry.getValue() >= 0)
+			{
+				reductions.add(new Reduction(entry.getKey(), entry.getValue(), keyFrames));
+			}
+		}
+		if (reductions.isEmpty())
+		{
+			return 0;
+		}
+
+		try
+		{
+			for (Future<Reduction> future : executor.invokeAll(reductions))
+			{
+				future.get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return 0;
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException(e.getCause());
+		}
+
+		int removed = 0;
+		for (Reduction reduction : reductions)
+		{
+			removed += reduction.apply(animation);
+		}
+		if (removed > 0)
+		{
+			animation.removeEmptyKeyFrames();
+		}
+		return removed;
+	}
+
+	/**
+	 * Fits Bezier segments to the key frame values of a single parameter.
+	 */
+	private static class Reduction implements Callable<Reduction>
+	{
+		private final Parameter parameter;
+		private final double tolerance;
+		private final int[] frames;
+		private final ParameterValue[] originals;
+
+		private final boolean[] keep;
+		private final double[] inValues;
+		private final double[] inPercents;
+		private final double[] outValues;
+		private final double[] outPercents;
+		private double[] values;
+
+		public Reduction(Parameter parameter, double tolerance, List<KeyFrame> keyFrames)
+		{
+			this.parameter = parameter;
+			this.tolerance = tolerance;
+
+			int count = keyFrames.size();
+			frames = new int[count];
+			originals = new ParameterValue[count];
+			for (int i = 0; i < count; i++)
+			{
+				frames[i] = keyFrames.get(i).getFrame();
+				originals[i] = keyFrames.get(i).getValueForParameter(parameter);
+			}
+
+			keep = new boolean[count];
+			inValues = new double[count];
+			inPercents = new double[count];
+			outValues = new double[count];
+			outPercents = new double[count];
+		}
+
+		@Override
+		public Reduction call() throws Exception
+		{
+			int last = frames.length - 1;
+			values = parameter.getDoubleValuesBetweenFrames(frames[0], frames[last], null);
+
+			keep[0] = true;
+			keep[last] = true;
+			inValues[0] = valueAt(frames[0]);
+			inPercents[0] = CONTROL_PERCENT;
+			outValues[last] = valueAt(frames[last]);
+			outPercents[last] = CONTROL_PERCENT;
+
+			//segments are split iteratively rather than recursively, as a
+			//recorded animation can have thousands of key frames
+			LinkedList<int[]> segments = new LinkedList<int[]>();
+			segments.add(new int[] { 0, last });
+			while (!segments.isEmpty())
+			{
+				int[] segment = segments.removeFirst();
+				int split = fitSegment(segment[0], segment[1]);
+				if (split >= 0)
+				{
+					keep[split] = true;
+					segments.addFirst(new int[] { split, segment[1] });
+					segments.addFirst(new int[] { segment[0], split });
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * Fit a Bezier segment between the key frames at the given indices.
+		 * 
+		 * @return The index of the key frame to split the segment at, or -1 if
+		 *         the segment was fitted within the tolerance
+		 */
+		private int fitSegment(int start, int end)
+		{
+			int startFrame = frames[start];
+			int endFrame = frames[end];
+			double startValue = valueAt(startFrame);
+			double endValue = valueAt(endFrame);
+			double length = endFrame - startFrame;
+
+			//least-squares fit of the two control values to the interior frames
+			double a11 = 0, a12 = 0, a22 = 0, r1 = 0, r2 = 0;
+			for (int frame = startFrame + 1; frame < endFrame; frame++)
+			{
+				double t = (frame - startFrame) / length;
+				double mt = 1 - t;
+				double b1 = 3 * mt * mt * t;
+				double b2 = 3 * mt * t * t;
+				double r = valueAt(frame) - mt * mt * mt * startValue - t * t * t * endValue;
+				a11 += b1 * b1;
+				a12 += b1 * b2;
+				a22 += b2 * b2;
+				r1 += b1 * r;
+				r2 += b2 * r;
+			}
+
+			double outValue = startValue + (endValue - startValue) * CONTROL_PERCENT;
+			double inValue = endValue - (endValue - startValue) * CONTROL_PERCENT;
+			double det = a11 * a22 - a12 * a12;
+			if (endFrame - startFrame > 2 && Math.abs(det) > EPSILON * a11 * a22)
+			{
+				outValue = (r1 * a22 - r2 * a12) / det;
+				inValue = (a11 * r2 - a12 * r1) / det;
+			}
+
+			double maxError = 0;
+			int maxErrorFrame = startFrame;
+			for (int frame = startFrame + 1; frame < endFrame; frame++)
+			{
+				double t = (frame - startFrame) / length;
+				double mt = 1 - t;
+				double fitted =
+						mt * mt * mt * startValue + 3 * mt * mt * t * outValue + 3 * mt * t * t * inValue + t * t * t
+								* endValue;
+				double error = Math.abs(fitted - valueAt(frame));
+				if (error > maxError)
+				{
+					maxError = error;
+					maxErrorFrame = frame;
+				}
+			}
+
+			double allowed = tolerance + EPSILON * (1 + Math.abs(startValue) + Math.abs(endValue));
+			if (maxError <= allowed)
+			{
+				outValues[start] = outValue;
+				outPercents[start] = CONTROL_PERCENT;
+				inValues[end] = inValue;
+				inPercents[end] = CONTROL_PERCENT;
+				return -1;
+			}
+
+			if (end - start > 1)
+			{
+				return nearestKeyIndex(start + 1, end - 1, maxErrorFrame);
+			}
+
+			//no key frames in between to split at, so keep the original curve
+			copyOriginalControl(start, end, true);
+			copyOriginalControl(end, start, false);
+			return -1;
+		}
+
+		/**
+		 * @return The index (in the range [from, to]) of the key frame nearest
+		 *         to the given frame
+		 */
+		private int nearestKeyIndex(int from, int to, int frame)
+		{
+			int low = from;
+			int high = to;
+			while (low < high)
+			{
+				int mid = (low + high) >>> 1;
+				if (frames[mid] < frame)
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid;
+				}
+			}
+			if (low > from && frame - frames[low - 1] < frames[low] - frame)
+			{
+				return low - 1;
+			}
+			return low;
+		}
+
+		/**
+		 * Copy the control point of the original value at the given index that
+		 * points towards the other index, converting linear values the same
+		 * way that the interpolation does.
+		 */
+		private void copyOriginalControl(int index, int otherIndex, boolean isStart)
+		{
+			ParameterValue original = originals[index];
+			double value;
+			double percent;
+			if (original.getType() == ParameterValueType.BEZIER)
+			{
+				BezierParameterValue bezier = (BezierParameterValue) original;
+				value = isStart ? bezier.getOutValue() : bezier.getInValue();
+				percent = isStart ? bezier.getOutPercent() : bezier.getInPercent();
+			}
+			else
+			{
+				double thisValue = valueAt(frames[index]);
+				value = thisValue + (valueAt(frames[otherIndex]) - thisValue) * LINEAR_CONTROL_PERCENT;
+				percent = LINEAR_CONTROL_PERCENT;
+			}
+
+			if (isStart)
+			{
+				outValues[index] = value;
+				outPercents[index] = percent;
+			}
+			else
+			{
+				inValues[index] = value;
+				inPercents[index] = percent;
+			}
+		}
+
+		private double valueAt(int frame)
+		{
+			return values[frame - frames[0]];
+		}
+
+		/**
+		 * Replace the parameter's values in the animation with the fitted
+		 * values. Must be called after {@link #call()}.
+		 * 
+		 * @return The number of values removed
+		 */
+		public int apply(Animation animation)
+		{
+			int removed = 0;
+			for (int i = 0; i < keep.length; i++)
+			{
+				if (!keep[i])
+				{
+					removed++;
+				}
+			}
+			if (removed == 0)
+			{
+				return 0;
+			}
+
+			for (int i = 0; i < frames.length; i++)
+			{
+				KeyFrame keyFrame = animation.getKeyFrame(frames[i]);
+				if (keyFrame == null)
+				{
+					continue;
+				}
+				keyFrame.removeValueForParameter(parameter);
+				if (keep[i])
+				{
+					keyFrame.addParameterValue(new BasicBezierParameterValue(originals[i].getValue(), frames[i],
+							parameter, inValues[i], inPercents[i], outValues[i], outPercents[i]));
+				}
+			}
+			return removed;
+		}
+	}
+}
@@ -40,6 +40,8 @@ import au.gov.ga.worldwind.animator.animation.camera.Camera;
 import au.gov.ga.worldwind.animator.animation.camera.CameraImpl;
 import au.gov.ga.worldwind.animator.animation.elevation.AnimatableElevation;
 import au.gov.ga.worldwind.animator.animation.elevation.DefaultAnimatableElevation;
+import au.gov.ga.worldwind.animator.animation.event.AnimationEvent;
+import au.gov.ga.worldwind.animator.animation.event.AnimationEvent.Type;
 import au.gov.ga.worldwind.animator.animation.event.PropagatingChangeableEventListener;
 import au.gov.ga.worldwind.animator.animation.io.AnimationFileVersion;
 import au.gov.ga.worldwind.animator.animation.io.AnimationIOConstants;
@@ -81,6 +83,16 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 	private NavigableMap<Integer, KeyFrame> keyFrameMap = new TreeMap<Integer, KeyFrame>();
 	private ReadWriteLock keyFrameMapLock = new LenientReadWriteLock();
 
+	/**
+	 * Index of the key frames containing a value for each parameter, for
+	 * quick lookup of the key frames either side of a frame. Guarded by the
+	 * {@link #keyFrameMapLock}.
+	 */
+	private final KeyFrameIndex keyFrameIndex = new KeyFrameIndex();
+
+	/** Table of the interpolated parameter values at each frame */
+	private final AnimationEvaluationPlan evaluationPlan = new AnimationEvaluationPlan(this);
+
 	/** The number of frames in this animation */
 	private int frameCount;
 
@@ -180,15 +192,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 		try
 		{
 			keyFrameMapLock.readLock().lock();
-			List<KeyFrame> result = new ArrayList<KeyFrame>();
-			for (KeyFrame keyFrame : keyFrameMap.values())
-			{
-				if (keyFrame.hasValueForParameter(p))
-				{
-					result.add(keyFrame);
-				}
-			}
-			return result;
+			return keyFrameIndex.getKeyFrames(p);
 		}
 		finally
 		{
@@ -208,15 +212,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 		try
 		{
 			keyFrameMapLock.readLock().lock();
-			Collection<KeyFrame> candidateKeys = keyFrameMap.headMap(frame, inclusive).descendingMap().values();
-			for (KeyFrame candidateKey : candidateKeys)
-			{
-				if (candidateKey.hasValueForParameter(p))
-				{
-					return candidateKey;
-				}
-			}
-			return null;
+			return keyFrameIndex.getKeyFrameBeforeFrame(p, frame, inclusive);
 		}
 		finally
 		{
@@ -236,15 +232,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 		try
 		{
 			keyFrameMapLock.readLock().lock();
-			Collection<KeyFrame> candidateKeys = keyFrameMap.tailMap(frame, inclusive).values();
-			for (KeyFrame candidateKey : candidateKeys)
-			{
-				if (candidateKey.hasValueForParameter(p))
-				{
-					return candidateKey;
-				}
-			}
-			return null;
+			return keyFrameIndex.getKeyFrameAfterFrame(p, frame, inclusive);
 		}
 		finally
 		{
@@ -413,6 +401,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 		}
 
 		object.addChangeListener(this);
+		evaluationPlan.invalidateAll();
 
 		fireAddEvent(object);
 	}
@@ -439,6 +428,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 			}
 
 			object.removeChangeListener(this);
+			evaluationPlan.invalidateAll();
 
 			if (removeValuesFromKeyFrames)
 			{
@@ -567,6 +557,12 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 
 				this.keyFrameMap = new TreeMap<Integer, KeyFrame>();
 				this.keyFrameMap.putAll(headMap);
+
+				keyFrameIndex.clear();
+				for (KeyFrame keyFrame : this.keyFrameMap.values())
+				{
+					keyFrameIndex.addKeyFrame(keyFrame);
+				}
 			}
 			finally
 			{
@@ -578,6 +574,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 
 		if (changed)
 		{
+			evaluationPlan.invalidateAll();
 			fireChangeEvent(newCount);
 		}
 	}
@@ -586,6 +583,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 	public void applyFrame(int frame)
 	{
 		setCurrentFrame(frame);
+		evaluationPlan.update();
 		for (Animatable animatable : animatableObjects)
 		{
 			animatable.apply();
@@ -642,6 +640,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 		KeyFrame existingFrame = getKeyFrame(keyFrame.getFrame());
 		if (existingFrame != null)
 		{
+			//the existing key frame's add events update the index
 			existingFrame.addParameterValues(keyFrame.getParameterValues());
 			for (ParameterValue pv : keyFrame.getParameterValues())
 			{
@@ -655,11 +654,13 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 			{
 				keyFrameMapLock.writeLock().lock();
 				this.keyFrameMap.put(keyFrame.getFrame(), keyFrame);
+				keyFrameIndex.addKeyFrame(keyFrame);
 			}
 			finally
 			{
 				keyFrameMapLock.writeLock().unlock();
 			}
+			invalidateEvaluationPlan(keyFrame);
 		}
 
 		if (applySmoothing)
@@ -705,6 +706,72 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 		}
 	}
 
+	@Override
+	protected boolean handleEvent(AnimationEvent event)
+	{
+		//keep the key frame index up to date when values are added to or removed from key frames
+		if (event.getOwner() instanceof KeyFrame && event.getValue() instanceof ParameterValue
+				&& (event.isOfType(Type.ADD) || event.isOfType(Type.REMOVE)))
+		{
+			KeyFrame keyFrame = (KeyFrame) event.getOwner();
+			Parameter parameter = ((ParameterValue) event.getValue()).getOwner();
+			try
+			{
+				keyFrameMapLock.writeLock().lock();
+				if (keyFrameMap.get(keyFrame.getFrame()) == keyFrame)
+				{
+					if (event.isOfType(Type.ADD))
+					{
+						keyFrameIndex.addValue(parameter, keyFrame);
+					}
+					else
+					{
+						keyFrameIndex.removeValue(parameter, keyFrame);
+					}
+				}
+			}
+			finally
+			{
+				keyFrameMapLock.writeLock().unlock();
+			}
+		}
+
+		//invalidate the interpolated values that depend on a changed key frame value
+		ParameterValue changedValue = event.getObjectInChainOfType(ParameterValue.class);
+		if (changedValue == null && event.getValue() instanceof ParameterValue)
+		{
+			changedValue = (ParameterValue) event.getValue();
+		}
+		if (changedValue != null)
+		{
+			evaluationPlan.invalidate(changedValue.getOwner(), changedValue.getFrame());
+		}
+		else if (event.isOfType(Type.ADD) || event.isOfType(Type.REMOVE))
+		{
+			//parameters may have been added to or removed from an animatable object
+			evaluationPlan.invalidateAll();
+		}
+		return true;
+	}
+
+	/**
+	 * Invalidate the interpolated values of each parameter with a value on the
+	 * key frame.
+	 */
+	private void invalidateEvaluationPlan(KeyFrame keyFrame)
+	{
+		for (ParameterValue value : keyFrame.getParameterValues())
+		{
+			evaluationPlan.invalidate(value.getOwner(), keyFrame.getFrame());
+		}
+	}
+
+	@Override
+	public AnimationEvaluationPlan getEvaluationPlan()
+	{
+		return evaluationPlan;
+	}
+
 	@Override
 	public RenderParameters getRenderParameters()
 	{
@@ -875,14 +942,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 		try
 		{
 			keyFrameMapLock.readLock().lock();
-			for (KeyFrame keyFrame : keyFrameMap.values())
-			{
-				if (keyFrame.hasValueForParameter(p))
-				{
-					return true;
-				}
-			}
-			return false;
+			return keyFrameIndex.hasKeyFrame(p);
 		}
 		finally
 		{
@@ -943,11 +1003,13 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 			{
 				keyFrameMapLock.writeLock().lock();
 				keyFrameMap.remove(keyFrame.getFrame());
+				keyFrameIndex.removeKeyFrame(keyFrame);
 			}
 			finally
 			{
 				keyFrameMapLock.writeLock().unlock();
 			}
+			invalidateEvaluationPlan(keyFrame);
 			fireRemoveEvent(keyFrame);
 		}
 	}
@@ -1012,6 +1074,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 		{
 			keyFrameMapLock.writeLock().lock();
 			this.keyFrameMap.clear();
+			keyFrameIndex.clear();
 			for (int i = 0; i < oldKeyFrames.size(); i++)
 			{
 				insertKeyFrame(new KeyFrameImpl(newFrames[i], oldKeyFrames.get(i).getParameterValues()));
@@ -1022,6 +1085,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 			keyFrameMapLock.writeLock().unlock();
 		}
 
+		evaluationPlan.invalidateAll();
 		fireChangeEvent(newFrameCount);
 	}
 
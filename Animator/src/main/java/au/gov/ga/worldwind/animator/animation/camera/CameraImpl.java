@@ -35,6 +35,7 @@ import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.animator.animation.AnimatableBase;
 import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.AnimationEvaluationPlan;
 import au.gov.ga.worldwind.animator.animation.KeyFrame;
 import au.gov.ga.worldwind.animator.animation.KeyFrameImpl;
 import au.gov.ga.worldwind.animator.animation.camera.CameraParameter.EyeElevationParameter;
@@ -166,8 +167,8 @@ public class CameraImpl extends AnimatableBase implements Camera
 		int frame = getAnimation().getCurrentFrame();
 		Position eye = getEyePositionAtFrame(frame);
 		Position center = getLookatPositionAtFrame(frame);
-		Angle roll = Angle.fromDegrees(this.roll.getValueAtFrame(frame).getValue());
-		Angle fieldOfView = Angle.fromDegrees(this.fieldOfView.getValueAtFrame(frame).getValue());
+		Angle roll = Angle.fromDegrees(this.roll.getDoubleValueAtFrame(frame));
+		Angle fieldOfView = Angle.fromDegrees(this.fieldOfView.getDoubleValueAtFrame(frame));
 
 		View view = animation.getView();
 		view.stopMovement();
@@ -183,8 +184,8 @@ public class CameraImpl extends AnimatableBase implements Camera
 
 		if (clippingParametersActivated)
 		{
-			nearClip.applyValueIfEnabled(nearClip.getValueAtFrame(frame).getValue(), frame);
-			farClip.applyValueIfEnabled(farClip.getValueAtFrame(frame).getValue(), frame);
+			nearClip.applyValueIfEnabled(nearClip.getDoubleValueAtFrame(frame), frame);
+			farClip.applyValueIfEnabled(farClip.getDoubleValueAtFrame(frame), frame);
 		}
 	}
 
@@ -205,16 +206,16 @@ public class CameraImpl extends AnimatableBase implements Camera
 	{
 		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
 
-		ParameterValue[] latValues = lat.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] lonValues = lon.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] elevationValues = elevation.getValuesBetweenFrames(startFrame, endFrame, null);
+		AnimationEvaluationPlan plan = animation.getEvaluationPlan();
+		double[] latValues = plan.getValues(lat, startFrame, endFrame, null);
+		double[] lonValues = plan.getValues(lon, startFrame, endFrame, null);
+		double[] elevationValues = plan.getValues(elevation, startFrame, endFrame, null);
 
-		Position[] result = new Position[latValues.length];
+		Position[] result = new Position[endFrame - startFrame + 1];
 		for (int i = 0; i < result.length; i++)
 		{
 			result[i] =
-					Position.fromDegrees(latValues[i].getValue(), lonValues[i].getValue(),
-							animation.unapplyZoomScaling(elevationValues[i].getValue()));
+					Position.fromDegrees(latValues[i], lonValues[i], animation.unapplyZoomScaling(elevationValues[i]));
 		}
 
 		return result;
@@ -224,15 +225,15 @@ public class CameraImpl extends AnimatableBase implements Camera
 	@Override
 	public Position getEyePositionAtFrame(int frame)
 	{
-		return Position.fromDegrees(eyeLat.getValueAtFrame(frame).getValue(), eyeLon.getValueAtFrame(frame).getValue(),
-				getAnimation().unapplyZoomScaling(eyeElevation.getValueAtFrame(frame).getValue()));
+		return Position.fromDegrees(eyeLat.getDoubleValueAtFrame(frame), eyeLon.getDoubleValueAtFrame(frame),
+				getAnimation().unapplyZoomScaling(eyeElevation.getDoubleValueAtFrame(frame)));
 	}
 
 	@Override
 	public Position getLookatPositionAtFrame(int frame)
 	{
-		return Position.fromDegrees(lookAtLat.getValueAtFrame(frame).getValue(), lookAtLon.getValueAtFrame(frame)
-				.getValue(), getAnimation().unapplyZoomScaling(lookAtElevation.getValueAtFrame(frame).getValue()));
+		return Position.fromDegrees(lookAtLat.getDoubleValueAtFrame(frame), lookAtLon.getDoubleValueAtFrame(frame),
+				getAnimation().unapplyZoomScaling(lookAtElevation.getDoubleValueAtFrame(frame)));
 	}
 
 	@Override
@@ -34,6 +34,7 @@ import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.animator.animation.AnimatableBase;
 import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.AnimationEvaluationPlan;
 import au.gov.ga.worldwind.animator.animation.camera.HeadParameter.PositionXParameter;
 import au.gov.ga.worldwind.animator.animation.camera.HeadParameter.PositionYParameter;
 import au.gov.ga.worldwind.animator.animation.camera.HeadParameter.PositionZParameter;
@@ -44,7 +45,6 @@ import au.gov.ga.worldwind.animator.animation.camera.HeadParameter.RotationZPara
 import au.gov.ga.worldwind.animator.animation.io.AnimationFileVersion;
 import au.gov.ga.worldwind.animator.animation.io.AnimationIOConstants;
 import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
-import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
 import au.gov.ga.worldwind.animator.view.AnimatorView;
 import au.gov.ga.worldwind.common.util.Validate;
 
@@ -155,8 +155,8 @@ public class HeadImpl extends AnimatableBase implements Head
 	@Override
 	public Quaternion getRotationAtFrame(int frame)
 	{
-		return new Quaternion(rotationX.getValueAtFrame(frame).getValue(), rotationY.getValueAtFrame(frame).getValue(),
-				rotationZ.getValueAtFrame(frame).getValue(), rotationW.getValueAtFrame(frame).getValue());
+		return new Quaternion(rotationX.getDoubleValueAtFrame(frame), rotationY.getDoubleValueAtFrame(frame),
+				rotationZ.getDoubleValueAtFrame(frame), rotationW.getDoubleValueAtFrame(frame));
 	}
 
 	@Override
@@ -164,16 +164,16 @@ public class HeadImpl extends AnimatableBase implements Head
 	{
 		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
 
-		ParameterValue[] xValues = rotationX.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] yValues = rotationY.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] zValues = rotationZ.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] wValues = rotationW.getValuesBetweenFrames(startFrame, endFrame, null);
+		AnimationEvaluationPlan plan = getAnimation().getEvaluationPlan();
+		double[] xValues = plan.getValues(rotationX, startFrame, endFrame, null);
+		double[] yValues = plan.getValues(rotationY, startFrame, endFrame, null);
+		double[] zValues = plan.getValues(rotationZ, startFrame, endFrame, null);
+		double[] wValues = plan.getValues(rotationW, startFrame, endFrame, null);
 
-		Quaternion[] result = new Quaternion[xValues.length];
+		Quaternion[] result = new Quaternion[endFrame - startFrame + 1];
 		for (int i = 0; i < result.length; i++)
 		{
-			result[i] = new Quaternion(xValues[i].getValue(), yValues[i].getValue(), zValues[i].getValue(),
-					wValues[i].getValue());
+			result[i] = new Quaternion(xValues[i], yValues[i], zValues[i], wValues[i]);
 		}
 
 		return result;
@@ -182,8 +182,8 @@ public class HeadImpl extends AnimatableBase implements Head
 	@Override
 	public Vec4 getPositionAtFrame(int frame)
 	{
-		return new Vec4(positionX.getValueAtFrame(frame).getValue(), positionY.getValueAtFrame(frame).getValue(),
-				positionZ.getValueAtFrame(frame).getValue());
+		return new Vec4(positionX.getDoubleValueAtFrame(frame), positionY.getDoubleValueAtFrame(frame),
+				positionZ.getDoubleValueAtFrame(frame));
 	}
 
 	@Override
@@ -191,14 +191,15 @@ public class HeadImpl extends AnimatableBase implements Head
 	{
 		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
 
-		ParameterValue[] xValues = positionX.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] yValues = positionY.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] zValues = positionZ.getValuesBetweenFrames(startFrame, endFrame, null);
+		AnimationEvaluationPlan plan = getAnimation().getEvaluationPlan();
+		double[] xValues = plan.getValues(positionX, startFrame, endFrame, null);
+		double[] yValues = plan.getValues(positionY, startFrame, endFrame, null);
+		double[] zValues = plan.getValues(positionZ, startFrame, endFrame, null);
 
-		Vec4[] result = new Vec4[xValues.length];
+		Vec4[] result = new Vec4[endFrame - startFrame + 1];
 		for (int i = 0; i < result.length; i++)
 		{
-			result[i] = new Vec4(xValues[i].getValue(), yValues[i].getValue(), zValues[i].getValue());
+			result[i] = new Vec4(xValues[i], yValues[i], zValues[i]);
 		}
 
 		return result;
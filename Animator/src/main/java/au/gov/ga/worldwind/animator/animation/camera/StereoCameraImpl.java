@@ -120,8 +120,8 @@ public class StereoCameraImpl extends CameraImpl implements StereoCamera
 			{
 				IStereoViewDelegate stereo = (IStereoViewDelegate) delegate;
 				int frame = animation.getCurrentFrame();
-				double focalLength = this.focalLength.getValueAtFrame(frame).getValue();
-				double eyeSeparation = this.eyeSeparation.getValueAtFrame(frame).getValue();
+				double focalLength = this.focalLength.getDoubleValueAtFrame(frame);
+				double eyeSeparation = this.eyeSeparation.getDoubleValueAtFrame(frame);
 				stereo.getParameters().setDynamicStereo(dynamicStereo);
 				stereo.getParameters().setFocalLength(focalLength);
 				stereo.getParameters().setEyeSeparation(eyeSeparation);
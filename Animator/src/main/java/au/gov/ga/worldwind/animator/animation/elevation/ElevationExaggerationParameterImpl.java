@@ -104,8 +104,7 @@ public class ElevationExaggerationParameterImpl extends ParameterBase implements
 			return;
 		}
 		int frame = animation.getCurrentFrame();
-		ParameterValue value = getValueAtFrame(frame);
-		applyValueIfEnabled(value.getValue(), frame);
+		applyValueIfEnabled(getDoubleValueAtFrame(frame), frame);
 	}
 
 	@Override
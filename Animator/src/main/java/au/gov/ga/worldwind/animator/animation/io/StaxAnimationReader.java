@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import gov.nasa.worldwind.WorldWindow;
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.avlist.AVListImpl;
+import gov.nasa.worldwind.util.WWXML;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.WorldWindAnimationImpl;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValueType;
+import au.gov.ga.worldwind.common.util.Validate;
+
+/**
+ * An {@link AnimationReader} that reads the same XML files as the
+ * {@link XmlAnimationReader}, but parses them with a {@link XMLStreamReader}
+ * rather than loading the whole file into a DOM.
+ * <p/>
+ * Only the animation's structure is loaded into a DOM; the
+ * &lt;parameterValue&gt; elements are parsed straight into a compact
+ * {@link StreamedParameterValues} attached to their &lt;parameter&gt;
+ * element. The animation is then created from the DOM using the usual
+ * {@link XmlSerializable#fromXml(Element, AnimationFileVersion, AVList)}
+ * methods.
+ * <p/>
+ * <em>Version 1</em> files are handed to the {@link XmlAnimationReader}, as
+ * they need to be transformed to version 2 first.
+ */
+public class StaxAnimationReader implements AnimationReader
+{
+	@Override
+	public Animation readAnimation(String fileName, WorldWindow worldWindow)
+	{
+		Validate.notBlank(fileName, "A file name must be provided");
+		Validate.notNull(worldWindow, "A world window must be provided");
+
+		return readAnimation(new File(fileName), worldWindow);
+	}
+
+	@Override
+	public Animation readAnimation(File file, WorldWindow worldWindow)
+	{
+		Validate.notNull(file, "A file must be provided");
+		Validate.notNull(worldWindow, "A world window must be provided");
+
+		AnimationFileVersion version = getFileVersion(file);
+		if (version == null)
+		{
+			throw new IllegalArgumentException("File " + file.getName() + " is not a valid XML animation file.");
+		}
+		if (version == AnimationFileVersion.VERSION010)
+		{
+			return new XmlAnimationReader().readAnimation(file, worldWindow);
+		}
+
+		Document document;
+		try
+		{
+			document = readSkeleton(file, version);
+		}
+		catch (Exception e)
+		{
+			throw new IllegalArgumentException("File " + file.getName() + " is not a valid XML animation file.", e);
+		}
+
+		AVList context = new AVListImpl();
+		context.setValue(version.getConstants().getWorldWindowKey(), worldWindow);
+
+		Element animationElement =
+				WWXML.getElement(document.getDocumentElement(), version.getConstants().getAnimationElementName(),
+						null);
+		return new WorldWindAnimationImpl(worldWindow).fromXml(animationElement, version, context);
+	}
+
+	@Override
+	public AnimationFileVersion getFileVersion(String fileName)
+	{
+		Validate.notBlank(fileName, "A file name must be provided");
+		return getFileVersion(new File(fileName));
+	}
+
+	@Override
+	public AnimationFileVersion getFileVersion(File file)
+	{
+		Validate.notNull(file, "A file must be provided");
+
+		//only the root element needs to be read
+		InputStream is = null;
+		XMLStreamReader reader = null;
+		try
+		{
+			is = new BufferedInputStream(new FileInputStream(file));
+			reader = createInputFactory().createXMLStreamReader(is);
+			reader.nextTag();
+
+			AnimationIOConstants v2 = AnimationFileVersion.VERSION020.getConstants();
+			if (reader.getLocalName().equals(v2.getRootElementName()))
+			{
+				String version = reader.getAttributeValue(null, v2.getWorldWindAnimationAttributeVersion());
+				return version == null ? null : AnimationFileVersion.fromDisplayName(version);
+			}
+			else if (reader.getLocalName().equals(
+					AnimationFileVersion.VERSION010.getConstants().getRootElementName()))
+			{
+				return AnimationFileVersion.VERSION010;
+			}
+			return null;
+		}
+		catch (Exception e)
+		{
+			return null;
+		}
+		finally
+		{
+			close(reader, is);
+		}
+	}
+
+	/**
+	 * Read the file into a DOM, with the parameter values attached to their
+	 * &lt;parameter&gt; elements rather than as child elements.
+	 */
+	private Document readSkeleton(File file, AnimationFileVersion version) throws IOException, XMLStreamException
+	{
+		AnimationIOConstants constants = version.getConstants();
+		String parameterElementName = constants.getParameterElementName();
+		String valueElementName = constants.getParameterValueElementName();
+
+		Document document = WWXML.createDocumentBuilder(false).newDocument();
+		InputStream is = null;
+		XMLStreamReader reader = null;
+		try
+		{
+			is = new BufferedInputStream(new FileInputStream(file));
+			reader = createInputFactory().createXMLStreamReader(is);
+
+			Node current = document;
+			StreamedParameterValues values = null;
+			while (reader.hasNext())
+			{
+				switch (reader.next())
+				{
+				case XMLStreamConstants.START_ELEMENT:
+				{
+					String name = reader.getLocalName();
+					if (values != null && name.equals(valueElementName))
+					{
+						readValue(reader, values, constants);
+						break;
+					}
+
+					Element element = document.createElement(name);
+					for (int i = 0; i < reader.getAttributeCount(); i++)
+					{
+						element.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+					}
+					current.appendChild(element);
+					current = element;
+
+					if (name.equals(parameterElementName))
+					{
+						values = new StreamedParameterValues();
+						StreamedParameterValues.set(element, values);
+					}
+					break;
+				}
+				case XMLStreamConstants.END_ELEMENT:
+				{
+					if (reader.getLocalName().equals(parameterElementName))
+					{
+						values = null;
+					}
+					current = current.getParentNode();
+					break;
+				}
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				{
+					//whitespace between elements isn't needed
+					if (current != document && !reader.isWhiteSpace())
+					{
+						current.appendChild(document.createTextNode(reader.getText()));
+					}
+					break;
+				}
+				}
+			}
+		}
+		finally
+		{
+			close(reader, is);
+		}
+		return document;
+	}
+
+	/**
+	 * Read a &lt;parameterValue&gt; element (the reader is positioned at its
+	 * start) into the values, leaving the reader at the element's end.
+	 */
+	private void readValue(XMLStreamReader reader, StreamedParameterValues values, AnimationIOConstants constants)
+			throws XMLStreamException
+	{
+		ParameterValueType type =
+				ParameterValueType.valueOf(getAttribute(reader, constants.getParameterValueAttributeType()));
+		int frame = Integer.parseInt(getAttribute(reader, constants.getParameterValueAttributeFrame()));
+		double value = Double.parseDouble(getAttribute(reader, constants.getParameterValueAttributeValue()));
+
+		switch (type)
+		{
+		case LINEAR:
+			values.addLinear(frame, value);
+			break;
+		default:
+			values.addBezier(frame, value,
+					Double.parseDouble(getAttribute(reader, constants.getBezierValueAttributeInValue())),
+					Double.parseDouble(getAttribute(reader, constants.getBezierValueAttributeInPercent())),
+					Double.parseDouble(getAttribute(reader, constants.getBezierValueAttributeOutValue())),
+					Double.parseDouble(getAttribute(reader, constants.getBezierValueAttributeOutPercent())),
+					Boolean.parseBoolean(getAttribute(reader, constants.getBezierValueAttributeLocked())));
+			break;
+		}
+
+		//skip to the end of the element
+		int depth = 1;
+		while (depth > 0)
+		{
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+			{
+				depth++;
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT)
+			{
+				depth--;
+			}
+		}
+	}
+
+	/**
+	 * @return The attribute value, or an empty string if the attribute
+	 *         doesn't exist (like {@link Element#getAttribute(String)})
+	 */
+	private static String getAttribute(XMLStreamReader reader, String name)
+	{
+		String value = reader.getAttributeValue(null, name);
+		return value == null ? "" : value;
+	}
+
+	private static XMLInputFactory createInputFactory()
+	{
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		return factory;
+	}
+
+	private static void close(XMLStreamReader reader, InputStream is)
+	{
+		try
+		{
+			if (reader != null)
+			{
+				reader.close();
+			}
+			if (is != null)
+			{
+				is.close();
+			}
+		}
+		catch (Exception e)
+		{
+			//ignore
+		}
+	}
+}
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import gov.nasa.worldwind.util.WWXML;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
+import au.gov.ga.worldwind.common.util.Validate;
+
+/**
+ * An {@link AnimationWriter} that writes the same <em>version 2</em> XML
+ * format as the {@link XmlAnimationWriter}, but streams the parameter values
+ * to the file rather than building a DOM containing them.
+ * <p/>
+ * The animation's structure is still converted to a DOM using the
+ * {@link XmlSerializable#toXml(Element, AnimationFileVersion)} methods, but
+ * with {@link StreamedParameterValues#isDeferred()} set, so that parameters
+ * attach their values to the DOM rather than creating an element for each
+ * one. The DOM is then written with a {@link XMLStreamWriter}, converting
+ * each parameter value to an element as it is written, so memory use doesn't
+ * grow with the number of key frames.
+ * <p/>
+ * The output is formatted like the {@link XmlAnimationWriter}'s: indented by
+ * 4 spaces, with attributes in alphabetical order.
+ */
+public class StaxAnimationWriter implements AnimationWriter
+{
+	private static final String ENCODING = "UTF-8";
+	private static final String INDENT = "    ";
+	private static final String NEWLINE = System.getProperty("line.separator");
+
+	@Override
+	public void writeAnimation(String fileName, Animation animation) throws IOException
+	{
+		Validate.notBlank(fileName, "A filename must be provided");
+		Validate.notNull(animation, "An animation must be provided");
+
+		writeAnimation(new File(fileName), animation);
+	}
+
+	@Override
+	public void writeAnimation(File file, Animation animation) throws IOException
+	{
+		Validate.notNull(file, "A file must be provided");
+		Validate.notNull(animation, "An animation must be provided");
+
+		OutputStream os = new FileOutputStream(file);
+		try
+		{
+			writeAnimation(os, animation);
+		}
+		finally
+		{
+			os.close();
+		}
+	}
+
+	/**
+	 * Write the animation to the given stream. The stream is not closed.
+	 */
+	public void writeAnimation(OutputStream os, Animation animation) throws IOException
+	{
+		AnimationFileVersion version = XmlAnimationWriter.getCurrentFileVersion();
+		Element rootElement = createSkeleton(animation, version);
+
+		Writer writer = new BufferedWriter(new OutputStreamWriter(os, ENCODING));
+		try
+		{
+			writer.write("<?xml version=\"1.0\" encoding=\"" + ENCODING + "\" standalone=\"no\"?>" + NEWLINE);
+			XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+			Element scratch = rootElement.getOwnerDocument().createElement("scratch");
+			writeElement(xml, rootElement, 0, scratch, version);
+			xml.flush();
+			xml.close();
+			writer.flush();
+		}
+		catch (XMLStreamException e)
+		{
+			throw new IOException("Error writing animation: " + e.getLocalizedMessage(), e);
+		}
+	}
+
+	/**
+	 * Convert the animation to a DOM that doesn't contain the parameter
+	 * values (see {@link StreamedParameterValues}).
+	 */
+	private Element createSkeleton(Animation animation, AnimationFileVersion version)
+	{
+		Document document = WWXML.createDocumentBuilder(false).newDocument();
+		Element rootElement = document.createElement(version.getConstants().getWorldWindAnimationElementName());
+		document.appendChild(rootElement);
+		WWXML.setTextAttribute(rootElement, version.getConstants().getWorldWindAnimationAttributeVersion(),
+				version.getDisplayName());
+
+		boolean wasDeferred = StreamedParameterValues.isDeferred();
+		StreamedParameterValues.setDeferred(true);
+		try
+		{
+			rootElement.appendChild(animation.toXml(rootElement, version));
+		}
+		finally
+		{
+			StreamedParameterValues.setDeferred(wasDeferred);
+		}
+		return rootElement;
+	}
+
+	private void writeElement(XMLStreamWriter xml, Element element, int depth, Element scratch,
+			AnimationFileVersion version) throws XMLStreamException
+	{
+		List<Element> children = new ArrayList<Element>();
+		StringBuilder text = new StringBuilder();
+		NodeList childNodes = element.getChildNodes();
+		for (int i = 0; i < childNodes.getLength(); i++)
+		{
+			Node child = childNodes.item(i);
+			if (child instanceof Element)
+			{
+				children.add((Element) child);
+			}
+			else if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE)
+			{
+				text.append(child.getNodeValue());
+			}
+		}
+		StreamedParameterValues values = StreamedParameterValues.get(element);
+		boolean hasValues = values != null && values.size() > 0;
+		boolean hasText = children.isEmpty() && text.toString().trim().length() > 0;
+
+		if (depth > 0)
+		{
+			xml.writeCharacters(NEWLINE);
+			for (int i = 0; i < depth; i++)
+			{
+				xml.writeCharacters(INDENT);
+			}
+		}
+
+		if (children.isEmpty() && !hasValues && !hasText)
+		{
+			xml.writeEmptyElement(element.getTagName());
+			writeAttributes(xml, element);
+			return;
+		}
+
+		xml.writeStartElement(element.getTagName());
+		writeAttributes(xml, element);
+		if (hasText)
+		{
+			xml.writeCharacters(text.toString());
+			xml.writeEndElement();
+			return;
+		}
+
+		for (Element child : children)
+		{
+			writeElement(xml, child, depth + 1, scratch, version);
+		}
+		if (hasValues)
+		{
+			for (ParameterValue value : values.createValues(null))
+			{
+				//convert each value to a temporary element, and discard it once written
+				Element valueElement = value.toXml(scratch, version);
+				writeElement(xml, valueElement, depth + 1, scratch, version);
+				scratch.removeChild(valueElement);
+			}
+		}
+
+		xml.writeCharacters(NEWLINE);
+		for (int i = 0; i < depth; i++)
+		{
+			xml.writeCharacters(INDENT);
+		}
+		xml.writeEndElement();
+	}
+
+	private void writeAttributes(XMLStreamWriter xml, Element element) throws XMLStreamException
+	{
+		NamedNodeMap attributes = element.getAttributes();
+		List<String> names = new ArrayList<String>(attributes.getLength());
+		for (int i = 0; i < attributes.getLength(); i++)
+		{
+			names.add(((Attr) attributes.item(i)).getName());
+		}
+		Collections.sort(names);
+		for (String name : names)
+		{
+			xml.writeAttribute(name, element.getAttribute(name));
+		}
+	}
+}
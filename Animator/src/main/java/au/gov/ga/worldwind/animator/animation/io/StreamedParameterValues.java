@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.w3c.dom.Element;
+
+import au.gov.ga.worldwind.animator.animation.parameter.BasicBezierParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.BasicParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
+
+/**
+ * Holds the values of a parameter outside the XML DOM, for the streaming
+ * animation reader and writer ({@link StaxAnimationReader} and
+ * {@link StaxAnimationWriter}).
+ * <p/>
+ * The streaming reader and writer only build a DOM for the structure of the
+ * animation (the 'skeleton'), which is small; the &lt;parameterValue&gt;
+ * elements, which make up most of a recorded animation, are kept out of it.
+ * Instead, an instance of this class is attached to each &lt;parameter&gt;
+ * element as user data (under {@link #USER_DATA_KEY}):
+ * <ul>
+ * <li>when writing, {@link #isDeferred()} is set while the skeleton is built,
+ * and parameters attach their values rather than appending an element for
+ * each one</li>
+ * <li>when reading, the values parsed from the stream are stored compactly,
+ * and the parameter creates its values from them in
+ * {@link #createValues(Parameter)}</li>
+ * </ul>
+ */
+public class StreamedParameterValues
+{
+	/**
+	 * Key of the DOM user data on &lt;parameter&gt; elements that holds the
+	 * parameter's values
+	 */
+	public static final String USER_DATA_KEY = StreamedParameterValues.class.getName();
+
+	private static final ThreadLocal<Boolean> deferred = new ThreadLocal<Boolean>();
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * @return Should parameter values be attached to the &lt;parameter&gt;
+	 *         element on this thread, rather than appended as elements?
+	 */
+	public static boolean isDeferred()
+	{
+		return Boolean.TRUE.equals(deferred.get());
+	}
+
+	/**
+	 * Set whether parameter values should be attached to the
+	 * &lt;parameter&gt; element on this thread, rather than appended as
+	 * elements.
+	 */
+	public static void setDeferred(boolean defer)
+	{
+		if (defer)
+		{
+			deferred.set(Boolean.TRUE);
+		}
+		else
+		{
+			deferred.remove();
+		}
+	}
+
+	/**
+	 * @return The values attached to the given &lt;parameter&gt; element, or
+	 *         null if there are none
+	 */
+	public static StreamedParameterValues get(Element parameterElement)
+	{
+		Object values = parameterElement.getUserData(USER_DATA_KEY);
+		return values instanceof StreamedParameterValues ? (StreamedParameterValues) values : null;
+	}
+
+	/**
+	 * Attach values to the given &lt;parameter&gt; element.
+	 */
+	public static void set(Element parameterElement, StreamedParameterValues values)
+	{
+		parameterElement.setUserData(USER_DATA_KEY, values, null);
+	}
+
+	//values to write
+	private final List<ParameterValue> values;
+
+	//values read
+	private int size = 0;
+	private boolean[] bezier;
+	private int[] frames;
+	private double[] valuesRead;
+	private double[] inValues;
+	private double[] inPercents;
+	private double[] outValues;
+	private double[] outPercents;
+	private boolean[] locked;
+
+	/**
+	 * Create an empty instance, to add the values read from a stream to.
+	 */
+	public StreamedParameterValues()
+	{
+		this.values = null;
+		bezier = new boolean[INITIAL_CAPACITY];
+		frames = new int[INITIAL_CAPACITY];
+		valuesRead = new double[INITIAL_CAPACITY];
+		inValues = new double[INITIAL_CAPACITY];
+		inPercents = new double[INITIAL_CAPACITY];
+		outValues = new double[INITIAL_CAPACITY];
+		outPercents = new double[INITIAL_CAPACITY];
+		locked = new boolean[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Create an instance holding the values to write for a parameter.
+	 */
+	public StreamedParameterValues(List<ParameterValue> values)
+	{
+		this.values = Collections.unmodifiableList(new ArrayList<ParameterValue>(values));
+	}
+
+	/**
+	 * @return The number of values held
+	 */
+	public int size()
+	{
+		return values != null ? values.size() : size;
+	}
+
+	/**
+	 * Add a linear value read from a stream.
+	 */
+	public void addLinear(int frame, double value)
+	{
+		add(false, frame, value, 0, 0, 0, 0, false);
+	}
+
+	/**
+	 * Add a bezier value read from a stream.
+	 */
+	public void addBezier(int frame, double value, double inValue, double inPercent, double outValue,
+			double outPercent, boolean locked)
+	{
+		add(true, frame, value, inValue, inPercent, outValue, outPercent, locked);
+	}
+
+	private void add(boolean bezier, int frame, double value, double inValue, double inPercent, double outValue,
+			double outPercent, boolean locked)
+	{
+		if (values != null)
+		{
+			throw new IllegalStateException("Values to write can't be added to");
+		}
+		if (size == frames.length)
+		{
+			int capacity = size * 2;
+			this.bezier = Arrays.copyOf(this.bezier, capacity);
+			frames = Arrays.copyOf(frames, capacity);
+			valuesRead = Arrays.copyOf(valuesRead, capacity);
+			inValues = Arrays.copyOf(inValues, capacity);
+			inPercents = Arrays.copyOf(inPercents, capacity);
+			outValues = Arrays.copyOf(outValues, capacity);
+			outPercents = Arrays.copyOf(outPercents, capacity);
+			this.locked = Arrays.copyOf(this.locked, capacity);
+		}
+		this.bezier[size] = bezier;
+		frames[size] = frame;
+		valuesRead[size] = value;
+		inValues[size] = inValue;
+		inPercents[size] = inPercent;
+		outValues[size] = outValue;
+		outPercents[size] = outPercent;
+		this.locked[size] = locked;
+		size++;
+	}
+
+	/**
+	 * Create the parameter values held by this instance, in the order they
+	 * were added (or return the values to write).
+	 * 
+	 * @param owner
+	 *            Parameter that owns the values read (ignored for values to
+	 *            write, which already have an owner)
+	 * @return Parameter values
+	 */
+	public List<ParameterValue> createValues(Parameter owner)
+	{
+		if (values != null)
+		{
+			return values;
+		}
+
+		List<ParameterValue> result = new ArrayList<ParameterValue>(size);
+		for (int i = 0; i < size; i++)
+		{
+			if (bezier[i])
+			{
+				//same order of setters as BasicBezierParameterValue.fromXml, so that locking behaves the same
+				BasicBezierParameterValue value =
+						new BasicBezierParameterValue(valuesRead[i], frames[i], owner, inValues[i], inPercents[i],
+								outValues[i], outPercents[i]);
+				value.setLocked(locked[i]);
+				result.add(value);
+			}
+			else
+			{
+				result.add(new BasicParameterValue(valuesRead[i], frames[i], owner));
+			}
+		}
+		return result;
+	}
+}
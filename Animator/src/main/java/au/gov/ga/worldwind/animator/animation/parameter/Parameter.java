@@ -20,6 +20,7 @@ import java.util.List;
 
 import au.gov.ga.worldwind.animator.animation.Animatable;
 import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.AnimationEvaluationPlan;
 import au.gov.ga.worldwind.animator.animation.AnimationObject;
 import au.gov.ga.worldwind.animator.animation.KeyFrame;
 import au.gov.ga.worldwind.animator.animation.event.AnimationEventListener;
@@ -98,6 +99,38 @@ public interface Parameter extends AnimationObject, Serializable, Nameable, XmlS
 	 */
 	ParameterValue[] getValuesBetweenFrames(int startFrame, int endFrame, ParameterValue[] array);
 
+	/**
+	 * Get the value of this {@link Parameter} at the provided frame as a
+	 * primitive. Equivalent to <code>getValueAtFrame(frame).getValue()</code>,
+	 * but reads from the animation's {@link AnimationEvaluationPlan} where
+	 * possible, avoiding the interpolation.
+	 * 
+	 * @param frame
+	 *            The frame for which the value of the parameter is required
+	 * 
+	 * @return The value of this {@link Parameter} at the provided frame.
+	 */
+	double getDoubleValueAtFrame(int frame);
+
+	/**
+	 * Calculate the values of this {@link Parameter} between the provided
+	 * frames, inclusive, as primitives. Equivalent to
+	 * {@link #getValuesBetweenFrames(int, int, ParameterValue[])}, but only
+	 * creates a single interpolator for each key frame interval, and doesn't
+	 * create a {@link ParameterValue} for each frame.
+	 * 
+	 * @param startFrame
+	 *            Start frame (inclusive)
+	 * @param endFrame
+	 *            End frame (inclusive)
+	 * @param array
+	 *            Array to put values in (if null or doesn't contain enough
+	 *            space, a new array is returned)
+	 * 
+	 * @return Values for the frames provided.
+	 */
+	double[] getDoubleValuesBetweenFrames(int startFrame, int endFrame, double[] array);
+
 	/**
 	 * Get the default value of this parameter. This could be a static value
 	 * stored in the parameter, or a dynamic value based on the current state of
@@ -18,6 +18,7 @@ package au.gov.ga.worldwind.animator.animation.parameter;
 import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.util.WWXML;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.w3c.dom.Element;
@@ -31,6 +32,7 @@ import au.gov.ga.worldwind.animator.animation.event.ParameterEventImpl;
 import au.gov.ga.worldwind.animator.animation.event.PropagatingChangeableEventListener;
 import au.gov.ga.worldwind.animator.animation.io.AnimationFileVersion;
 import au.gov.ga.worldwind.animator.animation.io.AnimationIOConstants;
+import au.gov.ga.worldwind.animator.animation.io.StreamedParameterValues;
 import au.gov.ga.worldwind.animator.math.interpolation.Interpolator;
 import au.gov.ga.worldwind.animator.math.vector.Vector2;
 import au.gov.ga.worldwind.animator.util.Armable;
@@ -250,6 +252,73 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 		return array;
 	}
 
+	@Override
+	public double getDoubleValueAtFrame(int frame)
+	{
+		double value = animation.getEvaluationPlan().getValue(this, frame);
+		if (Double.isNaN(value))
+		{
+			//not tabulated (no key frames, or outside the animation)
+			return getValueAtFrame(frame).getValue();
+		}
+		return value;
+	}
+
+	@Override
+	public double[] getDoubleValuesBetweenFrames(int startFrame, int endFrame, double[] array)
+	{
+		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
+
+		if (array == null || array.length < (endFrame - startFrame + 1))
+		{
+			array = new double[endFrame - startFrame + 1];
+		}
+
+		KeyFrame previousKeyFrame = null;
+		KeyFrame nextKeyFrame = null;
+		Interpolator<Vector2> interpolator = null;
+		for (int frame = startFrame; frame <= endFrame; frame++)
+		{
+			//if the frame is outside of the bounds of previous and next, then recalculate
+			if (frame == startFrame || (nextKeyFrame != null && frame >= nextKeyFrame.getFrame()))
+			{
+				previousKeyFrame = animation.getKeyFrameWithParameterBeforeFrame(this, frame, true);
+				nextKeyFrame = animation.getKeyFrameWithParameterAfterFrame(this, frame, false);
+				interpolator = null;
+			}
+
+			double value;
+			if (previousKeyFrame == null && nextKeyFrame == null)
+			{
+				value = getDefaultValue(frame);
+			}
+			else if (previousKeyFrame == null || frame <= previousKeyFrame.getFrame())
+			{
+				value = (previousKeyFrame == null ? nextKeyFrame : previousKeyFrame).getValueForParameter(this)
+						.getValue();
+			}
+			else if (nextKeyFrame == null)
+			{
+				value = previousKeyFrame.getValueForParameter(this).getValue();
+			}
+			else
+			{
+				//same interpolation as calculateInterpolatedParameterValue, but one interpolator per interval
+				if (interpolator == null)
+				{
+					interpolator =
+							InterpolatorFactory.getInterpolator(previousKeyFrame.getValueForParameter(this),
+									nextKeyFrame.getValueForParameter(this));
+				}
+				double percent = calculatePercentOfInterval(previousKeyFrame.getFrame(), nextKeyFrame.getFrame(), frame);
+				value = interpolator.computeValue(percent).y;
+			}
+			array[frame - startFrame] = value;
+		}
+
+		return array;
+	}
+
 	/**
 	 * Invoked by the {@link ParameterBase#getValueAtFrame(int)} and
 	 * {@link ParameterBase#getValuesBetweenFrames(int, int, ParameterValue[])}
@@ -386,9 +455,22 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 		WWXML.setBooleanAttribute(parameterElement, constants.getParameterAttributeEnabled(), enabled);
 
 		List<KeyFrame> keyFrames = getKeyFramesWithThisParameter();
-		for (KeyFrame keyFrame : keyFrames)
+		if (StreamedParameterValues.isDeferred())
 		{
-			parameterElement.appendChild(keyFrame.getValueForParameter(this).toXml(parameterElement, version));
+			//the streaming writer writes the values itself
+			List<ParameterValue> values = new ArrayList<ParameterValue>(keyFrames.size());
+			for (KeyFrame keyFrame : keyFrames)
+			{
+				values.add(keyFrame.getValueForParameter(this));
+			}
+			StreamedParameterValues.set(parameterElement, new StreamedParameterValues(values));
+		}
+		else
+		{
+			for (KeyFrame keyFrame : keyFrames)
+			{
+				parameterElement.appendChild(keyFrame.getValueForParameter(this).toXml(parameterElement, version));
+			}
 		}
 
 		saveParameterToXml(result, parameterElement, version);
@@ -426,6 +508,15 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 			// Create a parameter value for each child element
 			// Insert it as a key frame (relies on key frames being merged)
 			context.setValue(constants.getParameterValueOwnerKey(), result);
+			StreamedParameterValues streamedValues = StreamedParameterValues.get(parameterElement);
+			if (streamedValues != null)
+			{
+				//values read by the streaming reader aren't in the DOM
+				for (ParameterValue v : streamedValues.createValues(result))
+				{
+					result.animation.insertKeyFrame(new KeyFrameImpl(v.getFrame(), v), false);
+				}
+			}
 			Element[] parameterValueElements =
 					WWXML.getElements(parameterElement, constants.getParameterValueElementName(), null);
 			if (parameterValueElements != null)
@@ -17,7 +17,6 @@ package au.gov.ga.worldwind.animator.animation.sun;
 
 import au.gov.ga.worldwind.animator.animation.Animation;
 import au.gov.ga.worldwind.animator.animation.parameter.ParameterBase;
-import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
 
 /**
  * Abstract base class of parameters used by the {@link SunPositionAnimatable}.
@@ -46,7 +45,6 @@ public abstract class SunPositionParameterBase extends ParameterBase implements
 			return;
 		}
 		int frame = animation.getCurrentFrame();
-		ParameterValue value = getValueAtFrame(frame);
-		applyValueIfEnabled(value.getValue(), frame);
+		applyValueIfEnabled(getDoubleValueAtFrame(frame), frame);
 	}
 }
@@ -45,6 +45,9 @@ import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstant
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getQuerySaveMessageKey;
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getQuerySmoothEyeSpeedCaptionKey;
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getQuerySmoothEyeSpeedMessageKey;
+import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getReduceKeyFramesCaptionKey;
+import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getReduceKeyFramesMessageKey;
+import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getReduceKeyFramesResultKey;
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getSaveAsDialogTitleKey;
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getSaveFailedCaptionKey;
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getSaveFailedMessageKey;
@@ -110,6 +113,7 @@ import au.gov.ga.worldwind.animator.animation.AnimationObject;
 import au.gov.ga.worldwind.animator.animation.CurrentlySelectedObject;
 import au.gov.ga.worldwind.animator.animation.KeyFrame;
 import au.gov.ga.worldwind.animator.animation.KeyFrameImpl;
+import au.gov.ga.worldwind.animator.animation.KeyFrameReducer;
 import au.gov.ga.worldwind.animator.animation.RenderParameters;
 import au.gov.ga.worldwind.animator.animation.WorldWindAnimationImpl;
 import au.gov.ga.worldwind.animator.animation.camera.Camera;
@@ -121,8 +125,10 @@ import au.gov.ga.worldwind.animator.animation.event.AnimationEvent;
 import au.gov.ga.worldwind.animator.animation.event.AnimationEvent.Type;
 import au.gov.ga.worldwind.animator.animation.event.AnimationEventListener;
 import au.gov.ga.worldwind.animator.animation.io.AnimationFileVersion;
+import au.gov.ga.worldwind.animator.animation.io.AnimationReader;
 import au.gov.ga.worldwind.animator.animation.io.AnimationWriter;
-import au.gov.ga.worldwind.animator.animation.io.XmlAnimationReader;
+import au.gov.ga.worldwind.animator.animation.io.StaxAnimationReader;
+import au.gov.ga.worldwind.animator.animation.io.StaxAnimationWriter;
 import au.gov.ga.worldwind.animator.animation.io.XmlAnimationWriter;
 import au.gov.ga.worldwind.animator.animation.layer.AnimatableLayer;
 import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
@@ -135,6 +141,7 @@ import au.gov.ga.worldwind.animator.application.effects.EffectDialog;
 import au.gov.ga.worldwind.animator.application.effects.EffectFactory;
 import au.gov.ga.worldwind.animator.application.render.AnimationRenderer;
 import au.gov.ga.worldwind.animator.application.render.AnimationRenderer.RenderEventListener;
+import au.gov.ga.worldwind.animator.application.render.CameraPathPrefetcher;
 import au.gov.ga.worldwind.animator.application.render.RenderDialog;
 import au.gov.ga.worldwind.animator.application.render.RenderProgressDialog;
 import au.gov.ga.worldwind.animator.application.render.StereoOffscreenRenderer;
@@ -846,6 +853,7 @@ public class Animator
 		actionFactory.getUseScaledZoomAction().addToMenu(menu);
 		menu.add(actionFactory.getScaleAnimationAction());
 		menu.add(actionFactory.getSmoothEyeSpeedAction());
+		menu.add(actionFactory.getReduceKeyFramesAction());
 		menu.addSeparator();
 		menu.add(actionFactory.getPreviewAction());
 		menu.add(actionFactory.getPreviewX2Action());
@@ -1022,11 +1030,34 @@ public class Animator
 			{
 				if (isFrameChangeEvent(event))
 				{
-					updateSlider();
-
-					// Trigger a repaint of the highlighted frames on key frame changes
-					highlightedFramesListener.selectedObjectChanged(CurrentlySelectedObject.get(),
-							CurrentlySelectedObject.get());
+					// Keep the slider in sync with the added/removed key frame, rather than rebuilding all keys.
+					// Events can be fired from the Updater thread, so apply the changes on the EDT.
+					final int frame = ((KeyFrame) event.getRootCause().getValue()).getFrame();
+					final boolean added = event.getRootCause().isOfType(Type.ADD);
+					SwingUtilities.invokeLater(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							if (added)
+							{
+								slider.addKey(frame);
+								int max = getCurrentAnimation().getFrameCount() - 1;
+								if (max > slider.getMax())
+								{
+									slider.setMax(max);
+								}
+							}
+							else if (!getCurrentAnimation().hasKeyFrame(frame))
+							{
+								slider.removeKey(frame);
+							}
+
+							// Trigger a repaint of the highlighted frames on key frame changes
+							highlightedFramesListener.selectedObjectChanged(CurrentlySelectedObject.get(),
+									CurrentlySelectedObject.get());
+						}
+					});
 				}
 			}
 
@@ -1143,11 +1174,13 @@ public class Animator
 
 	void updateSlider()
 	{
-		slider.clearKeys();
-		for (KeyFrame keyFrame : getCurrentAnimation().getKeyFrames())
+		List<KeyFrame> keyFrames = getCurrentAnimation().getKeyFrames();
+		List<Integer> keys = new ArrayList<Integer>(keyFrames.size());
+		for (KeyFrame keyFrame : keyFrames)
 		{
-			slider.addKey(keyFrame.getFrame());
+			keys.add(keyFrame.getFrame());
 		}
+		slider.setKeys(keys);
 		slider.setMin(0);
 		slider.setMax(getCurrentAnimation().getFrameCount() - 1);
 		slider.repaint();
@@ -1357,7 +1390,7 @@ public class Animator
 		Animation oldAnimation = getCurrentAnimation();
 		try
 		{
-			XmlAnimationReader animationReader = new XmlAnimationReader();
+			AnimationReader animationReader = new StaxAnimationReader();
 
 			// Check the file version and display appropriate messages
 			AnimationFileVersion version = animationReader.getFileVersion(animationFile);
@@ -1518,7 +1551,7 @@ public class Animator
 		{
 			try
 			{
-				AnimationWriter writer = new XmlAnimationWriter();
+				AnimationWriter writer = new StaxAnimationWriter();
 				writer.writeAnimation(file, getCurrentAnimation());
 				resetChanged();
 			}
@@ -1604,12 +1637,15 @@ public class Animator
 				{
 					stop = false;
 
+					CameraPathPrefetcher prefetcher =
+							new CameraPathPrefetcher(wwd.getModel(), wwd.getView().getViewport().width);
 					int firstFrame = Math.max(slider.getValue(), 0);
 					int lastFrame = getCurrentAnimation().getFrameOfLastKeyFrame();
 					int frame;
 					for (frame = firstFrame; frame <= lastFrame; frame += frameSkip)
 					{
 						setSlider(frame);
+						prefetcher.frameChanged(getCurrentAnimation(), frame, frameSkip);
 						applyAnimationState();
 						wwd.redrawNow();
 
@@ -1624,6 +1660,7 @@ public class Animator
 						applyAnimationState();
 						wwd.redrawNow();
 					}
+					prefetcher.stop();
 				}
 			});
 			thread.start();
@@ -2023,6 +2060,39 @@ public class Animator
 		}
 	}
 
+	void reduceKeyFrames()
+	{
+		double percent = -1.0;
+		Object value =
+				JOptionPane.showInputDialog(frame, getMessage(getReduceKeyFramesMessageKey()),
+						getMessage(getReduceKeyFramesCaptionKey()), JOptionPane.QUESTION_MESSAGE, null, null, 0.1);
+		if (value == null)
+		{
+			return;
+		}
+		try
+		{
+			percent = Double.parseDouble(value.toString());
+		}
+		catch (Exception ex)
+		{
+			ExceptionLogger.logException(ex);
+		}
+		if (percent < 0)
+		{
+			return;
+		}
+
+		Animation animation = getCurrentAnimation();
+		int before = animation.getKeyFrameCount();
+		KeyFrameReducer.reduce(animation,
+				KeyFrameReducer.createRelativeTolerances(animation, animation.getAllParameters(), percent / 100d));
+		updateSlider();
+		JOptionPane.showMessageDialog(frame,
+				getMessage(getReduceKeyFramesResultKey(), before, animation.getKeyFrameCount()),
+				getMessage(getReduceKeyFramesCaptionKey()), JOptionPane.INFORMATION_MESSAGE);
+	}
+
 	public void resizeWindowToRenderDimensions()
 	{
 		resizeWindowToAnimationSize(getCurrentAnimation().getRenderParameters().getImageDimension());
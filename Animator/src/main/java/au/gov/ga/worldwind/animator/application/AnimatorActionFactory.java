@@ -42,6 +42,7 @@ import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstant
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getPreviewX2MenuLabelKey;
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getPrevious10FrameMenuLabelKey;
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getPreviousFrameMenuLabelKey;
+import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getReduceKeyFramesMenuLabelKey;
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getRenderHighResMenuLabelKey;
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getRenderMenuLabelKey;
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getRenderMenuTooltipKey;
@@ -110,6 +111,7 @@ public class AnimatorActionFactory
 	private SelectableAction useScaledZoomAction;
 	private BasicAction scaleAnimationAction;
 	private BasicAction smoothEyeSpeedAction;
+	private BasicAction reduceKeyFramesAction;
 	private SelectableAction showWireframeAction;
 	private SelectableAction targetModeAction;
 	private BasicAction previewAction;
@@ -391,6 +393,18 @@ public class AnimatorActionFactory
 			}
 		});
 		
+		// Reduce key frames
+		reduceKeyFramesAction = new BasicAction(getMessage(getReduceKeyFramesMenuLabelKey()), null);
+		reduceKeyFramesAction.putValue(Action.MNEMONIC_KEY, KeyEvent.VK_R);
+		reduceKeyFramesAction.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				targetApplication.reduceKeyFrames();
+			}
+		});
+		
 		// Show wireframe
 		showWireframeAction = new SelectableAction(getMessage(getShowWireframeMenuLabelKey()), null, false);
 		showWireframeAction.putValue(Action.MNEMONIC_KEY, KeyEvent.VK_W);
@@ -848,6 +862,11 @@ public class AnimatorActionFactory
 		return smoothEyeSpeedAction;
 	}
 
+	public BasicAction getReduceKeyFramesAction()
+	{
+		return reduceKeyFramesAction;
+	}
+
 	public BasicAction getPreviewAction()
 	{
 		return previewAction;
@@ -28,7 +28,7 @@ import java.util.concurrent.locks.ReadWriteLock;
 
 import au.gov.ga.worldwind.animator.animation.Animation;
 import au.gov.ga.worldwind.animator.animation.io.AnimationWriter;
-import au.gov.ga.worldwind.animator.animation.io.XmlAnimationWriter;
+import au.gov.ga.worldwind.animator.animation.io.StaxAnimationWriter;
 import au.gov.ga.worldwind.animator.application.settings.Settings;
 import au.gov.ga.worldwind.animator.util.ExceptionLogger;
 import au.gov.ga.worldwind.common.util.LenientReadWriteLock;
@@ -46,7 +46,7 @@ public class AutoSaver implements ChangeOfAnimationListener
 	private ReadWriteLock animationLock = new LenientReadWriteLock();
 	
 	private Timer timer;
-	private AnimationWriter writer = new XmlAnimationWriter();
+	private AnimationWriter writer = new StaxAnimationWriter();
 	
 	public AutoSaver(Animator targetApplication)
 	{
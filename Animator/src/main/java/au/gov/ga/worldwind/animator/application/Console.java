@@ -35,8 +35,7 @@ import javax.media.opengl.GLProfile;
 
 import au.gov.ga.worldwind.animator.animation.Animation;
 import au.gov.ga.worldwind.animator.animation.RenderParameters;
-import au.gov.ga.worldwind.animator.animation.io.XmlAnimationReader;
-import au.gov.ga.worldwind.animator.application.render.AnimationRenderer;
+import au.gov.ga.worldwind.animator.animation.io.StaxAnimationReader;
 import au.gov.ga.worldwind.animator.application.settings.Settings;
 import au.gov.ga.worldwind.animator.view.AnimatorView;
 import au.gov.ga.worldwind.common.util.NativeLibraries;
@@ -85,9 +84,9 @@ public class Console
 
 			File input = new File(parameters.inputFile);
 			File output = new File(parameters.outputFile);
-			XmlAnimationReader animationReader = new XmlAnimationReader();
+			StaxAnimationReader animationReader = new StaxAnimationReader();
 			Animation animation = animationReader.readAnimation(input, wwd);
-			AnimationRenderer renderer = new ConsoleOffscreenRenderer(wwd);
+			ConsoleOffscreenRenderer renderer = new ConsoleOffscreenRenderer(wwd);
 
 			((AnimatorSceneController) wwd.getSceneController()).setAnimation(animation);
 			model.getGlobe().setElevationModel(animation.getRootElevationModel());
@@ -128,6 +127,21 @@ public class Console
 				renderParams.setRenderExtension(parameters.renderFormat);
 			}
 
+			if (parameters.workers > 1)
+			{
+				//render chunks of frames in separate worker processes, each running this console
+				if (!new DistributedRenderer(parameters, parameters.start, parameters.end).render())
+				{
+					System.exit(1);
+				}
+				return;
+			}
+			renderer.setWarmUpFrameStride(parameters.warmUpStride);
+			if (parameters.reportFrames)
+			{
+				renderer.addListener(DistributedRenderer.createFrameReporter(renderer));
+			}
+
 			GLDrawableFactory factory = GLDrawableFactory.getFactory(GLProfile.get(GLProfile.GL2));
 			GLOffscreenAutoDrawable drawable =
 					factory.createOffscreenAutoDrawable(null, AnimatorConfiguration.getGLCapabilities(), null,
@@ -137,6 +151,11 @@ public class Console
 
 			Thread thread = renderer.render(animation, renderParams);
 			thread.join();
+			if (renderer.getFailureCount() > 0)
+			{
+				System.err.println(renderer.getFailureCount() + " frames could not be written");
+				System.exit(1);
+			}
 		}
 		catch (Exception e)
 		{
@@ -15,6 +15,8 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.animator.application;
 
+import au.gov.ga.worldwind.animator.application.render.TileWarmUp;
+
 import com.beust.jcommander.Parameter;
 
 /**
@@ -50,4 +52,22 @@ public class ConsoleParameters
 
 	@Parameter(names = { "-f", "-format" }, description = "Rendering format of the animation", required = false)
 	public String renderFormat = null;
+
+	@Parameter(names = { "-workers" }, description = "Number of worker processes to render frames with (if greater than 1, frames are rendered by separate JVMs).", required = false)
+	public int workers = 1;
+
+	@Parameter(names = { "-chunk" }, description = "Number of frames given to a worker process at a time.", required = false)
+	public int chunk = 10;
+
+	@Parameter(names = { "-retries" }, description = "Number of times to retry a frame that a worker process failed to render.", required = false)
+	public int retries = 2;
+
+	@Parameter(names = { "-report" }, description = "CSV file to write the per-frame render times and failed frames to (when using worker processes).", required = false)
+	public String reportFile = null;
+
+	@Parameter(names = { "-warmup" }, description = "Number of frames between the camera positions whose tiles are loaded before rendering starts (0 to disable the warm-up pass).", required = false)
+	public int warmUpStride = TileWarmUp.DEFAULT_FRAME_STRIDE;
+
+	@Parameter(names = { "-reportFrames" }, description = "Print a line as each frame is rendered (used by worker processes).", required = false, hidden = true)
+	public boolean reportFrames = false;
 }
@@ -0,0 +1,638 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.application;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import au.gov.ga.worldwind.animator.application.render.AnimationRenderer.RenderEventListener;
+import au.gov.ga.worldwind.animator.application.render.AsyncFrameWriter;
+import au.gov.ga.worldwind.animator.application.render.OffscreenRenderer;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * Renders a range of frames of an animation file using a number of local
+ * worker JVMs, each running the headless {@link Console} on a chunk of the
+ * frame range.
+ * <p/>
+ * The frame range is split into chunks, which are handed to the workers as
+ * they become free. Each worker reports the frames it has rendered (see
+ * {@link #createFrameReporter(OffscreenRenderer)}); when a worker exits, any
+ * frames of its chunk that weren't reported are retried in a new chunk, up to
+ * the retry limit, after which they are reported as failed. Rendered frames
+ * are written in the background, so if a worker exits without reporting that
+ * it completed, the last few frames it reported are retried too. If a worker
+ * reports that some of its frames couldn't be written, its whole chunk is
+ * retried.
+ * <p/>
+ * Workers write frames directly to their final sequence file names, so the
+ * frame sequence is complete and in order once all chunks have succeeded.
+ * Per-frame render times of the frames confirmed written and the failed frames
+ * are printed when the render finishes, and optionally written to a CSV
+ * report.
+ * <p/>
+ * Workers are started with the heap size and system property arguments of
+ * this JVM (see {@link #filterJvmArguments(List)}), but not its debugging,
+ * agent or management arguments, which would make the workers compete for
+ * the same ports.
+ */
+public class DistributedRenderer
+{
+	/**
+	 * Prefix of the line a worker prints when it has finished rendering a
+	 * frame, followed by the frame number and the time taken in
+	 * milliseconds
+	 */
+	public static final String FRAME_RENDERED_PREFIX = "Frame rendered: ";
+
+	/**
+	 * Line a worker prints once rendering has completed and all frames have
+	 * been written to disk
+	 */
+	public static final String RENDER_COMPLETED = "Render completed";
+
+	/**
+	 * Line a worker prints once rendering has finished if any frames couldn't
+	 * be written to disk
+	 */
+	public static final String RENDER_FAILED = "Render failed";
+
+	/**
+	 * Prefixes of the arguments of this JVM that are passed on to the workers
+	 */
+	private static final String[] FORWARDED_JVM_ARGUMENTS = { "-Xmx", "-Xms", "-Xss", "-D" };
+
+	/**
+	 * Prefixes of forwarded arguments that are never passed on to the
+	 * workers, as they would open the same management port in each worker
+	 */
+	private static final String[] EXCLUDED_JVM_ARGUMENTS = { "-Dcom.sun.management." };
+
+	private final ConsoleParameters parameters;
+	private final int startFrame;
+	private final int endFrame;
+	private final ExecutorService executor;
+	private final Set<Process> processes = Collections.synchronizedSet(new HashSet<Process>());
+
+	//guarded by this
+	private final SortedMap<Integer, Long> frameMillis = new TreeMap<Integer, Long>();
+	private final SortedMap<Integer, Integer> frameAttempts = new TreeMap<Integer, Integer>();
+	private final SortedSet<Integer> failedFrames = new TreeSet<Integer>();
+	private int outstandingChunks = 0;
+
+	/**
+	 * @param parameters
+	 *            Console parameters to pass to each worker
+	 * @param startFrame
+	 *            First frame to render
+	 * @param endFrame
+	 *            Last frame to render
+	 */
+	public DistributedRenderer(ConsoleParameters parameters, int startFrame, int endFrame)
+	{
+		this.parameters = parameters;
+		this.startFrame = startFrame;
+		this.endFrame = endFrame;
+		this.executor =
+				Executors.newFixedThreadPool(Math.max(1, parameters.workers), new DaemonThreadFactory(
+						"Render worker monitor"));
+	}
+
+	/**
+	 * Render the frames, blocking until all frames have been rendered or have
+	 * failed.
+	 * 
+	 * @return True if all frames were rendered
+	 */
+	public boolean render() throws InterruptedException, IOException
+	{
+		Thread shutdownHook = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				destroyWorkers();
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+		long start = System.currentTimeMillis();
+		try
+		{
+			for (int[] chunk : partition(startFrame, endFrame, parameters.chunk))
+			{
+				submit(chunk[0], chunk[1]);
+			}
+
+			synchronized (this)
+			{
+				while (outstandingChunks > 0)
+				{
+					wait();
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		}
+
+		printSummary(System.currentTimeMillis() - start);
+		if (parameters.reportFile != null)
+		{
+			writeReport(new File(parameters.reportFile));
+		}
+		return failedFrames.isEmpty();
+	}
+
+	/**
+	 * Create a listener that prints a line for each rendered frame, for the
+	 * {@link DistributedRenderer} running this worker to read.
+	 * 
+	 * @param renderer
+	 *            Renderer the listener is added to, used to check for frames
+	 *            that couldn't be written once rendering has completed
+	 */
+	public static RenderEventListener createFrameReporter(final OffscreenRenderer renderer)
+	{
+		return new RenderEventListener()
+		{
+			private long frameStart;
+
+			@Override
+			public void started()
+			{
+			}
+
+			@Override
+			public void startingFrame(int frame)
+			{
+				frameStart = System.currentTimeMillis();
+			}
+
+			@Override
+			public void finishedFrame(int frame)
+			{
+				System.out.println(FRAME_RENDERED_PREFIX + frame + " " + (System.currentTimeMillis() - frameStart));
+				System.out.flush();
+			}
+
+			@Override
+			public void stopped(int frame)
+			{
+			}
+
+			@Override
+			public void completed()
+			{
+				System.out.println(renderer.getFailureCount() > 0 ? RENDER_FAILED : RENDER_COMPLETED);
+				System.out.flush();
+			}
+		};
+	}
+
+	/**
+	 * Split a frame range into chunks of (at most) the given size.
+	 * 
+	 * @return List of chunks, each an array containing the first and last
+	 *         frame of the chunk
+	 */
+	static List<int[]> partition(int startFrame, int endFrame, int chunkSize)
+	{
+		chunkSize = Math.max(1, chunkSize);
+		List<int[]> chunks = new ArrayList<int[]>();
+		for (int frame = startFrame; frame <= endFrame; frame += chunkSize)
+		{
+			chunks.add(new int[] { frame, Math.min(endFrame, frame + chunkSize - 1) });
+		}
+		return chunks;
+	}
+
+	/**
+	 * Find each contiguous run of frames in a chunk that wasn't rendered.
+	 * 
+	 * @return List of runs, each an array containing the first and last frame
+	 *         of the run
+	 */
+	static List<int[]> findMissingRuns(int chunkStart, int chunkEnd, Set<Integer> rendered)
+	{
+		List<int[]> runs = new ArrayList<int[]>();
+		int runStart = -1;
+		for (int frame = chunkStart; frame <= chunkEnd + 1; frame++)
+		{
+			boolean missing = frame <= chunkEnd && !rendered.contains(frame);
+			if (missing && runStart < 0)
+			{
+				runStart = frame;
+			}
+			else if (!missing && runStart >= 0)
+			{
+				runs.add(new int[] { runStart, frame - 1 });
+				runStart = -1;
+			}
+		}
+		return runs;
+	}
+
+	/**
+	 * Parse a line printed by a worker's frame reporter (see
+	 * {@link #createFrameReporter(OffscreenRenderer)}).
+	 * 
+	 * @return Array containing the frame number and the time taken in
+	 *         milliseconds, or null if the line isn't a frame report
+	 */
+	static long[] parseFrameReport(String line)
+	{
+		if (!line.startsWith(FRAME_RENDERED_PREFIX))
+		{
+			return null;
+		}
+		String[] split = line.substring(FRAME_RENDERED_PREFIX.length()).trim().split("\\s+");
+		if (split.length != 2)
+		{
+			return null;
+		}
+		try
+		{
+			return new long[] { Integer.parseInt(split[0]), Long.parseLong(split[1]) };
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Select the arguments of this JVM to pass on to the workers: heap and
+	 * stack sizes and system properties (including the native library path),
+	 * excluding management properties. Debugger, agent and other arguments
+	 * aren't passed on.
+	 */
+	static List<String> filterJvmArguments(List<String> arguments)
+	{
+		List<String> filtered = new ArrayList<String>();
+		for (String argument : arguments)
+		{
+			if (startsWithAny(argument, FORWARDED_JVM_ARGUMENTS) && !startsWithAny(argument, EXCLUDED_JVM_ARGUMENTS))
+			{
+				filtered.add(argument);
+			}
+		}
+		return filtered;
+	}
+
+	private static boolean startsWithAny(String argument, String[] prefixes)
+	{
+		for (String prefix : prefixes)
+		{
+			if (argument.startsWith(prefix))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Submit a chunk of frames to be rendered by a worker.
+	 */
+	synchronized void submit(final int chunkStart, final int chunkEnd)
+	{
+		outstandingChunks++;
+		executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					runChunk(chunkStart, chunkEnd);
+				}
+				finally
+				{
+					synchronized (DistributedRenderer.this)
+					{
+						outstandingChunks--;
+						DistributedRenderer.this.notifyAll();
+					}
+				}
+			}
+		});
+	}
+
+	private void runChunk(int chunkStart, int chunkEnd)
+	{
+		String name = "[" + chunkStart + "-" + chunkEnd + "] ";
+		WorkerOutput output = new WorkerOutput();
+		chunkStarted(chunkStart, chunkEnd);
+
+		Process process = null;
+		try
+		{
+			ProcessBuilder builder = new ProcessBuilder(createWorkerCommand(chunkStart, chunkEnd));
+			builder.redirectErrorStream(true);
+			process = builder.start();
+			processes.add(process);
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				long[] report = parseFrameReport(line);
+				if (report != null)
+				{
+					output.frameRendered((int) report[0], report[1]);
+					System.out.println(name + "Rendered frame " + report[0] + " in " + report[1] + " ms");
+				}
+				else if (line.equals(RENDER_COMPLETED))
+				{
+					output.completed();
+				}
+				else if (line.equals(RENDER_FAILED))
+				{
+					output.failed();
+				}
+				else
+				{
+					System.out.println(name + line);
+				}
+			}
+			int exitCode = process.waitFor();
+			if (exitCode != 0)
+			{
+				System.err.println(name + "Worker exited with code " + exitCode);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			return;
+		}
+		catch (Exception e)
+		{
+			System.err.println(name + "Worker failed: " + e.getLocalizedMessage());
+		}
+		finally
+		{
+			if (process != null)
+			{
+				process.destroy();
+				processes.remove(process);
+			}
+		}
+
+		if (output.isFailed())
+		{
+			System.err.println(name + "Worker failed to write some frames");
+		}
+		chunkFinished(chunkStart, chunkEnd, output.getWrittenFrames());
+	}
+
+	/**
+	 * Count an attempt at rendering each frame of a chunk.
+	 */
+	synchronized void chunkStarted(int chunkStart, int chunkEnd)
+	{
+		for (int frame = chunkStart; frame <= chunkEnd; frame++)
+		{
+			Integer attempts = frameAttempts.get(frame);
+			frameAttempts.put(frame, attempts == null ? 1 : attempts + 1);
+		}
+	}
+
+	/**
+	 * Record the render times of the frames of a chunk that were written, and
+	 * retry or fail the rest.
+	 */
+	synchronized void chunkFinished(int chunkStart, int chunkEnd, Map<Integer, Long> writtenFrames)
+	{
+		frameMillis.putAll(writtenFrames);
+		retryMissingFrames(chunkStart, chunkEnd, writtenFrames.keySet());
+	}
+
+	/**
+	 * Resubmit each contiguous run of frames in the chunk that wasn't
+	 * rendered, or mark the frames failed if they have used all their
+	 * attempts.
+	 */
+	private synchronized void retryMissingFrames(int chunkStart, int chunkEnd, Set<Integer> rendered)
+	{
+		for (int[] run : findMissingRuns(chunkStart, chunkEnd, rendered))
+		{
+			Integer attempts = frameAttempts.get(run[0]);
+			if (attempts == null || attempts <= parameters.retries)
+			{
+				submit(run[0], run[1]);
+			}
+			else
+			{
+				for (int failed = run[0]; failed <= run[1]; failed++)
+				{
+					failedFrames.add(failed);
+				}
+			}
+		}
+	}
+
+	private List<String> createWorkerCommand(int chunkStart, int chunkEnd)
+	{
+		List<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+		command.addAll(filterJvmArguments(ManagementFactory.getRuntimeMXBean().getInputArguments()));
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Console.class.getName());
+
+		command.add("-i");
+		command.add(parameters.inputFile);
+		command.add("-o");
+		command.add(parameters.outputFile);
+		command.add("-l");
+		command.add(String.valueOf(parameters.lod));
+		command.add("-s");
+		command.add(String.valueOf(chunkStart));
+		command.add("-e");
+		command.add(String.valueOf(chunkEnd));
+		if (parameters.width != null)
+		{
+			command.add("-w");
+			command.add(String.valueOf(parameters.width));
+		}
+		if (parameters.height != null)
+		{
+			command.add("-h");
+			command.add(String.valueOf(parameters.height));
+		}
+		if (parameters.renderFormat != null)
+		{
+			command.add("-f");
+			command.add(parameters.renderFormat);
+		}
+		command.add("-warmup");
+		command.add(String.valueOf(parameters.warmUpStride));
+		command.add("-reportFrames");
+		return command;
+	}
+
+	private void destroyWorkers()
+	{
+		synchronized (processes)
+		{
+			for (Process process : processes)
+			{
+				process.destroy();
+			}
+		}
+	}
+
+	private synchronized void printSummary(long elapsedMillis)
+	{
+		long total = 0;
+		long max = 0;
+		for (long millis : frameMillis.values())
+		{
+			total += millis;
+			max = Math.max(max, millis);
+		}
+		System.out.println(String.format(Locale.US, "Rendered %d of %d frames in %.1f s using %d workers",
+				frameMillis.size(), endFrame - startFrame + 1, elapsedMillis / 1000.0, parameters.workers));
+		if (!frameMillis.isEmpty())
+		{
+			System.out.println(String.format(Locale.US, "Frame render time: mean %.0f ms, max %d ms",
+					total / (double) frameMillis.size(), max));
+		}
+		if (!failedFrames.isEmpty())
+		{
+			System.out.println("Failed frames: " + failedFrames);
+		}
+	}
+
+	private synchronized void writeReport(File file) throws IOException
+	{
+		Writer writer = new FileWriter(file);
+		try
+		{
+			writer.write("frame,millis,attempts,status\n");
+			for (int frame = startFrame; frame <= endFrame; frame++)
+			{
+				Long millis = frameMillis.get(frame);
+				Integer attempts = frameAttempts.get(frame);
+				boolean failed = failedFrames.contains(frame) || millis == null;
+				writer.write(frame + "," + (millis == null ? "" : millis) + "," + (attempts == null ? 0 : attempts)
+						+ "," + (failed ? "failed" : "rendered") + "\n");
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	/**
+	 * @return Render times of the frames confirmed written so far
+	 */
+	synchronized SortedMap<Integer, Long> getFrameMillis()
+	{
+		return new TreeMap<Integer, Long>(frameMillis);
+	}
+
+	/**
+	 * @return Frames that have failed on all their attempts
+	 */
+	synchronized SortedSet<Integer> getFailedFrames()
+	{
+		return new TreeSet<Integer>(failedFrames);
+	}
+
+	/**
+	 * Tracks the frames reported by a worker, to determine which of them
+	 * have been written once the worker exits.
+	 */
+	static class WorkerOutput
+	{
+		private final SortedMap<Integer, Long> frameMillis = new TreeMap<Integer, Long>();
+		private final List<Integer> unconfirmed = new ArrayList<Integer>();
+		private boolean completed = false;
+		private boolean failed = false;
+
+		public void frameRendered(int frame, long millis)
+		{
+			frameMillis.put(frame, millis);
+			unconfirmed.add(frame);
+			if (unconfirmed.size() > AsyncFrameWriter.MAX_UNWRITTEN_FRAMES)
+			{
+				unconfirmed.remove(0);
+			}
+		}
+
+		public void completed()
+		{
+			completed = true;
+		}
+
+		public void failed()
+		{
+			failed = true;
+		}
+
+		public boolean isFailed()
+		{
+			return failed;
+		}
+
+		/**
+		 * @return Render times of the reported frames that have been written:
+		 *         none if the worker failed to write some frames (it doesn't
+		 *         report which), all if it completed, otherwise all but the
+		 *         last few, which may not have been written before the worker
+		 *         exited
+		 */
+		public SortedMap<Integer, Long> getWrittenFrames()
+		{
+			SortedMap<Integer, Long> written = new TreeMap<Integer, Long>();
+			if (failed)
+			{
+				return written;
+			}
+			written.putAll(frameMillis);
+			if (!completed)
+			{
+				written.keySet().removeAll(unconfirmed);
+			}
+			return written;
+		}
+	}
+}
@@ -36,7 +36,7 @@ import au.gov.ga.worldwind.animator.animation.WorldWindAnimationImpl;
 import au.gov.ga.worldwind.animator.animation.camera.Head;
 import au.gov.ga.worldwind.animator.animation.camera.HeadImpl;
 import au.gov.ga.worldwind.animator.animation.io.AnimationWriter;
-import au.gov.ga.worldwind.animator.animation.io.XmlAnimationWriter;
+import au.gov.ga.worldwind.animator.animation.io.StaxAnimationWriter;
 import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
 import au.gov.ga.worldwind.animator.animation.sun.SunPositionAnimatable;
 import au.gov.ga.worldwind.animator.animation.sun.SunPositionAnimatableImpl;
@@ -246,7 +246,7 @@ public class OculusAnimationCreator
 				animation.recordKeyFrame(frame);
 			}
 
-			AnimationWriter writer = new XmlAnimationWriter();
+			AnimationWriter writer = new StaxAnimationWriter();
 			writer.writeAnimation(clip.outputFile, animation);
 		}
 	}
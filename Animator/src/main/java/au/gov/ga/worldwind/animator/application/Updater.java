@@ -50,8 +50,8 @@ public class Updater
 					Integer key = getNextKey();
 					if (key != null)
 					{
+						//the slider is kept in sync by the animator's key frame change listener
 						animator.getCurrentAnimation().recordKeyFrame(key);
-						animator.updateSlider();
 						removeValue(key);
 					}
 					else
@@ -0,0 +1,481 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.application.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+import javax.media.opengl.GL2;
+
+import au.gov.ga.worldwind.animator.util.TGAScreenshot;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * Reads rendered frames back from the current framebuffer and writes them to
+ * disk in the background, so that rendering of the next frame can overlap
+ * with the encoding and writing of the previous one.
+ * <p/>
+ * Frames are read back into a fixed pool of reusable direct buffers, which are
+ * handed to a background thread to be encoded and written, and then returned
+ * to the pool. If all buffers are in use, {@link #readback(GL2, File)} blocks
+ * until one is free, which bounds both the memory used and the number of
+ * frames that can be waiting to be written.
+ * <p/>
+ * When pixel buffer objects are supported, the readback is asynchronous: each
+ * frame is read into one of two PBOs, and the previous frame's PBO is mapped
+ * and copied into a pool buffer, so the GPU transfer of a frame happens while
+ * the next frame is rendered. This means a frame is only handed to the writer
+ * on the following call to {@link #readback(GL2, File)}, or on
+ * {@link #flush(GL2)}.
+ * <p/>
+ * The time spent in each stage is recorded, and is available as an average
+ * per frame from {@link #getAverageMillis(Stage)}.
+ */
+public class AsyncFrameWriter
+{
+	/**
+	 * Default number of frame buffers in the pool
+	 */
+	public static final int DEFAULT_BUFFER_COUNT = 3;
+
+	/**
+	 * Number of pixel buffer objects used for asynchronous readback
+	 */
+	public static final int PBO_COUNT = 2;
+
+	/**
+	 * Maximum number of frames that may have been read back but not yet
+	 * written to disk, when using the default number of frame buffers
+	 */
+	public static final int MAX_UNWRITTEN_FRAMES = DEFAULT_BUFFER_COUNT + PBO_COUNT;
+
+	/**
+	 * Enum of the timed frame output stages.
+	 */
+	public enum Stage
+	{
+		Render,
+		Readback,
+		Encode,
+		Write
+	}
+
+	private final static ExecutorService writer = Executors.newSingleThreadExecutor(new DaemonThreadFactory(
+			"Frame Writer"));
+
+	private final int width;
+	private final int height;
+	private final boolean alpha;
+	private final int channels;
+	private final int frameSize;
+
+	private final BlockingQueue<ByteBuffer> pool;
+	private final AtomicLong[] nanos = new AtomicLong[Stage.values().length];
+	private final AtomicLong[] counts = new AtomicLong[Stage.values().length];
+	private final AtomicLong failures = new AtomicLong();
+	private int outstanding = 0;
+
+	//only accessed from the GL thread
+	private int[] pbos;
+	private File[] pboFiles;
+	private int pboIndex = 0;
+	private Boolean pboSupported;
+
+	public AsyncFrameWriter(int width, int height, boolean alpha)
+	{
+		this(width, height, alpha, DEFAULT_BUFFER_COUNT);
+	}
+
+	/**
+	 * @param width
+	 *            Width of the frames to read back
+	 * @param height
+	 *            Height of the frames to read back
+	 * @param alpha
+	 *            Should the alpha channel be saved?
+	 * @param bufferCount
+	 *            Number of frame buffers in the pool
+	 */
+	public AsyncFrameWriter(int width, int height, boolean alpha, int bufferCount)
+	{
+		this.width = width;
+		this.height = height;
+		this.alpha = alpha;
+		this.channels = alpha ? 4 : 3;
+		this.frameSize = width * height * channels;
+
+		bufferCount = Math.max(1, bufferCount);
+		pool = new ArrayBlockingQueue<ByteBuffer>(bufferCount);
+		for (int i = 0; i < bufferCount; i++)
+		{
+			pool.add(ByteBuffer.allocateDirect(frameSize));
+		}
+		for (int i = 0; i < nanos.length; i++)
+		{
+			nanos[i] = new AtomicLong();
+			counts[i] = new AtomicLong();
+		}
+	}
+
+	/**
+	 * Read the current framebuffer back, and queue it to be written to the
+	 * given file. Must be called on the GL thread.
+	 * 
+	 * @param gl
+	 * @param file
+	 *            File to write the frame to; the format is chosen from the
+	 *            file's extension
+	 * @return Time spent in the readback, in nanoseconds
+	 */
+	public long readback(GL2 gl, File file) throws InterruptedException
+	{
+		long start = System.nanoTime();
+		int[] packAlignment = new int[1];
+		gl.glGetIntegerv(GL2.GL_PACK_ALIGNMENT, packAlignment, 0);
+		gl.glPixelStorei(GL2.GL_PACK_ALIGNMENT, 1);
+		try
+		{
+			if (isPboSupported(gl))
+			{
+				createPbos(gl);
+
+				//start the transfer of this frame into the current PBO
+				gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, pbos[pboIndex]);
+				gl.glReadPixels(0, 0, width, height, getPixelFormat(), GL2.GL_UNSIGNED_BYTE, 0L);
+				pboFiles[pboIndex] = file;
+
+				//collect the previous frame, which should have finished transferring by now
+				pboIndex = 1 - pboIndex;
+				gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, pbos[pboIndex]);
+				collectPbo(gl, pboIndex);
+				gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, 0);
+			}
+			else
+			{
+				ByteBuffer buffer = acquire();
+				gl.glReadPixels(0, 0, width, height, getPixelFormat(), GL2.GL_UNSIGNED_BYTE, buffer);
+				submit(buffer, file);
+			}
+		}
+		finally
+		{
+			gl.glPixelStorei(GL2.GL_PACK_ALIGNMENT, packAlignment[0]);
+		}
+		long elapsed = System.nanoTime() - start;
+		record(Stage.Readback, elapsed);
+		return elapsed;
+	}
+
+	/**
+	 * Queue any frame still waiting in a PBO to be written, and release the
+	 * PBOs. Must be called on the GL thread once rendering has finished.
+	 * 
+	 * @param gl
+	 */
+	public void flush(GL2 gl) throws InterruptedException
+	{
+		if (pbos == null)
+		{
+			return;
+		}
+		try
+		{
+			for (int i = 0; i < pbos.length; i++)
+			{
+				//collect in the order the frames were read
+				int index = (pboIndex + i) % pbos.length;
+				gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, pbos[index]);
+				collectPbo(gl, index);
+			}
+		}
+		finally
+		{
+			gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, 0);
+			gl.glDeleteBuffers(pbos.length, pbos, 0);
+			pbos = null;
+			pboFiles = null;
+		}
+	}
+
+	/**
+	 * Block until all queued frames have been written.
+	 */
+	public void close() throws InterruptedException
+	{
+		synchronized (this)
+		{
+			while (outstanding > 0)
+			{
+				wait();
+			}
+		}
+	}
+
+	/**
+	 * Record time spent in a stage that isn't timed by this writer (such as
+	 * {@link Stage#Render}).
+	 */
+	public void record(Stage stage, long elapsedNanos)
+	{
+		nanos[stage.ordinal()].addAndGet(elapsedNanos);
+		counts[stage.ordinal()].incrementAndGet();
+	}
+
+	/**
+	 * @return Average time spent in the stage per frame, in milliseconds
+	 */
+	public double getAverageMillis(Stage stage)
+	{
+		long count = counts[stage.ordinal()].get();
+		return count == 0 ? 0 : nanos[stage.ordinal()].get() / 1e6 / count;
+	}
+
+	/**
+	 * @return Number of frames that couldn't be read back or written
+	 */
+	public long getFailureCount()
+	{
+		return failures.get();
+	}
+
+	/**
+	 * Record a frame that couldn't be read back or written.
+	 * 
+	 * @param file
+	 *            File the frame was to be written to (null if unknown)
+	 * @param message
+	 *            Description of the failure
+	 */
+	public void recordFailure(File file, String message)
+	{
+		failures.incrementAndGet();
+		System.err.println("Error writing frame" + (file == null ? "" : " " + file.getAbsolutePath()) + ": "
+				+ message);
+	}
+
+	private int getPixelFormat()
+	{
+		return alpha ? GL2.GL_BGRA : GL2.GL_BGR;
+	}
+
+	private boolean isPboSupported(GL2 gl)
+	{
+		if (pboSupported == null)
+		{
+			pboSupported =
+					gl.isExtensionAvailable("GL_ARB_pixel_buffer_object") && gl.isFunctionAvailable("glMapBuffer")
+							&& gl.isFunctionAvailable("glUnmapBuffer");
+		}
+		return pboSupported;
+	}
+
+	private void createPbos(GL2 gl)
+	{
+		if (pbos != null)
+		{
+			return;
+		}
+		pbos = new int[PBO_COUNT];
+		pboFiles = new File[pbos.length];
+		gl.glGenBuffers(pbos.length, pbos, 0);
+		for (int pbo : pbos)
+		{
+			gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, pbo);
+			gl.glBufferData(GL2.GL_PIXEL_PACK_BUFFER, frameSize, null, GL2.GL_STREAM_READ);
+		}
+		gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, 0);
+	}
+
+	/**
+	 * Copy the frame in the given PBO (which must be bound) into a pool buffer
+	 * and queue it to be written.
+	 */
+	private void collectPbo(GL2 gl, int index) throws InterruptedException
+	{
+		File file = pboFiles[index];
+		if (file == null)
+		{
+			return;
+		}
+		pboFiles[index] = null;
+
+		ByteBuffer mapped = gl.glMapBuffer(GL2.GL_PIXEL_PACK_BUFFER, GL2.GL_READ_ONLY);
+		if (mapped == null)
+		{
+			recordFailure(file, "could not map pixel buffer");
+			return;
+		}
+		ByteBuffer buffer = acquire();
+		try
+		{
+			mapped.rewind();
+			buffer.put(mapped);
+			buffer.flip();
+		}
+		finally
+		{
+			gl.glUnmapBuffer(GL2.GL_PIXEL_PACK_BUFFER);
+		}
+		submit(buffer, file);
+	}
+
+	private ByteBuffer acquire() throws InterruptedException
+	{
+		ByteBuffer buffer = pool.take();
+		buffer.clear();
+		return buffer;
+	}
+
+	private void submit(final ByteBuffer buffer, final File file)
+	{
+		synchronized (this)
+		{
+			outstanding++;
+		}
+		writer.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					write(buffer, file);
+				}
+				catch (Exception e)
+				{
+					recordFailure(file, e.getLocalizedMessage());
+				}
+				finally
+				{
+					pool.add(buffer);
+					synchronized (AsyncFrameWriter.this)
+					{
+						outstanding--;
+						AsyncFrameWriter.this.notifyAll();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Write the frame to a temporary file alongside the target file, and then
+	 * rename it, so that an interrupted write never leaves a truncated frame
+	 * under the final name.
+	 */
+	private void write(ByteBuffer buffer, File file) throws IOException
+	{
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		try
+		{
+			if (file.getName().toLowerCase().endsWith(".tga"))
+			{
+				//the readback format is already TGA's pixel layout, so there's nothing to encode
+				long start = System.nanoTime();
+				TGAScreenshot.writeToTargaFile(temp, width, height, alpha, buffer);
+				rename(temp, file);
+				record(Stage.Write, System.nanoTime() - start);
+				return;
+			}
+
+			long start = System.nanoTime();
+			byte[] bytes = encode(buffer, getFormat(file));
+			record(Stage.Encode, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			FileOutputStream fos = new FileOutputStream(temp);
+			try
+			{
+				fos.write(bytes);
+			}
+			finally
+			{
+				fos.close();
+			}
+			rename(temp, file);
+			record(Stage.Write, System.nanoTime() - start);
+		}
+		finally
+		{
+			temp.delete();
+		}
+	}
+
+	private static void rename(File temp, File file) throws IOException
+	{
+		//renameTo won't replace an existing file on all platforms
+		if ((file.exists() && !file.delete()) || !temp.renameTo(file))
+		{
+			throw new IOException("Could not rename " + temp.getAbsolutePath() + " to " + file.getAbsolutePath());
+		}
+	}
+
+	private byte[] encode(ByteBuffer buffer, String format) throws IOException
+	{
+		BufferedImage image =
+				new BufferedImage(width, height, alpha ? BufferedImage.TYPE_4BYTE_ABGR
+						: BufferedImage.TYPE_3BYTE_BGR);
+		byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		int stride = width * channels;
+
+		//GL rows are bottom-up, image rows are top-down
+		ByteBuffer source = buffer.duplicate();
+		for (int y = 0; y < height; y++)
+		{
+			int offset = y * stride;
+			source.position((height - 1 - y) * stride);
+			source.get(data, offset, stride);
+			if (alpha)
+			{
+				//BGRA -> ABGR
+				for (int i = offset; i < offset + stride; i += 4)
+				{
+					byte a = data[i + 3];
+					data[i + 3] = data[i + 2];
+					data[i + 2] = data[i + 1];
+					data[i + 1] = data[i];
+					data[i] = a;
+				}
+			}
+		}
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		if (!ImageIO.write(image, format, baos))
+		{
+			throw new IOException("No image writer found for format '" + format + "'");
+		}
+		return baos.toByteArray();
+	}
+
+	private static String getFormat(File file)
+	{
+		String name = file.getName();
+		int index = name.lastIndexOf('.');
+		return index < 0 ? "png" : name.substring(index + 1).toLowerCase();
+	}
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.application.render;
+
+import gov.nasa.worldwind.Model;
+import gov.nasa.worldwind.geom.Angle;
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.camera.Camera;
+import au.gov.ga.worldwind.animator.animation.event.AnimationEvent;
+import au.gov.ga.worldwind.animator.animation.event.AnimationEventListener;
+import au.gov.ga.worldwind.common.retrieve.PrefetchService;
+import au.gov.ga.worldwind.common.retrieve.PrefetchView;
+
+/**
+ * Requests the tiles required for the upcoming frames of an animation before
+ * they are displayed. As each frame is displayed, the camera's eye and look-at
+ * positions are sampled for the frames ahead of it, and passed to the
+ * {@link PrefetchService}.
+ * <p/>
+ * The views queued become stale if the animation is changed (for example, a
+ * camera key frame is moved while previewing), or if playback jumps back to
+ * an earlier frame. In either case the queued views are cleared, and the
+ * frames ahead of the next frame displayed are sampled again.
+ */
+public class CameraPathPrefetcher implements AnimationEventListener
+{
+	public final static int DEFAULT_LOOK_AHEAD_FRAMES = 100;
+	public final static int DEFAULT_SAMPLE_INTERVAL = 5;
+
+	private final Model model;
+	private final int viewportWidth;
+	private final PrefetchService service;
+	private int lookAheadFrames = DEFAULT_LOOK_AHEAD_FRAMES;
+	private int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+	private int lastSampledFrame = -1;
+	private int lastFrame = -1;
+	private Animation animation;
+	private volatile boolean animationChanged = false;
+
+	/**
+	 * @param model
+	 *            Model containing the layers to prefetch for
+	 * @param viewportWidth
+	 *            Width of the viewport the frames will be rendered to
+	 */
+	public CameraPathPrefetcher(Model model, int viewportWidth)
+	{
+		this(model, viewportWidth, PrefetchService.getInstance());
+	}
+
+	/**
+	 * @param model
+	 *            Model containing the layers to prefetch for
+	 * @param viewportWidth
+	 *            Width of the viewport the frames will be rendered to
+	 * @param service
+	 *            Service to queue the upcoming views on
+	 */
+	public CameraPathPrefetcher(Model model, int viewportWidth, PrefetchService service)
+	{
+		this.model = model;
+		this.viewportWidth = viewportWidth;
+		this.service = service;
+	}
+
+	public int getLookAheadFrames()
+	{
+		return lookAheadFrames;
+	}
+
+	public void setLookAheadFrames(int lookAheadFrames)
+	{
+		this.lookAheadFrames = lookAheadFrames;
+	}
+
+	public int getSampleInterval()
+	{
+		return sampleInterval;
+	}
+
+	public void setSampleInterval(int sampleInterval)
+	{
+		this.sampleInterval = sampleInterval;
+	}
+
+	/**
+	 * Notify the prefetcher that a frame is being displayed. Queues the
+	 * frames up to {@link #getLookAheadFrames()} ahead of the frame that
+	 * haven't already been queued.
+	 * 
+	 * @param animation
+	 *            Animation being played
+	 * @param frame
+	 *            Frame being displayed
+	 * @param frameStep
+	 *            Number of frames between each displayed frame
+	 */
+	public void frameChanged(Animation animation, int frame, int frameStep)
+	{
+		if (animation != this.animation)
+		{
+			if (this.animation != null)
+			{
+				this.animation.removeChangeListener(this);
+			}
+			this.animation = animation;
+			animation.addChangeListener(this);
+			reset();
+		}
+		else if (animationChanged || frame < lastFrame)
+		{
+			reset();
+		}
+		lastFrame = frame;
+
+		int step = Math.max(sampleInterval, frameStep);
+		int lastLookAheadFrame = Math.min(frame + lookAheadFrames, animation.getFrameOfLastKeyFrame());
+		Camera camera = animation.getCamera();
+		for (int f = Math.max(frame + step, lastSampledFrame + step); f <= lastLookAheadFrame; f += step)
+		{
+			Angle fieldOfView = Angle.fromDegrees(camera.getFieldOfView().getDoubleValueAtFrame(f));
+			service.prefetch(model, new PrefetchView(camera.getEyePositionAtFrame(f), camera.getLookatPositionAtFrame(f),
+					fieldOfView, viewportWidth));
+			lastSampledFrame = f;
+		}
+	}
+
+	@Override
+	public void receiveAnimationEvent(AnimationEvent event)
+	{
+		//any change (camera path, layers, frame count) can invalidate the queued views
+		animationChanged = true;
+	}
+
+	/**
+	 * Stop prefetching, removing any frames still queued.
+	 */
+	public void stop()
+	{
+		if (animation != null)
+		{
+			animation.removeChangeListener(this);
+			animation = null;
+		}
+		reset();
+		lastFrame = -1;
+	}
+
+	/**
+	 * Remove the queued views, so that the frames ahead of the next frame
+	 * displayed are sampled again.
+	 */
+	private void reset()
+	{
+		animationChanged = false;
+		service.clear();
+		lastSampledFrame = -1;
+	}
+}
@@ -28,7 +28,7 @@ import au.gov.ga.worldwind.animator.animation.Animation;
 import au.gov.ga.worldwind.animator.animation.RenderParameters;
 import au.gov.ga.worldwind.animator.application.Animator;
 import au.gov.ga.worldwind.animator.application.AnimatorSceneController;
-import au.gov.ga.worldwind.animator.application.ScreenshotPaintTask;
+import au.gov.ga.worldwind.animator.application.render.AsyncFrameWriter.Stage;
 import au.gov.ga.worldwind.animator.layers.immediate.ImmediateMode;
 import au.gov.ga.worldwind.common.render.FrameBuffer;
 import au.gov.ga.worldwind.common.render.PaintTask;
@@ -37,6 +37,9 @@ import au.gov.ga.worldwind.common.util.Validate;
 /**
  * An {@link AnimationRenderer} that renders each frame of the animation to an
  * offscreen texture, then writes that texture to disk.
+ * <p/>
+ * Frames are written by an {@link AsyncFrameWriter}, so the next frame is
+ * rendered while the previous one is being encoded and written.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
@@ -57,6 +60,11 @@ public class OffscreenRenderer extends AnimationRendererBase
 	private PaintTask prePostRenderTask;
 	private PaintTask postRenderTask;
 
+	private CameraPathPrefetcher prefetcher;
+	private AsyncFrameWriter frameWriter;
+	private volatile TileWarmUp warmUp;
+	private int warmUpFrameStride = TileWarmUp.DEFAULT_FRAME_STRIDE;
+
 	public OffscreenRenderer(WorldWindow wwd, Animator targetApplication)
 	{
 		Validate.notNull(wwd, "A world window is required");
@@ -74,12 +82,46 @@ public class OffscreenRenderer extends AnimationRendererBase
 		Validate.notNull(targetApplication, "An Animator application is required");
 	}
 
+	/**
+	 * @return Number of frames between each camera position sampled by the
+	 *         tile warm-up pass run before rendering (0 if disabled)
+	 */
+	public int getWarmUpFrameStride()
+	{
+		return warmUpFrameStride;
+	}
+
+	/**
+	 * Set the number of frames between each camera position sampled by the
+	 * tile warm-up pass run before rendering. Set to 0 to disable the warm-up
+	 * pass.
+	 * 
+	 * @see TileWarmUp
+	 */
+	public void setWarmUpFrameStride(int warmUpFrameStride)
+	{
+		this.warmUpFrameStride = warmUpFrameStride;
+	}
+
+	@Override
+	public void stop()
+	{
+		super.stop();
+		TileWarmUp warmUp = this.warmUp;
+		if (warmUp != null)
+		{
+			warmUp.stop();
+		}
+	}
+
 	@Override
 	protected void doPreRender(final Animation animation, final RenderParameters renderParams)
 	{
 		setupForRendering(renderParams.getDetailLevel());
 
 		final Dimension renderDimensions = renderParams.getRenderDimension();
+		prefetcher = new CameraPathPrefetcher(wwd.getModel(), renderDimensions.width);
+		frameWriter = new AsyncFrameWriter(renderDimensions.width, renderDimensions.height, renderParams.isRenderAlpha());
 		//final Dimension viewDimensions = renderParams.getImageDimension();
 
 		animatorSceneController.setRenderDimensions(renderDimensions);
@@ -129,6 +171,15 @@ public class OffscreenRenderer extends AnimationRendererBase
 		};
 
 		wwd.redrawNow();
+
+		//load the tiles for the frame range in parallel (immediate mode is now enabled)
+		if (warmUpFrameStride > 0)
+		{
+			warmUp = new TileWarmUp(wwd.getModel(), renderDimensions.width);
+			warmUp.setFrameStride(warmUpFrameStride);
+			warmUp.warmUp(animation, renderParams.getStartFrame(), renderParams.getEndFrame());
+			warmUp = null;
+		}
 	}
 
 	@Override
@@ -140,7 +191,9 @@ public class OffscreenRenderer extends AnimationRendererBase
 			targetFile.getParentFile().mkdirs();
 		}
 
+		long start = System.nanoTime();
 		updateSlider(frame);
+		prefetcher.frameChanged(animation, frame, 1);
 		animation.applyFrame(frame);
 
 		//add the pre render task
@@ -149,22 +202,48 @@ public class OffscreenRenderer extends AnimationRendererBase
 		//also add a viewport set just before the screenshot, to ensure the viewport is always correct
 		animatorSceneController.addPostPaintTask(prePostRenderTask);
 
-		//add the screenshot task
-		ScreenshotPaintTask screenshotTask = new ScreenshotPaintTask(targetFile, renderParams.isRenderAlpha());
-		animatorSceneController.addPostPaintTask(screenshotTask);
+		//add the readback task
+		ReadbackPaintTask readbackTask = new ReadbackPaintTask(frameWriter, targetFile);
+		animatorSceneController.addPostPaintTask(readbackTask);
 
-		//add the post render task AFTER the screenshot task, so that the screenshot is taken from the FBO
+		//add the post render task AFTER the readback task, so that the frame is read from the FBO
 		animatorSceneController.addPostPaintTask(postRenderTask);
 
-		//redraw, and then wait for the screenshot to complete 
+		//redraw, and then wait for the readback to complete (the frame is written in the background)
 		wwd.redrawNow();
-		screenshotTask.waitForScreenshot();
+		readbackTask.waitForReadback();
+		frameWriter.record(Stage.Render, System.nanoTime() - start - readbackTask.readbackNanos);
+	}
+
+	/**
+	 * @return Number of frames of the current (or last) render that couldn't
+	 *         be read back or written
+	 */
+	public long getFailureCount()
+	{
+		AsyncFrameWriter writer = frameWriter;
+		return writer == null ? 0 : writer.getFailureCount();
+	}
+
+	/**
+	 * @return Average time per frame spent in the given stage of the current
+	 *         (or last) render, in milliseconds
+	 */
+	public double getAverageStageMillis(Stage stage)
+	{
+		AsyncFrameWriter writer = frameWriter;
+		return writer == null ? 0 : writer.getAverageMillis(stage);
 	}
 
 	@Override
 	protected void doPostRender(Animation animation, RenderParameters renderParams)
 	{
+		prefetcher.stop();
 		animatorSceneController.setRenderDimensions(null);
+
+		//queue any frame still being read back, and wait for all frames to be written
+		ReadbackPaintTask flushTask = new ReadbackPaintTask(frameWriter, null);
+		animatorSceneController.addPostPaintTask(flushTask);
 		animatorSceneController.addPostPaintTask(new PaintTask()
 		{
 			@Override
@@ -175,6 +254,15 @@ public class OffscreenRenderer extends AnimationRendererBase
 		});
 
 		wwd.redrawNow();
+		flushTask.waitForReadback();
+		try
+		{
+			frameWriter.close();
+		}
+		catch (InterruptedException e)
+		{
+			e.printStackTrace();
+		}
 		resetViewingParameters();
 	}
 	
@@ -206,4 +294,73 @@ public class OffscreenRenderer extends AnimationRendererBase
 		((OrbitView) wwd.getView()).setDetectCollisions(detectCollisions);
 		ImmediateMode.setImmediate(wasImmediate);
 	}
+
+	/**
+	 * {@link PaintTask} that reads the current frame back into an
+	 * {@link AsyncFrameWriter} (or flushes the writer if the file is null).
+	 * {@link #waitForReadback()} blocks until the task has run.
+	 */
+	private static class ReadbackPaintTask implements PaintTask
+	{
+		private final AsyncFrameWriter writer;
+		private final File file;
+
+		private final Object semaphore = new Object();
+		private boolean complete = false;
+		private long readbackNanos;
+
+		public ReadbackPaintTask(AsyncFrameWriter writer, File file)
+		{
+			this.writer = writer;
+			this.file = file;
+		}
+
+		@Override
+		public void run(DrawContext dc)
+		{
+			try
+			{
+				GL2 gl = dc.getGL().getGL2();
+				if (file != null)
+				{
+					readbackNanos = writer.readback(gl, file);
+				}
+				else
+				{
+					writer.flush(gl);
+				}
+			}
+			catch (Exception e)
+			{
+				//the frame being read back (or the frames still in the PBOs, when flushing) won't be written
+				writer.recordFailure(file, e.getLocalizedMessage());
+				e.printStackTrace();
+			}
+
+			synchronized (semaphore)
+			{
+				complete = true;
+				semaphore.notifyAll();
+			}
+		}
+
+		public void waitForReadback()
+		{
+			synchronized (semaphore)
+			{
+				while (!complete)
+				{
+					try
+					{
+						semaphore.wait();
+					}
+					catch (InterruptedException e)
+					{
+						e.printStackTrace();
+						return;
+					}
+				}
+			}
+		}
+	}
 }
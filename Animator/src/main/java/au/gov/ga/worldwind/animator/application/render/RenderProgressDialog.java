@@ -18,6 +18,7 @@ package au.gov.ga.worldwind.animator.application.render;
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getRenderProgressDialogTitleKey;
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getRenderProgressFrameMessageKey;
 import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getRenderProgressStartingMessageKey;
+import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstants.getRenderProgressTimingMessageKey;
 import static au.gov.ga.worldwind.common.util.message.MessageSourceAccessor.getMessage;
 
 import java.awt.Component;
@@ -25,6 +26,7 @@ import java.awt.Component;
 import javax.swing.ProgressMonitor;
 
 import au.gov.ga.worldwind.animator.application.render.AnimationRenderer.RenderEventListener;
+import au.gov.ga.worldwind.animator.application.render.AsyncFrameWriter.Stage;
 import au.gov.ga.worldwind.common.util.Validate;
 
 /**
@@ -37,6 +39,7 @@ public class RenderProgressDialog implements RenderEventListener
 	private AnimationRenderer renderer;
 	private ProgressMonitor progressMonitor;
 	private Component owner;
+	private int framesFinished;
 	
 	/**
 	 * Attach a render progress dialog to the given renderer, using the provided owner as the parent component
@@ -63,6 +66,7 @@ public class RenderProgressDialog implements RenderEventListener
 		progressMonitor.setMillisToPopup(0);
 		progressMonitor.setMillisToDecideToPopup(0);
 		progressMonitor.setProgress(0);
+		framesFinished = 0;
 	}
 
 	@Override
@@ -75,10 +79,23 @@ public class RenderProgressDialog implements RenderEventListener
 		}
 		else
 		{
-			progressMonitor.setNote(getMessage(getRenderProgressFrameMessageKey(), frame));
+			progressMonitor.setNote(createFrameNote(frame));
 		}
 	}
 
+	private String createFrameNote(int frame)
+	{
+		if (renderer instanceof OffscreenRenderer && framesFinished > 0)
+		{
+			//show the per-stage timing breakdown once at least one frame has been rendered
+			OffscreenRenderer offscreen = (OffscreenRenderer) renderer;
+			return getMessage(getRenderProgressTimingMessageKey(), frame,
+					offscreen.getAverageStageMillis(Stage.Render), offscreen.getAverageStageMillis(Stage.Readback),
+					offscreen.getAverageStageMillis(Stage.Encode), offscreen.getAverageStageMillis(Stage.Write));
+		}
+		return getMessage(getRenderProgressFrameMessageKey(), frame);
+	}
+
 	@Override
 	public void finishedFrame(int frame)
 	{
@@ -89,6 +106,7 @@ public class RenderProgressDialog implements RenderEventListener
 		}
 		else
 		{
+			framesFinished++;
 			progressMonitor.setProgress((int)(renderer.getPercentComplete() * 100d));
 		}
 	}
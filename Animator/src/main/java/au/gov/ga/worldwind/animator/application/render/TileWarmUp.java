@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.application.render;
+
+import gov.nasa.worldwind.Model;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.camera.Camera;
+import au.gov.ga.worldwind.animator.layers.immediate.ImmediateMode;
+import au.gov.ga.worldwind.common.retrieve.PrefetchService;
+import au.gov.ga.worldwind.common.retrieve.PrefetchView;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * Loads the tiles required to render a range of frames of an animation before
+ * rendering starts, so that the render doesn't spend its time blocking on
+ * tile downloads and loads frame by frame.
+ * <p/>
+ * The camera path is sampled every {@link #getFrameStride()} frames, and the
+ * requests for each sampled view (see
+ * {@link PrefetchService#createRequests(Model, PrefetchView, int)}) are run on
+ * a pool of threads. Should be run with {@link ImmediateMode} enabled, so that
+ * each request downloads and loads its tile on the pool thread that runs it,
+ * filling the file store and memory caches before the first frame.
+ */
+public class TileWarmUp
+{
+	public final static int DEFAULT_FRAME_STRIDE = 10;
+	public final static int DEFAULT_THREAD_COUNT = 4;
+	public final static int DEFAULT_MAX_TILES_PER_VIEW = 256;
+
+	private final Model model;
+	private final int viewportWidth;
+	private int frameStride = DEFAULT_FRAME_STRIDE;
+	private int threadCount = DEFAULT_THREAD_COUNT;
+	private int maxTilesPerView = DEFAULT_MAX_TILES_PER_VIEW;
+	private volatile boolean stopped = false;
+
+	/**
+	 * @param model
+	 *            Model containing the layers to load tiles for
+	 * @param viewportWidth
+	 *            Width of the viewport the frames will be rendered to
+	 */
+	public TileWarmUp(Model model, int viewportWidth)
+	{
+		this.model = model;
+		this.viewportWidth = viewportWidth;
+	}
+
+	public int getFrameStride()
+	{
+		return frameStride;
+	}
+
+	public void setFrameStride(int frameStride)
+	{
+		this.frameStride = frameStride;
+	}
+
+	public int getThreadCount()
+	{
+		return threadCount;
+	}
+
+	public void setThreadCount(int threadCount)
+	{
+		this.threadCount = threadCount;
+	}
+
+	public int getMaxTilesPerView()
+	{
+		return maxTilesPerView;
+	}
+
+	public void setMaxTilesPerView(int maxTilesPerView)
+	{
+		this.maxTilesPerView = maxTilesPerView;
+	}
+
+	/**
+	 * Load the tiles for the given frame range, blocking until all requests
+	 * have completed or {@link #stop()} is called.
+	 * 
+	 * @param animation
+	 *            Animation to be rendered
+	 * @param startFrame
+	 *            First frame to be rendered
+	 * @param endFrame
+	 *            Last frame to be rendered
+	 * @return Number of views sampled
+	 */
+	public int warmUp(Animation animation, int startFrame, int endFrame)
+	{
+		stopped = false;
+		if (frameStride <= 0 || endFrame < startFrame)
+		{
+			return 0;
+		}
+
+		//sample the views on this thread; the camera isn't evaluated concurrently
+		List<PrefetchView> views = new ArrayList<PrefetchView>();
+		Camera camera = animation.getCamera();
+		for (int frame = startFrame; frame <= endFrame; frame += frameStride)
+		{
+			views.add(createView(camera, frame));
+		}
+		if ((endFrame - startFrame) % frameStride != 0)
+		{
+			views.add(createView(camera, endFrame));
+		}
+
+		long start = System.currentTimeMillis();
+		ExecutorService executor =
+				Executors.newFixedThreadPool(Math.max(1, threadCount), new DaemonThreadFactory("Tile warm-up"));
+		try
+		{
+			List<Future<?>> futures = new ArrayList<Future<?>>(views.size());
+			for (final PrefetchView view : views)
+			{
+				futures.add(executor.submit(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						if (stopped)
+						{
+							return;
+						}
+						//in immediate mode, layers load their tiles while creating the requests
+						for (Runnable request : PrefetchService.createRequests(model, view, maxTilesPerView))
+						{
+							if (stopped)
+							{
+								return;
+							}
+							request.run();
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures)
+			{
+				try
+				{
+					future.get();
+				}
+				catch (ExecutionException e)
+				{
+					Logging.logger().log(Level.WARNING, "Error warming up tiles: " + e.getCause().getLocalizedMessage(),
+							e.getCause());
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		Logging.logger().info(
+				"Warmed up tiles for " + views.size() + " views of frames " + startFrame + "-" + endFrame + " in "
+						+ (System.currentTimeMillis() - start) + " ms");
+		return views.size();
+	}
+
+	/**
+	 * Stop a warm-up in progress. Requests already running are completed.
+	 */
+	public void stop()
+	{
+		stopped = true;
+	}
+
+	private PrefetchView createView(Camera camera, int frame)
+	{
+		Angle fieldOfView = Angle.fromDegrees(camera.getFieldOfView().getDoubleValueAtFrame(frame));
+		return new PrefetchView(camera.getEyePositionAtFrame(frame), camera.getLookatPositionAtFrame(frame),
+				fieldOfView, viewportWidth);
+	}
+}
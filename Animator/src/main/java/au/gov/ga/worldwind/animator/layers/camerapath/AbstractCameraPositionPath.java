@@ -17,6 +17,7 @@ package au.gov.ga.worldwind.animator.layers.camerapath;
 
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.render.Renderable;
 import gov.nasa.worldwind.util.OGLStackHandler;
@@ -34,6 +35,11 @@ import com.jogamp.common.nio.Buffers;
 
 /**
  * Base class for camera position paths
+ * <p/>
+ * The path's vertex and colour buffers are indexed by frame, and are updated
+ * in place: {@link #recalculatePath(int, int)} only recomputes the frames in
+ * the given range (plus any frames newly included in the path), so editing a
+ * key frame on a long animation doesn't recompute the whole path.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  */
@@ -41,14 +47,23 @@ public abstract class AbstractCameraPositionPath implements Renderable
 {
 	private int frameCount;
 
-	// Buffers used to draw the eye path
-	private DoubleBuffer pathVertexFrontBuffer;
-	private DoubleBuffer pathVertexBackBuffer;
-	private DoubleBuffer pathColourFrontBuffer;
-	private DoubleBuffer pathColourBackBuffer;
+	// Buffers used to draw the eye path, indexed by frame. Only written while holding the pathBufferLock.
+	private DoubleBuffer pathVertexBuffer;
+	private DoubleBuffer pathColourBuffer;
 	private Object pathBufferLock = new Object();
-	private Vec4 pathReferenceCenterFront;
-	private Vec4 pathReferenceCenterBack;
+	private Vec4 pathReferenceCenter;
+
+	/** The frame range currently held in the buffers (empty if first > last) */
+	private int pathFirstFrame = 0;
+	private int pathLastFrame = -1;
+
+	/** The distance moved into each frame from the previous frame, used to colour the path */
+	private double[] deltas;
+	private double minDelta;
+	private double maxDelta;
+
+	/** Incremented when the buffers are reset, to discard updates to the old buffers */
+	private int generation = 0;
 
 	/** The animation whose camera path is to be displayed on this layer */
 	private Animation animation;
@@ -65,19 +80,156 @@ public abstract class AbstractCameraPositionPath implements Renderable
 		this.animation = animation;
 	}
 
+	/**
+	 * Recalculate the entire path.
+	 */
 	public void recalulatePath()
 	{
-		populatePathBuffers();
-		swapBuffers();
+		recalculatePath(0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Recalculate the path between the given frames (inclusive). Frames that
+	 * have become part of the path since the last calculation (because the
+	 * first or last key frame has moved) are also calculated.
+	 * <p/>
+	 * Should only be called from a single thread at a time.
+	 */
+	public void recalculatePath(int startFrame, int endFrame)
+	{
+		DoubleBuffer vertexBuffer;
+		double[] deltas;
+		int frameCount;
+		Vec4 referenceCenter;
+		int generation;
+		int oldFirstFrame, oldLastFrame;
+		synchronized (pathBufferLock)
+		{
+			vertexBuffer = pathVertexBuffer;
+			deltas = this.deltas;
+			frameCount = this.frameCount;
+			referenceCenter = pathReferenceCenter;
+			generation = this.generation;
+			oldFirstFrame = pathFirstFrame;
+			oldLastFrame = pathLastFrame;
+		}
+		if (vertexBuffer == null)
+		{
+			return;
+		}
+
+		int firstFrame = Math.max(0, animation.getFrameOfFirstKeyFrame());
+		int lastFrame = Math.min(frameCount - 1, animation.getFrameOfLastKeyFrame());
+		if (lastFrame <= firstFrame)
+		{
+			setPathFrames(generation, firstFrame, lastFrame);
+			return;
+		}
+
+		int start = Math.max(firstFrame, startFrame);
+		int end = Math.min(lastFrame, endFrame);
+		if (referenceCenter == null || oldFirstFrame > oldLastFrame)
+		{
+			start = firstFrame;
+			end = lastFrame;
+		}
+		else
+		{
+			//include frames that weren't in the previous path
+			if (firstFrame < oldFirstFrame)
+			{
+				start = firstFrame;
+				end = Math.max(end, oldFirstFrame);
+			}
+			if (lastFrame > oldLastFrame)
+			{
+				start = Math.min(start, oldLastFrame);
+				end = lastFrame;
+			}
+		}
+		if (start > end)
+		{
+			setPathFrames(generation, firstFrame, lastFrame);
+			return;
+		}
+
+		// Calculate the vertices of the changed span, relative to the reference center
+		Globe globe = animation.getView().getGlobe();
+		Position[] positions = getPathPositions(start, end);
+		double[] vertices = new double[positions.length * 3];
+		for (int i = 0; i < positions.length; i++)
+		{
+			Vec4 point = globe.computePointFromPosition(positions[i]);
+			if (referenceCenter == null)
+			{
+				referenceCenter = point; // Choose the first point in the path to be the reference point
+			}
+			vertices[i * 3] = point.x - referenceCenter.x;
+			vertices[i * 3 + 1] = point.y - referenceCenter.y;
+			vertices[i * 3 + 2] = point.z - referenceCenter.z;
+		}
+
+		// Update the deltas into each changed frame (and the frame following the span)
+		for (int frame = Math.max(start, firstFrame + 1); frame <= Math.min(end + 1, lastFrame); frame++)
+		{
+			deltas[frame] = distance(vertexBuffer, vertices, start, frame - 1, frame);
+		}
+		//first frame has no previous frame, so just copy from second:
+		deltas[firstFrame] = deltas[firstFrame + 1];
+
+		double oldMinDelta = minDelta;
+		double oldMaxDelta = maxDelta;
+		minDelta = Double.MAX_VALUE;
+		maxDelta = 0d;
+		for (int frame = firstFrame; frame <= lastFrame; frame++)
+		{
+			minDelta = Math.min(minDelta, deltas[frame]);
+			maxDelta = Math.max(maxDelta, deltas[frame]);
+		}
+
+		// Only the changed span needs recolouring, unless the colour ramp's range has changed
+		int colourStart = Math.max(firstFrame, start - 1);
+		int colourEnd = Math.min(lastFrame, end + 1);
+		if (minDelta != oldMinDelta || maxDelta != oldMaxDelta || start == firstFrame && end == lastFrame)
+		{
+			colourStart = firstFrame;
+			colourEnd = lastFrame;
+		}
+		double[] colours = calculateColours(deltas, colourStart, colourEnd);
+
+		synchronized (pathBufferLock)
+		{
+			if (generation != this.generation)
+			{
+				return;
+			}
+			pathReferenceCenter = referenceCenter;
+			for (int i = 0; i < vertices.length; i++)
+			{
+				pathVertexBuffer.put(start * 3 + i, vertices[i]);
+			}
+			for (int i = 0; i < colours.length; i++)
+			{
+				pathColourBuffer.put(colourStart * 3 + i, colours[i]);
+			}
+			pathFirstFrame = firstFrame;
+			pathLastFrame = lastFrame;
+		}
 	}
 
 	public void resetPath()
 	{
-		frameCount = animation.getFrameCount();
-		this.pathVertexFrontBuffer = Buffers.newDirectDoubleBuffer(frameCount * 3);
-		this.pathVertexBackBuffer = Buffers.newDirectDoubleBuffer(frameCount * 3);
-		this.pathColourFrontBuffer = Buffers.newDirectDoubleBuffer(frameCount * 3);
-		this.pathColourBackBuffer = Buffers.newDirectDoubleBuffer(frameCount * 3);
+		synchronized (pathBufferLock)
+		{
+			frameCount = animation.getFrameCount();
+			this.pathVertexBuffer = Buffers.newDirectDoubleBuffer(frameCount * 3);
+			this.pathColourBuffer = Buffers.newDirectDoubleBuffer(frameCount * 3);
+			this.deltas = new double[frameCount];
+			this.pathReferenceCenter = null;
+			this.pathFirstFrame = 0;
+			this.pathLastFrame = -1;
+			this.generation++;
+		}
 	}
 
 	@Override
@@ -106,12 +258,17 @@ public abstract class AbstractCameraPositionPath implements Renderable
 		{
 			synchronized (pathBufferLock)
 			{
-				if (pathReferenceCenterFront != null)
+				int numberOfPointsInPath = pathLastFrame - pathFirstFrame + 1;
+
+				//don't draw lines with less than 2 points
+				if (numberOfPointsInPath <= 1 || pathReferenceCenter == null)
 				{
-					dc.getView().pushReferenceCenter(dc, pathReferenceCenterFront);
-					popRefCenter = true;
+					return;
 				}
 
+				dc.getView().pushReferenceCenter(dc, pathReferenceCenter);
+				popRefCenter = true;
+
 				// Points are drawn over the line to prevent gaps forming when 
 				// antialiasing and smoothing is applied to the line
 				gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
@@ -125,14 +282,6 @@ public abstract class AbstractCameraPositionPath implements Renderable
 				gl.glHint(GL2.GL_POINT_SMOOTH_HINT, GL2.GL_NICEST);
 				gl.glLineWidth(2.0f);
 				gl.glPointSize(2.0f);
-				int numberOfPointsInPath = animation.getFrameOfLastKeyFrame() - animation.getFrameOfFirstKeyFrame() + 1;
-
-				//don't draw lines with less than 2 points
-				if (numberOfPointsInPath <= 1)
-				{
-					return;
-				}
-
 
 				if (enableDepthTesting)
 				{
@@ -147,17 +296,19 @@ public abstract class AbstractCameraPositionPath implements Renderable
 				//instead of interpolating between the two vertices colors
 				gl.glShadeModel(GL2.GL_FLAT);
 
-				gl.glColorPointer(3, GL2.GL_DOUBLE, 0, pathColourFrontBuffer);
-				gl.glVertexPointer(3, GL2.GL_DOUBLE, 0, pathVertexFrontBuffer);
+				pathColourBuffer.rewind();
+				pathVertexBuffer.rewind();
+				gl.glColorPointer(3, GL2.GL_DOUBLE, 0, pathColourBuffer);
+				gl.glVertexPointer(3, GL2.GL_DOUBLE, 0, pathVertexBuffer);
 
 				// Draw a smooth line without modifying the depth buffer, filling gaps with points
 				gl.glDepthMask(false);
-				gl.glDrawArrays(GL2.GL_LINE_STRIP, 0, numberOfPointsInPath);
-				gl.glDrawArrays(GL2.GL_POINTS, 0, numberOfPointsInPath);
+				gl.glDrawArrays(GL2.GL_LINE_STRIP, pathFirstFrame, numberOfPointsInPath);
+				gl.glDrawArrays(GL2.GL_POINTS, pathFirstFrame, numberOfPointsInPath);
 				gl.glDepthMask(true);
 
 				// Now redraw the line, writing to the depth buffer, to ensure line looks correct with markers
-				gl.glDrawArrays(GL2.GL_LINE_STRIP, 0, numberOfPointsInPath);
+				gl.glDrawArrays(GL2.GL_LINE_STRIP, pathFirstFrame, numberOfPointsInPath);
 			}
 		}
 		finally
@@ -170,87 +321,41 @@ public abstract class AbstractCameraPositionPath implements Renderable
 		}
 	}
 
-	/**
-	 * Populate the update vertex buffers with the coordinates of the eye
-	 * location at each frame in the animation.
-	 * <p/>
-	 * Vertex buffer has size <code>3*animation.getlastFrame()</code>, with
-	 * <code>[x,y,z]</code> stored at
-	 * <code>[3*frame, 3*frame+1, 3*frame+2]</code>
-	 * <p/>
-	 * Colour buffer has size <code>3*animation.getLastFrame()</code> with
-	 * colours ramping through the HSV colour space based on the rate of change
-	 * of the camera eye position. Colours <code>[r,g,b]</code> are stored at
-	 * <code>[3*frame, 3*frame+1, 3*frame+2]</code>.
-	 */
-	private void populatePathBuffers()
-	{
-		pathReferenceCenterBack = null;
-
-		int firstFrame = animation.getFrameOfFirstKeyFrame();
-		int lastFrame = animation.getFrameOfLastKeyFrame();
-
-		double[] deltas = new double[lastFrame - firstFrame + 1];
-		double minDelta = Double.MAX_VALUE;
-		double maxDelta = 0d;
-
-		pathVertexBackBuffer.rewind();
-
-		Position[] pathPositions = getPathPositions(firstFrame, lastFrame);
-
-		Position previousPathPosition = null;
-		for (int i = 0; i < pathPositions.length; i++)
-		{
-			Position currentPathPosition = pathPositions[i];
-
-			// Populate the vertex buffer
-			Vec4 eyeVector = animation.getView().getGlobe().computePointFromPosition(currentPathPosition);
-			if (pathReferenceCenterBack == null)
-			{
-				pathReferenceCenterBack = eyeVector; // Choose the first point in the path to be the reference point
-			}
-			pathVertexBackBuffer.put(eyeVector.x - pathReferenceCenterBack.x);
-			pathVertexBackBuffer.put(eyeVector.y - pathReferenceCenterBack.y);
-			pathVertexBackBuffer.put(eyeVector.z - pathReferenceCenterBack.z);
-
-			// Populate the delta array
-			if (previousPathPosition != null)
-			{
-				double positionDelta = calculateDelta(currentPathPosition, previousPathPosition);
-				deltas[i] = positionDelta;
-				maxDelta = Math.max(maxDelta, positionDelta);
-				minDelta = Math.min(minDelta, positionDelta);
-			}
-			previousPathPosition = currentPathPosition;
-		}
-
-		//first wasn't set in loop above, so just copy from second:
-		if (deltas.length > 1)
-		{
-			deltas[0] = deltas[1];
-		}
-
-		populatePathColourBufferFromDeltas(deltas, minDelta, maxDelta);
-
-		pathVertexBackBuffer.rewind();
-	}
-
 	/**
 	 * @return the path positions for this path between the start and end frames
 	 */
 	protected abstract Position[] getPathPositions(int startFrame, int endFrame);
 
 	/**
-	 * @return The delta of the current and previous position
+	 * @return The distance between the vertices at the two frames, reading
+	 *         vertices in the <code>[start, start + vertices.length / 3)</code>
+	 *         frame span from the newly calculated vertices, and others from
+	 *         the vertex buffer
 	 */
-	private double calculateDelta(Position currentPosition, Position previousPosition)
+	private static double distance(DoubleBuffer vertexBuffer, double[] vertices, int start, int frame1, int frame2)
 	{
-		Vec4 current = animation.getView().getGlobe().computePointFromPosition(currentPosition);
-		Vec4 previous = animation.getView().getGlobe().computePointFromPosition(previousPosition);
-		return Math.abs(current.distanceTo3(previous));
+		double dx = vertex(vertexBuffer, vertices, start, frame2, 0) - vertex(vertexBuffer, vertices, start, frame1, 0);
+		double dy = vertex(vertexBuffer, vertices, start, frame2, 1) - vertex(vertexBuffer, vertices, start, frame1, 1);
+		double dz = vertex(vertexBuffer, vertices, start, frame2, 2) - vertex(vertexBuffer, vertices, start, frame1, 2);
+		return Math.sqrt(dx * dx + dy * dy + dz * dz);
 	}
 
-	private void populatePathColourBufferFromDeltas(double[] deltas, double minDelta, double maxDelta)
+	private static double vertex(DoubleBuffer vertexBuffer, double[] vertices, int start, int frame, int component)
+	{
+		int index = (frame - start) * 3 + component;
+		if (index >= 0 && index < vertices.length)
+		{
+			return vertices[index];
+		}
+		return vertexBuffer.get(frame * 3 + component);
+	}
+
+	/**
+	 * @return Colours <code>[r,g,b]</code> for each frame between the start
+	 *         and end frames, ramping through the HSL colour space based on
+	 *         the rate of change of the camera position
+	 */
+	private double[] calculateColours(double[] deltas, int startFrame, int endFrame)
 	{
 		double deltaWindow = maxDelta - minDelta;
 		if (deltaWindow < 1)
@@ -262,16 +367,29 @@ public abstract class AbstractCameraPositionPath implements Renderable
 		HSLColor hslColor = new HSLColor(0, 80, 50);
 		Color pathColor = null;
 
-		pathColourBackBuffer.rewind();
-		for (double delta : deltas)
+		double[] colours = new double[(endFrame - startFrame + 1) * 3];
+		for (int frame = startFrame; frame <= endFrame; frame++)
 		{
-			float normalizedDelta = (float) ((delta - minDelta) / deltaWindow);
+			float normalizedDelta = (float) ((deltas[frame] - minDelta) / deltaWindow);
 			pathColor = hslColor.adjustHue((1f - normalizedDelta) * 240f);
-			pathColourBackBuffer.put((double) pathColor.getRed() / 255d);
-			pathColourBackBuffer.put((double) pathColor.getGreen() / 255d);
-			pathColourBackBuffer.put((double) pathColor.getBlue() / 255d);
+			int index = (frame - startFrame) * 3;
+			colours[index] = (double) pathColor.getRed() / 255d;
+			colours[index + 1] = (double) pathColor.getGreen() / 255d;
+			colours[index + 2] = (double) pathColor.getBlue() / 255d;
+		}
+		return colours;
+	}
+
+	private void setPathFrames(int generation, int firstFrame, int lastFrame)
+	{
+		synchronized (pathBufferLock)
+		{
+			if (generation == this.generation)
+			{
+				pathFirstFrame = firstFrame;
+				pathLastFrame = lastFrame;
+			}
 		}
-		pathColourBackBuffer.rewind();
 	}
 
 	/**
@@ -281,24 +399,45 @@ public abstract class AbstractCameraPositionPath implements Renderable
 	protected abstract boolean isPathFrame(KeyFrame keyFrame);
 
 	/**
-	 * Swap the front and back buffers, giving access to the newly updated data
-	 * for drawing
+	 * @return The absolute position of each frame currently in the path, as
+	 *         consecutive <code>[x,y,z]</code> triples
 	 */
-	private void swapBuffers()
+	double[] getPathPoints()
 	{
 		synchronized (pathBufferLock)
 		{
-			DoubleBuffer tmp = pathVertexFrontBuffer;
-			pathVertexFrontBuffer = pathVertexBackBuffer;
-			pathVertexBackBuffer = tmp;
-			pathVertexFrontBuffer.rewind();
-
-			tmp = pathColourFrontBuffer;
-			pathColourFrontBuffer = pathColourBackBuffer;
-			pathColourBackBuffer = tmp;
-			pathColourFrontBuffer.rewind();
-			
-			pathReferenceCenterFront = pathReferenceCenterBack;
+			if (pathReferenceCenter == null || pathFirstFrame > pathLastFrame)
+			{
+				return new double[0];
+			}
+			double[] center = { pathReferenceCenter.x, pathReferenceCenter.y, pathReferenceCenter.z };
+			double[] points = new double[(pathLastFrame - pathFirstFrame + 1) * 3];
+			for (int i = 0; i < points.length; i++)
+			{
+				points[i] = pathVertexBuffer.get(pathFirstFrame * 3 + i) + center[i % 3];
+			}
+			return points;
+		}
+	}
+
+	/**
+	 * @return The colour of each frame currently in the path, as consecutive
+	 *         <code>[r,g,b]</code> triples
+	 */
+	double[] getPathColours()
+	{
+		synchronized (pathBufferLock)
+		{
+			if (pathReferenceCenter == null || pathFirstFrame > pathLastFrame)
+			{
+				return new double[0];
+			}
+			double[] colours = new double[(pathLastFrame - pathFirstFrame + 1) * 3];
+			for (int i = 0; i < colours.length; i++)
+			{
+				colours[i] = pathColourBuffer.get(pathFirstFrame * 3 + i);
+			}
+			return colours;
 		}
 	}
 
@@ -22,13 +22,15 @@ import gov.nasa.worldwind.layers.AbstractLayer;
 import gov.nasa.worldwind.render.DrawContext;
 
 import java.awt.Point;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import au.gov.ga.worldwind.animator.animation.Animation;
 import au.gov.ga.worldwind.animator.animation.KeyFrame;
 import au.gov.ga.worldwind.animator.animation.camera.Camera;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
 import au.gov.ga.worldwind.animator.animation.event.AnimationEvent;
 import au.gov.ga.worldwind.animator.animation.event.AnimationEventListener;
 import au.gov.ga.worldwind.animator.animation.event.KeyFrameEvent;
@@ -55,12 +57,24 @@ public class CameraPathLayer extends AbstractLayer implements AnimationEventList
 	private Animation animation;
 	private boolean animationChanged = true;
 
+	/**
+	 * The delay between a change to the camera path and the path being
+	 * updated, so that a burst of changes (eg dragging a key frame) is
+	 * coalesced into a single update
+	 */
+	private static final long UPDATE_DELAY_MILLIS = 30;
+
 	/** A thread used to update the vertex buffers outside of the render thread */
-	private ExecutorService updater = Executors.newFixedThreadPool(1, new DaemonThreadFactory("Camera Path Updater"));
-	private Future<UpdateTask> currentTask;
-	private Future<UpdateTask> nextTask;
+	private ScheduledExecutorService updater = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(
+			"Camera Path Updater"));
 	private WorldWindow worldWindow;
 
+	/** The range of frames that need recalculating, and whether an update has been scheduled */
+	private final Object dirtyLock = new Object();
+	private int dirtyStartFrame = Integer.MAX_VALUE;
+	private int dirtyEndFrame = Integer.MIN_VALUE;
+	private boolean updateScheduled = false;
+
 	/**
 	 * Constructor.
 	 * <p/>
@@ -118,7 +132,7 @@ public class CameraPathLayer extends AbstractLayer implements AnimationEventList
 		}
 		else if (cameraPathHasChanged(event))
 		{
-			update();
+			updateChangedFrames(event);
 		}
 	}
 
@@ -153,23 +167,78 @@ public class CameraPathLayer extends AbstractLayer implements AnimationEventList
 		keyFrameMarkers.resetKeyFrameMarkers();
 	}
 
-	@SuppressWarnings("unchecked")
 	private void update()
 	{
-		if (currentTask == null || currentTask.isDone())
+		update(0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Mark the given frames as needing recalculation, and schedule an update
+	 * if one isn't already pending.
+	 */
+	private void update(int startFrame, int endFrame)
+	{
+		synchronized (dirtyLock)
 		{
-			currentTask = (Future<UpdateTask>) updater.submit(new UpdateTask());
+			dirtyStartFrame = Math.min(dirtyStartFrame, startFrame);
+			dirtyEndFrame = Math.max(dirtyEndFrame, endFrame);
+			if (!updateScheduled)
+			{
+				updateScheduled = true;
+				updater.schedule(new UpdateTask(), UPDATE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+			}
 		}
-		else
+	}
+
+	/**
+	 * Update the frames of the path affected by the event: the key frame
+	 * intervals either side of each changed camera key frame value.
+	 */
+	private void updateChangedFrames(AnimationEvent event)
+	{
+		ParameterValue value = event.getObjectInChainOfType(ParameterValue.class);
+		Object rootValue = event.getRootCause().getValue();
+		if (value == null && rootValue instanceof ParameterValue)
 		{
-			if (nextTask != null)
+			value = (ParameterValue) rootValue;
+		}
+
+		if (value != null && isCameraParameter(value.getOwner()))
+		{
+			updateAroundFrame(value.getOwner(), value.getFrame());
+		}
+		else if (rootValue instanceof KeyFrame)
+		{
+			KeyFrame keyFrame = (KeyFrame) rootValue;
+			for (ParameterValue keyFrameValue : keyFrame.getParameterValues())
 			{
-				nextTask.cancel(true);
+				if (isCameraParameter(keyFrameValue.getOwner()))
+				{
+					updateAroundFrame(keyFrameValue.getOwner(), keyFrame.getFrame());
+				}
 			}
-			nextTask = (Future<UpdateTask>) updater.submit(new UpdateTask());
+		}
+		else
+		{
+			update();
 		}
 	}
 
+	private void updateAroundFrame(Parameter parameter, int frame)
+	{
+		KeyFrame previous = animation.getKeyFrameWithParameterBeforeFrame(parameter, frame);
+		KeyFrame next = animation.getKeyFrameWithParameterAfterFrame(parameter, frame);
+		update(previous == null ? 0 : previous.getFrame(), next == null ? Integer.MAX_VALUE : next.getFrame());
+	}
+
+	private boolean isCameraParameter(Parameter parameter)
+	{
+		Camera camera = animation.getCamera();
+		return parameter == camera.getEyeLat() || parameter == camera.getEyeLon()
+				|| parameter == camera.getEyeElevation() || parameter == camera.getLookAtLat()
+				|| parameter == camera.getLookAtLon() || parameter == camera.getLookAtElevation();
+	}
+
 	private boolean cameraPathHasChanged(AnimationEvent event)
 	{
 		return eventIsRelatedToCamera(event) || isKeyFrameEventContainingCameraParameter(event);
@@ -230,10 +299,20 @@ public class CameraPathLayer extends AbstractLayer implements AnimationEventList
 		@Override
 		public void run()
 		{
+			int startFrame, endFrame;
+			synchronized (dirtyLock)
+			{
+				startFrame = dirtyStartFrame;
+				endFrame = dirtyEndFrame;
+				dirtyStartFrame = Integer.MAX_VALUE;
+				dirtyEndFrame = Integer.MIN_VALUE;
+				updateScheduled = false;
+			}
+
 			try
 			{
-				eyePositionPath.recalulatePath();
-				lookatPositionPath.recalulatePath();
+				eyePositionPath.recalculatePath(startFrame, endFrame);
+				lookatPositionPath.recalculatePath(startFrame, endFrame);
 				keyFrameMarkers.recalulateKeyFrameMarkers();
 				worldWindow.redraw();
 			}
@@ -15,12 +15,17 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.animator.layers.immediate;
 
+import au.gov.ga.worldwind.common.render.TextureUploadScheduler;
+
 /**
  * Helper class that stores whether immediate mode is enabled or not. Immediate
  * mode is switched on by the animator when it begins rendering an animation. It
  * causes layers to download and load textures immediately, instead of passing
  * the request off to the task service. This ensures that the highest resolution
- * imagery and elevation data is available when rendering each frame.
+ * imagery and elevation data is available when rendering each frame. It also
+ * disables the {@link TextureUploadScheduler}, so that textures are uploaded in
+ * the frame they are loaded instead of being drawn using lower resolution
+ * fallbacks.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -44,5 +49,6 @@ public class ImmediateMode
 	public static void setImmediate(boolean immediate)
 	{
 		ImmediateMode.immediate = immediate;
+		TextureUploadScheduler.getInstance().setEnabled(!immediate);
 	}
 }
@@ -26,8 +26,11 @@ import gov.nasa.worldwind.util.Logging;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 
 /**
@@ -36,6 +39,12 @@ import java.util.concurrent.FutureTask;
  * completed.
  * <p/>
  * Delegates to an internal instance of the {@link BasicRetrievalService}.
+ * <p/>
+ * In immediate mode, retrievers are run on the calling thread, and several
+ * threads (such as the tile warm-up and camera path prefetch threads) can run
+ * retrievers at once. If a retriever with the same name as one already running
+ * is run, the caller waits for the running retriever instead of retrieving the
+ * same resource again.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  * @author James Navin (james.navin@ga.gov.au)
@@ -43,6 +52,7 @@ import java.util.concurrent.FutureTask;
 public class ImmediateRetrievalService implements RetrievalService
 {
 	private final RetrievalService delegate = new BasicRetrievalService();
+	private final Map<String, RetrievalTask> running = new HashMap<String, RetrievalTask>();
 
 	@Override
 	public void onMessage(Message msg)
@@ -197,17 +207,62 @@ public class ImmediateRetrievalService implements RetrievalService
 	}
 
 	@Override
-	public synchronized RetrievalFuture runRetriever(Retriever retriever, double priority)
+	public RetrievalFuture runRetriever(Retriever retriever, double priority)
 	{
 		if (!ImmediateMode.isImmediate())
 			return delegate.runRetriever(retriever, priority);
 
-		RetrievalTask task = new RetrievalTask(retriever);
-		task.run(); //run the task
-		Logging.logger().info("Running retrieval immediately: " + retriever.getName());
+		RetrievalTask task;
+		boolean owner;
+		synchronized (running)
+		{
+			task = running.get(retriever.getName());
+			owner = task == null;
+			if (owner)
+			{
+				task = new RetrievalTask(retriever);
+				running.put(retriever.getName(), task);
+			}
+		}
+
+		if (owner)
+		{
+			try
+			{
+				task.run(); //run the task
+				Logging.logger().info("Running retrieval immediately: " + retriever.getName());
+			}
+			finally
+			{
+				synchronized (running)
+				{
+					running.remove(retriever.getName());
+				}
+			}
+		}
+		else
+		{
+			waitFor(task);
+		}
 		return task;
 	}
 
+	private static void waitFor(RetrievalTask task)
+	{
+		try
+		{
+			task.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			//the failure is reported to the retriever's owner through the returned future
+		}
+	}
+
 	@Override
 	public Object setValue(String key, Object value)
 	{
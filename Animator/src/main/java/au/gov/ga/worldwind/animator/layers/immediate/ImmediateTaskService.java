@@ -15,24 +15,83 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.animator.layers.immediate;
 
+import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.TaskService;
 import gov.nasa.worldwind.util.ThreadedTaskService;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+
 /**
  * {@link TaskService} that runs tasks immediately when in immediate mode.
+ * <p/>
+ * Tasks are run on the calling thread, and several threads (such as the tile
+ * warm-up and camera path prefetch threads) can add tasks at once. If a task
+ * equal to one already running is added, the caller waits for the running
+ * task to complete instead of running it again, like the
+ * {@link ThreadedTaskService} ignores tasks equal to an active task.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class ImmediateTaskService extends ThreadedTaskService
 {
+	private final Map<Runnable, FutureTask<Object>> running = new HashMap<Runnable, FutureTask<Object>>();
+
 	@Override
-	public synchronized void addTask(Runnable runnable)
+	public void addTask(Runnable runnable)
 	{
 		if (ImmediateMode.isImmediate())
 		{
-			runnable.run();
+			runImmediately(runnable);
 			return;
 		}
 		super.addTask(runnable);
 	}
+
+	protected void runImmediately(Runnable runnable)
+	{
+		FutureTask<Object> task;
+		boolean owner;
+		synchronized (running)
+		{
+			task = running.get(runnable);
+			owner = task == null;
+			if (owner)
+			{
+				task = new FutureTask<Object>(runnable, null);
+				running.put(runnable, task);
+			}
+		}
+
+		if (owner)
+		{
+			try
+			{
+				task.run();
+			}
+			finally
+			{
+				synchronized (running)
+				{
+					running.remove(runnable);
+				}
+			}
+		}
+
+		try
+		{
+			task.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			Logging.logger().log(Level.SEVERE, "Error running task immediately", e.getCause());
+		}
+	}
 }
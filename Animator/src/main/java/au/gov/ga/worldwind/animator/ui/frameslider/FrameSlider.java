@@ -62,6 +62,7 @@ public class FrameSlider extends JComponent
 	private final static int PIXELS_PER_MINOR_TICK = 8;
 	private final static int MAJOR_TICK_LENGTH = 16;
 	private final static int MINOR_TICK_LENGTH = 8;
+	private final static int KEY_WIDTH = 6;
 
 	private int min;
 	private int max;
@@ -72,7 +73,7 @@ public class FrameSlider extends JComponent
 	private boolean draggingSlider = false;
 	private Point dragPoint = null;
 	private boolean draggingKeyFrame = false;
-	private int draggingKeyFrameIndex;
+	private int draggingKey;
 
 	private Rectangle scrollRect;
 	private Rectangle sliderRect;
@@ -95,9 +96,16 @@ public class FrameSlider extends JComponent
 	private List<CurrentFrameChangeListener> changeListeners = new ArrayList<CurrentFrameChangeListener>();
 	private List<ChangeFrameListener> changeFrameListeners = new ArrayList<ChangeFrameListener>();
 
-	private List<Integer> keys = new ArrayList<Integer>();
-	private List<Integer> highlightedKeys = new ArrayList<Integer>();
-	private List<Rectangle> keyRects = new ArrayList<Rectangle>();
+	private FrameSliderKeyIndex keys = new FrameSliderKeyIndex();
+	private FrameSliderKeyIndex highlightedKeys = new FrameSliderKeyIndex();
+	private final FrameSliderKeyIndex.FramePositions keyPositions = new FrameSliderKeyIndex.FramePositions()
+	{
+		@Override
+		public int getPosition(int frame)
+		{
+			return calculatePositionFromFrame(frame);
+		}
+	};
 
 	public FrameSlider(int value, int min, int max)
 	{
@@ -187,16 +195,26 @@ public class FrameSlider extends JComponent
 
 	public void addKey(int frame)
 	{
-		keys.add(frame);
-		keyRects.add(new Rectangle());
-		repaint();
+		if (keys.add(frame))
+		{
+			repaint();
+		}
 	}
 	
 	public void removeKey(int frame)
 	{
-		int index = keys.indexOf(frame);
-		keys.remove(index);
-		keyRects.remove(index);
+		if (keys.remove(frame))
+		{
+			repaint();
+		}
+	}
+
+	/**
+	 * Replace all keys with the provided frames.
+	 */
+	public void setKeys(Collection<Integer> frames)
+	{
+		keys.setAll(frames);
 		repaint();
 	}
 
@@ -212,7 +230,7 @@ public class FrameSlider extends JComponent
 			highlightedKeys.clear();
 			return;
 		}
-		highlightedKeys = new ArrayList<Integer>(keysToHighlight);
+		highlightedKeys.setAll(keysToHighlight);
 		repaint();
 	}
 	
@@ -230,7 +248,6 @@ public class FrameSlider extends JComponent
 	public void clearKeys()
 	{
 		keys.clear();
-		keyRects.clear();
 	}
 
 	private void setupMouseListeners()
@@ -240,15 +257,7 @@ public class FrameSlider extends JComponent
 			@Override
 			public void mouseClicked(MouseEvent e)
 			{
-				int keyFrameIndex = -1;
-				for (int i = 0; i < keyRects.size(); i++)
-				{
-					if (keyRects.get(i).contains(e.getPoint()))
-					{
-						keyFrameIndex = i;
-						break;
-					}
-				}
+				int keyFrameIndex = findKeyAt(e.getPoint());
 
 				boolean insideLeftRect = leftRect.contains(e.getPoint());
 				boolean insideRightRect = rightRect.contains(e.getPoint());
@@ -300,16 +309,13 @@ public class FrameSlider extends JComponent
 				}
 				else
 				{
-					for (int i = 0; i < keyRects.size(); i++)
+					int keyFrameIndex = findKeyAt(e.getPoint());
+					if (keyFrameIndex >= 0)
 					{
-						Rectangle keyRect = keyRects.get(i);
-						if (keyRect.contains(e.getPoint()))
-						{
-							draggingKeyFrame = true;
-							draggingKeyFrameIndex = i;
-							dragPoint = new Point(e.getX() - keyRect.x, e.getY() - keyRect.y);
-							break;
-						}
+						draggingKeyFrame = true;
+						draggingKey = getKey(keyFrameIndex);
+						int keyX = calculatePositionFromFrame(draggingKey) - KEY_WIDTH / 2;
+						dragPoint = new Point(e.getX() - keyX, e.getY() - getKeyTop());
 					}
 				}
 				repaint();
@@ -346,24 +352,24 @@ public class FrameSlider extends JComponent
 				}
 				else if (draggingKeyFrame)
 				{
-					Rectangle keyRect = keyRects.get(draggingKeyFrameIndex);
-					int oldFrame = keys.get(draggingKeyFrameIndex);
-					int newFrame = calculateFrameFromPosition(e.getX() - dragPoint.x + keyRect.width / 2);
+					int oldFrame = draggingKey;
+					int newFrame = calculateFrameFromPosition(e.getX() - dragPoint.x + KEY_WIDTH / 2);
 					if (oldFrame == newFrame || newFrame > getMax() || newFrame < getMin())
 					{
 						return;
 					}
 					
-					keys.remove(draggingKeyFrameIndex);
-					keys.add(draggingKeyFrameIndex, newFrame);
+					keys.remove(oldFrame);
+					keys.add(newFrame);
+					draggingKey = newFrame;
 					
 					if (isHighlightedKey(oldFrame))
 					{
-						highlightedKeys.remove((Integer)oldFrame);
+						highlightedKeys.remove(oldFrame);
 						highlightedKeys.add(newFrame);
 					}
 					
-					notifyChangeFrameListeners(draggingKeyFrameIndex, oldFrame, newFrame);
+					notifyChangeFrameListeners(keys.indexOf(newFrame), oldFrame, newFrame);
 				}
 				repaint();
 			}
@@ -378,6 +384,30 @@ public class FrameSlider extends JComponent
 		});
 	}
 
+	/**
+	 * @return The index of the key whose marker contains the provided point,
+	 *         or -1 if there is no such key
+	 */
+	private int findKeyAt(Point point)
+	{
+		if (moverDimension == null)
+		{
+			return -1;
+		}
+		int top = getKeyTop();
+		if (point.y < top || point.y >= top + MINOR_TICK_LENGTH)
+		{
+			return -1;
+		}
+		//markers span [position - KEY_WIDTH / 2, position + KEY_WIDTH / 2)
+		return keys.findFirstBetweenPositions(keyPositions, point.x - KEY_WIDTH / 2 + 1, point.x + KEY_WIDTH / 2);
+	}
+
+	private int getKeyTop()
+	{
+		return moverDimension.height + 3;
+	}
+
 	private int calculatePositionFromFrame(int frame)
 	{
 		frame = clamp(frame, getMin(), getMax());
@@ -425,6 +455,7 @@ public class FrameSlider extends JComponent
 	private void dirtySize()
 	{
 		sizeDirty = true;
+		keys.invalidateMarkers();
 		dirtyPosition();
 	}
 
@@ -529,7 +560,7 @@ public class FrameSlider extends JComponent
 		paintSeparatorLine(g2, light, dark);
 
 		int availableTickWidth = getWidth() - moverDimension.width;
-		int tickY = moverDimension.height + 3;
+		int tickY = getKeyTop();
 		
 		paintMinorTicks(g2, dark, availableTickWidth, tickY);
 		int tickHeight = paintMajorTicks(g2, dark, text, availableTickWidth, tickY);
@@ -563,22 +594,19 @@ public class FrameSlider extends JComponent
 
 	private void paintKeyFrames(Graphics2D g2, Color border, int top)
 	{
-		for (int i = 0; i < keys.size(); i++)
+		//draw a single marker for all the keys in each pixel column
+		int markerCount = keys.updateMarkers(keyPositions);
+		for (int i = 0; i < markerCount; i++)
 		{
-			int key = keys.get(i);
-			
-			Rectangle rect = keyRects.get(i);
-			int pos = calculatePositionFromFrame(key);
-			rect.x = pos - 3;
-			rect.y = top;
-			rect.width = 6;
-			rect.height = MINOR_TICK_LENGTH;
+			int x = keys.getMarkerPosition(i) - KEY_WIDTH / 2;
+			int firstKey = keys.get(keys.getMarkerFirstIndex(i));
+			int lastKey = keys.get(keys.getMarkerLastIndex(i));
 			
 			g2.setColor(border);
-			g2.drawRect(rect.x, rect.y, rect.width, rect.height);
+			g2.drawRect(x, top, KEY_WIDTH, MINOR_TICK_LENGTH);
 			
-			g2.setColor(isHighlightedKey(key) ? HIGHLIGHTED_KEY_COLOR : KEY_COLOR);
-			g2.fillRect(rect.x + 1, rect.y + 1, rect.width - 1, rect.height - 1);
+			g2.setColor(highlightedKeys.containsBetween(firstKey, lastKey) ? HIGHLIGHTED_KEY_COLOR : KEY_COLOR);
+			g2.fillRect(x + 1, top + 1, KEY_WIDTH - 1, MINOR_TICK_LENGTH - 1);
 		}
 	}
 
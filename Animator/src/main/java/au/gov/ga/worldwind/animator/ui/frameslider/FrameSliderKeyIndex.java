@@ -0,0 +1,308 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.ui.frameslider;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A sorted set of key frames displayed by the {@link FrameSlider}, stored as
+ * an array of frames.
+ * <p/>
+ * Also keeps a summary of the pixel columns that contain at least one key
+ * frame marker, and the range of key frames in each column. The summary is
+ * recalculated lazily after the key frames or the slider geometry change, by
+ * binary searching the key frames once per occupied column, so painting and
+ * hit-testing markers scales with the width of the slider rather than the
+ * number of key frames.
+ * <p/>
+ * This class is not thread safe; like the slider, it should only be accessed
+ * on the event dispatch thread.
+ */
+class FrameSliderKeyIndex
+{
+	/**
+	 * Maps frames to pixel positions on the slider. Positions must not
+	 * decrease as frames increase.
+	 */
+	interface FramePositions
+	{
+		int getPosition(int frame);
+	}
+
+	private int[] frames = new int[16];
+	private int count = 0;
+
+	// Summary of the occupied pixel columns
+	private int[] markerPositions = new int[0];
+	private int[] markerFirstIndices = new int[0];
+	private int[] markerLastIndices = new int[0];
+	private int markerCount = 0;
+	private boolean markersDirty = true;
+
+	/**
+	 * @return The number of key frames
+	 */
+	int size()
+	{
+		return count;
+	}
+
+	/**
+	 * @return The key frame at the given index (key frames are sorted)
+	 */
+	int get(int index)
+	{
+		if (index < 0 || index >= count)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+		}
+		return frames[index];
+	}
+
+	/**
+	 * @return The index of the given key frame, or -1 if there is no key at
+	 *         the frame
+	 */
+	int indexOf(int frame)
+	{
+		int index = Arrays.binarySearch(frames, 0, count, frame);
+		return index < 0 ? -1 : index;
+	}
+
+	/**
+	 * @return Is there a key at the given frame?
+	 */
+	boolean contains(int frame)
+	{
+		return indexOf(frame) >= 0;
+	}
+
+	/**
+	 * @return Is there a key at any frame between the given frames
+	 *         (inclusive)?
+	 */
+	boolean containsBetween(int startFrame, int endFrame)
+	{
+		int index = Arrays.binarySearch(frames, 0, count, startFrame);
+		if (index >= 0)
+		{
+			return true;
+		}
+		index = -index - 1;
+		return index < count && frames[index] <= endFrame;
+	}
+
+	/**
+	 * Add a key frame.
+	 * 
+	 * @return True if the key frame was added, false if it already existed
+	 */
+	boolean add(int frame)
+	{
+		//key frames are usually added in order, so check the end first
+		int index = count > 0 && frames[count - 1] < frame ? -count - 1 : Arrays.binarySearch(frames, 0, count, frame);
+		if (index >= 0)
+		{
+			return false;
+		}
+		index = -index - 1;
+		if (count == frames.length)
+		{
+			frames = Arrays.copyOf(frames, count * 2);
+		}
+		System.arraycopy(frames, index, frames, index + 1, count - index);
+		frames[index] = frame;
+		count++;
+		markersDirty = true;
+		return true;
+	}
+
+	/**
+	 * Remove a key frame.
+	 * 
+	 * @return True if the key frame was removed, false if it didn't exist
+	 */
+	boolean remove(int frame)
+	{
+		int index = indexOf(frame);
+		if (index < 0)
+		{
+			return false;
+		}
+		System.arraycopy(frames, index + 1, frames, index, count - index - 1);
+		count--;
+		markersDirty = true;
+		return true;
+	}
+
+	/**
+	 * Replace all key frames with the given frames.
+	 */
+	void setAll(Collection<Integer> keyFrames)
+	{
+		int[] newFrames = new int[Math.max(16, keyFrames.size())];
+		int newCount = 0;
+		for (Integer frame : keyFrames)
+		{
+			newFrames[newCount++] = frame;
+		}
+		Arrays.sort(newFrames, 0, newCount);
+
+		//remove duplicates
+		int uniqueCount = 0;
+		for (int i = 0; i < newCount; i++)
+		{
+			if (uniqueCount == 0 || newFrames[uniqueCount - 1] != newFrames[i])
+			{
+				newFrames[uniqueCount++] = newFrames[i];
+			}
+		}
+		frames = newFrames;
+		count = uniqueCount;
+		markersDirty = true;
+	}
+
+	/**
+	 * Remove all key frames.
+	 */
+	void clear()
+	{
+		count = 0;
+		markersDirty = true;
+	}
+
+	/**
+	 * Mark the pixel column summary as dirty. Must be called when the mapping
+	 * from frames to positions changes.
+	 */
+	void invalidateMarkers()
+	{
+		markersDirty = true;
+	}
+
+	/**
+	 * Recalculate the pixel column summary if it is dirty.
+	 * 
+	 * @return The number of occupied pixel columns
+	 */
+	int updateMarkers(FramePositions positions)
+	{
+		if (!markersDirty)
+		{
+			return markerCount;
+		}
+		markersDirty = false;
+
+		markerCount = 0;
+		int index = 0;
+		while (index < count)
+		{
+			int position = positions.getPosition(frames[index]);
+			int last = lastIndexAtOrBefore(positions, position, index);
+			if (markerCount == markerPositions.length)
+			{
+				int length = Math.max(16, markerCount * 2);
+				markerPositions = Arrays.copyOf(markerPositions, length);
+				markerFirstIndices = Arrays.copyOf(markerFirstIndices, length);
+				markerLastIndices = Arrays.copyOf(markerLastIndices, length);
+			}
+			markerPositions[markerCount] = position;
+			markerFirstIndices[markerCount] = index;
+			markerLastIndices[markerCount] = last;
+			markerCount++;
+			index = last + 1;
+		}
+		return markerCount;
+	}
+
+	/**
+	 * @return The pixel position of the given occupied column
+	 */
+	int getMarkerPosition(int marker)
+	{
+		return markerPositions[marker];
+	}
+
+	/**
+	 * @return The index of the first key frame in the given occupied column
+	 */
+	int getMarkerFirstIndex(int marker)
+	{
+		return markerFirstIndices[marker];
+	}
+
+	/**
+	 * @return The index of the last key frame in the given occupied column
+	 */
+	int getMarkerLastIndex(int marker)
+	{
+		return markerLastIndices[marker];
+	}
+
+	/**
+	 * Find the first key frame positioned between the given positions
+	 * (inclusive).
+	 * 
+	 * @return The index of the key frame, or -1 if there are no key frames
+	 *         between the positions
+	 */
+	int findFirstBetweenPositions(FramePositions positions, int minPosition, int maxPosition)
+	{
+		int low = 0;
+		int high = count;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (positions.getPosition(frames[mid]) < minPosition)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		if (low < count && positions.getPosition(frames[low]) <= maxPosition)
+		{
+			return low;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The index of the last key frame (at or after the given index)
+	 *         positioned at or before the given position
+	 */
+	private int lastIndexAtOrBefore(FramePositions positions, int position, int fromIndex)
+	{
+		int low = fromIndex;
+		int high = count - 1;
+		while (low < high)
+		{
+			int mid = (low + high + 1) >>> 1;
+			if (positions.getPosition(frames[mid]) <= position)
+			{
+				low = mid;
+			}
+			else
+			{
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+}
@@ -17,12 +17,12 @@ package au.gov.ga.worldwind.animator.ui.parametereditor;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import au.gov.ga.worldwind.animator.animation.AnimationEvaluationPlan;
 import au.gov.ga.worldwind.animator.animation.KeyFrame;
 import au.gov.ga.worldwind.animator.animation.event.AnimationEvent;
 import au.gov.ga.worldwind.animator.animation.event.AnimationEventListener;
@@ -33,7 +33,10 @@ import au.gov.ga.worldwind.common.util.Validate;
 /**
  * The default implementation of the parameter curve model.
  * <p/>
- * Uses a provided executor service to calculate and cache curve points.
+ * Uses a provided executor service to calculate and cache curve points. The
+ * points are held in a {@link ParameterCurveEnvelope}, which is copied and
+ * updated for the dirty window of frames on each change, and then swapped in
+ * for readers.
  *
  * @author James Navin (james.navin@ga.gov.au)
  */
@@ -47,13 +50,12 @@ public class DefaultParameterCurveModel implements ParameterCurveModel, Animatio
 	private Future<CurveUpdateTask> currentTask;
 	private Future<CurveUpdateTask> nextTask;
 	
-	// Buffers used to hold the calculated curve points
+	// The calculated curve points (null if the parameter has no key frames)
 	// X-axis: frames
 	// Y-axis: parameter value
-	private TreeMap<Integer, ParameterCurvePoint> curvePointsBackBuffer = new TreeMap<Integer, ParameterCurvePoint>();
-	private TreeMap<Integer, ParameterCurvePoint> curvePointsFrontBuffer = new TreeMap<Integer, ParameterCurvePoint>();
-	private Lock backBufferLock = new ReentrantLock();
-	private Lock frontBufferLock = new ReentrantLock();
+	private volatile ParameterCurveEnvelope envelope;
+	private Lock updateLock = new ReentrantLock();
+	private Lock envelopeLock = new ReentrantLock();
 	private double maxValue;
 	private double minValue;
 	
@@ -98,12 +100,11 @@ public class DefaultParameterCurveModel implements ParameterCurveModel, Animatio
 			nextTask.cancel(true);
 		}
 		
-		backBufferLock.lock();
-		frontBufferLock.lock();
-		curvePointsBackBuffer.clear();
-		curvePointsFrontBuffer.clear();
-		backBufferLock.unlock();
-		frontBufferLock.unlock();
+		updateLock.lock();
+		envelopeLock.lock();
+		envelope = null;
+		updateLock.unlock();
+		envelopeLock.unlock();
 		
 		updater.shutdownNow();
 	}
@@ -111,25 +112,27 @@ public class DefaultParameterCurveModel implements ParameterCurveModel, Animatio
 	@Override
 	public double getValueAtFrame(int frame)
 	{
-		try
+		ParameterCurveEnvelope envelope = this.envelope;
+		if (envelope == null)
 		{
-			frontBufferLock.lock();
-			
-			if (curvePointsFrontBuffer.isEmpty())
-			{
-				return parameter.getDefaultValue(frame);
-			}
-			
-			if (frame <= curvePointsFrontBuffer.firstKey())
-			{
-				return curvePointsFrontBuffer.ceilingEntry(frame).getValue().value;
-			}
-			return curvePointsFrontBuffer.floorEntry(frame).getValue().value;
+			return parameter.getDefaultValue(frame);
 		}
-		finally
+		return envelope.getValue(frame);
+	}
+	
+	@Override
+	public void getValueEnvelope(int startFrame, int endFrame, double[] minMax)
+	{
+		ParameterCurveEnvelope envelope = this.envelope;
+		if (envelope == null)
 		{
-			frontBufferLock.unlock();
+			double startValue = parameter.getDefaultValue(startFrame);
+			double endValue = parameter.getDefaultValue(endFrame);
+			minMax[0] = Math.min(startValue, endValue);
+			minMax[1] = Math.max(startValue, endValue);
+			return;
 		}
+		envelope.getEnvelope(startFrame, endFrame, minMax);
 	}
 	
 	@Override
@@ -147,21 +150,15 @@ public class DefaultParameterCurveModel implements ParameterCurveModel, Animatio
 	@Override
 	public int getMinFrame()
 	{
-		if (curvePointsFrontBuffer.isEmpty())
-		{
-			return 0;
-		}
-		return curvePointsFrontBuffer.firstKey();
+		ParameterCurveEnvelope envelope = this.envelope;
+		return envelope == null ? 0 : envelope.getFirstFrame();
 	}
 	
 	@Override
 	public int getMaxFrame()
 	{
-		if (curvePointsFrontBuffer.isEmpty())
-		{
-			return 0;
-		}
-		return curvePointsFrontBuffer.lastKey();
+		ParameterCurveEnvelope envelope = this.envelope;
+		return envelope == null ? 0 : envelope.getLastFrame();
 	}
 	
 	@Override
@@ -243,13 +240,13 @@ public class DefaultParameterCurveModel implements ParameterCurveModel, Animatio
 	@Override
 	public void lock()
 	{
-		frontBufferLock.lock();
+		envelopeLock.lock();
 	}
 	
 	@Override
 	public void unlock()
 	{
-		frontBufferLock.unlock();
+		envelopeLock.unlock();
 	}
 	
 	private void notifyCurveChanged()
@@ -318,100 +315,60 @@ public class DefaultParameterCurveModel implements ParameterCurveModel, Animatio
 		@Override
 		public void run()
 		{
+			ParameterCurveEnvelope updated;
 			try
 			{
-				backBufferLock.lock();
-				recalculatePoints(startFrame, endFrame);
-				frontBufferLock.lock();
-				swapBuffers();
+				updateLock.lock();
+				updated = recalculatePoints(startFrame, endFrame);
+				envelopeLock.lock();
+				envelope = updated;
+				if (updated != null)
+				{
+					minValue = updated.getMinValue();
+					maxValue = updated.getMaxValue();
+				}
 			}
 			finally
 			{
-				frontBufferLock.unlock();
-				backBufferLock.unlock();
+				envelopeLock.unlock();
+				updateLock.unlock();
 			}
 			notifyCurveChanged();
 		}
 
 		/**
 		 * Recalculates the curve points between the provided (optional) start and end frames.
+		 * 
+		 * @return A new envelope containing the curve points, or <code>null</code> if the parameter has no key frames
 		 */
-		private void recalculatePoints(Integer dirtyWindowStart, Integer dirtyWindowEnd)
+		private ParameterCurveEnvelope recalculatePoints(Integer dirtyWindowStart, Integer dirtyWindowEnd)
 		{
-			TreeMap<Integer, ParameterCurvePoint> tmpBuffer = new TreeMap<Integer, ParameterCurvePoint>();
-			
 			List<KeyFrame> keyFrames = parameter.getKeyFramesWithThisParameter();
 			if (keyFrames.isEmpty())
 			{
-				curvePointsBackBuffer.clear();
-				return;
+				return null;
 			}
 			
-			double minValue = Double.POSITIVE_INFINITY;
-			double maxValue = Double.NEGATIVE_INFINITY;
-			
 			int firstFrame = keyFrames.get(0).getFrame();
 			int lastFrame = keyFrames.get(keyFrames.size() - 1).getFrame();
+			AnimationEvaluationPlan plan = parameter.getAnimation().getEvaluationPlan();
 			
-			// Retrieve all values inside the dirty window
-			if (dirtyWindowStart == null)
+			// If the frame range has changed, all values need to be recalculated
+			ParameterCurveEnvelope previous = envelope;
+			if (previous == null || previous.getFirstFrame() != firstFrame || previous.getLastFrame() != lastFrame)
 			{
-				dirtyWindowStart = firstFrame;
+				return new ParameterCurveEnvelope(firstFrame, plan.getValues(parameter, firstFrame, lastFrame, null));
 			}
-			if (dirtyWindowEnd == null)
-			{
-				dirtyWindowEnd = lastFrame;
-			}
-			ParameterValue[] windowValues = parameter.getValuesBetweenFrames(dirtyWindowStart, dirtyWindowEnd, null);
 			
-			// Repopulate the buffer from the recalculated values
-			for (int frame = firstFrame; frame <= lastFrame; frame++)
+			// Otherwise only retrieve the values inside the dirty window
+			int windowStart = dirtyWindowStart == null ? firstFrame : Math.max(firstFrame, dirtyWindowStart);
+			int windowEnd = dirtyWindowEnd == null ? lastFrame : Math.min(lastFrame, dirtyWindowEnd);
+			ParameterCurveEnvelope result = previous.copy();
+			if (windowStart <= windowEnd)
 			{
-				ParameterCurvePoint curvePoint = null;
-				
-				boolean inWindow = inWindow(frame, dirtyWindowStart, dirtyWindowEnd);
-				if (inWindow || !curvePointsBackBuffer.containsKey(frame))
-				{
-					double curveValue = inWindow ? windowValues[frame - dirtyWindowStart].getValue() : parameter.getValueAtFrame(frame).getValue();
-					curvePoint = new ParameterCurvePoint(frame, curveValue);
-				}
-				else
-				{
-					curvePoint = curvePointsBackBuffer.get(frame);
-				}
-				
-				if (curvePoint.value > maxValue)
-				{
-					maxValue = curvePoint.value;
-				}
-				
-				if (curvePoint.value < minValue)
-				{
-					minValue = curvePoint.value;
-				}
-				
-				tmpBuffer.put(frame, curvePoint);
+				result.setValues(windowStart, plan.getValues(parameter, windowStart, windowEnd, null));
 			}
-			
-			curvePointsBackBuffer = tmpBuffer;
-			DefaultParameterCurveModel.this.maxValue = maxValue;
-			DefaultParameterCurveModel.this.minValue = minValue;
-		}
-		
-		private boolean inWindow(int frame, Integer dirtyWindowStart, Integer dirtyWindowEnd)
-		{
-			int start = dirtyWindowStart == null ? Integer.MIN_VALUE : dirtyWindowStart;
-			int end = dirtyWindowEnd == null ? Integer.MAX_VALUE : dirtyWindowEnd;
-			
-			return frame >= start && frame <= end;
+			return result;
 		}
-
-		private void swapBuffers()
-		{
-			TreeMap<Integer, ParameterCurvePoint> tmpBuffer = curvePointsBackBuffer;
-			curvePointsBackBuffer = curvePointsFrontBuffer;
-			curvePointsFrontBuffer = tmpBuffer;
-		}
-		
 	}
 }
@@ -34,6 +34,7 @@ import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
+import java.awt.geom.GeneralPath;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Point2D.Double;
@@ -432,14 +433,22 @@ public class ParameterCurve extends JPanel implements ParameterCurveModelListene
 		int startFrame = curveBounds.getMinFrame() < 0 ? 0 : (int)curveBounds.getMinFrame();
 		int lastFrame = curveBounds.getMaxFrame() > model.getAnimationFrameCount() ? model.getAnimationFrameCount() : (int)curveBounds.getMaxFrame();
 		
-		for (int frame = startFrame; frame <= lastFrame; frame++)
+		if (curveBounds.getFrameWindow() > getWidth())
 		{
-			double x1 = getScreenX(frame);
-			double x2 = getScreenX(frame + 1);
-			double y1 = getScreenY(model.getValueAtFrame(frame));
-			double y2 = getScreenY(model.getValueAtFrame(frame + 1));
-			
-			g2.draw(new Line2D.Double(x1, y1, x2, y2));
+			// More than one frame per pixel; draw the envelope of the values in each pixel column
+			paintParameterCurveEnvelope(g2, startFrame, lastFrame);
+		}
+		else
+		{
+			for (int frame = startFrame; frame <= lastFrame; frame++)
+			{
+				double x1 = getScreenX(frame);
+				double x2 = getScreenX(frame + 1);
+				double y1 = getScreenY(model.getValueAtFrame(frame));
+				double y2 = getScreenY(model.getValueAtFrame(frame + 1));
+				
+				g2.draw(new Line2D.Double(x1, y1, x2, y2));
+			}
 		}
 		
 		// Draw the parts of the curve outside [0, framecount] (if any) as a single line
@@ -459,6 +468,44 @@ public class ParameterCurve extends JPanel implements ParameterCurveModelListene
 		}
 	}
 
+	/**
+	 * Paint the curve between the provided frames as a vertical line in each
+	 * pixel column, spanning the minimum and maximum values of the frames
+	 * within the column. Each column includes the frames at both of its edges,
+	 * so neighbouring columns join up.
+	 */
+	private void paintParameterCurveEnvelope(Graphics2D g2, int startFrame, int lastFrame)
+	{
+		int startX = Math.max(0, (int)Math.floor(getScreenX(startFrame)));
+		int endX = Math.min(getWidth(), (int)Math.ceil(getScreenX(lastFrame)));
+		
+		double[] minMax = new double[2];
+		GeneralPath path = new GeneralPath();
+		for (int x = startX; x < endX; x++)
+		{
+			int columnStartFrame = Math.max(startFrame, (int)Math.floor(getCurveX(x)));
+			int columnEndFrame = Math.min(lastFrame, (int)Math.ceil(getCurveX(x + 1)));
+			if (columnStartFrame > columnEndFrame)
+			{
+				continue;
+			}
+			
+			model.getValueEnvelope(columnStartFrame, columnEndFrame, minMax);
+			double top = getScreenY(minMax[1]);
+			double bottom = getScreenY(minMax[0]);
+			if (bottom - top < 1)
+			{
+				// Flat columns still need to cover a pixel to be drawn
+				double middle = (top + bottom) / 2;
+				top = middle - 0.5;
+				bottom = middle + 0.5;
+			}
+			path.moveTo(x + 0.5f, (float)top);
+			path.lineTo(x + 0.5f, (float)bottom);
+		}
+		g2.draw(path);
+	}
+
 	/**
 	 * Paint the key frame node markers using the local list of markers
 	 */
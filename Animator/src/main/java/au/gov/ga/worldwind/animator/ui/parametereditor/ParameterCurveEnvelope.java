@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.ui.parametereditor;
+
+/**
+ * A min/max pyramid of the values of a parameter curve.
+ * <p/>
+ * The bottom level holds the curve value at each frame, and each level above
+ * holds the minimum and maximum values of pairs of buckets from the level
+ * below. The envelope of any range of frames can then be found by combining
+ * a logarithmic number of buckets, so a curve can be painted one pixel column
+ * at a time, whatever the number of frames.
+ * <p/>
+ * Changing the values within a window of frames only updates the buckets
+ * that cover the window.
+ * <p/>
+ * This class is not thread safe; the {@link DefaultParameterCurveModel}
+ * updates a copy of its envelope on its updater thread, and swaps it in when
+ * complete.
+ */
+class ParameterCurveEnvelope
+{
+	private final int firstFrame;
+	private final double[] values;
+
+	// Minimum and maximum of each bucket, for each level above the bottom level
+	private final double[][] mins;
+	private final double[][] maxs;
+
+	/**
+	 * Create an envelope for the given values. The array is used directly,
+	 * not copied.
+	 * 
+	 * @param firstFrame
+	 *            Frame of the first value
+	 * @param values
+	 *            Curve value at each frame
+	 */
+	ParameterCurveEnvelope(int firstFrame, double[] values)
+	{
+		if (values.length == 0)
+		{
+			throw new IllegalArgumentException("At least one value is required");
+		}
+
+		this.firstFrame = firstFrame;
+		this.values = values;
+
+		int levels = 0;
+		for (int size = values.length; size > 1; size = (size + 1) / 2)
+		{
+			levels++;
+		}
+		mins = new double[levels][];
+		maxs = new double[levels][];
+		int size = values.length;
+		for (int level = 0; level < levels; level++)
+		{
+			size = (size + 1) / 2;
+			mins[level] = new double[size];
+			maxs[level] = new double[size];
+		}
+
+		updateBuckets(0, values.length - 1);
+	}
+
+	private ParameterCurveEnvelope(ParameterCurveEnvelope other)
+	{
+		this.firstFrame = other.firstFrame;
+		this.values = other.values.clone();
+		this.mins = new double[other.mins.length][];
+		this.maxs = new double[other.maxs.length][];
+		for (int level = 0; level < mins.length; level++)
+		{
+			mins[level] = other.mins[level].clone();
+			maxs[level] = other.maxs[level].clone();
+		}
+	}
+
+	/**
+	 * @return A copy of this envelope, which can be updated independently
+	 */
+	ParameterCurveEnvelope copy()
+	{
+		return new ParameterCurveEnvelope(this);
+	}
+
+	/**
+	 * @return The frame of the first value in this envelope
+	 */
+	int getFirstFrame()
+	{
+		return firstFrame;
+	}
+
+	/**
+	 * @return The frame of the last value in this envelope
+	 */
+	int getLastFrame()
+	{
+		return firstFrame + values.length - 1;
+	}
+
+	/**
+	 * @return The curve value at the given frame. Frames outside this envelope
+	 *         return the value of the nearest frame.
+	 */
+	double getValue(int frame)
+	{
+		return values[clampIndex(frame)];
+	}
+
+	/**
+	 * @return The minimum value of the curve
+	 */
+	double getMinValue()
+	{
+		return mins.length == 0 ? values[0] : mins[mins.length - 1][0];
+	}
+
+	/**
+	 * @return The maximum value of the curve
+	 */
+	double getMaxValue()
+	{
+		return maxs.length == 0 ? values[0] : maxs[maxs.length - 1][0];
+	}
+
+	/**
+	 * Replace the curve values within a window of frames. Frames in the
+	 * window that lie outside this envelope are ignored.
+	 * 
+	 * @param startFrame
+	 *            Frame of the first window value
+	 * @param windowValues
+	 *            New curve values
+	 */
+	void setValues(int startFrame, double[] windowValues)
+	{
+		int start = Math.max(0, startFrame - firstFrame);
+		int end = Math.min(values.length - 1, startFrame - firstFrame + windowValues.length - 1);
+		if (start > end)
+		{
+			return;
+		}
+		System.arraycopy(windowValues, start - (startFrame - firstFrame), values, start, end - start + 1);
+		updateBuckets(start, end);
+	}
+
+	/**
+	 * Calculate the minimum and maximum curve values between the given frames
+	 * (inclusive). Frames outside this envelope use the value of the nearest
+	 * frame.
+	 * 
+	 * @param startFrame
+	 * @param endFrame
+	 * @param minMax
+	 *            Array to store the result in; <code>[min, max]</code>
+	 */
+	void getEnvelope(int startFrame, int endFrame, double[] minMax)
+	{
+		int lo = clampIndex(Math.min(startFrame, endFrame));
+		int hi = clampIndex(Math.max(startFrame, endFrame));
+
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int level = 0; lo <= hi; level++)
+		{
+			if ((lo & 1) == 1)
+			{
+				min = Math.min(min, bucketMin(level, lo));
+				max = Math.max(max, bucketMax(level, lo));
+				lo++;
+			}
+			if (lo <= hi && (hi & 1) == 0)
+			{
+				min = Math.min(min, bucketMin(level, hi));
+				max = Math.max(max, bucketMax(level, hi));
+				hi--;
+			}
+			lo >>= 1;
+			hi >>= 1;
+		}
+
+		minMax[0] = min;
+		minMax[1] = max;
+	}
+
+	private double bucketMin(int level, int index)
+	{
+		return level == 0 ? values[index] : mins[level - 1][index];
+	}
+
+	private double bucketMax(int level, int index)
+	{
+		return level == 0 ? values[index] : maxs[level - 1][index];
+	}
+
+	/**
+	 * Recalculate the buckets covering the values between the given indices
+	 * (inclusive).
+	 */
+	private void updateBuckets(int lo, int hi)
+	{
+		int childCount = values.length;
+		for (int level = 1; level <= mins.length; level++)
+		{
+			lo >>= 1;
+			hi >>= 1;
+			for (int i = lo; i <= hi; i++)
+			{
+				int child = i * 2;
+				double min = bucketMin(level - 1, child);
+				double max = bucketMax(level - 1, child);
+				if (child + 1 < childCount)
+				{
+					min = Math.min(min, bucketMin(level - 1, child + 1));
+					max = Math.max(max, bucketMax(level - 1, child + 1));
+				}
+				mins[level - 1][i] = min;
+				maxs[level - 1][i] = max;
+			}
+			childCount = mins[level - 1].length;
+		}
+	}
+
+	private int clampIndex(int frame)
+	{
+		return Math.max(0, Math.min(values.length - 1, frame - firstFrame));
+	}
+}
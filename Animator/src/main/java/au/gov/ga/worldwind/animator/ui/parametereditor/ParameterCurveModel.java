@@ -48,6 +48,15 @@ public interface ParameterCurveModel
 	 */
 	double getValueAtFrame(int frame);
 
+	/**
+	 * Calculate the minimum and maximum parameter values between the provided
+	 * frames (inclusive).
+	 * 
+	 * @param minMax
+	 *            Array to store the result in; <code>[min, max]</code>
+	 */
+	void getValueEnvelope(int startFrame, int endFrame, double[] minMax);
+
 	/**
 	 * @return The minimum value of the parameter this model is reflecting
 	 */
@@ -79,6 +79,46 @@ public class TGAScreenshot
 		writer.close();
 	}
 
+	/**
+	 * Write a TGA file containing the provided image data, which should be in
+	 * the format read back by
+	 * <code>glReadPixels(..., GL_BGR(A), GL_UNSIGNED_BYTE, ...)</code>
+	 * (bottom-up rows of BGR or BGRA pixels).
+	 */
+	public static void writeToTargaFile(File file, int width, int height, boolean alpha, ByteBuffer data)
+			throws IOException
+	{
+		OutputStream os = new FileOutputStream(file);
+		try
+		{
+			os.write(createHeader(width, height, alpha));
+			WritableByteChannel channel = Channels.newChannel(os);
+			ByteBuffer buf = data.duplicate();
+			buf.rewind();
+			while (buf.hasRemaining())
+			{
+				channel.write(buf);
+			}
+		}
+		finally
+		{
+			os.close();
+		}
+	}
+
+	private static byte[] createHeader(int width, int height, boolean alpha)
+	{
+		int pixelSize = (alpha ? 32 : 24);
+		byte[] header = new byte[TGAWriter.TARGA_HEADER_SIZE];
+		header[2] = 2;
+		header[12] = (byte) (width & 0xFF);
+		header[13] = (byte) (width >> 8);
+		header[14] = (byte) (height & 0xFF);
+		header[15] = (byte) (height >> 8);
+		header[16] = (byte) pixelSize;
+		return header;
+	}
+
 	public static class TGAWriter
 	{
 		private static final int TARGA_HEADER_SIZE = 18;
@@ -93,18 +133,10 @@ public class TGAScreenshot
 		public void open(File file, int width, int height, boolean alpha) throws IOException
 		{
 			os = new FileOutputStream(file);
-			int pixelSize = (alpha ? 32 : 24);
 			int numChannels = (alpha ? 4 : 3);
 
 			// write the TARGA header
-			byte[] header = new byte[TARGA_HEADER_SIZE];
-			header[2] = 2;
-			header[12] = (byte) (width & 0xFF);
-			header[13] = (byte) (width >> 8);
-			header[14] = (byte) (height & 0xFF);
-			header[15] = (byte) (height >> 8);
-			header[16] = (byte) pixelSize;
-			os.write(header);
+			os.write(createHeader(width, height, alpha));
 
 			//create buffer for jogl to save pixels into
 			buf = Buffers.newDirectByteBuffer(width * height * numChannels);
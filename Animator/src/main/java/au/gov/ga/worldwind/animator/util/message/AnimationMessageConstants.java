@@ -49,6 +49,7 @@ public class AnimationMessageConstants extends CommonMessageConstants
 	public static String getScaleAnimationMenuLabelKey() { return "animator.gui.menu.scaleanimation.label"; }
 	public static String getScaleHeightMenuLabelKey() { return "animator.gui.menu.scaleheight.label"; }
 	public static String getSmoothEyeSpeedMenuLabelKey() { return "animator.gui.menu.smootheyespeed.label"; }
+	public static String getReduceKeyFramesMenuLabelKey() { return "animator.gui.menu.reducekeyframes.label"; }
 	public static String getShowWireframeMenuLabelKey() { return "animator.gui.menu.showwireframe.label"; }
 	public static String getTargetModeMenuLabelKey() { return "animator.gui.menu.targetmode.label"; }
 	public static String getPreviewMenuLabelKey() { return "animator.gui.menu.preview.label"; }
@@ -91,6 +92,9 @@ public class AnimationMessageConstants extends CommonMessageConstants
 	public static String getQuerySaveCaptionKey() { return "animator.message.querysave.caption"; }
 	public static String getQuerySmoothEyeSpeedMessageKey() { return "animator.message.smootheyespeed.message"; }
 	public static String getQuerySmoothEyeSpeedCaptionKey() { return "animator.message.smootheyespeed.caption"; }
+	public static String getReduceKeyFramesMessageKey() { return "animator.message.reducekeyframes.message"; }
+	public static String getReduceKeyFramesCaptionKey() { return "animator.message.reducekeyframes.caption"; }
+	public static String getReduceKeyFramesResultKey() { return "animator.message.reducekeyframes.result"; }
 	public static String getScaleAnimationMessageKey() { return "animator.message.scaleanimation.message"; }
 	public static String getScaleAnimationCaptionKey() { return "animator.message.scaleanimation.caption"; }
 	public static String getSetFrameCountMessageKey() { return "animator.message.setframecount.message"; }
@@ -157,6 +161,7 @@ public class AnimationMessageConstants extends CommonMessageConstants
 	public static String getRenderProgressDialogTitleKey() { return "animator.gui.dialog.renderprogress.title"; }
 	public static String getRenderProgressFrameMessageKey() { return "animator.gui.dialog.renderprogress.framemessage.label"; }
 	public static String getRenderProgressStartingMessageKey() { return "animator.gui.dialog.renderprogress.startingmessage.label"; }
+	public static String getRenderProgressTimingMessageKey() { return "animator.gui.dialog.renderprogress.timingmessage.label"; }
 	public static String getParameterEditorWindowLabelKey() { return "animator.gui.parametereditor.window.title"; }
 	public static String getWindowMenuLabelKey() { return "animator.gui.menu.window.label"; }
 	public static String getHelpMenuLabelKey() { return "animator.gui.menu.help.label"; }
@@ -0,0 +1,132 @@
+package au.gov.ga.worldwind.animator.animation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.WorldWindow;
+
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.animation.parameter.BasicBezierParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.BasicParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
+import au.gov.ga.worldwind.common.util.message.MessageSourceAccessor;
+import au.gov.ga.worldwind.common.util.message.StaticMessageSource;
+
+/**
+ * Unit tests for the {@link AnimationEvaluationPlan} class
+ */
+public class AnimationEvaluationPlanTest
+{
+	private static final double DELTA = 1e-9;
+
+	private WorldWindAnimationImpl animation;
+	private AnimationEvaluationPlan classToBeTested;
+	private Parameter lat;
+	private Parameter lon;
+
+	@Before
+	public void setup()
+	{
+		MessageSourceAccessor.set(new StaticMessageSource());
+
+		animation = new WorldWindAnimationImpl(new Mockery().mock(WorldWindow.class));
+		animation.setFrameCount(101);
+		classToBeTested = animation.getEvaluationPlan();
+
+		lat = animation.getCamera().getEyeLat();
+		lon = animation.getCamera().getEyeLon();
+	}
+
+	@Test
+	public void testValuesMatchInterpolation()
+	{
+		insert(lat, new BasicParameterValue(0, 0, lat));
+		insert(lat, new BasicBezierParameterValue(100, 40, lat));
+		insert(lat, new BasicParameterValue(-50, 100, lat));
+		insert(lon, new BasicBezierParameterValue(10, 20, lon));
+		insert(lon, new BasicBezierParameterValue(30, 80, lon));
+
+		classToBeTested.update();
+
+		assertMatchesInterpolation(lat);
+		assertMatchesInterpolation(lon);
+	}
+
+	@Test
+	public void testParameterWithoutKeyFramesIsNotTabulated()
+	{
+		insert(lat, new BasicParameterValue(0, 0, lat));
+
+		assertTrue(Double.isNaN(classToBeTested.getValue(lon, 50)));
+		assertEquals(lon.getValueAtFrame(50).getValue(), classToBeTested.getValues(lon, 50, 50, null)[0], DELTA);
+	}
+
+	@Test
+	public void testChangedValueInvalidatesTable()
+	{
+		insert(lat, new BasicParameterValue(0, 0, lat));
+		ParameterValue end = new BasicParameterValue(100, 100, lat);
+		insert(lat, end);
+
+		assertEquals(50, classToBeTested.getValue(lat, 50), DELTA);
+
+		end.setValue(200);
+
+		assertEquals(100, classToBeTested.getValue(lat, 50), DELTA);
+		assertEquals(200, classToBeTested.getValue(lat, 100), DELTA);
+	}
+
+	@Test
+	public void testInsertedAndRemovedKeyFramesInvalidateTable()
+	{
+		insert(lat, new BasicParameterValue(0, 0, lat));
+		insert(lat, new BasicParameterValue(100, 100, lat));
+		assertEquals(50, classToBeTested.getValue(lat, 50), DELTA);
+
+		insert(lat, new BasicParameterValue(0, 50, lat));
+		assertEquals(0, classToBeTested.getValue(lat, 50), DELTA);
+		assertEquals(50, classToBeTested.getValue(lat, 75), DELTA);
+
+		animation.removeKeyFrame(50);
+		assertEquals(50, classToBeTested.getValue(lat, 50), DELTA);
+
+		animation.removeKeyFrame(0);
+		animation.removeKeyFrame(100);
+		assertTrue(Double.isNaN(classToBeTested.getValue(lat, 50)));
+	}
+
+	@Test
+	public void testFrameCountChangeRebuildsTable()
+	{
+		insert(lat, new BasicParameterValue(0, 0, lat));
+		insert(lat, new BasicParameterValue(100, 100, lat));
+		assertEquals(50, classToBeTested.getValue(lat, 50), DELTA);
+
+		animation.setFrameCount(201);
+		assertEquals(100, classToBeTested.getValue(lat, 150), DELTA);
+
+		animation.setFrameCount(51);
+		assertTrue(Double.isNaN(classToBeTested.getValue(lat, 60)));
+		assertEquals(0, classToBeTested.getValue(lat, 50), DELTA);
+	}
+
+	private void insert(Parameter parameter, ParameterValue value)
+	{
+		animation.insertKeyFrame(new KeyFrameImpl(value.getFrame(), value));
+	}
+
+	private void assertMatchesInterpolation(Parameter parameter)
+	{
+		double[] values = classToBeTested.getValues(parameter, 0, animation.getLastFrame(), null);
+		for (int frame = 0; frame <= animation.getLastFrame(); frame++)
+		{
+			double expected = parameter.getValueAtFrame(frame).getValue();
+			assertEquals(expected, values[frame], DELTA);
+			assertEquals(expected, classToBeTested.getValue(parameter, frame), DELTA);
+			assertEquals(expected, parameter.getDoubleValueAtFrame(frame), DELTA);
+		}
+	}
+}
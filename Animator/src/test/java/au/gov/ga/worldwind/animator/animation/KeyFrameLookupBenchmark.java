@@ -0,0 +1,214 @@
+package au.gov.ga.worldwind.animator.animation;
+
+import gov.nasa.worldwind.WorldWindow;
+import gov.nasa.worldwind.avlist.AVList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.jmock.Mockery;
+import org.w3c.dom.Element;
+
+import au.gov.ga.worldwind.animator.animation.io.AnimationFileVersion;
+import au.gov.ga.worldwind.animator.animation.io.AnimationIOConstants;
+import au.gov.ga.worldwind.animator.animation.parameter.BasicParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterBase;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
+import au.gov.ga.worldwind.common.util.message.MessageSourceAccessor;
+import au.gov.ga.worldwind.common.util.message.StaticMessageSource;
+
+/**
+ * Compares the time taken to find the key frames either side of every frame
+ * for every parameter of a large synthetic animation, by walking the
+ * animation's key frames (as {@link WorldWindAnimationImpl} did previously)
+ * and by using the animation's {@link KeyFrameIndex}. Also reports the time
+ * taken to evaluate every parameter at every frame using
+ * {@link Parameter#getValueAtFrame(int)}.
+ * <p/>
+ * Each parameter has key frames at random intervals, apart from the last
+ * parameter, which only has key frames at the first and last frames (the
+ * sparse case that made the key frame walk quadratic).
+ * <p/>
+ * Run as a Java application; arguments are the number of frames (default
+ * 10000), the number of parameters (default 20), and the average number of
+ * frames between each parameter's key frames (default 50).
+ */
+public class KeyFrameLookupBenchmark
+{
+	public static void main(String[] args)
+	{
+		int frames = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int parameterCount = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int spacing = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+		MessageSourceAccessor.set(new StaticMessageSource());
+		WorldWindAnimationImpl animation = new WorldWindAnimationImpl(new Mockery().mock(WorldWindow.class));
+		animation.setFrameCount(frames);
+
+		Random random = new Random(0);
+		List<Parameter> parameters = new ArrayList<Parameter>();
+		for (int i = 0; i < parameterCount; i++)
+		{
+			Parameter parameter = new BenchmarkParameter("Parameter" + i, animation);
+			parameters.add(parameter);
+			if (i == parameterCount - 1)
+			{
+				insertValue(animation, parameter, 0, random);
+				insertValue(animation, parameter, frames - 1, random);
+				continue;
+			}
+			for (int frame = random.nextInt(spacing); frame < frames; frame += 1 + random.nextInt(2 * spacing))
+			{
+				insertValue(animation, parameter, frame, random);
+			}
+		}
+
+		NavigableMap<Integer, KeyFrame> keyFrameMap = new TreeMap<Integer, KeyFrame>();
+		for (KeyFrame keyFrame : animation.getKeyFrames())
+		{
+			keyFrameMap.put(keyFrame.getFrame(), keyFrame);
+		}
+
+		//warm up
+		for (int i = 0; i < 3; i++)
+		{
+			walk(keyFrameMap, parameters, frames / 10);
+			indexed(animation, parameters, frames / 10);
+			evaluate(parameters, frames / 10);
+		}
+
+		long start = System.nanoTime();
+		int walkFound = walk(keyFrameMap, parameters, frames);
+		double walkMillis = (System.nanoTime() - start) / 1e6;
+
+		start = System.nanoTime();
+		int indexedFound = indexed(animation, parameters, frames);
+		double indexedMillis = (System.nanoTime() - start) / 1e6;
+
+		start = System.nanoTime();
+		evaluate(parameters, frames);
+		double evaluateMillis = (System.nanoTime() - start) / 1e6;
+
+		if (walkFound != indexedFound)
+		{
+			throw new IllegalStateException("Lookups differ: " + walkFound + " != " + indexedFound);
+		}
+
+		System.out.println(frames + " frames, " + parameterCount + " parameters, " + keyFrameMap.size()
+				+ " key frames");
+		System.out.println(String.format("Key frame walk:  %.1f ms", walkMillis));
+		System.out.println(String.format("Key frame index: %.1f ms", indexedMillis));
+		System.out.println(String.format("Speedup:         %.1fx", walkMillis / indexedMillis));
+		System.out.println(String.format("getValueAtFrame: %.1f ms (%.3f us/value)", evaluateMillis, evaluateMillis
+				* 1000 / ((double) frames * parameterCount)));
+	}
+
+	private static void insertValue(Animation animation, Parameter parameter, int frame, Random random)
+	{
+		ParameterValue value = new BasicParameterValue(random.nextDouble(), frame, parameter);
+		animation.insertKeyFrame(new KeyFrameImpl(frame, value), false);
+	}
+
+	private static int walk(NavigableMap<Integer, KeyFrame> keyFrameMap, List<Parameter> parameters, int frames)
+	{
+		int found = 0;
+		for (Parameter parameter : parameters)
+		{
+			for (int frame = 0; frame < frames; frame++)
+			{
+				KeyFrame before = null;
+				for (KeyFrame candidate : keyFrameMap.headMap(frame, true).descendingMap().values())
+				{
+					if (candidate.hasValueForParameter(parameter))
+					{
+						before = candidate;
+						break;
+					}
+				}
+				KeyFrame after = null;
+				for (KeyFrame candidate : keyFrameMap.tailMap(frame, false).values())
+				{
+					if (candidate.hasValueForParameter(parameter))
+					{
+						after = candidate;
+						break;
+					}
+				}
+				found += (before != null ? 1 : 0) + (after != null ? 1 : 0);
+			}
+		}
+		return found;
+	}
+
+	private static int indexed(Animation animation, List<Parameter> parameters, int frames)
+	{
+		int found = 0;
+		for (Parameter parameter : parameters)
+		{
+			for (int frame = 0; frame < frames; frame++)
+			{
+				KeyFrame before = animation.getKeyFrameWithParameterBeforeFrame(parameter, frame, true);
+				KeyFrame after = animation.getKeyFrameWithParameterAfterFrame(parameter, frame, false);
+				found += (before != null ? 1 : 0) + (after != null ? 1 : 0);
+			}
+		}
+		return found;
+	}
+
+	private static double evaluate(List<Parameter> parameters, int frames)
+	{
+		double sum = 0;
+		for (Parameter parameter : parameters)
+		{
+			for (int frame = 0; frame < frames; frame++)
+			{
+				sum += parameter.getValueAtFrame(frame).getValue();
+			}
+		}
+		return sum;
+	}
+
+	private static class BenchmarkParameter extends ParameterBase
+	{
+		private static final long serialVersionUID = 20121019L;
+
+		public BenchmarkParameter(String name, Animation animation)
+		{
+			super(name, animation);
+		}
+
+		@Override
+		public ParameterValue getCurrentValue()
+		{
+			return null;
+		}
+
+		@Override
+		protected void doApplyValue(double value)
+		{
+		}
+
+		@Override
+		protected String getXmlElementName(AnimationIOConstants constants)
+		{
+			return null;
+		}
+
+		@Override
+		protected ParameterBase createParameterFromXml(String name, Animation animation, Element element,
+				Element parameterElement, AnimationFileVersion version, AVList context)
+		{
+			return null;
+		}
+
+		@Override
+		protected String getDefaultName()
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package au.gov.ga.worldwind.animator.animation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.WorldWindow;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.animation.parameter.BasicParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.common.util.message.MessageSourceAccessor;
+import au.gov.ga.worldwind.common.util.message.StaticMessageSource;
+
+/**
+ * Unit tests for the {@link KeyFrameReducer} class
+ */
+public class KeyFrameReducerTest
+{
+	private static final int LAST_FRAME = 200;
+
+	private WorldWindAnimationImpl animation;
+	private Parameter lat;
+	private Parameter lon;
+
+	@Before
+	public void setup()
+	{
+		MessageSourceAccessor.set(new StaticMessageSource());
+
+		animation = new WorldWindAnimationImpl(new Mockery().mock(WorldWindow.class));
+		animation.setFrameCount(LAST_FRAME + 1);
+
+		lat = animation.getCamera().getEyeLat();
+		lon = animation.getCamera().getEyeLon();
+	}
+
+	@Test
+	public void testLinearRunReducesToEndPoints()
+	{
+		for (int frame = 0; frame <= LAST_FRAME; frame++)
+		{
+			record(lat, frame, 10 + frame * 0.5);
+		}
+
+		int removed = KeyFrameReducer.reduce(animation, tolerance(lat, 1e-6));
+
+		assertEquals(LAST_FRAME - 1, removed);
+		assertEquals(2, animation.getKeyFrames(lat).size());
+		assertEquals(2, animation.getKeyFrameCount());
+		for (int frame = 0; frame <= LAST_FRAME; frame++)
+		{
+			assertEquals(10 + frame * 0.5, lat.getDoubleValueAtFrame(frame), 1e-3);
+		}
+	}
+
+	@Test
+	public void testCurvedRunStaysWithinTolerance()
+	{
+		double tolerance = 0.01;
+		double[] original = new double[LAST_FRAME + 1];
+		for (int frame = 0; frame <= LAST_FRAME; frame++)
+		{
+			original[frame] = 5 * Math.sin(frame / 20d);
+			record(lat, frame, original[frame]);
+		}
+
+		KeyFrameReducer.reduce(animation, tolerance(lat, tolerance));
+
+		int keys = animation.getKeyFrames(lat).size();
+		assertTrue("Expected at least a 10x reduction, got " + keys + " key frames", keys <= (LAST_FRAME + 1) / 10);
+		assertNotNull(animation.getKeyFrame(0));
+		assertNotNull(animation.getKeyFrame(LAST_FRAME));
+		for (int frame = 0; frame <= LAST_FRAME; frame++)
+		{
+			//allow a little extra for the sampling of the bezier curve by the interpolator
+			assertEquals(original[frame], lat.getDoubleValueAtFrame(frame), tolerance * 1.1);
+		}
+	}
+
+	@Test
+	public void testParametersWithoutToleranceAreUnchanged()
+	{
+		for (int frame = 0; frame <= LAST_FRAME; frame++)
+		{
+			record(lat, frame, frame);
+			record(lon, frame, frame);
+		}
+
+		KeyFrameReducer.reduce(animation, tolerance(lat, 0.1));
+
+		assertEquals(2, animation.getKeyFrames(lat).size());
+		assertEquals(LAST_FRAME + 1, animation.getKeyFrames(lon).size());
+		assertEquals(LAST_FRAME + 1, animation.getKeyFrameCount());
+	}
+
+	@Test
+	public void testRelativeTolerances()
+	{
+		record(lat, 0, -10);
+		record(lat, 50, 30);
+		record(lat, 100, 10);
+
+		Map<Parameter, Double> tolerances =
+				KeyFrameReducer.createRelativeTolerances(animation, animation.getAllParameters(), 0.01);
+
+		assertEquals(0.4, tolerances.get(lat), 1e-9);
+		assertTrue(!tolerances.containsKey(lon));
+	}
+
+	private void record(Parameter parameter, int frame, double value)
+	{
+		animation.insertKeyFrame(new KeyFrameImpl(frame, new BasicParameterValue(value, frame, parameter)), false);
+	}
+
+	private static Map<Parameter, Double> tolerance(Parameter parameter, double tolerance)
+	{
+		Map<Parameter, Double> tolerances = new HashMap<Parameter, Double>();
+		tolerances.put(parameter, tolerance);
+		return tolerances;
+	}
+}
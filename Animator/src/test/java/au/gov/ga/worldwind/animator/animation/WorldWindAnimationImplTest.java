@@ -1,6 +1,8 @@
 package au.gov.ga.worldwind.animator.animation;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 import gov.nasa.worldwind.WorldWindow;
 
@@ -132,6 +134,71 @@ public class WorldWindAnimationImplTest
 		assertEquals(null, classToBeTested.getKeyFrameWithParameterAfterFrame(testParameters.get(2), 125));
 	}
 
+	/**
+	 * Tests that the key frame lookups reflect values removed from, and added
+	 * to, key frames already in the animation.
+	 */
+	@Test
+	public void testGetFrameBeforeAfterWithChangedValues()
+	{
+		KeyFrame keyFrame50 = createKeyFrame(50, testParameters.get(0), testParameters.get(1));
+		classToBeTested.insertKeyFrame(createKeyFrame(0, testParameters.get(0)));
+		classToBeTested.insertKeyFrame(keyFrame50);
+		classToBeTested.insertKeyFrame(createKeyFrame(100, testParameters.get(0), testParameters.get(1)));
+
+		keyFrame50.removeValueForParameter(testParameters.get(1));
+		assertNull(classToBeTested.getKeyFrameWithParameterBeforeFrame(testParameters.get(1), 75));
+		assertEquals(100, classToBeTested.getKeyFrameWithParameterAfterFrame(testParameters.get(1), 0).getFrame());
+		assertEquals(50, classToBeTested.getKeyFrameWithParameterBeforeFrame(testParameters.get(0), 75).getFrame());
+
+		//inserting a key frame at an existing frame merges the values into the existing key frame
+		classToBeTested.insertKeyFrame(createKeyFrame(50, testParameters.get(2)));
+		assertEquals(keyFrame50, classToBeTested.getKeyFrameWithParameterBeforeFrame(testParameters.get(2), 75));
+		assertEquals(Arrays.asList(keyFrame50), classToBeTested.getKeyFrames(testParameters.get(2)));
+	}
+
+	/**
+	 * Tests that the key frame lookups reflect key frames that have been
+	 * removed, or moved by removing and inserting them at a new frame.
+	 */
+	@Test
+	public void testGetFrameBeforeAfterWithRemovedAndMovedKeyFrames()
+	{
+		classToBeTested.insertKeyFrame(createKeyFrame(0, testParameters.get(0)));
+		classToBeTested.insertKeyFrame(createKeyFrame(50, testParameters.get(0), testParameters.get(1)));
+		classToBeTested.insertKeyFrame(createKeyFrame(100, testParameters.get(0), testParameters.get(1)));
+
+		classToBeTested.removeKeyFrame(50);
+		assertEquals(0, classToBeTested.getKeyFrameWithParameterBeforeFrame(testParameters.get(0), 75).getFrame());
+		assertEquals(100, classToBeTested.getKeyFrameWithParameterAfterFrame(testParameters.get(1), 0).getFrame());
+
+		KeyFrame keyFrame100 = classToBeTested.getKeyFrame(100);
+		classToBeTested.removeKeyFrame(keyFrame100);
+		classToBeTested.insertKeyFrame(new KeyFrameImpl(25, keyFrame100.getParameterValues()));
+		assertEquals(25, classToBeTested.getKeyFrameWithParameterBeforeFrame(testParameters.get(1), 75).getFrame());
+		assertNull(classToBeTested.getKeyFrameWithParameterAfterFrame(testParameters.get(0), 25));
+		assertEquals(2, classToBeTested.getKeyFrames(testParameters.get(0)).size());
+
+		classToBeTested.removeKeyFrame(25);
+		assertFalse(classToBeTested.hasKeyFrame(testParameters.get(1)));
+	}
+
+	/**
+	 * Tests that key frames removed by reducing the frame count are no longer
+	 * returned by the key frame lookups.
+	 */
+	@Test
+	public void testGetFrameAfterWithReducedFrameCount()
+	{
+		classToBeTested.insertKeyFrame(createKeyFrame(0, testParameters.get(0)));
+		classToBeTested.insertKeyFrame(createKeyFrame(50, testParameters.get(0)));
+		classToBeTested.insertKeyFrame(createKeyFrame(100, testParameters.get(0)));
+
+		classToBeTested.setFrameCount(60);
+		assertNull(classToBeTested.getKeyFrameWithParameterAfterFrame(testParameters.get(0), 50));
+		assertEquals(50, classToBeTested.getKeyFrameWithParameterBeforeFrame(testParameters.get(0), 100).getFrame());
+	}
+
 	/**
 	 * Tests the scale method with scale factor of 0
 	 */
@@ -0,0 +1,138 @@
+package au.gov.ga.worldwind.animator.animation.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.KeyFrame;
+import au.gov.ga.worldwind.animator.animation.parameter.BezierParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
+import au.gov.ga.worldwind.animator.util.WorldWindowTestImpl;
+import au.gov.ga.worldwind.common.util.message.MessageSourceAccessor;
+import au.gov.ga.worldwind.common.util.message.StaticMessageSource;
+
+/**
+ * Unit tests for the {@link StaxAnimationReader} class, comparing the
+ * animations it reads with those read by the {@link XmlAnimationReader}
+ */
+public class StaxAnimationReaderTest
+{
+	private static final double ACCEPTABLE_ERROR = 0.0000001;
+
+	private StaxAnimationReader classToBeTested = new StaxAnimationReader();
+	private XmlAnimationReader domReader = new XmlAnimationReader();
+
+	@Before
+	public void setup()
+	{
+		MessageSourceAccessor.set(new StaticMessageSource());
+	}
+
+	@Test
+	public void testGetFileVersion() throws Exception
+	{
+		assertEquals(AnimationFileVersion.VERSION020, classToBeTested.getFileVersion(getFile("v2AnimationFile.xml")));
+		assertEquals(AnimationFileVersion.VERSION010, classToBeTested.getFileVersion(getFile("v1AnimationFile.xml")));
+	}
+
+	@Test
+	public void testReadAnimationV2MatchesDomReader() throws Exception
+	{
+		File file = getFile("v2AnimationFile.xml");
+
+		Animation expected = domReader.readAnimation(file, new WorldWindowTestImpl());
+		Animation actual = classToBeTested.readAnimation(file, new WorldWindowTestImpl());
+
+		assertNotNull(actual);
+		assertEquals(expected.getFrameCount(), actual.getFrameCount());
+		assertEquals(expected.getAnimatableObjects().size(), actual.getAnimatableObjects().size());
+		assertSameKeyFrames(expected, actual);
+	}
+
+	@Test
+	public void testReadAnimationV1MatchesDomReader() throws Exception
+	{
+		File file = getFile("v1AnimationFile.xml");
+
+		Animation expected = domReader.readAnimation(file, new WorldWindowTestImpl());
+		Animation actual = classToBeTested.readAnimation(file, new WorldWindowTestImpl());
+
+		assertNotNull(actual);
+		assertSameKeyFrames(expected, actual);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReadInvalidFile() throws Exception
+	{
+		File file = File.createTempFile("invalidAnimation", ".xml");
+		file.deleteOnExit();
+		FileWriter writer = new FileWriter(file);
+		writer.write("<notAnAnimation/>");
+		writer.close();
+
+		classToBeTested.readAnimation(file, new WorldWindowTestImpl());
+	}
+
+	private File getFile(String name) throws Exception
+	{
+		return new File(getClass().getResource(name).toURI());
+	}
+
+	private void assertSameKeyFrames(Animation expected, Animation actual)
+	{
+		List<KeyFrame> expectedKeyFrames = expected.getKeyFrames();
+		List<KeyFrame> actualKeyFrames = actual.getKeyFrames();
+		assertEquals(expectedKeyFrames.size(), actualKeyFrames.size());
+		for (int i = 0; i < expectedKeyFrames.size(); i++)
+		{
+			assertEquals(expectedKeyFrames.get(i).getFrame(), actualKeyFrames.get(i).getFrame());
+
+			List<ParameterValue> expectedValues =
+					new ArrayList<ParameterValue>(expectedKeyFrames.get(i).getParameterValues());
+			List<ParameterValue> actualValues = new ArrayList<ParameterValue>(actualKeyFrames.get(i).getParameterValues());
+			assertEquals(expectedValues.size(), actualValues.size());
+			for (ParameterValue expectedValue : expectedValues)
+			{
+				assertSameValue(expectedValue, findValue(actualValues, expectedValue.getOwner().getName()));
+			}
+		}
+	}
+
+	private ParameterValue findValue(List<ParameterValue> values, String ownerName)
+	{
+		for (ParameterValue value : values)
+		{
+			if (value.getOwner().getName().equals(ownerName))
+			{
+				return value;
+			}
+		}
+		return null;
+	}
+
+	private void assertSameValue(ParameterValue expected, ParameterValue actual)
+	{
+		assertNotNull(actual);
+		assertEquals(expected.getType(), actual.getType());
+		assertEquals(expected.getFrame(), actual.getFrame());
+		assertEquals(expected.getValue(), actual.getValue(), ACCEPTABLE_ERROR);
+		if (expected instanceof BezierParameterValue)
+		{
+			BezierParameterValue expectedBezier = (BezierParameterValue) expected;
+			BezierParameterValue actualBezier = (BezierParameterValue) actual;
+			assertEquals(expectedBezier.getInValue(), actualBezier.getInValue(), ACCEPTABLE_ERROR);
+			assertEquals(expectedBezier.getInPercent(), actualBezier.getInPercent(), ACCEPTABLE_ERROR);
+			assertEquals(expectedBezier.getOutValue(), actualBezier.getOutValue(), ACCEPTABLE_ERROR);
+			assertEquals(expectedBezier.getOutPercent(), actualBezier.getOutPercent(), ACCEPTABLE_ERROR);
+			assertEquals(expectedBezier.isLocked(), actualBezier.isLocked());
+		}
+	}
+}
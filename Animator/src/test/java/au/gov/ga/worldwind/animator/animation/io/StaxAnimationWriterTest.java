@@ -0,0 +1,162 @@
+package au.gov.ga.worldwind.animator.animation.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import gov.nasa.worldwind.util.WWXML;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.KeyFrame;
+import au.gov.ga.worldwind.animator.animation.KeyFrameImpl;
+import au.gov.ga.worldwind.animator.animation.WorldWindAnimationImpl;
+import au.gov.ga.worldwind.animator.animation.parameter.BasicBezierParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.BasicParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.BezierParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
+import au.gov.ga.worldwind.animator.util.WorldWindowTestImpl;
+import au.gov.ga.worldwind.common.util.message.MessageSourceAccessor;
+import au.gov.ga.worldwind.common.util.message.StaticMessageSource;
+
+/**
+ * Tests for the {@link StaxAnimationWriter} class, comparing its output with
+ * the {@link XmlAnimationWriter}'s, and round-tripping through the
+ * {@link StaxAnimationReader}
+ */
+public class StaxAnimationWriterTest
+{
+	private static final double ACCEPTABLE_ERROR = 0.0000001;
+
+	private StaxAnimationWriter classToBeTested = new StaxAnimationWriter();
+
+	private File streamedFile;
+	private File domFile;
+	private Animation animationToSave;
+
+	@Before
+	public void setup() throws Exception
+	{
+		MessageSourceAccessor.set(new StaticMessageSource());
+
+		streamedFile = File.createTempFile("streamedAnimation", ".xml");
+		domFile = File.createTempFile("domAnimation", ".xml");
+		animationToSave = createAnimation();
+	}
+
+	@After
+	public void tearDown()
+	{
+		streamedFile.delete();
+		domFile.delete();
+	}
+
+	private Animation createAnimation()
+	{
+		Animation result = new WorldWindAnimationImpl(new WorldWindowTestImpl());
+
+		ParameterValue eyeLatVal1 = new BasicBezierParameterValue(1.0, 0, result.getCamera().getEyeLat(), 1.1, 1.2, 1.3, 1.4);
+		ParameterValue eyeLatVal2 = new BasicBezierParameterValue(2.0, 10, result.getCamera().getEyeLat(), 2.1, 2.2);
+		ParameterValue eyeLonVal1 = new BasicParameterValue(11.0, 0, result.getCamera().getEyeLon());
+		ParameterValue eyeLonVal2 = new BasicBezierParameterValue(11.0, 11, result.getCamera().getEyeLon(), 12.1, 12.2, 12.3, 12.4);
+		ParameterValue eyeElevationVal1 = new BasicBezierParameterValue(21.0, 31, result.getCamera().getEyeElevation());
+
+		result.insertKeyFrame(new KeyFrameImpl(0, Arrays.asList(new ParameterValue[] { eyeLatVal1, eyeLonVal1 })), false);
+		result.insertKeyFrame(new KeyFrameImpl(10, Arrays.asList(new ParameterValue[] { eyeLatVal2 })), false);
+		result.insertKeyFrame(new KeyFrameImpl(11, Arrays.asList(new ParameterValue[] { eyeLonVal2 })), false);
+		result.insertKeyFrame(new KeyFrameImpl(31, Arrays.asList(new ParameterValue[] { eyeElevationVal1 })), false);
+
+		return result;
+	}
+
+	@Test
+	public void testOutputMatchesDomWriter() throws Exception
+	{
+		classToBeTested.writeAnimation(streamedFile, animationToSave);
+		new XmlAnimationWriter().writeAnimation(domFile, animationToSave);
+
+		Document expected = WWXML.openDocument(domFile);
+		Document actual = WWXML.openDocument(streamedFile);
+		removeWhitespace(expected);
+		removeWhitespace(actual);
+
+		assertTrue(expected.getDocumentElement().isEqualNode(actual.getDocumentElement()));
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		classToBeTested.writeAnimation(streamedFile, animationToSave);
+		Animation result = new StaxAnimationReader().readAnimation(streamedFile, new WorldWindowTestImpl());
+
+		assertEquals(animationToSave.getKeyFrameCount(), result.getKeyFrameCount());
+		for (int i = 0; i < animationToSave.getKeyFrameCount(); i++)
+		{
+			KeyFrame expected = animationToSave.getKeyFrames().get(i);
+			KeyFrame actual = result.getKeyFrames().get(i);
+			assertEquals(expected.getFrame(), actual.getFrame());
+			assertEquals(expected.getParameterValues().size(), actual.getParameterValues().size());
+		}
+
+		assertSameValue(animationToSave, result, 0, animationToSave.getCamera().getEyeLat(), result.getCamera().getEyeLat());
+		assertSameValue(animationToSave, result, 10, animationToSave.getCamera().getEyeLat(), result.getCamera().getEyeLat());
+		assertSameValue(animationToSave, result, 0, animationToSave.getCamera().getEyeLon(), result.getCamera().getEyeLon());
+		assertSameValue(animationToSave, result, 11, animationToSave.getCamera().getEyeLon(), result.getCamera().getEyeLon());
+		assertSameValue(animationToSave, result, 31, animationToSave.getCamera().getEyeElevation(), result.getCamera().getEyeElevation());
+	}
+
+	@Test
+	public void testSkeletonIsNotDeferredAfterWriting() throws Exception
+	{
+		classToBeTested.writeAnimation(streamedFile, animationToSave);
+
+		assertFalse(StreamedParameterValues.isDeferred());
+	}
+
+	private void assertSameValue(Animation expectedAnimation, Animation actualAnimation, int frame,
+			Parameter expectedParameter, Parameter actualParameter)
+	{
+		ParameterValue expected = expectedAnimation.getKeyFrame(frame).getValueForParameter(expectedParameter);
+		ParameterValue actual = actualAnimation.getKeyFrame(frame).getValueForParameter(actualParameter);
+		assertEquals(expected.getType(), actual.getType());
+		assertEquals(expected.getFrame(), actual.getFrame());
+		assertEquals(expected.getValue(), actual.getValue(), ACCEPTABLE_ERROR);
+		if (expected instanceof BezierParameterValue)
+		{
+			BezierParameterValue expectedBezier = (BezierParameterValue) expected;
+			BezierParameterValue actualBezier = (BezierParameterValue) actual;
+			assertEquals(expectedBezier.getInValue(), actualBezier.getInValue(), ACCEPTABLE_ERROR);
+			assertEquals(expectedBezier.getInPercent(), actualBezier.getInPercent(), ACCEPTABLE_ERROR);
+			assertEquals(expectedBezier.getOutValue(), actualBezier.getOutValue(), ACCEPTABLE_ERROR);
+			assertEquals(expectedBezier.getOutPercent(), actualBezier.getOutPercent(), ACCEPTABLE_ERROR);
+			assertEquals(expectedBezier.isLocked(), actualBezier.isLocked());
+		}
+	}
+
+	private static void removeWhitespace(Node node)
+	{
+		Node child = node.getFirstChild();
+		while (child != null)
+		{
+			Node next = child.getNextSibling();
+			if (child.getNodeType() == Node.TEXT_NODE && child.getNodeValue().trim().length() == 0)
+			{
+				node.removeChild(child);
+			}
+			else
+			{
+				removeWhitespace(child);
+			}
+			child = next;
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package au.gov.ga.worldwind.animator.application;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.application.DistributedRenderer.WorkerOutput;
+import au.gov.ga.worldwind.animator.application.render.AsyncFrameWriter;
+
+/**
+ * Unit tests for the {@link DistributedRenderer} class
+ */
+public class DistributedRendererTest
+{
+	private ConsoleParameters parameters;
+	private List<int[]> submitted;
+	private DistributedRenderer classToBeTested;
+
+	@Before
+	public void setup()
+	{
+		parameters = new ConsoleParameters();
+		parameters.retries = 1;
+		submitted = new ArrayList<int[]>();
+		classToBeTested = new DistributedRenderer(parameters, 0, 9)
+		{
+			@Override
+			synchronized void submit(int chunkStart, int chunkEnd)
+			{
+				submitted.add(new int[] { chunkStart, chunkEnd });
+			}
+		};
+	}
+
+	@Test
+	public void testPartitionIntoChunks()
+	{
+		List<int[]> chunks = DistributedRenderer.partition(5, 27, 10);
+
+		assertEquals(3, chunks.size());
+		assertArrayEquals(new int[] { 5, 14 }, chunks.get(0));
+		assertArrayEquals(new int[] { 15, 24 }, chunks.get(1));
+		assertArrayEquals(new int[] { 25, 27 }, chunks.get(2));
+	}
+
+	@Test
+	public void testPartitionWithInvalidChunkSize()
+	{
+		List<int[]> chunks = DistributedRenderer.partition(0, 2, 0);
+
+		assertEquals(3, chunks.size());
+		assertArrayEquals(new int[] { 2, 2 }, chunks.get(2));
+	}
+
+	@Test
+	public void testPartitionSingleFrame()
+	{
+		List<int[]> chunks = DistributedRenderer.partition(7, 7, 10);
+
+		assertEquals(1, chunks.size());
+		assertArrayEquals(new int[] { 7, 7 }, chunks.get(0));
+	}
+
+	@Test
+	public void testFindMissingRuns()
+	{
+		List<int[]> runs = DistributedRenderer.findMissingRuns(0, 9, new HashSet<Integer>(Arrays.asList(2, 3, 6)));
+
+		assertEquals(3, runs.size());
+		assertArrayEquals(new int[] { 0, 1 }, runs.get(0));
+		assertArrayEquals(new int[] { 4, 5 }, runs.get(1));
+		assertArrayEquals(new int[] { 7, 9 }, runs.get(2));
+	}
+
+	@Test
+	public void testFindMissingRunsAllRendered()
+	{
+		List<int[]> runs = DistributedRenderer.findMissingRuns(0, 2, new HashSet<Integer>(Arrays.asList(0, 1, 2)));
+
+		assertTrue(runs.isEmpty());
+	}
+
+	@Test
+	public void testParseFrameReport()
+	{
+		assertArrayEquals(new long[] { 12, 3456 },
+				DistributedRenderer.parseFrameReport(DistributedRenderer.FRAME_RENDERED_PREFIX + "12 3456"));
+		assertNull(DistributedRenderer.parseFrameReport("Loading layers"));
+		assertNull(DistributedRenderer.parseFrameReport(DistributedRenderer.FRAME_RENDERED_PREFIX + "12"));
+		assertNull(DistributedRenderer.parseFrameReport(DistributedRenderer.FRAME_RENDERED_PREFIX + "12 abc"));
+	}
+
+	@Test
+	public void testWrittenFramesWhenCompleted()
+	{
+		WorkerOutput output = new WorkerOutput();
+		for (int frame = 0; frame < 10; frame++)
+		{
+			output.frameRendered(frame, 100 + frame);
+		}
+		output.completed();
+
+		assertFalse(output.isFailed());
+		assertEquals(10, output.getWrittenFrames().size());
+		assertEquals(Long.valueOf(109), output.getWrittenFrames().get(9));
+	}
+
+	@Test
+	public void testWrittenFramesWhenNotCompleted()
+	{
+		WorkerOutput output = new WorkerOutput();
+		int frames = AsyncFrameWriter.MAX_UNWRITTEN_FRAMES + 3;
+		for (int frame = 0; frame < frames; frame++)
+		{
+			output.frameRendered(frame, 100);
+		}
+
+		SortedMap<Integer, Long> written = output.getWrittenFrames();
+		assertEquals(3, written.size());
+		assertEquals(Integer.valueOf(2), written.lastKey());
+	}
+
+	@Test
+	public void testWrittenFramesWhenFailed()
+	{
+		WorkerOutput output = new WorkerOutput();
+		output.frameRendered(0, 100);
+		output.failed();
+		output.completed();
+
+		assertTrue(output.isFailed());
+		assertTrue(output.getWrittenFrames().isEmpty());
+	}
+
+	@Test
+	public void testMissingFramesRetried()
+	{
+		classToBeTested.chunkStarted(0, 9);
+		Map<Integer, Long> written = new TreeMap<Integer, Long>();
+		written.put(0, 100L);
+		written.put(1, 200L);
+		written.put(5, 300L);
+
+		classToBeTested.chunkFinished(0, 9, written);
+
+		assertEquals(2, submitted.size());
+		assertArrayEquals(new int[] { 2, 4 }, submitted.get(0));
+		assertArrayEquals(new int[] { 6, 9 }, submitted.get(1));
+		assertEquals(written, classToBeTested.getFrameMillis());
+		assertTrue(classToBeTested.getFailedFrames().isEmpty());
+	}
+
+	@Test
+	public void testWrittenFramesOnlyCounted()
+	{
+		classToBeTested.chunkStarted(0, 9);
+		WorkerOutput output = new WorkerOutput();
+		for (int frame = 0; frame < AsyncFrameWriter.MAX_UNWRITTEN_FRAMES + 1; frame++)
+		{
+			output.frameRendered(frame, 100);
+		}
+
+		classToBeTested.chunkFinished(0, 9, output.getWrittenFrames());
+
+		assertEquals(1, classToBeTested.getFrameMillis().size());
+		assertTrue(classToBeTested.getFrameMillis().containsKey(0));
+	}
+
+	@Test
+	public void testFramesFailedAfterRetries()
+	{
+		Map<Integer, Long> written = new TreeMap<Integer, Long>();
+		written.put(0, 100L);
+
+		classToBeTested.chunkStarted(0, 4);
+		classToBeTested.chunkFinished(0, 4, written);
+		assertEquals(1, submitted.size());
+		assertArrayEquals(new int[] { 1, 4 }, submitted.get(0));
+
+		classToBeTested.chunkStarted(1, 4);
+		written.clear();
+		written.put(1, 200L);
+		classToBeTested.chunkFinished(1, 4, written);
+
+		assertEquals(1, submitted.size());
+		assertEquals(new HashSet<Integer>(Arrays.asList(2, 3, 4)), classToBeTested.getFailedFrames());
+		assertEquals(2, classToBeTested.getFrameMillis().size());
+	}
+
+	@Test
+	public void testJvmArgumentsFiltered()
+	{
+		List<String> arguments =
+				Arrays.asList("-Xmx2g", "-Xms512m", "-Djava.library.path=native", "-Dfoo=bar",
+						"-agentlib:jdwp=transport=dt_socket,server=y,address=8000", "-Xdebug",
+						"-Xrunjdwp:transport=dt_socket", "-javaagent:profiler.jar",
+						"-Dcom.sun.management.jmxremote.port=9010", "-XX:+HeapDumpOnOutOfMemoryError");
+
+		assertEquals(Arrays.asList("-Xmx2g", "-Xms512m", "-Djava.library.path=native", "-Dfoo=bar"),
+				DistributedRenderer.filterJvmArguments(arguments));
+	}
+}
@@ -0,0 +1,204 @@
+package au.gov.ga.worldwind.animator.application.render;
+
+import static org.junit.Assert.assertEquals;
+import gov.nasa.worldwind.Model;
+import gov.nasa.worldwind.geom.Position;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.camera.Camera;
+import au.gov.ga.worldwind.animator.animation.event.AnimationEvent;
+import au.gov.ga.worldwind.animator.animation.event.AnimationEventListener;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.common.retrieve.PrefetchService;
+import au.gov.ga.worldwind.common.retrieve.PrefetchView;
+
+/**
+ * Unit tests for the {@link CameraPathPrefetcher} class
+ */
+public class CameraPathPrefetcherTest
+{
+	private static final int LAST_KEY_FRAME = 200;
+
+	private Mockery mockContext;
+	private Animation animation;
+	private Model model;
+
+	/** Frames of the views queued on the service (the eye latitude is a tenth of the frame number) */
+	private List<Integer> queuedFrames;
+	private int clearCount;
+	private int animationCount;
+
+	private CameraPathPrefetcher classToBeTested;
+
+	@Before
+	public void setup()
+	{
+		mockContext = new Mockery();
+		queuedFrames = new ArrayList<Integer>();
+		clearCount = 0;
+		animationCount = 0;
+
+		animation = createAnimation();
+		model = mockContext.mock(Model.class);
+
+		PrefetchService service = new PrefetchService()
+		{
+			@Override
+			public void prefetch(Model model, PrefetchView view)
+			{
+				queuedFrames.add((int) Math.round(view.getEyePosition().getLatitude().degrees * 10));
+			}
+
+			@Override
+			public void clear()
+			{
+				queuedFrames.clear();
+				clearCount++;
+			}
+		};
+
+		classToBeTested = new CameraPathPrefetcher(model, 1000, service);
+		classToBeTested.setLookAheadFrames(20);
+		classToBeTested.setSampleInterval(5);
+	}
+
+	private Animation createAnimation()
+	{
+		animationCount++;
+		final Animation animation = mockContext.mock(Animation.class, "animation" + animationCount);
+		final Camera camera = mockContext.mock(Camera.class, "camera" + animationCount);
+		final Parameter fieldOfView = mockContext.mock(Parameter.class, "fieldOfView" + animationCount);
+		final CustomAction positionAtFrame = new CustomAction("Position at frame")
+		{
+			@Override
+			public Object invoke(Invocation invocation) throws Throwable
+			{
+				int frame = (Integer) invocation.getParameter(0);
+				return Position.fromDegrees(frame / 10d, 0, 1000);
+			}
+		};
+
+		mockContext.checking(new Expectations()
+		{
+			{
+				allowing(animation).getFrameOfLastKeyFrame();
+				will(returnValue(LAST_KEY_FRAME));
+				allowing(animation).getCamera();
+				will(returnValue(camera));
+				allowing(animation).addChangeListener(with(any(AnimationEventListener.class)));
+				allowing(animation).removeChangeListener(with(any(AnimationEventListener.class)));
+
+				allowing(camera).getFieldOfView();
+				will(returnValue(fieldOfView));
+				allowing(fieldOfView).getDoubleValueAtFrame(with(any(Integer.class)));
+				will(returnValue(45d));
+				allowing(camera).getEyePositionAtFrame(with(any(Integer.class)));
+				will(positionAtFrame);
+				allowing(camera).getLookatPositionAtFrame(with(any(Integer.class)));
+				will(positionAtFrame);
+			}
+		});
+		return animation;
+	}
+
+	@Test
+	public void testFramesAheadQueuedInOrder()
+	{
+		classToBeTested.frameChanged(animation, 0, 1);
+
+		assertQueued(5, 10, 15, 20);
+	}
+
+	@Test
+	public void testFramesOnlyQueuedOnce()
+	{
+		classToBeTested.frameChanged(animation, 0, 1);
+		classToBeTested.frameChanged(animation, 1, 1);
+		classToBeTested.frameChanged(animation, 2, 1);
+		classToBeTested.frameChanged(animation, 5, 1);
+
+		assertQueued(5, 10, 15, 20, 25);
+	}
+
+	@Test
+	public void testFrameStepLargerThanSampleInterval()
+	{
+		classToBeTested.frameChanged(animation, 0, 8);
+
+		assertQueued(8, 16);
+	}
+
+	@Test
+	public void testLookAheadLimitedToLastKeyFrame()
+	{
+		classToBeTested.frameChanged(animation, LAST_KEY_FRAME - 7, 1);
+
+		assertQueued(LAST_KEY_FRAME - 2);
+	}
+
+	@Test
+	public void testAnimationChangeCancelsQueuedFrames()
+	{
+		classToBeTested.frameChanged(animation, 0, 1);
+		classToBeTested.frameChanged(animation, 1, 1);
+		int clears = clearCount;
+
+		classToBeTested.receiveAnimationEvent(mockContext.mock(AnimationEvent.class));
+		classToBeTested.frameChanged(animation, 2, 1);
+
+		assertEquals(clears + 1, clearCount);
+		assertQueued(7, 12, 17, 22);
+	}
+
+	@Test
+	public void testSeekingBackwardsCancelsQueuedFrames()
+	{
+		classToBeTested.frameChanged(animation, 50, 1);
+		int clears = clearCount;
+
+		classToBeTested.frameChanged(animation, 10, 1);
+
+		assertEquals(clears + 1, clearCount);
+		assertQueued(15, 20, 25, 30);
+	}
+
+	@Test
+	public void testDifferentAnimationCancelsQueuedFrames()
+	{
+		classToBeTested.frameChanged(animation, 0, 1);
+		int clears = clearCount;
+
+		classToBeTested.frameChanged(createAnimation(), 3, 1);
+
+		assertEquals(clears + 1, clearCount);
+		assertQueued(8, 13, 18, 23);
+	}
+
+	@Test
+	public void testStopClearsQueuedFrames()
+	{
+		classToBeTested.frameChanged(animation, 0, 1);
+		classToBeTested.stop();
+
+		assertQueued();
+
+		classToBeTested.frameChanged(animation, 0, 1);
+		assertQueued(5, 10, 15, 20);
+	}
+
+	private void assertQueued(Integer... frames)
+	{
+		assertEquals(Arrays.asList(frames), queuedFrames);
+	}
+}
@@ -0,0 +1,323 @@
+package au.gov.ga.worldwind.animator.layers.camerapath;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
+
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.KeyFrame;
+
+/**
+ * Unit tests for the {@link AbstractCameraPositionPath} class, checking that
+ * incrementally recalculating the changed frames of the path gives the same
+ * result as recalculating the whole path
+ */
+public class AbstractCameraPositionPathTest
+{
+	private static final int FRAME_COUNT = 100;
+	private static final double DELTA = 1e-9;
+
+	private Mockery mockContext;
+	private Animation animation;
+
+	/** Key frame positions (lat, lon, elevation), interpolated linearly between key frames */
+	private TreeMap<Integer, double[]> keyFrames;
+
+	private TestPath classToBeTested;
+
+	@Before
+	public void setup()
+	{
+		mockContext = new Mockery();
+		keyFrames = new TreeMap<Integer, double[]>();
+		keyFrames.put(10, new double[] { -30, 120, 1000 });
+		keyFrames.put(30, new double[] { -31, 121, 5000 });
+		keyFrames.put(50, new double[] { -35, 125, 2000 });
+		keyFrames.put(80, new double[] { -36, 130, 8000 });
+
+		initialiseAnimation();
+
+		classToBeTested = new TestPath(animation);
+		classToBeTested.resetPath();
+		classToBeTested.recalulatePath();
+	}
+
+	private void initialiseAnimation()
+	{
+		animation = mockContext.mock(Animation.class);
+		final View view = mockContext.mock(View.class);
+		final Globe globe = mockContext.mock(Globe.class);
+
+		mockContext.checking(new Expectations()
+		{
+			{
+				allowing(animation).getFrameCount();
+				will(returnValue(FRAME_COUNT));
+
+				allowing(animation).getFrameOfFirstKeyFrame();
+				will(new CustomAction("First key frame")
+				{
+					@Override
+					public Object invoke(Invocation invocation) throws Throwable
+					{
+						return keyFrames.firstKey();
+					}
+				});
+
+				allowing(animation).getFrameOfLastKeyFrame();
+				will(new CustomAction("Last key frame")
+				{
+					@Override
+					public Object invoke(Invocation invocation) throws Throwable
+					{
+						return keyFrames.lastKey();
+					}
+				});
+
+				allowing(animation).getView();
+				will(returnValue(view));
+
+				allowing(view).getGlobe();
+				will(returnValue(globe));
+
+				allowing(globe).computePointFromPosition(with(any(Position.class)));
+				will(new CustomAction("Compute point")
+				{
+					@Override
+					public Object invoke(Invocation invocation) throws Throwable
+					{
+						Position position = (Position) invocation.getParameter(0);
+						return new Vec4(position.getLongitude().degrees, position.getLatitude().degrees,
+								position.getElevation() / 1000d);
+					}
+				});
+			}
+		});
+	}
+
+	@Test
+	public void testInitialPathCoversKeyFrames()
+	{
+		assertEquals((80 - 10 + 1) * 3, classToBeTested.getPathPoints().length);
+		assertEquals((80 - 10 + 1) * 3, classToBeTested.getPathColours().length);
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testInsertKeyFrame()
+	{
+		insertKeyFrame(40, new double[] { -40, 110, 9000 });
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testInsertFirstKeyFrame()
+	{
+		insertKeyFrame(2, new double[] { -20, 100, 500 });
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testInsertLastKeyFrame()
+	{
+		insertKeyFrame(95, new double[] { -37, 131, 100 });
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testRemoveKeyFrame()
+	{
+		removeKeyFrame(30);
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testRemoveFirstKeyFrame()
+	{
+		removeKeyFrame(10);
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testRemoveLastKeyFrame()
+	{
+		removeKeyFrame(80);
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testMoveKeyFrame()
+	{
+		moveKeyFrame(30, 45);
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testMoveFirstKeyFrameEarlier()
+	{
+		moveKeyFrame(10, 0);
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testMoveFirstKeyFrameLater()
+	{
+		moveKeyFrame(10, 25);
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testMoveLastKeyFrameEarlier()
+	{
+		moveKeyFrame(80, 60);
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testMoveLastKeyFrameLater()
+	{
+		moveKeyFrame(80, FRAME_COUNT - 1);
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testChangeKeyFrameValue()
+	{
+		keyFrames.put(50, new double[] { -50, 140, 20000 });
+		classToBeTested.recalculatePath(30, 80);
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testFramesBeforeOldFirstKeyFrameCalculated()
+	{
+		keyFrames.put(2, new double[] { -20, 100, 500 });
+		classToBeTested.recalculatePath(10, 10);
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testFramesAfterOldLastKeyFrameCalculated()
+	{
+		keyFrames.put(95, new double[] { -37, 131, 100 });
+		classToBeTested.recalculatePath(80, 80);
+		assertMatchesFullRecalculation();
+	}
+
+	@Test
+	public void testSuccessiveChanges()
+	{
+		insertKeyFrame(5, new double[] { -29, 119, 0 });
+		moveKeyFrame(50, 55);
+		removeKeyFrame(30);
+		moveKeyFrame(80, 90);
+		removeKeyFrame(5);
+		assertMatchesFullRecalculation();
+	}
+
+	/**
+	 * Insert a key frame and recalculate the frames the camera path layer
+	 * would: those between the neighbouring key frames
+	 */
+	private void insertKeyFrame(int frame, double[] position)
+	{
+		keyFrames.put(frame, position);
+		int[] range = rangeAroundFrame(frame);
+		classToBeTested.recalculatePath(range[0], range[1]);
+	}
+
+	private void removeKeyFrame(int frame)
+	{
+		int[] range = rangeAroundFrame(frame);
+		keyFrames.remove(frame);
+		classToBeTested.recalculatePath(range[0], range[1]);
+	}
+
+	private void moveKeyFrame(int fromFrame, int toFrame)
+	{
+		int[] fromRange = rangeAroundFrame(fromFrame);
+		keyFrames.put(toFrame, keyFrames.remove(fromFrame));
+		int[] toRange = rangeAroundFrame(toFrame);
+		classToBeTested.recalculatePath(Math.min(fromRange[0], toRange[0]), Math.max(fromRange[1], toRange[1]));
+	}
+
+	private int[] rangeAroundFrame(int frame)
+	{
+		Integer previous = keyFrames.lowerKey(frame);
+		Integer next = keyFrames.higherKey(frame);
+		return new int[] { previous == null ? 0 : previous, next == null ? Integer.MAX_VALUE : next };
+	}
+
+	private void assertMatchesFullRecalculation()
+	{
+		TestPath full = new TestPath(animation);
+		full.resetPath();
+		full.recalulatePath();
+
+		assertEquals(full.getPathPoints().length, classToBeTested.getPathPoints().length);
+		assertArrayEquals(full.getPathPoints(), classToBeTested.getPathPoints(), DELTA);
+		assertArrayEquals(full.getPathColours(), classToBeTested.getPathColours(), DELTA);
+	}
+
+	/**
+	 * Path through the test's key frame positions
+	 */
+	private class TestPath extends AbstractCameraPositionPath
+	{
+		public TestPath(Animation animation)
+		{
+			super(animation);
+		}
+
+		@Override
+		protected Position[] getPathPositions(int startFrame, int endFrame)
+		{
+			Position[] positions = new Position[endFrame - startFrame + 1];
+			for (int frame = startFrame; frame <= endFrame; frame++)
+			{
+				positions[frame - startFrame] = positionAt(frame);
+			}
+			return positions;
+		}
+
+		private Position positionAt(int frame)
+		{
+			Entry<Integer, double[]> previous = keyFrames.floorEntry(frame);
+			Entry<Integer, double[]> next = keyFrames.ceilingEntry(frame);
+			if (previous == null)
+			{
+				previous = next;
+			}
+			if (next == null)
+			{
+				next = previous;
+			}
+			double percent =
+					next.getKey().equals(previous.getKey()) ? 0 : (frame - previous.getKey())
+							/ (double) (next.getKey() - previous.getKey());
+			double[] p = previous.getValue();
+			double[] n = next.getValue();
+			return Position.fromDegrees(p[0] + (n[0] - p[0]) * percent, p[1] + (n[1] - p[1]) * percent, p[2]
+					+ (n[2] - p[2]) * percent);
+		}
+
+		@Override
+		protected boolean isPathFrame(KeyFrame keyFrame)
+		{
+			return true;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package au.gov.ga.worldwind.animator.layers.immediate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.retrieve.RetrievalFuture;
+import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
+import gov.nasa.worldwind.retrieve.Retriever;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.layers.file.FileRetriever;
+
+/**
+ * Unit tests for the {@link ImmediateRetrievalService} class
+ */
+public class ImmediateRetrievalServiceTest
+{
+	private ImmediateRetrievalService classToBeTested;
+	private ExecutorService callers;
+	private List<File> files = new ArrayList<File>();
+
+	@Before
+	public void setup()
+	{
+		ImmediateMode.setImmediate(true);
+		classToBeTested = new ImmediateRetrievalService();
+		callers = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown()
+	{
+		callers.shutdownNow();
+		ImmediateMode.setImmediate(false);
+		for (File file : files)
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testDifferentRetrieversRunConcurrently() throws Exception
+	{
+		//both retrievals must be running at the same time to pass the barrier
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+		final AtomicInteger passed = new AtomicInteger();
+		RetrievalPostProcessor postProcessor = new RetrievalPostProcessor()
+		{
+			@Override
+			public ByteBuffer run(Retriever retriever)
+			{
+				try
+				{
+					barrier.await(5, TimeUnit.SECONDS);
+					passed.incrementAndGet();
+				}
+				catch (Exception e)
+				{
+				}
+				return null;
+			}
+		};
+
+		List<Future<RetrievalFuture>> futures = new ArrayList<Future<RetrievalFuture>>();
+		futures.add(callers.submit(new RunRetriever(new FileRetriever(createFile(), postProcessor))));
+		futures.add(callers.submit(new RunRetriever(new FileRetriever(createFile(), postProcessor))));
+		for (Future<RetrievalFuture> future : futures)
+		{
+			assertTrue(future.get(10, TimeUnit.SECONDS).isDone());
+		}
+		assertEquals(2, passed.get());
+	}
+
+	@Test
+	public void testSameResourceRetrievedOnceWhileRunning() throws Exception
+	{
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger runs = new AtomicInteger();
+		RetrievalPostProcessor postProcessor = new RetrievalPostProcessor()
+		{
+			@Override
+			public ByteBuffer run(Retriever retriever)
+			{
+				runs.incrementAndGet();
+				started.countDown();
+				try
+				{
+					release.await(5, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e)
+				{
+				}
+				return null;
+			}
+		};
+
+		URL url = createFile();
+		Future<RetrievalFuture> first = callers.submit(new RunRetriever(new FileRetriever(url, postProcessor)));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		List<Future<RetrievalFuture>> duplicates = new ArrayList<Future<RetrievalFuture>>();
+		for (int i = 0; i < 3; i++)
+		{
+			duplicates.add(callers.submit(new RunRetriever(new FileRetriever(url, postProcessor))));
+		}
+
+		//the duplicates wait for the running retrieval to complete
+		Thread.sleep(100);
+		for (Future<RetrievalFuture> future : duplicates)
+		{
+			assertFalse(future.isDone());
+		}
+
+		release.countDown();
+		RetrievalFuture retrieval = first.get(5, TimeUnit.SECONDS);
+		for (Future<RetrievalFuture> future : duplicates)
+		{
+			assertEquals(retrieval, future.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, runs.get());
+	}
+
+	private URL createFile() throws Exception
+	{
+		File file = File.createTempFile("immediateretrieval", ".txt");
+		files.add(file);
+		FileOutputStream fos = new FileOutputStream(file);
+		try
+		{
+			fos.write(new byte[] { 1, 2, 3, 4 });
+		}
+		finally
+		{
+			fos.close();
+		}
+		return file.toURI().toURL();
+	}
+
+	private class RunRetriever implements Callable<RetrievalFuture>
+	{
+		private final Retriever retriever;
+
+		public RunRetriever(Retriever retriever)
+		{
+			this.retriever = retriever;
+		}
+
+		@Override
+		public RetrievalFuture call() throws Exception
+		{
+			return classToBeTested.runRetriever(retriever);
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package au.gov.ga.worldwind.animator.layers.immediate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ImmediateTaskService} class
+ */
+public class ImmediateTaskServiceTest
+{
+	private ImmediateTaskService classToBeTested;
+	private ExecutorService callers;
+
+	@Before
+	public void setup()
+	{
+		ImmediateMode.setImmediate(true);
+		classToBeTested = new ImmediateTaskService();
+		callers = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown()
+	{
+		callers.shutdownNow();
+		ImmediateMode.setImmediate(false);
+	}
+
+	@Test
+	public void testTaskRunOnCallingThread()
+	{
+		final Thread[] thread = new Thread[1];
+		classToBeTested.addTask(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				thread[0] = Thread.currentThread();
+			}
+		});
+		assertEquals(Thread.currentThread(), thread[0]);
+	}
+
+	@Test
+	public void testDifferentTasksRunConcurrently() throws Exception
+	{
+		//both tasks must be running at the same time to pass the barrier
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+		final AtomicInteger passed = new AtomicInteger();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < 2; i++)
+		{
+			final KeyedTask task = new KeyedTask("tile" + i)
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						barrier.await(5, TimeUnit.SECONDS);
+						passed.incrementAndGet();
+					}
+					catch (Exception e)
+					{
+					}
+				}
+			};
+			futures.add(callers.submit(new AddTask(task)));
+		}
+		for (Future<?> future : futures)
+		{
+			future.get(10, TimeUnit.SECONDS);
+		}
+		assertEquals(2, passed.get());
+	}
+
+	@Test
+	public void testEqualTaskRunOnceWhileRunning() throws Exception
+	{
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger runs = new AtomicInteger();
+		KeyedTask first = new KeyedTask("tile")
+		{
+			@Override
+			public void run()
+			{
+				runs.incrementAndGet();
+				started.countDown();
+				try
+				{
+					release.await(5, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e)
+				{
+				}
+			}
+		};
+		KeyedTask duplicate = new KeyedTask("tile")
+		{
+			@Override
+			public void run()
+			{
+				runs.incrementAndGet();
+			}
+		};
+
+		Future<?> firstFuture = callers.submit(new AddTask(first));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		List<Future<?>> duplicateFutures = new ArrayList<Future<?>>();
+		for (int i = 0; i < 3; i++)
+		{
+			duplicateFutures.add(callers.submit(new AddTask(duplicate)));
+		}
+
+		//the duplicates wait for the running task to complete
+		Thread.sleep(100);
+		for (Future<?> future : duplicateFutures)
+		{
+			assertFalse(future.isDone());
+		}
+
+		release.countDown();
+		firstFuture.get(5, TimeUnit.SECONDS);
+		for (Future<?> future : duplicateFutures)
+		{
+			future.get(5, TimeUnit.SECONDS);
+		}
+		assertEquals(1, runs.get());
+
+		//once complete, an equal task is run again
+		classToBeTested.addTask(duplicate);
+		assertEquals(2, runs.get());
+	}
+
+	private class AddTask implements Runnable
+	{
+		private final Runnable task;
+
+		public AddTask(Runnable task)
+		{
+			this.task = task;
+		}
+
+		@Override
+		public void run()
+		{
+			classToBeTested.addTask(task);
+		}
+	}
+
+	/**
+	 * Task that is equal to other tasks with the same key, like the layers'
+	 * tile request tasks.
+	 */
+	private static abstract class KeyedTask implements Runnable
+	{
+		private final String key;
+
+		public KeyedTask(String key)
+		{
+			this.key = key;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			return obj instanceof KeyedTask && ((KeyedTask) obj).key.equals(key);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return key.hashCode();
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package au.gov.ga.worldwind.animator.ui.frameslider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link FrameSliderKeyIndex} class
+ */
+public class FrameSliderKeyIndexTest
+{
+	/** Maps 10 frames to each pixel */
+	private static final FrameSliderKeyIndex.FramePositions POSITIONS = new FrameSliderKeyIndex.FramePositions()
+	{
+		@Override
+		public int getPosition(int frame)
+		{
+			return frame / 10;
+		}
+	};
+
+	private FrameSliderKeyIndex classToBeTested;
+
+	@Before
+	public void setup()
+	{
+		classToBeTested = new FrameSliderKeyIndex();
+	}
+
+	@Test
+	public void testKeysAreSortedAndUnique()
+	{
+		assertTrue(classToBeTested.add(30));
+		assertTrue(classToBeTested.add(10));
+		assertTrue(classToBeTested.add(20));
+		assertFalse(classToBeTested.add(20));
+
+		assertEquals(3, classToBeTested.size());
+		assertEquals(10, classToBeTested.get(0));
+		assertEquals(20, classToBeTested.get(1));
+		assertEquals(30, classToBeTested.get(2));
+		assertEquals(1, classToBeTested.indexOf(20));
+		assertEquals(-1, classToBeTested.indexOf(25));
+
+		assertTrue(classToBeTested.remove(20));
+		assertFalse(classToBeTested.remove(20));
+		assertEquals(2, classToBeTested.size());
+		assertEquals(30, classToBeTested.get(1));
+	}
+
+	@Test
+	public void testManyKeysAddedInOrder()
+	{
+		for (int frame = 0; frame < 10000; frame++)
+		{
+			classToBeTested.add(frame);
+		}
+		assertEquals(10000, classToBeTested.size());
+		assertEquals(5000, classToBeTested.indexOf(5000));
+	}
+
+	@Test
+	public void testSetAll()
+	{
+		classToBeTested.add(100);
+		classToBeTested.setAll(Arrays.asList(5, 3, 5, 1));
+
+		assertEquals(3, classToBeTested.size());
+		assertEquals(1, classToBeTested.get(0));
+		assertEquals(3, classToBeTested.get(1));
+		assertEquals(5, classToBeTested.get(2));
+		assertFalse(classToBeTested.contains(100));
+	}
+
+	@Test
+	public void testContainsBetween()
+	{
+		classToBeTested.setAll(Arrays.asList(10, 20));
+
+		assertTrue(classToBeTested.containsBetween(10, 10));
+		assertTrue(classToBeTested.containsBetween(11, 20));
+		assertTrue(classToBeTested.containsBetween(0, 100));
+		assertFalse(classToBeTested.containsBetween(11, 19));
+		assertFalse(classToBeTested.containsBetween(21, 100));
+	}
+
+	@Test
+	public void testMarkersSummariseKeysInEachPixel()
+	{
+		for (int frame = 0; frame < 1000; frame++)
+		{
+			classToBeTested.add(frame);
+		}
+		classToBeTested.add(5000);
+
+		int markerCount = classToBeTested.updateMarkers(POSITIONS);
+
+		assertEquals(101, markerCount);
+		for (int i = 0; i < 100; i++)
+		{
+			assertEquals(i, classToBeTested.getMarkerPosition(i));
+			assertEquals(i * 10, classToBeTested.getMarkerFirstIndex(i));
+			assertEquals(i * 10 + 9, classToBeTested.getMarkerLastIndex(i));
+		}
+		assertEquals(500, classToBeTested.getMarkerPosition(100));
+		assertEquals(1000, classToBeTested.getMarkerFirstIndex(100));
+
+		classToBeTested.remove(5000);
+		assertEquals(100, classToBeTested.updateMarkers(POSITIONS));
+	}
+
+	@Test
+	public void testFindFirstBetweenPositions()
+	{
+		classToBeTested.setAll(Arrays.asList(15, 47, 48, 300));
+
+		assertEquals(0, classToBeTested.findFirstBetweenPositions(POSITIONS, 0, 1));
+		assertEquals(1, classToBeTested.findFirstBetweenPositions(POSITIONS, 2, 4));
+		assertEquals(3, classToBeTested.findFirstBetweenPositions(POSITIONS, 5, 30));
+		assertEquals(-1, classToBeTested.findFirstBetweenPositions(POSITIONS, 5, 29));
+		assertEquals(-1, classToBeTested.findFirstBetweenPositions(POSITIONS, 31, 100));
+	}
+}
@@ -0,0 +1,122 @@
+package au.gov.ga.worldwind.animator.ui.parametereditor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ParameterCurveEnvelope} class
+ */
+public class ParameterCurveEnvelopeTest
+{
+	private static final int FIRST_FRAME = 5;
+
+	@Test
+	public void testEnvelopeMatchesValues()
+	{
+		Random random = new Random(1);
+		for (int count = 1; count < 100; count++)
+		{
+			double[] values = randomValues(random, count);
+			ParameterCurveEnvelope classToBeTested = new ParameterCurveEnvelope(FIRST_FRAME, values.clone());
+			assertEnvelopeMatches(random, classToBeTested, values);
+		}
+	}
+
+	@Test
+	public void testSetValuesUpdatesEnvelope()
+	{
+		Random random = new Random(2);
+		double[] values = randomValues(random, 77);
+		ParameterCurveEnvelope classToBeTested = new ParameterCurveEnvelope(FIRST_FRAME, values.clone());
+
+		for (int i = 0; i < 20; i++)
+		{
+			int start = random.nextInt(values.length + 10) - 5;
+			double[] window = randomValues(random, 1 + random.nextInt(20));
+			classToBeTested.setValues(FIRST_FRAME + start, window);
+			for (int j = 0; j < window.length; j++)
+			{
+				if (start + j >= 0 && start + j < values.length)
+				{
+					values[start + j] = window[j];
+				}
+			}
+			assertEnvelopeMatches(random, classToBeTested, values);
+		}
+	}
+
+	@Test
+	public void testCopyIsIndependent()
+	{
+		ParameterCurveEnvelope original = new ParameterCurveEnvelope(0, new double[] { 1, 2, 3 });
+		ParameterCurveEnvelope copy = original.copy();
+		copy.setValues(1, new double[] { 10 });
+
+		assertEquals(2, original.getValue(1), 0);
+		assertEquals(3, original.getMaxValue(), 0);
+		assertEquals(10, copy.getValue(1), 0);
+		assertEquals(10, copy.getMaxValue(), 0);
+	}
+
+	@Test
+	public void testFramesOutsideEnvelopeUseNearestValue()
+	{
+		ParameterCurveEnvelope classToBeTested = new ParameterCurveEnvelope(10, new double[] { 1, 2, 3 });
+		double[] minMax = new double[2];
+
+		assertEquals(1, classToBeTested.getValue(0), 0);
+		assertEquals(3, classToBeTested.getValue(100), 0);
+
+		classToBeTested.getEnvelope(0, 5, minMax);
+		assertEquals(1, minMax[0], 0);
+		assertEquals(1, minMax[1], 0);
+
+		classToBeTested.getEnvelope(11, 100, minMax);
+		assertEquals(2, minMax[0], 0);
+		assertEquals(3, minMax[1], 0);
+	}
+
+	private static double[] randomValues(Random random, int count)
+	{
+		double[] values = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			values[i] = random.nextGaussian();
+		}
+		return values;
+	}
+
+	private static void assertEnvelopeMatches(Random random, ParameterCurveEnvelope envelope, double[] values)
+	{
+		double[] minMax = new double[2];
+		for (int i = 0; i < 50; i++)
+		{
+			int start = random.nextInt(values.length);
+			int end = start + random.nextInt(values.length - start);
+			envelope.getEnvelope(FIRST_FRAME + start, FIRST_FRAME + end, minMax);
+
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int frame = start; frame <= end; frame++)
+			{
+				min = Math.min(min, values[frame]);
+				max = Math.max(max, values[frame]);
+			}
+			assertEquals(min, minMax[0], 0);
+			assertEquals(max, minMax[1], 0);
+		}
+
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (double value : values)
+		{
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		assertEquals(min, envelope.getMinValue(), 0);
+		assertEquals(max, envelope.getMaxValue(), 0);
+	}
+}
@@ -24,6 +24,8 @@ import gov.nasa.worldwind.util.TileKey;
 import javax.media.opengl.GL2;
 import javax.media.opengl.GLContext;
 
+import au.gov.ga.worldwind.common.render.TextureUploadScheduler;
+
 import com.jogamp.opengl.util.texture.Texture;
 import com.jogamp.opengl.util.texture.TextureData;
 import com.jogamp.opengl.util.texture.TextureIO;
@@ -287,6 +289,19 @@ public class CurtainTextureTile extends CurtainTile
 			throw new IllegalStateException(msg);
 		}
 
+		TextureUploadScheduler scheduler = TextureUploadScheduler.getInstance();
+		GLContext context = dc.getGLContext();
+		long bytes = this.getTextureData().getEstimatedMemorySize();
+		if (!scheduler.requestUpload(context, dc.getFrameTimeStamp(), this.getTileKey(), bytes, 0))
+		{
+			if (t != null)
+			{
+				t.bind(dc.getGL());
+			}
+			return t;
+		}
+
+		long start = System.nanoTime();
 		try
 		{
 			t = TextureIO.newTexture(this.getTextureData());
@@ -299,6 +314,7 @@ public class CurtainTextureTile extends CurtainTile
 		}
 
 		this.setTexture(dc.getTextureCache(), t);
+		scheduler.uploaded(context, dc.getFrameTimeStamp(), this.getTileKey(), bytes, System.nanoTime() - start);
 		t.bind(dc.getGL());
 
 		this.setTextureParameters(dc, t);
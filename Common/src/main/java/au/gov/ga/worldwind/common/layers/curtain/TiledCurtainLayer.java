@@ -47,9 +47,14 @@ import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.layers.Bounded;
 import au.gov.ga.worldwind.common.layers.Bounds;
+import au.gov.ga.worldwind.common.render.GpuResourceCacheEvictor;
+import au.gov.ga.worldwind.common.render.TextureMemoryManager;
+import au.gov.ga.worldwind.common.render.TextureUploadScheduler;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 
 import com.jogamp.opengl.util.awt.TextRenderer;
+import com.jogamp.opengl.util.texture.Texture;
+import com.jogamp.opengl.util.texture.TextureData;
 
 /**
  * {@link Layer} which renders a textured surface along a horizontal line (ie a
@@ -548,6 +553,7 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 
 		if (tile.isTextureInMemory(dc.getTextureCache()))
 		{
+			this.requestTextureUpload(dc, tile);
 			this.addTileToCurrent(tile);
 			return;
 		}
@@ -558,6 +564,7 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 			this.forceTextureLoad(tile);
 			if (tile.isTextureInMemory(dc.getTextureCache()))
 			{
+				this.requestTextureUpload(dc, tile);
 				this.addTileToCurrent(tile);
 				return;
 			}
@@ -591,11 +598,62 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 		}
 	}
 
+	/**
+	 * If the tile has new texture data waiting to be uploaded, request the
+	 * upload from the {@link TextureUploadScheduler}, prioritised by the size
+	 * of the tile's texels relative to the eye distance. Until the upload is
+	 * granted, the tile is drawn using the current resource tile's texture.
+	 */
+	protected void requestTextureUpload(DrawContext dc, CurtainTextureTile tile)
+	{
+		TextureData textureData = tile.getTextureData();
+		if (textureData == null)
+		{
+			return;
+		}
+
+		Vec4 centerPoint = path.getSegmentCenterPoint(dc, tile.getSegment(), curtainTop, curtainBottom, followTerrain);
+		double distance = Math.max(1, dc.getView().getEyePoint().distanceTo3(centerPoint));
+		double priority = centerPoint.getLength3() * tile.getLevel().getTexelSize() / distance;
+		boolean granted =
+				TextureUploadScheduler.getInstance().requestUpload(dc.getGLContext(), dc.getFrameTimeStamp(),
+						tile.getTileKey(), textureData.getEstimatedMemorySize(), priority);
+		if (!granted && this.currentResourceTile != null)
+		{
+			tile.setFallbackTile(this.currentResourceTile);
+		}
+	}
+
 	protected void addTileToCurrent(CurtainTextureTile tile)
 	{
 		this.currentTiles.add(tile);
 	}
 
+	/**
+	 * Touch the tile's texture (and its fallback tile's texture) in the
+	 * {@link TextureMemoryManager}.
+	 */
+	protected void touchTextures(DrawContext dc, CurtainTextureTile tile)
+	{
+		touchTexture(dc, tile);
+		if (tile.getFallbackTile() != null)
+		{
+			touchTexture(dc, tile.getFallbackTile());
+		}
+	}
+
+	protected void touchTexture(DrawContext dc, CurtainTextureTile tile)
+	{
+		Texture texture = tile.getTexture(dc.getTextureCache());
+		if (texture == null)
+		{
+			TextureMemoryManager.getInstance().remove(tile.getTileKey());
+			return;
+		}
+		TextureMemoryManager.getInstance().touch(this, tile.getTileKey(), texture.getEstimatedMemorySize(),
+				tile.getLevelNumber(), dc.getFrameTimeStamp(), GpuResourceCacheEvictor.get(dc.getTextureCache()));
+	}
+
 	protected boolean isTileVisible(DrawContext dc, CurtainTextureTile tile)
 	{
 		Segment segment = tile.getSegment();
@@ -716,6 +774,11 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 			renderer.renderTiles(dc, this.currentTiles, getPath(), getCurtainTop(), getCurtainBottom(),
 					getSubsegments(), isFollowTerrain());
 
+			for (CurtainTextureTile tile : this.currentTiles)
+			{
+				this.touchTextures(dc, tile);
+			}
+
 			gl.glPopAttrib();
 
 			if (this.drawTileIDs)
@@ -28,7 +28,6 @@ import gov.nasa.worldwind.layers.TextureTile;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
 import gov.nasa.worldwind.retrieve.Retriever;
-import gov.nasa.worldwind.util.ImageUtil;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.WWIO;
 
@@ -49,6 +48,7 @@ import au.gov.ga.worldwind.common.layers.delegate.IDelegatorLayer;
 import au.gov.ga.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.worldwind.common.layers.delegate.ITileRequesterDelegate;
 import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer.SharedLock;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 import au.gov.ga.worldwind.common.util.DDSUncompressor;
 
@@ -69,7 +69,7 @@ import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
 public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implements
 		IDelegatorLayer<DelegatorCurtainTextureTile>
 {
-	protected final Object fileLock;
+	protected final SharedLock fileLock;
 	protected final URL context;
 	protected final CurtainDelegateKit delegateKit;
 	protected boolean prerendered;
@@ -228,7 +228,7 @@ public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implement
 
 		TextureData textureData;
 
-		synchronized (fileLock)
+		synchronized (fileLock.getTileLock(textureURL))
 		{
 			textureData = readTexture(tile, textureURL);
 		}
@@ -311,7 +311,7 @@ public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implement
 			if (url.toString().toLowerCase().endsWith(".dds"))
 			{
 				ByteBuffer buffer = WWIO.readURLContentToBuffer(url, false);
-				image = DDSUncompressor.readDxt3(buffer);
+				image = DDSUncompressor.readDds(buffer);
 			}
 			else
 			{
@@ -326,12 +326,8 @@ public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implement
 		}
 
 		//perform any transformations on the image
-		image = delegateKit.transformImage(image, tile);
-
-		//manually do the TRANSPARENCY_COLORS transform, for compatibility with AbstractRetrievalPostProcessor
 		int[] colors = (int[]) this.getValue(AVKey.TRANSPARENCY_COLORS);
-		if (colors != null)
-			image = ImageUtil.mapTransparencyColors(image, colors);
+		image = delegateKit.transformImage(image, tile, colors);
 
 		return image;
 	}
@@ -355,7 +351,7 @@ public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implement
 		@Override
 		protected Object getFileLock()
 		{
-			return layer.fileLock;
+			return layer.fileLock.getTileLock(tile.getPath());
 		}
 	}
 
@@ -36,6 +36,8 @@ import javax.xml.xpath.XPath;
 
 import org.w3c.dom.Element;
 
+import au.gov.ga.worldwind.common.layers.delegate.transformer.PixelTransformerChain;
+
 /**
  * Abstract generic implementation of the {@link IDelegateKit} interface. Stores
  * the delegate objects for each of the delegate types, and forward the delegate
@@ -213,10 +215,35 @@ public abstract class AbstractDelegateKit<TILE extends IDelegatorTile, BOUNDS, L
 	@Override
 	public BufferedImage transformImage(BufferedImage image, IDelegatorTile tile)
 	{
+		return transformImage(image, tile, null);
+	}
+
+	@Override
+	public BufferedImage transformImage(BufferedImage image, IDelegatorTile tile, int[] transparencyColors)
+	{
+		//fuse runs of consecutive pixel transformers into a single pass; the TRANSPARENCY_COLORS transform is
+		//done manually (for compatibility with AbstractRetrievalPostProcessor), fused with the last run
+		List<IPixelTransformerDelegate> run = new ArrayList<IPixelTransformerDelegate>();
 		for (IImageTransformerDelegate transformer : transformerDelegates)
 		{
+			if (transformer instanceof IPixelTransformerDelegate)
+			{
+				run.add((IPixelTransformerDelegate) transformer);
+				continue;
+			}
+			if (!run.isEmpty())
+			{
+				image = new PixelTransformerChain(run, null).transform(image);
+				run.clear();
+			}
 			image = transformer.transformImage(image, tile);
 		}
+
+		PixelTransformerChain chain = new PixelTransformerChain(run, transparencyColors);
+		if (!chain.isEmpty())
+		{
+			image = chain.transform(image);
+		}
 		return image;
 	}
 
@@ -18,6 +18,7 @@ package au.gov.ga.worldwind.common.layers.delegate;
 import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.layers.Layer;
 
+import java.awt.image.BufferedImage;
 import java.util.Collection;
 
 import org.w3c.dom.Element;
@@ -51,6 +52,22 @@ public interface IDelegateKit<TILE extends IDelegatorTile, BOUNDS, LEVEL> extend
 	 */
 	IDelegateKit<TILE, BOUNDS, LEVEL> createFromXML(Element domElement, AVList params);
 
+	/**
+	 * Transform an image using this kit's {@link IImageTransformerDelegate}s,
+	 * and then replace the given transparency colors with transparency.
+	 * Consecutive {@link IPixelTransformerDelegate}s (and the transparency
+	 * colors) are applied in a single pass over the image.
+	 * 
+	 * @param image
+	 *            Image to transform
+	 * @param tile
+	 *            Tile associated with this image
+	 * @param transparencyColors
+	 *            RGB colors to make transparent (may be null)
+	 * @return Transformed image
+	 */
+	BufferedImage transformImage(BufferedImage image, IDelegatorTile tile, int[] transparencyColors);
+
 	/**
 	 * Save the provided {@link IDelegateKit} to XML.
 	 * 
@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.delegate;
+
+import au.gov.ga.worldwind.common.layers.delegate.transformer.PixelTransformerChain;
+
+/**
+ * {@link IImageTransformerDelegate} that transforms each pixel independently
+ * of the others. Consecutive pixel transformers in a delegate kit are fused by
+ * the {@link PixelTransformerChain} into a single pass over the image's
+ * pixels, instead of each creating a copy of the image.
+ */
+public interface IPixelTransformerDelegate extends IImageTransformerDelegate
+{
+	/**
+	 * Transform a single pixel.
+	 * 
+	 * @param argb
+	 *            Non-premultiplied ARGB pixel value
+	 * @return Transformed non-premultiplied ARGB pixel value
+	 */
+	int transformPixel(int argb);
+}
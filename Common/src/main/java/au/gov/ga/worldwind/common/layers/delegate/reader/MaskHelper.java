@@ -15,17 +15,33 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.layers.delegate.reader;
 
-import java.awt.AlphaComposite;
-import java.awt.Graphics2D;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import javax.imageio.ImageIO;
+
 import au.gov.ga.worldwind.common.util.URLUtil;
+import au.gov.ga.worldwind.common.util.ZipIndex;
 
 /**
  * Helper class used for retrieving a mask png file relative to an image tile.
@@ -82,6 +98,19 @@ public class MaskHelper
 	public static URL getMaskURL(URL url, int upDirectoryCount, MaskInsideZipDelegate delegate)
 	{
 		boolean isZIP = url.toString().toLowerCase().endsWith("zip");
+		File localZip = isZIP ? URLUtil.urlToFile(url) : null;
+		if (localZip != null && localZip.isFile())
+		{
+			try
+			{
+				readZipEntries(localZip, delegate);
+				return null;
+			}
+			catch (IOException e)
+			{
+				//index could not be read (eg Zip64), so scan the zip stream below
+			}
+		}
 		if (isZIP)
 		{
 			try
@@ -142,6 +171,74 @@ public class MaskHelper
 		}
 	}
 
+	/**
+	 * Pass each entry in a local zip file to the delegate. The entries are
+	 * found using the zip's {@link ZipIndex} (which isn't cached for small
+	 * per-tile zips), and each entry is read by seeking directly to it, rather
+	 * than streaming through the zip file.
+	 */
+	protected static void readZipEntries(File zipFile, MaskInsideZipDelegate delegate) throws IOException
+	{
+		ZipIndex index = ZipIndex.get(zipFile);
+		RandomAccessFile raf = new RandomAccessFile(zipFile, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			for (ZipIndex.Entry indexEntry : index.getEntries())
+			{
+				if (indexEntry.isDirectory())
+				{
+					continue;
+				}
+
+				//the ZipInputStream reads the entry's local header at the channel's position
+				channel.position(indexEntry.getLocalHeaderOffset());
+				ZipInputStream zis = new ZipInputStream(Channels.newInputStream(channel));
+				ZipEntry entry = zis.getNextEntry();
+				if (entry == null)
+				{
+					continue;
+				}
+				try
+				{
+					delegate.readEntry(entry, zis);
+				}
+				catch (IOException e)
+				{
+					//ignore (read next ZipEntry)
+				}
+			}
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * Read an image from a URL. URLs pointing to entries within local zip
+	 * files (such as mask.zip) are read using the zip's cached
+	 * {@link ZipIndex}.
+	 * 
+	 * @param url
+	 *            URL to read
+	 * @return Image read from the URL, or null if it could not be decoded
+	 * @throws IOException
+	 *             If the URL could not be read
+	 */
+	public static BufferedImage readImage(URL url) throws IOException
+	{
+		InputStream is = ZipIndex.openStream(url);
+		try
+		{
+			return ImageIO.read(is);
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
 	/**
 	 * Create a File pointing to a 'mask' directory relative to the imageFile
 	 * passed. The function moves up {@code upDirectoryCount} parent
@@ -185,10 +282,264 @@ public class MaskHelper
 	 */
 	public static BufferedImage compose(BufferedImage image, BufferedImage mask)
 	{
-		Graphics2D g2d = mask.createGraphics();
-		g2d.setComposite(AlphaComposite.SrcIn);
-		g2d.drawImage(image, 0, 0, null);
-		g2d.dispose();
-		return mask;
+		BufferedImage composed = new BufferedImage(mask.getWidth(), mask.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		int[] argb = ((DataBufferInt) composed.getRaster().getDataBuffer()).getData();
+		composeARGB(image, mask, false, argb);
+		return composed;
+	}
+
+	/**
+	 * Compose the colour of image with the alpha channel of mask into an ARGB
+	 * pixel array, the same size as the mask (see
+	 * {@link #composeARGB(BufferedImage, BufferedImage, boolean, int[])}).
+	 * 
+	 * @param image
+	 * @param mask
+	 * @param premultiplied
+	 *            Should the colour components be premultiplied by alpha?
+	 * @return ARGB pixels of image masked by mask
+	 */
+	public static int[] composeARGB(BufferedImage image, BufferedImage mask, boolean premultiplied)
+	{
+		int[] argb = new int[mask.getWidth() * mask.getHeight()];
+		composeARGB(image, mask, premultiplied, argb);
+		return argb;
+	}
+
+	/**
+	 * Compose the colour of image with the alpha channel of mask into an ARGB
+	 * pixel array, in a single pass over the rasters. This gives the same
+	 * result as drawing the image into the mask using
+	 * {@link java.awt.AlphaComposite#SrcIn}, without going through Java2D's
+	 * compositing loops. Rasters in the common decoded formats (int packed
+	 * RGB/ARGB, byte interleaved BGR/ABGR and indexed) are read directly.
+	 * <p/>
+	 * The pixel array has the dimensions of the mask; any pixels outside the
+	 * image are transparent. If the mask has no alpha channel, the image's
+	 * alpha is used unchanged.
+	 * 
+	 * @param image
+	 *            Colour image
+	 * @param mask
+	 *            Mask image, whose alpha channel is applied to the colour
+	 * @param premultiplied
+	 *            Should the colour components be premultiplied by alpha?
+	 * @param argb
+	 *            Array to write the pixels to, with at least
+	 *            <code>mask.getWidth() * mask.getHeight()</code> elements
+	 */
+	public static void composeARGB(BufferedImage image, BufferedImage mask, boolean premultiplied, int[] argb)
+	{
+		int width = mask.getWidth();
+		int height = mask.getHeight();
+		int imageWidth = Math.min(width, image.getWidth());
+		int imageHeight = Math.min(height, image.getHeight());
+		int[] alphas = new int[width];
+
+		for (int y = 0; y < height; y++)
+		{
+			int offset = y * width;
+			if (y >= imageHeight)
+			{
+				fill(argb, offset, offset + width);
+				continue;
+			}
+
+			readARGBRow(image, y, imageWidth, argb, offset);
+			readAlphaRow(mask, y, imageWidth, alphas);
+			for (int x = 0; x < imageWidth; x++)
+			{
+				int pixel = argb[offset + x];
+				int alpha = multiply(pixel >>> 24, alphas[x]);
+				if (alpha == 0)
+				{
+					pixel = 0;
+				}
+				else if (premultiplied && alpha < 255)
+				{
+					int r = multiply((pixel >> 16) & 0xff, alpha);
+					int g = multiply((pixel >> 8) & 0xff, alpha);
+					int b = multiply(pixel & 0xff, alpha);
+					pixel = (alpha << 24) | (r << 16) | (g << 8) | b;
+				}
+				else
+				{
+					pixel = (alpha << 24) | (pixel & 0xffffff);
+				}
+				argb[offset + x] = pixel;
+			}
+			fill(argb, offset + imageWidth, offset + width);
+		}
+	}
+
+	/**
+	 * @return a * b / 255, rounded to the nearest integer
+	 */
+	private static int multiply(int a, int b)
+	{
+		return (a * b + 127) / 255;
+	}
+
+	private static void fill(int[] array, int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			array[i] = 0;
+		}
+	}
+
+	/**
+	 * Read the non-premultiplied ARGB pixels of the first width pixels of row
+	 * y of the image into argb, starting at offset.
+	 */
+	private static void readARGBRow(BufferedImage image, int y, int width, int[] argb, int offset)
+	{
+		Raster raster = image.getRaster();
+		int type = image.getType();
+		if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+				&& raster.getSampleModel() instanceof SinglePixelPackedSampleModel)
+		{
+			SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+			DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+			int[] data = db.getData();
+			int index =
+					db.getOffset() + (y - raster.getSampleModelTranslateY()) * sm.getScanlineStride()
+							- raster.getSampleModelTranslateX();
+			int opaque = type == BufferedImage.TYPE_INT_RGB ? 0xff000000 : 0;
+			for (int x = 0; x < width; x++)
+			{
+				argb[offset + x] = data[index + x] | opaque;
+			}
+			return;
+		}
+
+		int[] bandOffsets = getByteBandOffsets(image);
+		if (bandOffsets != null && bandOffsets.length >= 3)
+		{
+			PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel) raster.getSampleModel();
+			DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+			byte[] data = db.getData();
+			int pixelStride = sm.getPixelStride();
+			int index =
+					db.getOffset() + (y - raster.getSampleModelTranslateY()) * sm.getScanlineStride()
+							- raster.getSampleModelTranslateX() * pixelStride;
+			int r = index + bandOffsets[0], g = index + bandOffsets[1], b = index + bandOffsets[2];
+			if (bandOffsets.length == 4)
+			{
+				int a = index + bandOffsets[3];
+				for (int x = 0, i = 0; x < width; x++, i += pixelStride)
+				{
+					argb[offset + x] =
+							((data[a + i] & 0xff) << 24) | ((data[r + i] & 0xff) << 16) | ((data[g + i] & 0xff) << 8)
+									| (data[b + i] & 0xff);
+				}
+			}
+			else
+			{
+				for (int x = 0, i = 0; x < width; x++, i += pixelStride)
+				{
+					argb[offset + x] =
+							0xff000000 | ((data[r + i] & 0xff) << 16) | ((data[g + i] & 0xff) << 8) | (data[b + i] & 0xff);
+				}
+			}
+			return;
+		}
+
+		image.getRGB(0, y, width, 1, argb, offset, width);
+	}
+
+	/**
+	 * Read the alpha values (0-255) of the first width pixels of row y of the
+	 * mask into alphas.
+	 */
+	private static void readAlphaRow(BufferedImage mask, int y, int width, int[] alphas)
+	{
+		ColorModel cm = mask.getColorModel();
+		if (!cm.hasAlpha())
+		{
+			for (int x = 0; x < width; x++)
+			{
+				alphas[x] = 255;
+			}
+			return;
+		}
+
+		Raster raster = mask.getRaster();
+		int[] bandOffsets = getByteBandOffsets(mask);
+		if (bandOffsets != null)
+		{
+			PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel) raster.getSampleModel();
+			byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+			int pixelStride = sm.getPixelStride();
+			int index =
+					raster.getDataBuffer().getOffset() + (y - raster.getSampleModelTranslateY())
+							* sm.getScanlineStride() - raster.getSampleModelTranslateX() * pixelStride
+							+ bandOffsets[bandOffsets.length - 1];
+			for (int x = 0, i = index; x < width; x++, i += pixelStride)
+			{
+				alphas[x] = data[i] & 0xff;
+			}
+			return;
+		}
+
+		if (cm instanceof IndexColorModel && cm.getPixelSize() <= 8)
+		{
+			IndexColorModel icm = (IndexColorModel) cm;
+			byte[] paletteAlphas = new byte[icm.getMapSize()];
+			icm.getAlphas(paletteAlphas);
+			raster.getSamples(0, y, width, 1, 0, alphas);
+			for (int x = 0; x < width; x++)
+			{
+				alphas[x] = paletteAlphas[alphas[x]] & 0xff;
+			}
+			return;
+		}
+
+		if (cm instanceof ComponentColorModel && !cm.isAlphaPremultiplied()
+				&& raster.getDataBuffer().getDataType() == DataBuffer.TYPE_BYTE)
+		{
+			raster.getSamples(0, y, width, 1, raster.getNumBands() - 1, alphas);
+			return;
+		}
+
+		mask.getRGB(0, y, width, 1, alphas, 0, width);
+		for (int x = 0; x < width; x++)
+		{
+			alphas[x] >>>= 24;
+		}
+	}
+
+	/**
+	 * @return The offsets of the R, G, B (and A) bands (or the gray band and
+	 *         alpha band) in the image's data, if it is a non-premultiplied
+	 *         8-bit pixel interleaved image; otherwise null
+	 */
+	private static int[] getByteBandOffsets(BufferedImage image)
+	{
+		Raster raster = image.getRaster();
+		SampleModel sm = raster.getSampleModel();
+		ColorModel cm = image.getColorModel();
+		if (!(cm instanceof ComponentColorModel) || cm.isAlphaPremultiplied()
+				|| !(sm instanceof PixelInterleavedSampleModel) || !(raster.getDataBuffer() instanceof DataBufferByte))
+		{
+			return null;
+		}
+		int bands = sm.getNumBands();
+		if (bands != cm.getNumComponents() || (bands != 2 && bands != 3 && bands != 4))
+		{
+			return null;
+		}
+		if (bands <= 2 ? cm.getColorSpace().getType() != ColorSpace.TYPE_GRAY : !cm.getColorSpace().isCS_sRGB())
+		{
+			return null;
+		}
+		for (int i = 0; i < bands; i++)
+		{
+			if (cm.getComponentSize(i) != 8)
+			{
+				return null;
+			}
+		}
+		return ((PixelInterleavedSampleModel) sm).getBandOffsets();
 	}
 }
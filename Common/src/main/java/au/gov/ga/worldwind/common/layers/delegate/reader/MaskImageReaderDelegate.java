@@ -85,8 +85,8 @@ public class MaskImageReaderDelegate implements ITileReaderDelegate
 		{
 			try
 			{
-				image = ImageIO.read(url);
-				mask = ImageIO.read(maskUrl);
+				image = MaskHelper.readImage(url);
+				mask = MaskHelper.readImage(maskUrl);
 			}
 			catch (Exception e)
 			{
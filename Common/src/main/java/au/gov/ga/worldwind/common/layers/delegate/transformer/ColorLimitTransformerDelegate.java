@@ -19,6 +19,7 @@ import gov.nasa.worldwind.avlist.AVList;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.util.Collections;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,7 +27,7 @@ import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.layers.delegate.IDelegate;
 import au.gov.ga.worldwind.common.layers.delegate.IDelegatorTile;
-import au.gov.ga.worldwind.common.layers.delegate.IImageTransformerDelegate;
+import au.gov.ga.worldwind.common.layers.delegate.IPixelTransformerDelegate;
 
 /**
  * A delegate that limits each colour channel of the target image to be less than a 
@@ -41,7 +42,7 @@ import au.gov.ga.worldwind.common.layers.delegate.IImageTransformerDelegate;
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class ColorLimitTransformerDelegate implements IImageTransformerDelegate
+public class ColorLimitTransformerDelegate implements IPixelTransformerDelegate
 {
 	private final static String DEFINITION_STRING = "ColorLimitTransformer";
 
@@ -92,22 +93,13 @@ public class ColorLimitTransformerDelegate implements IImageTransformerDelegate
 	@Override
 	public BufferedImage transformImage(BufferedImage image, IDelegatorTile tile)
 	{
-		if (image == null)
-			return null;
-
-		BufferedImage dst = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
-
-		for (int y = 0; y < image.getHeight(); y++)
-		{
-			for (int x = 0; x < image.getWidth(); x++)
-			{
-				int rgb = image.getRGB(x, y);
-				rgb = limitColor(rgb, color);
-				dst.setRGB(x, y, rgb);
-			}
-		}
+		return new PixelTransformerChain(Collections.singletonList(this), null).transform(image);
+	}
 
-		return dst;
+	@Override
+	public int transformPixel(int argb)
+	{
+		return limitColor(argb, color);
 	}
 
 	protected static int limitColor(int argb, Color color)
@@ -19,6 +19,7 @@ import gov.nasa.worldwind.avlist.AVList;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.util.Collections;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,10 +27,10 @@ import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.layers.delegate.IDelegate;
 import au.gov.ga.worldwind.common.layers.delegate.IDelegatorTile;
-import au.gov.ga.worldwind.common.layers.delegate.IImageTransformerDelegate;
+import au.gov.ga.worldwind.common.layers.delegate.IPixelTransformerDelegate;
 
 /**
- * Implementation of {@link IImageTransformerDelegate} which applies a
+ * Implementation of {@link IPixelTransformerDelegate} which applies a
  * color-to-alpha transformation on the incoming images. 
  * <p/>
  * The color-to-alpha implementation is similar to GIMP's: The alpha level of each processed pixel
@@ -48,7 +49,7 @@ import au.gov.ga.worldwind.common.layers.delegate.IImageTransformerDelegate;
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class ColorToAlphaTransformerDelegate implements IImageTransformerDelegate
+public class ColorToAlphaTransformerDelegate implements IPixelTransformerDelegate
 {
 	private final static String DEFINITION_STRING = "ColorToAlphaTransformer";
 
@@ -100,24 +101,13 @@ public class ColorToAlphaTransformerDelegate implements IImageTransformerDelegat
 	@Override
 	public BufferedImage transformImage(BufferedImage image, IDelegatorTile tile)
 	{
-		if (image == null)
-			return null;
-
-		BufferedImage dst =
-				new BufferedImage(image.getWidth(), image.getHeight(),
-						BufferedImage.TYPE_INT_ARGB_PRE);
-
-		for (int y = 0; y < image.getHeight(); y++)
-		{
-			for (int x = 0; x < image.getWidth(); x++)
-			{
-				int rgb = image.getRGB(x, y);
-				rgb = colorToAlpha(rgb, color);
-				dst.setRGB(x, y, rgb);
-			}
-		}
+		return new PixelTransformerChain(Collections.singletonList(this), null).transform(image);
+	}
 
-		return dst;
+	@Override
+	public int transformPixel(int argb)
+	{
+		return colorToAlpha(argb, color);
 	}
 
 	/**
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.delegate.transformer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.List;
+
+import au.gov.ga.worldwind.common.layers.delegate.IPixelTransformerDelegate;
+
+/**
+ * Applies a sequence of {@link IPixelTransformerDelegate}s to an image in a
+ * single pass. The source pixels are read once in bulk, each pixel is passed
+ * through every transformer in turn, and the results are written directly into
+ * the raster of a new {@link BufferedImage#TYPE_INT_ARGB_PRE} image (the type
+ * the colour transformers produced before they were fused).
+ * <p/>
+ * Optionally also replaces pixels matching a set of RGB colors with
+ * transparent black after the transformers have been applied, in the same way
+ * as <code>ImageUtil.mapTransparencyColors</code>.
+ */
+public class PixelTransformerChain
+{
+	private final IPixelTransformerDelegate[] transformers;
+	private final int[] transparencyColors;
+
+	/**
+	 * @param transformers
+	 *            Transformers to apply, in order
+	 * @param transparencyColors
+	 *            RGB colors to make transparent after transforming (alpha is
+	 *            ignored when matching; may be null)
+	 */
+	public PixelTransformerChain(List<? extends IPixelTransformerDelegate> transformers, int[] transparencyColors)
+	{
+		this.transformers = transformers.toArray(new IPixelTransformerDelegate[transformers.size()]);
+		if (transparencyColors != null && transparencyColors.length > 0)
+		{
+			this.transparencyColors = new int[transparencyColors.length];
+			for (int i = 0; i < transparencyColors.length; i++)
+			{
+				this.transparencyColors[i] = transparencyColors[i] & 0x00ffffff;
+			}
+			Arrays.sort(this.transparencyColors);
+		}
+		else
+		{
+			this.transparencyColors = null;
+		}
+	}
+
+	/**
+	 * @return Does this chain do anything?
+	 */
+	public boolean isEmpty()
+	{
+		return transformers.length == 0 && transparencyColors == null;
+	}
+
+	/**
+	 * Transform an image.
+	 * 
+	 * @param image
+	 *            Image to transform (not modified)
+	 * @return New transformed image, or null if image is null
+	 */
+	public BufferedImage transform(BufferedImage image)
+	{
+		if (image == null)
+		{
+			return null;
+		}
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+		BufferedImage dst = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		int[] pixels = ((DataBufferInt) dst.getRaster().getDataBuffer()).getData();
+
+		//bulk read, converted to non-premultiplied ARGB for the transformers
+		image.getRGB(0, 0, width, height, pixels, 0, width);
+		transform(pixels, 0, pixels.length);
+		premultiply(pixels);
+		return dst;
+	}
+
+	/**
+	 * Convert ARGB pixels to premultiplied ARGB in place, rounding the same
+	 * way as {@link BufferedImage#setRGB(int, int, int)} does for
+	 * {@link BufferedImage#TYPE_INT_ARGB_PRE} images.
+	 */
+	protected static void premultiply(int[] pixels)
+	{
+		for (int i = 0; i < pixels.length; i++)
+		{
+			int argb = pixels[i];
+			int alpha = argb >>> 24;
+			if (alpha == 255)
+			{
+				continue;
+			}
+			if (alpha == 0)
+			{
+				pixels[i] = 0;
+				continue;
+			}
+			float factor = alpha * (1f / 255f);
+			int r = (int) (((argb >> 16) & 0xff) * factor + 0.5f);
+			int g = (int) (((argb >> 8) & 0xff) * factor + 0.5f);
+			int b = (int) ((argb & 0xff) * factor + 0.5f);
+			pixels[i] = (alpha << 24) | (r << 16) | (g << 8) | b;
+		}
+	}
+
+	/**
+	 * Transform a range of ARGB pixels in place.
+	 * 
+	 * @param pixels
+	 *            Non-premultiplied ARGB pixels
+	 * @param offset
+	 *            First pixel to transform
+	 * @param length
+	 *            Number of pixels to transform
+	 */
+	public void transform(int[] pixels, int offset, int length)
+	{
+		IPixelTransformerDelegate[] transformers = this.transformers;
+		int[] transparencyColors = this.transparencyColors;
+		int end = offset + length;
+		for (int i = offset; i < end; i++)
+		{
+			int argb = pixels[i];
+			for (int t = 0; t < transformers.length; t++)
+			{
+				argb = transformers[t].transformPixel(argb);
+			}
+			if (transparencyColors != null && Arrays.binarySearch(transparencyColors, argb & 0x00ffffff) >= 0)
+			{
+				argb = 0;
+			}
+			pixels[i] = argb;
+		}
+	}
+}
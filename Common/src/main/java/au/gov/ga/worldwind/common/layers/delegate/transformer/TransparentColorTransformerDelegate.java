@@ -19,6 +19,7 @@ import gov.nasa.worldwind.avlist.AVList;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.util.Collections;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,10 +27,10 @@ import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.layers.delegate.IDelegate;
 import au.gov.ga.worldwind.common.layers.delegate.IDelegatorTile;
-import au.gov.ga.worldwind.common.layers.delegate.IImageTransformerDelegate;
+import au.gov.ga.worldwind.common.layers.delegate.IPixelTransformerDelegate;
 
 /**
- * Implementation of {@link IImageTransformerDelegate} which converts a targeted
+ * Implementation of {@link IPixelTransformerDelegate} which converts a targeted
  * colour to transparency with fuzziness.
  * <p/>
  * Similar to the {@link ColorToAlphaTransformerDelegate}, but sets any colour within <code>fuzz</code> percent
@@ -48,12 +49,13 @@ import au.gov.ga.worldwind.common.layers.delegate.IImageTransformerDelegate;
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class TransparentColorTransformerDelegate implements IImageTransformerDelegate
+public class TransparentColorTransformerDelegate implements IPixelTransformerDelegate
 {
 	private final static String DEFINITION_STRING = "TransparentColorTransformer";
 
 	protected final Color color;
 	protected final double fuzz;
+	private final int fuzzi;
 
 	//for reflection instantiation
 	@SuppressWarnings("unused")
@@ -66,37 +68,30 @@ public class TransparentColorTransformerDelegate implements IImageTransformerDel
 	{
 		this.color = color;
 		this.fuzz = fuzz;
+		this.fuzzi = Math.max(0, Math.min(255, (int) Math.round(fuzz * 255d)));
 	}
 
 	@Override
 	public BufferedImage transformImage(BufferedImage image, IDelegatorTile tile)
 	{
-		int fuzzi = Math.max(0, Math.min(255, (int) Math.round(fuzz * 255d)));
-		BufferedImage trans =
-				new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		return new PixelTransformerChain(Collections.singletonList(this), null).transform(image);
+	}
 
+	@Override
+	public int transformPixel(int rgb)
+	{
 		int cr = color.getRed();
 		int cg = color.getGreen();
 		int cb = color.getBlue();
-
-		for (int x = 0; x < image.getWidth(); x++)
+		int sr = (rgb >> 16) & 0xff;
+		int sg = (rgb >> 8) & 0xff;
+		int sb = (rgb >> 0) & 0xff;
+		if (cr - fuzzi <= sr && sr <= cr + fuzzi && cg - fuzzi <= sg && sg <= cg + fuzzi && cb - fuzzi <= sb
+				&& sb <= cb + fuzzi)
 		{
-			for (int y = 0; y < image.getHeight(); y++)
-			{
-				int rgb = image.getRGB(x, y);
-				int sr = (rgb >> 16) & 0xff;
-				int sg = (rgb >> 8) & 0xff;
-				int sb = (rgb >> 0) & 0xff;
-				if (cr - fuzzi <= sr && sr <= cr + fuzzi && cg - fuzzi <= sg && sg <= cg + fuzzi
-						&& cb - fuzzi <= sb && sb <= cb + fuzzi)
-				{
-					rgb = (rgb & 0xffffff);
-				}
-				trans.setRGB(x, y, rgb);
-			}
+			rgb = (rgb & 0xffffff);
 		}
-
-		return trans;
+		return rgb;
 	}
 
 	@Override
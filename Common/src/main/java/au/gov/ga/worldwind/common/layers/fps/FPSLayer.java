@@ -32,10 +32,13 @@ import java.awt.geom.Rectangle2D;
 
 import javax.media.opengl.GL2;
 
+import au.gov.ga.worldwind.common.render.TextureUploadScheduler;
+
 import com.jogamp.opengl.util.awt.TextRenderer;
 
 /**
- * Layer that shows an FPS counter.
+ * Layer that shows an FPS counter. Also shows the average number of textures
+ * (and bytes) uploaded per frame by the {@link TextureUploadScheduler}.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -44,6 +47,11 @@ public class FPSLayer extends AbstractLayer
 	private Long lastNanos;
 	private int frameCount = 0;
 	private int fps;
+	private long lastUploads;
+	private long lastUploadBytes;
+	private double uploadsPerFrame;
+	private double uploadBytesPerFrame;
+	private boolean showTextureUploads = true;
 
 	// Display parameters - TODO: make configurable
 	private Dimension size = new Dimension(150, 10);
@@ -338,6 +346,22 @@ public class FPSLayer extends AbstractLayer
 		this.defaultFont = font;
 	}
 
+	public boolean isShowTextureUploads()
+	{
+		return showTextureUploads;
+	}
+
+	/**
+	 * Sets whether the average texture uploads per frame are shown below the
+	 * FPS counter.
+	 * 
+	 * @param showTextureUploads
+	 */
+	public void setShowTextureUploads(boolean showTextureUploads)
+	{
+		this.showTextureUploads = showTextureUploads;
+	}
+
 	// Rendering
 	@Override
 	public void doRender(DrawContext dc)
@@ -368,6 +392,14 @@ public class FPSLayer extends AbstractLayer
 		}
 		else if ((currentNanos - lastNanos) / 1e9d > 1d)
 		{
+			TextureUploadScheduler scheduler = TextureUploadScheduler.getInstance();
+			long uploads = scheduler.getTotalUploads();
+			long uploadBytes = scheduler.getTotalBytes();
+			uploadsPerFrame = (uploads - lastUploads) / (double) frameCount;
+			uploadBytesPerFrame = (uploadBytes - lastUploadBytes) / (double) frameCount;
+			lastUploads = uploads;
+			lastUploadBytes = uploadBytes;
+
 			fps = frameCount;
 			frameCount = 0;
 			lastNanos = currentNanos;
@@ -415,8 +447,15 @@ public class FPSLayer extends AbstractLayer
 			String label = fps + " fps";
 			gl.glLoadIdentity();
 			gl.glDisable(GL2.GL_CULL_FACE);
-			drawLabel(dc, label,
-					locationSW.add3(new Vec4(divWidth * scale / 2 + (width - divWidth) / 2, height * scale, 0)));
+			Vec4 labelPoint = locationSW.add3(new Vec4(divWidth * scale / 2 + (width - divWidth) / 2, height * scale, 0));
+			drawLabel(dc, label, labelPoint);
+
+			if (showTextureUploads)
+			{
+				String uploadLabel =
+						String.format("%.1f uploads, %.0f KB / frame", uploadsPerFrame, uploadBytesPerFrame / 1024d);
+				drawLabel(dc, uploadLabel, labelPoint.subtract3(new Vec4(0, defaultFont.getSize() + 4, 0)));
+			}
 		}
 		finally
 		{
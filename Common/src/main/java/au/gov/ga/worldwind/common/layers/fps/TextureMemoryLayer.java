@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.fps;
+
+import gov.nasa.worldwind.layers.AbstractLayer;
+import gov.nasa.worldwind.layers.Layer;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.OrderedRenderable;
+import gov.nasa.worldwind.util.OGLTextRenderer;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import au.gov.ga.worldwind.common.render.TextureMemoryManager;
+import au.gov.ga.worldwind.common.render.TextureMemoryManager.ResidencyStatistics;
+
+import com.jogamp.opengl.util.awt.TextRenderer;
+
+/**
+ * Layer that shows the texture memory used by each layer, as tracked by the
+ * {@link TextureMemoryManager}, in the top right corner of the screen.
+ */
+public class TextureMemoryLayer extends AbstractLayer
+{
+	private final static long REFRESH_INTERVAL = 500;
+	private final static double MB = 1024d * 1024d;
+
+	private Font font = Font.decode("Arial-PLAIN-12");
+	private Color color = Color.white;
+	private Color shadowColor = new Color(0, 0, 0, 0.7f);
+	private int borderWidth = 20;
+	private int maxLayers = 10;
+
+	private final List<String> lines = new ArrayList<String>();
+	private long lastRefresh = 0;
+
+	private OrderedRenderable orderedText = new OrderedRenderable()
+	{
+		@Override
+		public double getDistanceFromEye()
+		{
+			return 0;
+		}
+
+		@Override
+		public void pick(DrawContext dc, Point pickPoint)
+		{
+		}
+
+		@Override
+		public void render(DrawContext dc)
+		{
+			TextureMemoryLayer.this.draw(dc);
+		}
+	};
+
+	public TextureMemoryLayer()
+	{
+		setPickEnabled(false);
+	}
+
+	public int getMaxLayers()
+	{
+		return maxLayers;
+	}
+
+	/**
+	 * Set the maximum number of layers to list (those with the most resident
+	 * texture memory are listed first).
+	 * 
+	 * @param maxLayers
+	 */
+	public void setMaxLayers(int maxLayers)
+	{
+		this.maxLayers = maxLayers;
+	}
+
+	public Font getFont()
+	{
+		return font;
+	}
+
+	public void setFont(Font font)
+	{
+		this.font = font;
+	}
+
+	public Color getColor()
+	{
+		return color;
+	}
+
+	public void setColor(Color color)
+	{
+		this.color = color;
+	}
+
+	@Override
+	protected void doRender(DrawContext dc)
+	{
+		dc.addOrderedRenderable(orderedText);
+	}
+
+	protected void draw(DrawContext dc)
+	{
+		if (dc.isPickingMode())
+		{
+			return;
+		}
+
+		long time = System.currentTimeMillis();
+		if (time - lastRefresh > REFRESH_INTERVAL)
+		{
+			refreshLines();
+			lastRefresh = time;
+		}
+
+		Rectangle viewport = dc.getView().getViewport();
+		TextRenderer textRenderer = OGLTextRenderer.getOrCreateTextRenderer(dc.getTextRendererCache(), font);
+		int lineHeight = font.getSize() + 4;
+
+		textRenderer.beginRendering(viewport.width, viewport.height);
+		try
+		{
+			int y = viewport.height - borderWidth - lineHeight;
+			for (String line : lines)
+			{
+				int x = (int) (viewport.width - borderWidth - textRenderer.getBounds(line).getWidth());
+				textRenderer.setColor(shadowColor);
+				textRenderer.draw(line, x + 1, y - 1);
+				textRenderer.setColor(color);
+				textRenderer.draw(line, x, y);
+				y -= lineHeight;
+			}
+		}
+		finally
+		{
+			textRenderer.endRendering();
+		}
+	}
+
+	protected void refreshLines()
+	{
+		TextureMemoryManager manager = TextureMemoryManager.getInstance();
+		lines.clear();
+		lines.add(String.format("Textures: %d, %.1f of %.0f MB", manager.getTextureCount(), manager.getTotalBytes()
+				/ MB, manager.getMaxBytes() / MB));
+
+		List<ResidencyStatistics> statistics = manager.getStatistics();
+		for (int i = 0; i < statistics.size() && i < maxLayers; i++)
+		{
+			ResidencyStatistics s = statistics.get(i);
+			String name = s.owner instanceof Layer ? ((Layer) s.owner).getName() : String.valueOf(s.owner);
+			lines.add(String.format("%s: %d (%d visible), %.1f MB, %d evicted", name, s.textures, s.visibleTextures,
+					s.bytes / MB, s.evictions));
+		}
+	}
+}
@@ -19,13 +19,19 @@ import gov.nasa.worldwind.cache.GpuResourceCache;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.layers.mercator.MercatorSector;
 import gov.nasa.worldwind.layers.mercator.MercatorTextureTile;
+import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.util.Level;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.TileKey;
+
+import javax.media.opengl.GLContext;
+
 import au.gov.ga.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.worldwind.common.layers.delegate.ITileFactoryDelegate;
+import au.gov.ga.worldwind.common.render.TextureUploadScheduler;
 
 import com.jogamp.opengl.util.texture.Texture;
+import com.jogamp.opengl.util.texture.TextureData;
 
 /**
  * Extension of the {@link MercatorTextureTile} class which uses a
@@ -192,6 +198,34 @@ public class DelegatorMercatorTextureTile extends MercatorTextureTile implements
 		this.updateMemoryCache();
 	}
 
+	@Override
+	protected Texture initializeTexture(DrawContext dc)
+	{
+		TextureData textureData = getTextureData();
+		if (textureData == null)
+		{
+			return super.initializeTexture(dc);
+		}
+
+		TextureUploadScheduler scheduler = TextureUploadScheduler.getInstance();
+		GLContext context = dc.getGLContext();
+		long bytes = textureData.getEstimatedMemorySize();
+		if (!scheduler.requestUpload(context, dc.getFrameTimeStamp(), getTransformedTileKey(), bytes, 0))
+		{
+			Texture t = getTexture(dc.getTextureCache());
+			if (t != null)
+			{
+				t.bind(dc.getGL());
+			}
+			return t;
+		}
+
+		long start = System.nanoTime();
+		Texture t = super.initializeTexture(dc);
+		scheduler.uploaded(context, dc.getFrameTimeStamp(), getTransformedTileKey(), bytes, System.nanoTime() - start);
+		return t;
+	}
+
 	@Override
 	protected MercatorTextureTile getTileFromMemoryCache(TileKey tileKey)
 	{
@@ -37,7 +37,6 @@ import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
 import gov.nasa.worldwind.retrieve.Retriever;
 import gov.nasa.worldwind.retrieve.URLRetriever;
 import gov.nasa.worldwind.util.DataConfigurationUtils;
-import gov.nasa.worldwind.util.ImageUtil;
 import gov.nasa.worldwind.util.Level;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.Tile;
@@ -54,6 +53,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.List;
 
 import javax.imageio.ImageIO;
 import javax.media.opengl.GLProfile;
@@ -69,10 +69,18 @@ import au.gov.ga.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.worldwind.common.layers.delegate.ITileRequesterDelegate;
 import au.gov.ga.worldwind.common.layers.tiled.image.URLTransformerBasicTiledImageLayer;
 import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer.SharedLock;
+import au.gov.ga.worldwind.common.render.GpuResourceCacheEvictor;
+import au.gov.ga.worldwind.common.render.TextureMemoryManager;
+import au.gov.ga.worldwind.common.render.TextureUploadScheduler;
+import au.gov.ga.worldwind.common.retrieve.PrefetchService;
+import au.gov.ga.worldwind.common.retrieve.PrefetchView;
+import au.gov.ga.worldwind.common.retrieve.Prefetchable;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 import au.gov.ga.worldwind.common.util.DDSUncompressor;
 import au.gov.ga.worldwind.common.util.XMLUtil;
 
+import com.jogamp.opengl.util.texture.Texture;
 import com.jogamp.opengl.util.texture.TextureData;
 import com.jogamp.opengl.util.texture.TextureIO;
 import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
@@ -90,9 +98,9 @@ import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledImageLayer implements Bounded,
-		IDelegatorLayer<DelegatorMercatorTextureTile>
+		IDelegatorLayer<DelegatorMercatorTextureTile>, Prefetchable
 {
-	protected final Object fileLock;
+	protected final SharedLock fileLock;
 	protected final URL context;
 	protected final MercatorImageDelegateKit delegateKit;
 	protected boolean extractZipEntry = false;
@@ -284,6 +292,61 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 		delegateKit.forceTextureLoad((DelegatorMercatorTextureTile) tile, this);
 	}
 
+	@Override
+	protected void addTile(DrawContext dc, TextureTile tile)
+	{
+		super.addTile(dc, tile);
+
+		TextureData textureData = tile.getTextureData();
+		if (textureData != null)
+		{
+			TileKey key = ((IDelegatorTile) tile).getTransformedTileKey();
+			boolean granted =
+					TextureUploadScheduler.getInstance().requestUpload(dc.getGLContext(), dc.getFrameTimeStamp(),
+							key, textureData.getEstimatedMemorySize(), computeUploadPriority(dc, tile));
+			if (!granted && tile.getFallbackTile() == null && currentResourceTile != null)
+			{
+				tile.setFallbackTile(currentResourceTile);
+			}
+		}
+
+		touchTexture(dc, tile);
+		if (tile.getFallbackTile() != null)
+		{
+			touchTexture(dc, tile.getFallbackTile());
+		}
+	}
+
+	/**
+	 * Touch the tile's texture (if resident) in the
+	 * {@link TextureMemoryManager}.
+	 */
+	protected void touchTexture(DrawContext dc, TextureTile tile)
+	{
+		TileKey key = ((IDelegatorTile) tile).getTransformedTileKey();
+		Texture texture = tile.getTexture(dc.getTextureCache());
+		if (texture == null)
+		{
+			TextureMemoryManager.getInstance().remove(key);
+			return;
+		}
+		TextureMemoryManager.getInstance().touch(this, key, texture.getEstimatedMemorySize(), tile.getLevelNumber(),
+				dc.getFrameTimeStamp(), GpuResourceCacheEvictor.get(dc.getTextureCache()));
+	}
+
+	/**
+	 * Calculate the priority of uploading the given tile's texture: the size of
+	 * the tile's texels relative to the eye distance, so that tiles that appear
+	 * coarsest on screen are uploaded first.
+	 */
+	protected double computeUploadPriority(DrawContext dc, TextureTile tile)
+	{
+		LatLon centroid = tile.getSector().getCentroid();
+		Vec4 point = dc.getGlobe().computePointFromPosition(centroid.getLatitude(), centroid.getLongitude(), 0);
+		double distance = Math.max(1, dc.getView().getEyePoint().distanceTo3(point));
+		return point.getLength3() * tile.getLevel().getTexelSize() / distance;
+	}
+
 	@Override
 	protected void requestTexture(DrawContext dc, TextureTile tile)
 	{
@@ -315,6 +378,23 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 		}
 	}
 
+	@Override
+	public List<Runnable> createPrefetchTasks(Globe globe, PrefetchView view, int maxTasks)
+	{
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		for (TextureTile tile : PrefetchService.selectTiles(this, globe, view, maxTasks))
+		{
+			validateTileClass(tile);
+			tile.setPriority(PrefetchService.PREFETCH_PRIORITY);
+			Runnable task = delegateKit.createRequestTask((DelegatorMercatorTextureTile) tile, this);
+			if (task != null)
+			{
+				tasks.add(task);
+			}
+		}
+		return tasks;
+	}
+
 	protected void validateTileClass(Object tile)
 	{
 		if (!(tile instanceof DelegatorMercatorTextureTile))
@@ -341,7 +421,7 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 
 		TextureData textureData;
 
-		synchronized (fileLock)
+		synchronized (fileLock.getTileLock(textureURL))
 		{
 			textureData = readTexture(tile, textureURL);
 		}
@@ -426,7 +506,7 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 			if (url.toString().toLowerCase().endsWith(".dds"))
 			{
 				ByteBuffer buffer = WWIO.readURLContentToBuffer(url, false);
-				image = DDSUncompressor.readDxt3(buffer);
+				image = DDSUncompressor.readDds(buffer);
 			}
 			else
 			{
@@ -441,12 +521,8 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 		}
 
 		//perform any transformations on the image
-		image = delegateKit.transformImage(image, tile);
-
-		//manually do the TRANSPARENCY_COLORS transform, for compatibility with AbstractRetrievalPostProcessor
 		int[] colors = (int[]) this.getValue(AVKey.TRANSPARENCY_COLORS);
-		if (colors != null)
-			image = ImageUtil.mapTransparencyColors(image, colors);
+		image = delegateKit.transformImage(image, tile, colors);
 
 		return image;
 	}
@@ -470,7 +546,7 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 		@Override
 		protected Object getFileLock()
 		{
-			return layer.fileLock;
+			return layer.fileLock.getTileLock(tile.getPath());
 		}
 	}
 
@@ -36,7 +36,6 @@ import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
 import gov.nasa.worldwind.retrieve.Retriever;
 import gov.nasa.worldwind.retrieve.URLRetriever;
 import gov.nasa.worldwind.util.DataConfigurationUtils;
-import gov.nasa.worldwind.util.ImageUtil;
 import gov.nasa.worldwind.util.Level;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.Tile;
@@ -53,6 +52,8 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.imageio.ImageIO;
 import javax.media.opengl.GLProfile;
@@ -66,11 +67,19 @@ import au.gov.ga.worldwind.common.layers.Bounds;
 import au.gov.ga.worldwind.common.layers.delegate.IDelegatorLayer;
 import au.gov.ga.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.worldwind.common.layers.delegate.ITileRequesterDelegate;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer.SharedLock;
 import au.gov.ga.worldwind.common.layers.tiled.image.URLTransformerBasicTiledImageLayer;
+import au.gov.ga.worldwind.common.render.GpuResourceCacheEvictor;
+import au.gov.ga.worldwind.common.render.TextureMemoryManager;
+import au.gov.ga.worldwind.common.render.TextureUploadScheduler;
+import au.gov.ga.worldwind.common.retrieve.PrefetchService;
+import au.gov.ga.worldwind.common.retrieve.PrefetchView;
+import au.gov.ga.worldwind.common.retrieve.Prefetchable;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 import au.gov.ga.worldwind.common.util.DDSUncompressor;
 import au.gov.ga.worldwind.common.util.XMLUtil;
 
+import com.jogamp.opengl.util.texture.Texture;
 import com.jogamp.opengl.util.texture.TextureData;
 import com.jogamp.opengl.util.texture.TextureIO;
 import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
@@ -88,12 +97,14 @@ import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer implements Bounded,
-		IDelegatorLayer<DelegatorTextureTile>
+		IDelegatorLayer<DelegatorTextureTile>, Prefetchable
 {
-	protected final Object fileLock;
+	protected final SharedLock fileLock;
 	protected final URL context;
 	protected final ImageDelegateKit delegateKit;
 	protected boolean extractZipEntry = false;
+	protected boolean cacheProcessedTextures = true;
+	protected ProcessedTextureCache processedTextureCache;
 	protected boolean prerendered;
 
 	protected Globe currentGlobe;
@@ -118,6 +129,10 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		if (b != null)
 			this.setExtractZipEntry(b);
 
+		b = (Boolean) params.getValue(AVKeyMore.CACHE_PROCESSED_TEXTURES);
+		if (b != null)
+			this.setCacheProcessedTextures(b);
+
 		//Share the filelock with other layers with the same cache name. This allows
 		//multiple layers to save and load from the same cache location.
 		fileLock = FileLockSharer.getLock(getLevels().getFirstLevel().getCacheName());
@@ -148,6 +163,8 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 
 		XPath xpath = WWXML.makeXPath();
 		WWXML.checkAndSetBooleanParam(domElement, params, AVKeyMore.EXTRACT_ZIP_ENTRY, "ExtractZipEntry", xpath);
+		WWXML.checkAndSetBooleanParam(domElement, params, AVKeyMore.CACHE_PROCESSED_TEXTURES,
+				"CacheProcessedTextures", xpath);
 
 		return params;
 	}
@@ -162,6 +179,47 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		this.extractZipEntry = extractZipEntry;
 	}
 
+	/**
+	 * @return Are processed DDS textures cached on disk (only applies when the
+	 *         texture format is image/dds)?
+	 */
+	public boolean isCacheProcessedTextures()
+	{
+		return cacheProcessedTextures;
+	}
+
+	public void setCacheProcessedTextures(boolean cacheProcessedTextures)
+	{
+		this.cacheProcessedTextures = cacheProcessedTextures;
+	}
+
+	/**
+	 * @return Cache for this layer's processed DDS textures, or null if
+	 *         processed textures are not cached
+	 */
+	protected synchronized ProcessedTextureCache getProcessedTextureCache()
+	{
+		if (!isCacheProcessedTextures() || !"image/dds".equalsIgnoreCase(getTextureFormat()))
+		{
+			return null;
+		}
+		if (processedTextureCache == null)
+		{
+			//the hash includes everything that affects the processed texture, so that changing the
+			//delegate definitions (or other parameters) causes the textures to be regenerated
+			int[] colors = (int[]) this.getValue(AVKey.TRANSPARENCY_COLORS);
+			String hash =
+					ProcessedTextureCache.calculateDefinitionHash(delegateKit, getTextureFormat(),
+							String.valueOf(isUseMipMaps()), Arrays.toString(colors));
+			processedTextureCache =
+					new ProcessedTextureCache(getLevels().getFirstLevel().getCacheName(), hash,
+							ProcessedTextureCache.dependsOnNeighbors(delegateKit));
+			//textures cached for previous definitions will never be used again
+			processedTextureCache.deleteOtherDefinitions();
+		}
+		return processedTextureCache;
+	}
+
 	/**
 	 * Extension of {@link WMSTiledImageLayer} that provides access to the
 	 * wmsGetParamsFromDocument function.
@@ -281,6 +339,61 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		delegateKit.forceTextureLoad((DelegatorTextureTile) tile, this);
 	}
 
+	@Override
+	protected void addTile(DrawContext dc, TextureTile tile)
+	{
+		super.addTile(dc, tile);
+
+		TextureData textureData = tile.getTextureData();
+		if (textureData != null)
+		{
+			TileKey key = ((IDelegatorTile) tile).getTransformedTileKey();
+			boolean granted =
+					TextureUploadScheduler.getInstance().requestUpload(dc.getGLContext(), dc.getFrameTimeStamp(),
+							key, textureData.getEstimatedMemorySize(), computeUploadPriority(dc, tile));
+			if (!granted && tile.getFallbackTile() == null && currentResourceTile != null)
+			{
+				tile.setFallbackTile(currentResourceTile);
+			}
+		}
+
+		touchTexture(dc, tile);
+		if (tile.getFallbackTile() != null)
+		{
+			touchTexture(dc, tile.getFallbackTile());
+		}
+	}
+
+	/**
+	 * Touch the tile's texture (if resident) in the
+	 * {@link TextureMemoryManager}.
+	 */
+	protected void touchTexture(DrawContext dc, TextureTile tile)
+	{
+		TileKey key = ((IDelegatorTile) tile).getTransformedTileKey();
+		Texture texture = tile.getTexture(dc.getTextureCache());
+		if (texture == null)
+		{
+			TextureMemoryManager.getInstance().remove(key);
+			return;
+		}
+		TextureMemoryManager.getInstance().touch(this, key, texture.getEstimatedMemorySize(), tile.getLevelNumber(),
+				dc.getFrameTimeStamp(), GpuResourceCacheEvictor.get(dc.getTextureCache()));
+	}
+
+	/**
+	 * Calculate the priority of uploading the given tile's texture: the size of
+	 * the tile's texels relative to the eye distance, so that tiles that appear
+	 * coarsest on screen are uploaded first.
+	 */
+	protected double computeUploadPriority(DrawContext dc, TextureTile tile)
+	{
+		LatLon centroid = tile.getSector().getCentroid();
+		Vec4 point = dc.getGlobe().computePointFromPosition(centroid.getLatitude(), centroid.getLongitude(), 0);
+		double distance = Math.max(1, dc.getView().getEyePoint().distanceTo3(point));
+		return point.getLength3() * tile.getLevel().getTexelSize() / distance;
+	}
+
 	@Override
 	protected void requestTexture(DrawContext dc, TextureTile tile)
 	{
@@ -312,6 +425,23 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		}
 	}
 
+	@Override
+	public List<Runnable> createPrefetchTasks(Globe globe, PrefetchView view, int maxTasks)
+	{
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		for (TextureTile tile : PrefetchService.selectTiles(this, globe, view, maxTasks))
+		{
+			validateTileClass(tile);
+			tile.setPriority(PrefetchService.PREFETCH_PRIORITY);
+			Runnable task = delegateKit.createRequestTask((DelegatorTextureTile) tile, this);
+			if (task != null)
+			{
+				tasks.add(task);
+			}
+		}
+		return tasks;
+	}
+
 	protected void validateTileClass(Object tile)
 	{
 		if (!(tile instanceof DelegatorTextureTile))
@@ -338,7 +468,7 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 
 		TextureData textureData;
 
-		synchronized (fileLock)
+		synchronized (fileLock.getTileLock(textureURL))
 		{
 			textureData = readTexture(tile, textureURL);
 		}
@@ -370,6 +500,15 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 			if (url.toString().toLowerCase().endsWith("dds"))
 				return TextureIO.newTextureData(GLProfile.get(GLProfile.GL2), url, isUseMipMaps(), null);
 
+			ProcessedTextureCache cache = getProcessedTextureCache();
+			if (cache != null)
+			{
+				//if the processed texture has been cached, skip the readers, transformers and compression
+				URL cachedURL = cache.findTexture(tile, url);
+				if (cachedURL != null)
+					return TextureIO.newTextureData(GLProfile.get(GLProfile.GL2), cachedURL, isUseMipMaps(), null);
+			}
+
 			BufferedImage image = readImage(tile, url);
 
 			if ("image/dds".equalsIgnoreCase(getTextureFormat()))
@@ -388,6 +527,11 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 					buffer = DDSCompressor.compressImageURL(url, attributes);
 				}
 
+				if (cache != null && buffer != null)
+				{
+					cache.storeTexture(tile, buffer);
+				}
+
 				//return the dds image as TextureData
 				return TextureIO.newTextureData(GLProfile.get(GLProfile.GL2), WWIO.getInputStreamFromByteBuffer(buffer), isUseMipMaps(), null);
 			}
@@ -423,7 +567,7 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 			if (url.toString().toLowerCase().endsWith(".dds"))
 			{
 				ByteBuffer buffer = WWIO.readURLContentToBuffer(url, false);
-				image = DDSUncompressor.readDxt3(buffer);
+				image = DDSUncompressor.readDds(buffer);
 			}
 			else
 			{
@@ -438,12 +582,8 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		}
 
 		//perform any transformations on the image
-		image = delegateKit.transformImage(image, tile);
-
-		//manually do the TRANSPARENCY_COLORS transform, for compatibility with AbstractRetrievalPostProcessor
 		int[] colors = (int[]) this.getValue(AVKey.TRANSPARENCY_COLORS);
-		if (colors != null)
-			image = ImageUtil.mapTransparencyColors(image, colors);
+		image = delegateKit.transformImage(image, tile, colors);
 
 		return image;
 	}
@@ -467,7 +607,7 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		@Override
 		protected Object getFileLock()
 		{
-			return layer.fileLock;
+			return layer.fileLock.getTileLock(tile.getPath());
 		}
 	}
 
@@ -15,6 +15,9 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.layers.tiled.image.delegate;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,27 +26,162 @@ import java.util.Map;
  * synchronized before reading from and writing to the cache). This is useful as
  * some layers may share the same imagery but do different post processing on
  * the textures.
+ * <p/>
+ * Each data cache name has a {@link SharedLock}, which provides a striped set
+ * of tile locks, so that reads and writes of different tiles in the same cache
+ * can run in parallel, while reads and writes of the same tile file are still
+ * serialized. The {@link SharedLock} itself can be synchronized on for
+ * operations that affect the whole cache (such as writing the configuration
+ * file).
+ * <p/>
+ * The shared locks are weakly referenced, so a cache's lock is released once
+ * no layer holds it any longer.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class FileLockSharer
 {
-	private static Map<String, Object> locks = new HashMap<String, Object>();
+	private final static Map<String, LockReference> locks = new HashMap<String, LockReference>();
+	private final static ReferenceQueue<SharedLock> queue = new ReferenceQueue<SharedLock>();
 
 	/**
 	 * Get an object on which to synchronize for reading/writing to the cache
-	 * location identified by dataCacheName.
+	 * location identified by dataCacheName. The caller must keep a reference to
+	 * the returned lock for as long as it is used.
 	 * 
 	 * @param dataCacheName
 	 *            Cache location
 	 * @return Object on which to synchronize
 	 */
-	public static Object getLock(String dataCacheName)
+	public static SharedLock getLock(String dataCacheName)
 	{
-		if (!locks.containsKey(dataCacheName))
+		synchronized (locks)
 		{
-			locks.put(dataCacheName, new Object());
+			expungeStaleLocks();
+
+			LockReference reference = locks.get(dataCacheName);
+			SharedLock lock = reference != null ? reference.get() : null;
+			if (lock == null)
+			{
+				lock = new SharedLock();
+				locks.put(dataCacheName, new LockReference(dataCacheName, lock, queue));
+			}
+			return lock;
+		}
+	}
+
+	/**
+	 * @return Number of data cache names that currently have a lock
+	 */
+	static int getLockCount()
+	{
+		synchronized (locks)
+		{
+			expungeStaleLocks();
+			return locks.size();
+		}
+	}
+
+	private static void expungeStaleLocks()
+	{
+		LockReference reference;
+		while ((reference = (LockReference) queue.poll()) != null)
+		{
+			//only remove the entry if it hasn't already been replaced by a new lock
+			if (locks.get(reference.dataCacheName) == reference)
+			{
+				locks.remove(reference.dataCacheName);
+			}
+		}
+	}
+
+	/**
+	 * The lock shared by all layers using a particular data cache name.
+	 */
+	public static class SharedLock
+	{
+		private final static int STRIPES = 64;
+
+		private final Object[] tileLocks = new Object[STRIPES];
+
+		private SharedLock()
+		{
+			for (int i = 0; i < STRIPES; i++)
+			{
+				tileLocks[i] = new Object();
+			}
+		}
+
+		/**
+		 * Get an object on which to synchronize for reading/writing the tile
+		 * file with the given path. Locks are chosen using the file's name
+		 * without its directory or extension, so the same tile maps to the same
+		 * lock whether it is identified by its cache path or by its file URL.
+		 * 
+		 * @param path
+		 *            Tile file path
+		 * @return Object on which to synchronize
+		 */
+		public Object getTileLock(String path)
+		{
+			return tileLocks[stripe(path)];
+		}
+
+		/**
+		 * Get an object on which to synchronize for reading the tile file with
+		 * the given path, while already holding the lock of another tile file
+		 * (such as when reading a tile's neighbors). Nested tile locks are
+		 * always taken in the same order, so that two threads each holding one
+		 * tile's lock can't deadlock waiting for the other's.
+		 * 
+		 * @param heldPath
+		 *            Path of the tile file whose lock is held
+		 * @param path
+		 *            Tile file path
+		 * @return Object on which to synchronize, or null if the lock can't be
+		 *         taken while holding the lock for <code>heldPath</code>
+		 */
+		public Object getNestedTileLock(String heldPath, String path)
+		{
+			int stripe = stripe(path);
+			return stripe >= stripe(heldPath) ? tileLocks[stripe] : null;
+		}
+
+		protected static int stripe(String path)
+		{
+			int hash = baseName(path).hashCode();
+			hash ^= (hash >>> 16);
+			return hash & (STRIPES - 1);
+		}
+
+		/**
+		 * @see #getTileLock(String)
+		 */
+		public Object getTileLock(URL url)
+		{
+			return getTileLock(url.getPath());
+		}
+
+		protected static String baseName(String path)
+		{
+			int start = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+			int end = path.lastIndexOf('.');
+			if (end < start)
+			{
+				end = path.length();
+			}
+			return path.substring(start, end);
+		}
+	}
+
+	private static class LockReference extends WeakReference<SharedLock>
+	{
+		public final String dataCacheName;
+
+		public LockReference(String dataCacheName, SharedLock lock, ReferenceQueue<SharedLock> queue)
+		{
+			super(lock, queue);
+			this.dataCacheName = dataCacheName;
 		}
-		return locks.get(dataCacheName);
 	}
 }
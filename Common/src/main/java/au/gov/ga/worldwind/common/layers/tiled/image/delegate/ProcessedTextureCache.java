@@ -0,0 +1,404 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.tiled.image.delegate;
+
+import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.cache.FileStore;
+import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.WWIO;
+import gov.nasa.worldwind.util.WWXML;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import au.gov.ga.worldwind.common.layers.delegate.IDelegate;
+import au.gov.ga.worldwind.common.layers.delegate.IDelegatorTile;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.elevationreader.ElevationImageReaderDelegate;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.elevationreader.ShadedElevationImageReaderDelegate;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+import au.gov.ga.worldwind.common.util.XMLUtil;
+
+/**
+ * On-disk cache of the final processed (read, transformed and DXT compressed)
+ * textures for a {@link DelegatorTiledImageLayer} with an
+ * <code>image/dds</code> texture format. Reloading a tile from this cache skips
+ * the reader delegates, the transformer delegates and the DDS compression.
+ * <p/>
+ * Textures are stored in the data file store under
+ * <code>[cache name]/processed/[definition hash]/[level]/[row]/[row]_[col].dds</code>.
+ * The definition hash is calculated from the layer's delegate definitions (as
+ * saved to XML) and the other parameters that affect the processed texture, so
+ * that changing the layer's delegates causes a new set of textures to be
+ * generated. A cached texture is also ignored if the source tile file has been
+ * modified since the texture was cached.
+ * <p/>
+ * If the layer's textures depend on the neighboring tiles (such as a seamless
+ * {@link ShadedElevationImageReaderDelegate}, which extrapolates the border of
+ * a tile whose neighbor hasn't been downloaded yet), a cached texture is also
+ * ignored if any of the source tile's neighbors has been modified (or
+ * downloaded) since the texture was cached, so that edges generated without a
+ * neighbor aren't kept permanently.
+ * <p/>
+ * As a changed definition leaves the textures for the old definition hash
+ * unused, {@link #deleteOtherDefinitions()} deletes the other definition hash
+ * directories for the same cache name, apart from those used by other layers
+ * in this session (layers with different delegates can share a cache name).
+ * Other processes (such as distributed render workers) may be using other
+ * definitions of the same cache, so each cache touches a marker file in its
+ * definition directory while in use, and only directories that haven't been
+ * used for {@link #UNUSED_EXPIRY} milliseconds are deleted.
+ */
+public class ProcessedTextureCache
+{
+	protected final static String PROCESSED_DIRECTORY = "processed";
+	protected final static String EXTENSION = ".dds";
+	protected final static String MARKER = "lastused";
+
+	/**
+	 * Time after which an unused definition directory can be deleted.
+	 */
+	public final static long UNUSED_EXPIRY = 7L * 24 * 60 * 60 * 1000;
+
+	/**
+	 * Minimum time between updates of the marker file's modification time.
+	 */
+	protected final static long MARKER_INTERVAL = 60 * 60 * 1000;
+
+	//cache roots used in this session, which are never deleted by deleteOtherDefinitions
+	private final static Set<String> activeRoots = Collections.synchronizedSet(new HashSet<String>());
+
+	protected final String cacheName;
+	protected final String cacheRoot;
+	protected final boolean checkNeighbors;
+	private volatile long markerTime = 0;
+
+	/**
+	 * @param cacheName
+	 *            Layer's data cache name
+	 * @param definitionHash
+	 *            Hash of the layer's definition (see
+	 *            {@link #calculateDefinitionHash(ImageDelegateKit, String...)})
+	 */
+	public ProcessedTextureCache(String cacheName, String definitionHash)
+	{
+		this(cacheName, definitionHash, false);
+	}
+
+	/**
+	 * @param cacheName
+	 *            Layer's data cache name
+	 * @param definitionHash
+	 *            Hash of the layer's definition (see
+	 *            {@link #calculateDefinitionHash(ImageDelegateKit, String...)})
+	 * @param checkNeighbors
+	 *            Do the textures depend on the neighboring source tiles?
+	 */
+	public ProcessedTextureCache(String cacheName, String definitionHash, boolean checkNeighbors)
+	{
+		this.cacheName = cacheName;
+		this.cacheRoot = cacheName + "/" + PROCESSED_DIRECTORY + "/" + definitionHash;
+		this.checkNeighbors = checkNeighbors;
+		activeRoots.add(cacheRoot);
+	}
+
+	/**
+	 * Delete the textures cached for other definition hashes of this cache
+	 * name (in the data file store's write location), apart from those in use
+	 * by other caches in this session, and those used by any process in the
+	 * last {@link #UNUSED_EXPIRY} milliseconds. The directories are deleted on
+	 * a background thread.
+	 */
+	public void deleteOtherDefinitions()
+	{
+		File writeLocation = WorldWind.getDataFileStore().getWriteLocation();
+		if (writeLocation == null)
+		{
+			return;
+		}
+		markUsed();
+		final long expiry = System.currentTimeMillis() - UNUSED_EXPIRY;
+		final File processedDirectory = new File(writeLocation, cacheName + "/" + PROCESSED_DIRECTORY);
+		DaemonThreadFactory.newThread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				File[] definitionDirectories = processedDirectory.listFiles();
+				if (definitionDirectories == null)
+				{
+					return;
+				}
+				for (File directory : definitionDirectories)
+				{
+					String root = cacheName + "/" + PROCESSED_DIRECTORY + "/" + directory.getName();
+					if (directory.isDirectory() && !activeRoots.contains(root) && lastUsed(directory) < expiry)
+					{
+						delete(directory);
+					}
+				}
+			}
+		}, "Processed texture cache cleanup").start();
+	}
+
+	/**
+	 * Record that this cache's definition is in use, by updating the
+	 * modification time of the marker file in the definition directory (at
+	 * most once every {@link #MARKER_INTERVAL} milliseconds).
+	 */
+	protected void markUsed()
+	{
+		long now = System.currentTimeMillis();
+		if (now - markerTime < MARKER_INTERVAL)
+		{
+			return;
+		}
+		markerTime = now;
+
+		File writeLocation = WorldWind.getDataFileStore().getWriteLocation();
+		if (writeLocation == null)
+		{
+			return;
+		}
+		File marker = new File(writeLocation, cacheRoot + "/" + MARKER);
+		try
+		{
+			marker.getParentFile().mkdirs();
+			if (!marker.createNewFile())
+			{
+				marker.setLastModified(now);
+			}
+		}
+		catch (IOException e)
+		{
+			Logging.logger().fine("Could not update processed texture marker " + marker);
+		}
+	}
+
+	/**
+	 * @return Last time the given definition directory was used, from its
+	 *         marker file (or the directory itself, if it has no marker file)
+	 */
+	protected static long lastUsed(File directory)
+	{
+		File marker = new File(directory, MARKER);
+		return marker.isFile() ? marker.lastModified() : directory.lastModified();
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		if (!file.delete())
+		{
+			Logging.logger().fine("Could not delete processed texture " + file);
+		}
+	}
+
+	/**
+	 * Find the cached texture for the given tile.
+	 * 
+	 * @param tile
+	 *            Tile to find the texture for
+	 * @param sourceURL
+	 *            URL of the source tile file that the texture was generated
+	 *            from
+	 * @return URL of the cached texture, or null if there is no cached texture
+	 *         or it is older than the source file (or one of its neighbors)
+	 */
+	public URL findTexture(IDelegatorTile tile, URL sourceURL)
+	{
+		markUsed();
+		FileStore fileStore = WorldWind.getDataFileStore();
+		URL url = fileStore.findFile(getTexturePath(tile), false);
+		if (url == null)
+		{
+			return null;
+		}
+
+		File cached = WWIO.convertURLToFile(url);
+		File source = WWIO.convertURLToFile(sourceURL);
+		if (cached == null || (source != null && source.lastModified() > cached.lastModified()))
+		{
+			return null;
+		}
+		if (checkNeighbors && isNeighborNewer(sourceURL, cached.lastModified()))
+		{
+			return null;
+		}
+		return url;
+	}
+
+	/**
+	 * @return Has any of the four neighbors of the source tile been modified
+	 *         after the given time?
+	 */
+	protected boolean isNeighborNewer(URL sourceURL, long time)
+	{
+		int[][] offsets = { { 1, 0 }, { -1, 0 }, { 0, -1 }, { 0, 1 } };
+		for (int[] offset : offsets)
+		{
+			File neighbor = ElevationImageReaderDelegate.getNeighborFile(sourceURL, offset[0], offset[1]);
+			//lastModified is 0 if the neighbor doesn't exist
+			if (neighbor != null && neighbor.lastModified() > time)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param delegateKit
+	 * @return Do the textures generated by the given delegate kit depend on
+	 *         the neighboring source tiles?
+	 */
+	public static boolean dependsOnNeighbors(ImageDelegateKit delegateKit)
+	{
+		for (IDelegate delegate : delegateKit.getDelegates())
+		{
+			if (delegate instanceof ShadedElevationImageReaderDelegate
+					&& ((ShadedElevationImageReaderDelegate) delegate).isSeamless())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Store the processed texture for the given tile. Failures are logged and
+	 * otherwise ignored, as the texture can always be regenerated.
+	 * 
+	 * @param tile
+	 *            Tile that the texture belongs to
+	 * @param buffer
+	 *            DDS texture data (the buffer's position is not modified)
+	 */
+	public void storeTexture(IDelegatorTile tile, ByteBuffer buffer)
+	{
+		File file = WorldWind.getDataFileStore().newFile(getTexturePath(tile));
+		if (file == null)
+		{
+			return;
+		}
+
+		//write to a temporary file and rename, so that a partially written texture is never read
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		try
+		{
+			FileOutputStream fos = new FileOutputStream(temp);
+			try
+			{
+				FileChannel channel = fos.getChannel();
+				ByteBuffer duplicate = buffer.duplicate();
+				duplicate.rewind();
+				while (duplicate.hasRemaining())
+				{
+					channel.write(duplicate);
+				}
+			}
+			finally
+			{
+				fos.close();
+			}
+			if (file.exists())
+			{
+				file.delete();
+			}
+			if (!temp.renameTo(file))
+			{
+				throw new IOException("Could not rename " + temp);
+			}
+		}
+		catch (IOException e)
+		{
+			temp.delete();
+			Logging.logger().log(java.util.logging.Level.WARNING, "Error caching processed texture " + file, e);
+		}
+	}
+
+	/**
+	 * @param tile
+	 * @return Path of the given tile's texture within the data file store
+	 */
+	protected String getTexturePath(IDelegatorTile tile)
+	{
+		return cacheRoot + "/" + tile.getLevelNumber() + "/" + tile.getRow() + "/" + tile.getRow() + "_"
+				+ tile.getColumn() + EXTENSION;
+	}
+
+	/**
+	 * Calculate a hash of the layer's delegate definitions. The delegates are
+	 * saved to an XML element (so that any definition elements such as color
+	 * maps are included), and the element is hashed along with the extra
+	 * parameters provided.
+	 * 
+	 * @param delegateKit
+	 *            Layer's delegate kit
+	 * @param parameters
+	 *            Other parameters that affect the processed texture
+	 * @return Hex string hash of the definition
+	 */
+	public static String calculateDefinitionHash(ImageDelegateKit delegateKit, String... parameters)
+	{
+		try
+		{
+			Document document = WWXML.createDocumentBuilder(false).newDocument();
+			Element element = document.createElement("Layer");
+			document.appendChild(element);
+			delegateKit.saveToXML(element);
+			for (String parameter : parameters)
+			{
+				WWXML.appendText(element, "Parameter", String.valueOf(parameter));
+			}
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			XMLUtil.saveDocumentToFormattedStream(document, baos);
+
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] hash = digest.digest(baos.toByteArray());
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 8; i++)
+			{
+				sb.append(String.format("%02x", hash[i] & 0xff));
+			}
+			return sb.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
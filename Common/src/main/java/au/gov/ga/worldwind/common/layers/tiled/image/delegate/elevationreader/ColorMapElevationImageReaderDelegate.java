@@ -23,6 +23,7 @@ import gov.nasa.worldwind.util.BufferWrapper;
 import gov.nasa.worldwind.util.WWXML;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,6 +31,7 @@ import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.layers.delegate.IDelegate;
 import au.gov.ga.worldwind.common.util.ColorMap;
+import au.gov.ga.worldwind.common.util.ColorMapLookupTable;
 import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
@@ -78,6 +80,7 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 	private final static String DEFINITION_STRING = "ColorMapReader";
 
 	private final ColorMap colorMap;
+	private final ColorMapLookupTable lookupTable;
 
 	@SuppressWarnings("unused")
 	private ColorMapElevationImageReaderDelegate()
@@ -90,6 +93,7 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 	{
 		super(pixelType, byteOrder, missingDataSignal);
 		this.colorMap = colorMap;
+		this.lookupTable = colorMap == null ? null : new ColorMapLookupTable(colorMap);
 	}
 
 	@Override
@@ -128,22 +132,13 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 	protected BufferedImage generateImage(BufferWrapper elevations, int width, int height, Globe globe, Sector sector)
 	{
 		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		float[] grid = toFloatGrid(elevations, width * height, -Double.MAX_VALUE, Double.MAX_VALUE);
 
-		for (int y = 0, i = 0; y < height; y++)
+		for (int i = 0; i < pixels.length; i++)
 		{
-			for (int x = 0; x < width; x++, i++)
-			{
-				double elevation = elevations.getDouble(i);
-				if (elevation == missingDataSignal)
-				{
-					image.setRGB(x, y, 0);
-				}
-				else
-				{
-					int rgba = colorMap.calculateColor(elevation).getRGB();
-					image.setRGB(x, y, rgba);
-				}
-			}
+			float elevation = grid[i];
+			pixels[i] = elevation != elevation ? 0 : lookupTable.lookup(elevation); //NaN check
 		}
 
 		return image;
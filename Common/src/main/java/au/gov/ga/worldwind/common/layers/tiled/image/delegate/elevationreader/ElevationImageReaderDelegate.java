@@ -21,8 +21,11 @@ import gov.nasa.worldwind.util.BufferWrapper;
 import gov.nasa.worldwind.util.Tile;
 
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -32,7 +35,10 @@ import au.gov.ga.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.worldwind.common.layers.delegate.ITileReaderDelegate;
 import au.gov.ga.worldwind.common.layers.delegate.reader.MaskHelper;
 import au.gov.ga.worldwind.common.layers.delegate.reader.MaskHelper.MaskInsideZipDelegate;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer.SharedLock;
 import au.gov.ga.worldwind.common.util.IOUtil;
+import au.gov.ga.worldwind.common.util.URLUtil;
 
 /**
  * Abstract class that acts as a super class of all {@link ITileReaderDelegate}s
@@ -43,6 +49,8 @@ import au.gov.ga.worldwind.common.util.IOUtil;
 public abstract class ElevationImageReaderDelegate implements ITileReaderDelegate
 {
 	protected final static String doublePattern = "((?:-?\\d*\\.\\d*)|(?:-?\\d+))";
+	protected final static Pattern tilePathPattern =
+			Pattern.compile("(.*[/\\\\])(\\d+)([/\\\\])(\\d+)_(\\d+)(\\.\\w+)$");
 
 	protected final String pixelType;
 	protected final String byteOrder;
@@ -72,6 +80,7 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 	 */
 	public BufferedImage readImage(Tile tile, URL url, Globe globe) throws IOException
 	{
+		SharedLock fileLock = FileLockSharer.getLock(tile.getLevel().getCacheName());
 		if (checkForMask)
 		{
 			final BufferedImage[] mask = new BufferedImage[1];
@@ -99,7 +108,7 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 			{
 				try
 				{
-					mask[0] = ImageIO.read(maskUrl);
+					mask[0] = MaskHelper.readImage(maskUrl);
 				}
 				catch (Exception e)
 				{
@@ -111,7 +120,8 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 			}
 
 			BufferedImage image =
-					generateImage(byteBuffer[0], tile.getWidth(), tile.getHeight(), globe, tile.getSector());
+					generateImage(byteBuffer[0], tile.getWidth(), tile.getHeight(), globe, tile.getSector(), url,
+							fileLock);
 			if (mask[0] == null)
 				return image;
 			return MaskHelper.compose(image, mask[0]);
@@ -119,7 +129,8 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 		else
 		{
 			BufferWrapper byteBuffer = IOUtil.readByteBuffer(url, pixelType, byteOrder);
-			return generateImage(byteBuffer, tile.getWidth(), tile.getHeight(), globe, tile.getSector());
+			return generateImage(byteBuffer, tile.getWidth(), tile.getHeight(), globe, tile.getSector(), url,
+					fileLock);
 		}
 	}
 
@@ -140,4 +151,172 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 	 */
 	protected abstract BufferedImage generateImage(BufferWrapper elevations, int width, int height, Globe globe,
 			Sector sector);
+
+	/**
+	 * Generate an image from elevation data read from the given URL.
+	 * Subclasses that need to read data from neighboring tiles can override
+	 * this method; by default it calls
+	 * {@link #generateImage(BufferWrapper, int, int, Globe, Sector)}.
+	 * 
+	 * @param url
+	 *            URL the elevation data was read from
+	 * @param fileLock
+	 *            Lock of the tile's data cache, which is held for the tile
+	 *            while this method is called (may be null)
+	 * @see #generateImage(BufferWrapper, int, int, Globe, Sector)
+	 */
+	protected BufferedImage generateImage(BufferWrapper elevations, int width, int height, Globe globe,
+			Sector sector, URL url, SharedLock fileLock)
+	{
+		return generateImage(elevations, width, height, globe, sector);
+	}
+
+	/**
+	 * Copy elevation data into a float array, replacing missing data and
+	 * values outside the given range with {@link Float#NaN}.
+	 * 
+	 * @param elevations
+	 *            Wrapped elevation data
+	 * @param length
+	 *            Number of elevation values to copy
+	 * @param minElevation
+	 *            Minimum valid elevation
+	 * @param maxElevation
+	 *            Maximum valid elevation
+	 * @return Array of elevation values
+	 */
+	protected float[] toFloatGrid(BufferWrapper elevations, int length, double minElevation, double maxElevation)
+	{
+		float[] grid = new float[length];
+		length = Math.min(length, elevations.length());
+		for (int i = 0; i < length; i++)
+		{
+			double elevation = elevations.getDouble(i);
+			grid[i] =
+					elevation != missingDataSignal && minElevation <= elevation && elevation <= maxElevation
+							? (float) elevation : Float.NaN;
+		}
+		for (int i = length; i < grid.length; i++)
+		{
+			grid[i] = Float.NaN;
+		}
+		return grid;
+	}
+
+	/**
+	 * Read the elevation data of a tile neighboring the tile at the given URL.
+	 * Only supported for file URLs of tiles stored in the standard
+	 * <code>level/row/row_col.ext</code> layout. Neighbors packed in zip files
+	 * are read from the zip's elevation entry, like the tile itself.
+	 * <p/>
+	 * The neighbor is read while holding its tile lock, if that lock can be
+	 * taken while the tile's own lock is held (see
+	 * {@link SharedLock#getNestedTileLock(String, String)}). Otherwise it is
+	 * read without the lock, and discarded if it is incomplete.
+	 * 
+	 * @param url
+	 *            URL of the tile's elevation data
+	 * @param fileLock
+	 *            Lock of the tile's data cache (may be null)
+	 * @param rowOffset
+	 *            Row offset of the neighbor (rows increase northwards)
+	 * @param columnOffset
+	 *            Column offset of the neighbor (columns increase eastwards)
+	 * @param length
+	 *            Number of elevation values in a tile
+	 * @return Neighbor's elevation data, or null if it could not be read
+	 */
+	protected BufferWrapper readNeighbor(URL url, SharedLock fileLock, int rowOffset, int columnOffset, int length)
+	{
+		File neighbor = getNeighborFile(url, rowOffset, columnOffset);
+		if (neighbor == null)
+		{
+			return null;
+		}
+
+		Object neighborLock = fileLock != null ? fileLock.getNestedTileLock(url.getPath(), neighbor.getPath()) : null;
+		BufferWrapper elevations;
+		if (neighborLock != null)
+		{
+			synchronized (neighborLock)
+			{
+				elevations = readNeighbor(neighbor);
+			}
+		}
+		else
+		{
+			elevations = readNeighbor(neighbor);
+		}
+		return elevations != null && elevations.length() >= length ? elevations : null;
+	}
+
+	private BufferWrapper readNeighbor(File neighbor)
+	{
+		if (!neighbor.isFile())
+		{
+			return null;
+		}
+		try
+		{
+			URL url = neighbor.toURI().toURL();
+			if (!url.toString().toLowerCase().endsWith("zip"))
+			{
+				return IOUtil.readByteBuffer(url, pixelType, byteOrder);
+			}
+
+			final BufferWrapper[] byteBuffer = new BufferWrapper[1];
+			MaskHelper.getMaskURL(url, 3, new MaskInsideZipDelegate()
+			{
+				@Override
+				public void readEntry(ZipEntry entry, ZipInputStream zis) throws IOException
+				{
+					if (!entry.getName().toLowerCase().endsWith(".png"))
+					{
+						byteBuffer[0] = IOUtil.readByteBuffer(zis, pixelType, byteOrder);
+					}
+				}
+			});
+			return byteBuffer[0];
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Calculate the file of a tile neighboring the tile at the given URL. Only
+	 * supported for file URLs of tiles stored in the standard
+	 * <code>level/row/row_col.ext</code> layout.
+	 * 
+	 * @param url
+	 *            URL of the tile
+	 * @param rowOffset
+	 *            Row offset of the neighbor (rows increase northwards)
+	 * @param columnOffset
+	 *            Column offset of the neighbor (columns increase eastwards)
+	 * @return Neighbor's file (which may not exist), or null if the URL isn't
+	 *         a tile file or the neighbor is outside the tile grid
+	 */
+	public static File getNeighborFile(URL url, int rowOffset, int columnOffset)
+	{
+		File file = URLUtil.urlToFile(url);
+		if (file == null)
+		{
+			return null;
+		}
+		Matcher matcher = tilePathPattern.matcher(file.getPath());
+		if (!matcher.matches() || !matcher.group(2).equals(matcher.group(4)))
+		{
+			return null;
+		}
+
+		int row = Integer.parseInt(matcher.group(4)) + rowOffset;
+		int column = Integer.parseInt(matcher.group(5)) + columnOffset;
+		if (row < 0 || column < 0)
+		{
+			return null;
+		}
+		return new File(matcher.group(1) + row + matcher.group(3) + row + "_" + column + matcher.group(6));
+	}
 }
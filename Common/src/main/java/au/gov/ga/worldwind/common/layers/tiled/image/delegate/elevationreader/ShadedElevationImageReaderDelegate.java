@@ -17,7 +17,6 @@ package au.gov.ga.worldwind.common.layers.tiled.image.delegate.elevationreader;
 
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVList;
-import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.globes.Globe;
@@ -25,12 +24,16 @@ import gov.nasa.worldwind.util.BufferWrapper;
 import gov.nasa.worldwind.util.WWXML;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.net.URL;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.layers.delegate.IDelegate;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer.SharedLock;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.ProcessedTextureCache;
 
 /**
  * Treats retrieved image tiles as elevation data, and generates a shading based
@@ -39,7 +42,7 @@ import au.gov.ga.worldwind.common.layers.delegate.IDelegate;
  * 
  * <pre>
  * &lt;Delegate&gt;
- *   ShadedElevationReader(pixelType,byteOrder,missingData,(sunX,sunY,sunZ),exaggeration[,(min,max)])
+ *   ShadedElevationReader(pixelType,byteOrder,missingData,(sunX,sunY,sunZ),exaggeration[,(min,max)][,seamless])
  * &lt;/Delegate&gt;
  * </pre>
  * 
@@ -58,6 +61,9 @@ import au.gov.ga.worldwind.common.layers.delegate.IDelegate;
  * (double)
  * <li>(min,max) = (Optional) The minimum and maximum elevation values to use
  * when calculating shading (in metres as doubles)
+ * <li>seamless = (Optional) Read a one vertex border from the neighboring
+ * tiles in the local cache, and calculate normals using central differences,
+ * so that the shading is continuous across tile edges
  * </ul>
  * Shading is calculated as a simple dot product between the calculated normals
  * of the elevation model and the sun vector.
@@ -72,6 +78,9 @@ public class ShadedElevationImageReaderDelegate extends ElevationImageReaderDele
 	protected final Vec4 sunPosition;
 	protected final double minElevation;
 	protected final double maxElevation;
+	protected final boolean readNeighbors;
+
+	private final double sunX, sunY, sunZ;
 
 	@SuppressWarnings("unused")
 	private ShadedElevationImageReaderDelegate()
@@ -82,12 +91,30 @@ public class ShadedElevationImageReaderDelegate extends ElevationImageReaderDele
 
 	public ShadedElevationImageReaderDelegate(String pixelType, String byteOrder, double missingDataSignal,
 			double exaggeration, Vec4 sunPosition, double minElevation, double maxElevation)
+	{
+		this(pixelType, byteOrder, missingDataSignal, exaggeration, sunPosition, minElevation, maxElevation, false);
+	}
+
+	public ShadedElevationImageReaderDelegate(String pixelType, String byteOrder, double missingDataSignal,
+			double exaggeration, Vec4 sunPosition, double minElevation, double maxElevation, boolean readNeighbors)
 	{
 		super(pixelType, byteOrder, missingDataSignal);
 		this.exaggeration = exaggeration;
 		this.sunPosition = sunPosition;
 		this.minElevation = minElevation;
 		this.maxElevation = maxElevation;
+		this.readNeighbors = readNeighbors;
+		this.sunX = sunPosition.x;
+		this.sunY = sunPosition.y;
+		this.sunZ = sunPosition.z;
+	}
+
+	/**
+	 * @return Does this reader read a border from the neighboring tiles?
+	 */
+	public boolean isSeamless()
+	{
+		return readNeighbors;
 	}
 
 	@Override
@@ -99,7 +126,7 @@ public class ShadedElevationImageReaderDelegate extends ElevationImageReaderDele
 			Pattern pattern =
 					Pattern.compile("(?:\\((\\w+),(\\w+)," + doublePattern + ",\\(" + doublePattern + ","
 							+ doublePattern + "," + doublePattern + "\\)," + doublePattern + optionalMinMaxGroup
-							+ "\\))");
+							+ "(,seamless)?\\))");
 			Matcher matcher = pattern.matcher(definition);
 			if (matcher.find())
 			{
@@ -120,9 +147,11 @@ public class ShadedElevationImageReaderDelegate extends ElevationImageReaderDele
 					maxElevation = Double.parseDouble(matcher.group(9));
 				}
 
+				boolean readNeighbors = matcher.group(10) != null;
+
 				return new ShadedElevationImageReaderDelegate(WWXML.parseDataType(pixelType),
 						WWXML.parseByteOrder(byteOrder), missingDataSignal, exaggeration, sunPosition, minElevation,
-						maxElevation);
+						maxElevation, readNeighbors);
 			}
 		}
 		return null;
@@ -133,91 +162,197 @@ public class ShadedElevationImageReaderDelegate extends ElevationImageReaderDele
 	{
 		return DEFINITION_STRING + "(" + WWXML.dataTypeAsText(pixelType) + "," + WWXML.byteOrderAsText(byteOrder) + ","
 				+ missingDataSignal + ",(" + sunPosition.x + "," + sunPosition.y + "," + sunPosition.z + "),"
-				+ exaggeration + ")";
+				+ exaggeration
+				+ (minElevation != -Double.MAX_VALUE || maxElevation != Double.MAX_VALUE ? ",(" + minElevation + ","
+						+ maxElevation + ")" : "") + (readNeighbors ? ",seamless" : "") + ")";
 	}
 
 	@Override
 	protected BufferedImage generateImage(BufferWrapper elevations, int width, int height, Globe globe, Sector sector)
 	{
-		//image has one less in width and height than verts array, because normals are calculated using neighbors
-		//it would be optimal to read the neighboring tiles for normals on tile edges; this would fix visible tile edges
+		return generateImage(elevations, width, height, globe, sector, null, null);
+	}
 
-		BufferedImage image = new BufferedImage(width - 1, height - 1, BufferedImage.TYPE_INT_ARGB);
+	@Override
+	protected BufferedImage generateImage(BufferWrapper elevations, int width, int height, Globe globe,
+			Sector sector, URL url, SharedLock fileLock)
+	{
+		float[] grid = toFloatGrid(elevations, width * height, minElevation, maxElevation);
+		double scale = exaggeration * 0.000005;
+		double dlon = sector.getDeltaLonDegrees() / width;
+		double dlat = sector.getDeltaLatDegrees() / height;
 
-		Vec4[] verts =
-				calculateTileVerts(width, height, sector, elevations, missingDataSignal, exaggeration * 0.000005);
-		Vec4[] normals = calculateNormals(width, height, verts);
+		if (readNeighbors && url != null)
+		{
+			float[] padded = padGrid(grid, width, height, url, fileLock);
+			return shadeCentral(padded, width, height, dlon, dlat, scale);
+		}
+		return shadeForward(grid, width, height, dlon, dlat, scale);
+	}
+
+	/**
+	 * Shade using forward differences within the tile. The image has one less
+	 * in width and height than the elevation grid, because each pixel's normal
+	 * is calculated from the vertex and its right and lower neighbors.
+	 */
+	protected BufferedImage shadeForward(float[] grid, int width, int height, double dlon, double dlat,
+			double scale)
+	{
+		BufferedImage image = new BufferedImage(width - 1, height - 1, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		double nz = -dlon * dlat;
 
 		for (int y = 0, i = 0; y < height - 1; y++)
 		{
 			for (int x = 0; x < width - 1; x++, i++)
 			{
-				int argb = 0;
-				Vec4 normal = normals[i];
-				if (normal != null)
-				{
-					double light = Math.max(0d, normal.dot3(sunPosition));
-
-					int r = (int) (255.0 * light);
-					int g = (int) (255.0 * light);
-					int b = (int) (255.0 * light);
+				//v0-v1
+				//|
+				//v2
+				int vertIndex = width * y + x;
+				float e0 = grid[vertIndex];
+				float e1 = grid[vertIndex + 1];
+				float e2 = grid[vertIndex + width];
 
-					argb = (0xff) << 24 | (r & 0xff) << 16 | (g & 0xff) << 8 | (b & 0xff);
+				//NaN checks
+				if (e0 != e0 || e1 != e1 || e2 != e2)
+				{
+					pixels[i] = 0;
+					continue;
 				}
-				image.setRGB(x, y, argb);
+
+				//cross product of (v1 - v0) and (v0 - v2), in (lat, lon, elevation) space
+				double nx = dlon * (e0 - e2) * scale;
+				double ny = (e1 - e0) * scale * dlat;
+				pixels[i] = shade(nx, ny, nz);
 			}
 		}
 
 		return image;
 	}
 
-	protected Vec4[] calculateTileVerts(int width, int height, Sector sector, BufferWrapper elevations,
-			double missingDataSignal, double exaggeration)
+	/**
+	 * Shade using central differences, with a one vertex border read from the
+	 * neighboring tiles (see {@link #padGrid(float[], int, int, URL)}). The
+	 * image is the same size as the elevation grid, and the shading is
+	 * continuous across tile edges.
+	 */
+	protected BufferedImage shadeCentral(float[] padded, int width, int height, double dlon, double dlat,
+			double scale)
 	{
-		Vec4[] verts = new Vec4[width * height];
-		double dlon = sector.getDeltaLonDegrees() / width;
-		double dlat = sector.getDeltaLatDegrees() / height;
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		int stride = width + 2;
+		double nz = -dlon * dlat;
 
 		for (int y = 0, i = 0; y < height; y++)
 		{
-			Angle lat = sector.getMaxLatitude().subtractDegrees(dlat * y);
 			for (int x = 0; x < width; x++, i++)
 			{
-				Angle lon = sector.getMinLongitude().addDegrees(dlon * x);
-				double elevation = elevations.getDouble(i);
-				if (elevation != missingDataSignal && minElevation <= elevation && elevation <= maxElevation)
+				int index = (y + 1) * stride + x + 1;
+				float center = padded[index];
+				if (center != center)
 				{
-					verts[i] = new Vec4(lat.degrees, lon.degrees, elevation * exaggeration);
+					pixels[i] = 0;
+					continue;
 				}
+
+				double east = difference(padded[index + 1], center, padded[index - 1]);
+				double south = difference(padded[index + stride], center, padded[index - stride]);
+				double nx = dlon * -south * scale;
+				double ny = east * scale * dlat;
+				pixels[i] = shade(nx, ny, nz);
 			}
 		}
 
-		return verts;
+		return image;
 	}
 
-	protected Vec4[] calculateNormals(int width, int height, Vec4[] verts)
+	/**
+	 * @return The change in elevation per vertex from before to after,
+	 *         ignoring either side if it is missing
+	 */
+	protected static double difference(float after, float center, float before)
 	{
-		Vec4[] norms = new Vec4[(width - 1) * (height - 1)];
-		for (int y = 0, i = 0; y < height - 1; y++)
+		boolean hasAfter = after == after, hasBefore = before == before;
+		if (hasAfter && hasBefore)
 		{
-			for (int x = 0; x < width - 1; x++, i++)
-			{
-				//v0-v1
-				//|
-				//v2
+			return (after - before) * 0.5;
+		}
+		if (hasAfter)
+		{
+			return after - center;
+		}
+		if (hasBefore)
+		{
+			return center - before;
+		}
+		return 0;
+	}
 
-				int vertIndex = width * y + x;
-				Vec4 v0 = verts[vertIndex];
-				if (v0 != null)
-				{
-					Vec4 v1 = verts[vertIndex + 1];
-					Vec4 v2 = verts[vertIndex + width];
+	protected int shade(double nx, double ny, double nz)
+	{
+		double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+		double light = length > 0 ? Math.max(0d, (nx * sunX + ny * sunY + nz * sunZ) / length) : 0;
+		int c = (int) (255.0 * light);
+		return 0xff000000 | c << 16 | c << 8 | c;
+	}
 
-					norms[i] = v1 != null && v2 != null ? v1.subtract3(v0).cross3(v0.subtract3(v2)).normalize3() : null;
-				}
-			}
+	/**
+	 * Surround the elevation grid with a one vertex border taken from the
+	 * neighboring tiles. Tiles are assumed to share their edge vertices with
+	 * their neighbors, so the border comes from the second row/column in from
+	 * the neighbor's shared edge. Where a neighbor can't be read, the border is
+	 * linearly extrapolated from the tile's own edge (processed textures cached
+	 * by a {@link ProcessedTextureCache} that checks neighbors are regenerated
+	 * once the neighbor is available).
+	 */
+	protected float[] padGrid(float[] grid, int width, int height, URL url, SharedLock fileLock)
+	{
+		int stride = width + 2;
+		float[] padded = new float[stride * (height + 2)];
+		for (int y = 0; y < height; y++)
+		{
+			System.arraycopy(grid, y * width, padded, (y + 1) * stride + 1, width);
 		}
-		return norms;
+
+		int length = width * height;
+		BufferWrapper north = readNeighbor(url, fileLock, 1, 0, length);
+		BufferWrapper south = readNeighbor(url, fileLock, -1, 0, length);
+		BufferWrapper west = readNeighbor(url, fileLock, 0, -1, length);
+		BufferWrapper east = readNeighbor(url, fileLock, 0, 1, length);
+		float[] northGrid = north != null ? toFloatGrid(north, length, minElevation, maxElevation) : null;
+		float[] southGrid = south != null ? toFloatGrid(south, length, minElevation, maxElevation) : null;
+		float[] westGrid = west != null ? toFloatGrid(west, length, minElevation, maxElevation) : null;
+		float[] eastGrid = east != null ? toFloatGrid(east, length, minElevation, maxElevation) : null;
+
+		for (int x = 0; x < width; x++)
+		{
+			int top = x + 1, bottom = (height + 1) * stride + x + 1;
+			padded[top] =
+					northGrid != null ? northGrid[(height - 2) * width + x] : extrapolate(padded[top + stride],
+							padded[top + 2 * stride]);
+			padded[bottom] =
+					southGrid != null ? southGrid[width + x] : extrapolate(padded[bottom - stride],
+							padded[bottom - 2 * stride]);
+		}
+		for (int y = 0; y < height + 2; y++)
+		{
+			int left = y * stride, right = y * stride + width + 1;
+			boolean inside = y > 0 && y <= height;
+			padded[left] =
+					inside && westGrid != null ? westGrid[(y - 1) * width + width - 2] : extrapolate(
+							padded[left + 1], padded[left + 2]);
+			padded[right] =
+					inside && eastGrid != null ? eastGrid[(y - 1) * width + 1] : extrapolate(padded[right - 1],
+							padded[right - 2]);
+		}
+		return padded;
+	}
+
+	protected static float extrapolate(float edge, float inside)
+	{
+		return 2f * edge - inside;
 	}
 
 	protected double[] getMinMax(BufferWrapper elevations, double missingDataSignal)
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.render;
+
+import gov.nasa.worldwind.cache.GpuResourceCache;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * {@link TextureMemoryManager.Evictor} that evicts textures from a
+ * {@link GpuResourceCache}.
+ */
+public class GpuResourceCacheEvictor implements TextureMemoryManager.Evictor
+{
+	private final static Map<GpuResourceCache, GpuResourceCacheEvictor> evictors =
+			new WeakHashMap<GpuResourceCache, GpuResourceCacheEvictor>();
+
+	/**
+	 * @param cache
+	 * @return Shared evictor for the given cache
+	 */
+	public static synchronized GpuResourceCacheEvictor get(GpuResourceCache cache)
+	{
+		GpuResourceCacheEvictor evictor = evictors.get(cache);
+		if (evictor == null)
+		{
+			evictor = new GpuResourceCacheEvictor(cache);
+			evictors.put(cache, evictor);
+		}
+		return evictor;
+	}
+
+	//weakly referenced, so that the shared evictors don't prevent caches from being collected
+	private final WeakReference<GpuResourceCache> cache;
+
+	protected GpuResourceCacheEvictor(GpuResourceCache cache)
+	{
+		this.cache = new WeakReference<GpuResourceCache>(cache);
+	}
+
+	@Override
+	public void evict(Object key)
+	{
+		GpuResourceCache cache = this.cache.get();
+		if (cache != null)
+		{
+			cache.remove(key);
+		}
+	}
+
+	@Override
+	public boolean isResident(Object key)
+	{
+		GpuResourceCache cache = this.cache.get();
+		return cache != null && cache.contains(key);
+	}
+}
@@ -0,0 +1,473 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.render;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Manages a global budget for the GPU memory used by tile textures, across all
+ * layers that use it (each of which would otherwise only be limited by the
+ * shared texture cache's own least-recently-used policy). Only textures
+ * resident on the GPU are managed; texture data and images held on the heap
+ * (before upload) remain limited by the tiles' memory cache.
+ * <p/>
+ * Layers call {@link #touch(Object, Object, long, int, long, Evictor)} for
+ * each texture used in a frame (including textures used as fallbacks), so
+ * that it counts towards the budget and isn't evicted while in use. When
+ * the total size of the resident textures exceeds the budget, textures are
+ * evicted until the total is below {@link #EVICTION_TARGET} of the budget.
+ * Textures used in the current or previous frame are never evicted (layers
+ * drawn later in the frame won't have touched their textures yet, so these are
+ * considered visible); the others are
+ * evicted in order of a combined priority of how long ago they were last
+ * used, weighted by their level (so that fine, high level textures are
+ * evicted before the coarse textures that other tiles fall back to).
+ * <p/>
+ * Textures can also leave their cache without this manager being told (for
+ * example, evicted by the cache's own policy, or belonging to tiles that are
+ * never drawn again). To stop these from counting towards the budget forever,
+ * textures are checked against their cache (using
+ * {@link Evictor#isResident(Object)}) before being evicted, and textures that
+ * haven't been used for {@link #getMaxIdleFrames()} frames, or whose owner has
+ * been garbage collected, are periodically evicted and forgotten. Owners are
+ * only weakly referenced.
+ * <p/>
+ * Per-owner residency statistics are available from {@link #getStatistics()}.
+ * <p/>
+ * The manager performs no GL calls itself; textures are evicted through the
+ * {@link Evictor} passed when the texture was touched.
+ */
+public class TextureMemoryManager
+{
+	public final static long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+
+	/**
+	 * Fraction of the budget to evict down to when the budget is exceeded, so
+	 * that eviction isn't required again for every texture loaded.
+	 */
+	public final static double EVICTION_TARGET = 0.9;
+
+	/**
+	 * Weight of a texture's level when calculating its eviction priority. A
+	 * texture at level n is evicted as if it were last used (1 + n *
+	 * LEVEL_WEIGHT) times as long ago.
+	 */
+	public final static double LEVEL_WEIGHT = 0.5;
+
+	/**
+	 * Default number of frames a texture can go unused before it is evicted.
+	 */
+	public final static int DEFAULT_MAX_IDLE_FRAMES = 1000;
+
+	private final static TextureMemoryManager instance = new TextureMemoryManager();
+
+	/**
+	 * @return Manager shared by the tiled layers
+	 */
+	public static TextureMemoryManager getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Evicts textures from the cache they are stored in.
+	 */
+	public static interface Evictor
+	{
+		/**
+		 * Evict the texture with the given key.
+		 * 
+		 * @param key
+		 */
+		void evict(Object key);
+
+		/**
+		 * @param key
+		 * @return Is the texture with the given key still in the cache?
+		 */
+		boolean isResident(Object key);
+	}
+
+	private boolean enabled = true;
+	private long maxBytes = DEFAULT_MAX_BYTES;
+	private long totalBytes = 0;
+	private long currentFrame = Long.MIN_VALUE;
+	private long previousFrame = Long.MIN_VALUE;
+	private int maxIdleFrames = DEFAULT_MAX_IDLE_FRAMES;
+	private long frameCount = 0;
+	private long lastSweepFrameCount = 0;
+	private final Map<Object, Entry> entries = new HashMap<Object, Entry>();
+	private final Map<Object, long[]> evictionCounts = new WeakHashMap<Object, long[]>();
+
+	/**
+	 * Record that a texture is resident and has been used in the given frame.
+	 * If this causes the budget to be exceeded, other textures are evicted.
+	 * 
+	 * @param owner
+	 *            Owner of the texture (generally the layer)
+	 * @param key
+	 *            Key of the texture in its cache
+	 * @param bytes
+	 *            Size of the texture
+	 * @param level
+	 *            Level of the tile the texture belongs to
+	 * @param frame
+	 *            Current frame's timestamp, in milliseconds
+	 * @param evictor
+	 *            Evictor used to evict the texture from its cache
+	 */
+	public synchronized void touch(Object owner, Object key, long bytes, int level, long frame, Evictor evictor)
+	{
+		if (frame > currentFrame)
+		{
+			previousFrame = currentFrame;
+			currentFrame = frame;
+			frameCount++;
+			if (frameCount - lastSweepFrameCount >= Math.max(1, maxIdleFrames / 10))
+			{
+				lastSweepFrameCount = frameCount;
+				sweep();
+			}
+		}
+
+		Entry entry = entries.get(key);
+		if (entry == null)
+		{
+			entry = new Entry(key);
+			entries.put(key, entry);
+		}
+		else
+		{
+			totalBytes -= entry.bytes;
+		}
+		if (entry.getOwner() != owner)
+		{
+			entry.owner = owner == null ? null : new WeakReference<Object>(owner);
+		}
+		entry.bytes = bytes;
+		entry.level = level;
+		entry.lastFrame = frame;
+		entry.lastFrameCount = frameCount;
+		entry.evictor = evictor;
+		totalBytes += bytes;
+
+		if (enabled && totalBytes > maxBytes)
+		{
+			evict((long) (maxBytes * EVICTION_TARGET));
+		}
+	}
+
+	/**
+	 * Record that a texture is no longer resident (for example, if it was
+	 * removed from its cache by other means).
+	 * 
+	 * @param key
+	 *            Key of the texture
+	 */
+	public synchronized void remove(Object key)
+	{
+		Entry entry = entries.remove(key);
+		if (entry != null)
+		{
+			totalBytes -= entry.bytes;
+		}
+	}
+
+	/**
+	 * Evict textures that aren't visible (used in the current or previous
+	 * frame), in order of eviction priority, until the total size is below
+	 * targetBytes (or there are no more textures that can be evicted).
+	 * Textures that are no longer in their cache are forgotten first.
+	 */
+	protected void evict(long targetBytes)
+	{
+		List<Entry> candidates = new ArrayList<Entry>();
+		Iterator<Entry> entryIterator = entries.values().iterator();
+		while (entryIterator.hasNext())
+		{
+			Entry entry = entryIterator.next();
+			if (isVisible(entry))
+			{
+				continue;
+			}
+			if (!isResident(entry))
+			{
+				entryIterator.remove();
+				totalBytes -= entry.bytes;
+				continue;
+			}
+			entry.priority = computeEvictionPriority(entry);
+			candidates.add(entry);
+		}
+		Collections.sort(candidates, new Comparator<Entry>()
+		{
+			@Override
+			public int compare(Entry o1, Entry o2)
+			{
+				return Double.compare(o2.priority, o1.priority);
+			}
+		});
+
+		Iterator<Entry> iterator = candidates.iterator();
+		while (totalBytes > targetBytes && iterator.hasNext())
+		{
+			Entry entry = iterator.next();
+			entries.remove(entry.key);
+			totalBytes -= entry.bytes;
+			countEviction(entry.getOwner());
+			if (entry.evictor != null)
+			{
+				entry.evictor.evict(entry.key);
+			}
+		}
+	}
+
+	/**
+	 * Forget textures that are no longer in their cache, and evict textures
+	 * that haven't been used for {@link #getMaxIdleFrames()} frames or whose
+	 * owner has been garbage collected (if eviction is enabled).
+	 */
+	protected void sweep()
+	{
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext())
+		{
+			Entry entry = iterator.next();
+			boolean idle = frameCount - entry.lastFrameCount > maxIdleFrames;
+			boolean orphaned = entry.owner != null && entry.owner.get() == null;
+			boolean resident = isResident(entry);
+			if (resident && (!enabled || (!idle && !orphaned)))
+			{
+				continue;
+			}
+			iterator.remove();
+			totalBytes -= entry.bytes;
+			if (resident)
+			{
+				countEviction(entry.getOwner());
+				if (entry.evictor != null)
+				{
+					entry.evictor.evict(entry.key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Is the entry's texture still in its cache? Textures without an
+	 *         evictor are assumed to be resident.
+	 */
+	protected boolean isResident(Entry entry)
+	{
+		return entry.evictor == null || entry.evictor.isResident(entry.key);
+	}
+
+	/**
+	 * @return Was the entry's texture used in the current or previous frame?
+	 */
+	protected boolean isVisible(Entry entry)
+	{
+		return entry.lastFrame >= previousFrame;
+	}
+
+	/**
+	 * @return Eviction priority of the entry; entries with larger priorities
+	 *         are evicted first
+	 */
+	protected double computeEvictionPriority(Entry entry)
+	{
+		double age = currentFrame - entry.lastFrame;
+		return age * (1 + Math.max(0, entry.level) * LEVEL_WEIGHT);
+	}
+
+	private void countEviction(Object owner)
+	{
+		if (owner == null)
+		{
+			return;
+		}
+		long[] count = evictionCounts.get(owner);
+		if (count == null)
+		{
+			count = new long[1];
+			evictionCounts.put(owner, count);
+		}
+		count[0]++;
+	}
+
+	/**
+	 * @return Residency statistics for each owner with resident textures (or
+	 *         evicted textures), sorted by resident bytes (largest first)
+	 */
+	public synchronized List<ResidencyStatistics> getStatistics()
+	{
+		Map<Object, ResidencyStatistics> statistics = new LinkedHashMap<Object, ResidencyStatistics>();
+		for (Entry entry : entries.values())
+		{
+			Object owner = entry.getOwner();
+			if (owner == null)
+			{
+				continue;
+			}
+			ResidencyStatistics s = statistics.get(owner);
+			if (s == null)
+			{
+				s = new ResidencyStatistics(owner);
+				statistics.put(owner, s);
+			}
+			s.textures++;
+			s.bytes += entry.bytes;
+			if (isVisible(entry))
+			{
+				s.visibleTextures++;
+			}
+		}
+		for (Map.Entry<Object, long[]> count : evictionCounts.entrySet())
+		{
+			ResidencyStatistics s = statistics.get(count.getKey());
+			if (s == null)
+			{
+				s = new ResidencyStatistics(count.getKey());
+				statistics.put(count.getKey(), s);
+			}
+			s.evictions = count.getValue()[0];
+		}
+
+		List<ResidencyStatistics> list = new ArrayList<ResidencyStatistics>(statistics.values());
+		Collections.sort(list, new Comparator<ResidencyStatistics>()
+		{
+			@Override
+			public int compare(ResidencyStatistics o1, ResidencyStatistics o2)
+			{
+				return o1.bytes > o2.bytes ? -1 : o1.bytes == o2.bytes ? 0 : 1;
+			}
+		});
+		return list;
+	}
+
+	/**
+	 * @return Total size of the resident textures
+	 */
+	public synchronized long getTotalBytes()
+	{
+		return totalBytes;
+	}
+
+	/**
+	 * @return Number of resident textures
+	 */
+	public synchronized int getTextureCount()
+	{
+		return entries.size();
+	}
+
+	public synchronized long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/**
+	 * Set the texture memory budget. If the resident textures exceed the new
+	 * budget, they are evicted the next time a texture is touched.
+	 * 
+	 * @param maxBytes
+	 */
+	public synchronized void setMaxBytes(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @return Number of frames a texture can go unused before it is evicted
+	 */
+	public synchronized int getMaxIdleFrames()
+	{
+		return maxIdleFrames;
+	}
+
+	/**
+	 * Set the number of frames a texture can go unused before it is evicted.
+	 * 
+	 * @param maxIdleFrames
+	 */
+	public synchronized void setMaxIdleFrames(int maxIdleFrames)
+	{
+		this.maxIdleFrames = maxIdleFrames;
+	}
+
+	public synchronized boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Enable/disable eviction. When disabled, textures are still tracked (for
+	 * the statistics) but never evicted by this manager.
+	 */
+	public synchronized void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Texture residency statistics for a single owner.
+	 */
+	public static class ResidencyStatistics
+	{
+		public final Object owner;
+		public int textures;
+		public long bytes;
+		public int visibleTextures;
+		public long evictions;
+
+		public ResidencyStatistics(Object owner)
+		{
+			this.owner = owner;
+		}
+	}
+
+	protected static class Entry
+	{
+		public final Object key;
+		//weakly referenced, so that tracked textures don't prevent layers from being collected
+		public WeakReference<Object> owner;
+		public long bytes;
+		public int level;
+		public long lastFrame;
+		public long lastFrameCount;
+		public double priority;
+		public Evictor evictor;
+
+		public Entry(Object key)
+		{
+			this.key = key;
+		}
+
+		public Object getOwner()
+		{
+			return owner == null ? null : owner.get();
+		}
+	}
+}
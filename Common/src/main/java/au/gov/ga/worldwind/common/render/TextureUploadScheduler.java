@@ -0,0 +1,397 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.render;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Schedules the upload of tile textures to the GPU, limiting the number of
+ * textures, bytes and (estimated) time spent uploading each frame, so that a
+ * burst of tiles becoming available in the same frame doesn't cause a visible
+ * hitch.
+ * <p/>
+ * Tiles with texture data waiting to be uploaded call
+ * {@link #requestUpload(Object, long, Object, long, double)} each frame. At the
+ * start of each frame, the requests made during the previous frame are ranked
+ * by priority (larger first; typically the tile's screen-space error) and
+ * granted until the frame's budget is used up. Tiles that aren't granted an
+ * upload keep their existing texture, and are drawn using an ancestor's
+ * texture until they are. At least one upload is granted each frame, so every
+ * tile is eventually uploaded.
+ * <p/>
+ * Each rendering context (typically the {@link javax.media.opengl.GLContext})
+ * has its own frame and budget, so contexts rendering concurrently don't reset
+ * each other's frames. The time budget is converted to a byte budget using the
+ * average upload rate measured from previous uploads.
+ * <p/>
+ * Offline renderers, which must draw every frame at full resolution, should
+ * disable the scheduler using {@link #setEnabled(boolean)}.
+ * <p/>
+ * The scheduler performs no GL calls; callers perform the upload themselves
+ * and report it using {@link #uploaded(Object, long, Object, long, long)}.
+ */
+public class TextureUploadScheduler
+{
+	public final static long DEFAULT_MAX_BYTES_PER_FRAME = 4 * 1024 * 1024;
+	public final static int DEFAULT_MAX_UPLOADS_PER_FRAME = 8;
+	public final static double DEFAULT_MAX_MILLIS_PER_FRAME = 4;
+
+	/**
+	 * Weight of each new measurement in the moving average upload rate.
+	 */
+	private final static double RATE_SMOOTHING = 0.1;
+
+	private final static TextureUploadScheduler instance = new TextureUploadScheduler();
+
+	/**
+	 * @return Scheduler shared by the tiled layers
+	 */
+	public static TextureUploadScheduler getInstance()
+	{
+		return instance;
+	}
+
+	private boolean enabled = true;
+	private long maxBytesPerFrame = DEFAULT_MAX_BYTES_PER_FRAME;
+	private int maxUploadsPerFrame = DEFAULT_MAX_UPLOADS_PER_FRAME;
+	private double maxMillisPerFrame = DEFAULT_MAX_MILLIS_PER_FRAME;
+
+	private final Map<Object, ContextFrame> frames = new WeakHashMap<Object, ContextFrame>();
+	private double nanosPerByte = 0;
+
+	private FrameStatistics lastFrameStatistics = new FrameStatistics(0, 0, 0, 0);
+	private long totalUploads;
+	private long totalBytes;
+	private long totalDeferred;
+
+	/**
+	 * Request that a texture be uploaded this frame. If the request isn't
+	 * granted, it is considered (along with the frame's other requests) when
+	 * granting uploads for the next frame, so the request should be repeated
+	 * each frame until it is granted.
+	 * 
+	 * @param context
+	 *            Rendering context the texture is uploaded to
+	 * @param frame
+	 *            Current frame's timestamp (must change between frames)
+	 * @param key
+	 *            Key identifying the texture
+	 * @param bytes
+	 *            Size of the texture data to upload
+	 * @param priority
+	 *            Priority of the upload; uploads with larger priorities are
+	 *            granted first. If requested multiple times in a frame, the
+	 *            largest priority is used.
+	 * @return True if the texture can be uploaded this frame
+	 */
+	public synchronized boolean requestUpload(Object context, long frame, Object key, long bytes, double priority)
+	{
+		if (!enabled)
+		{
+			return true;
+		}
+
+		ContextFrame current = beginFrame(context, frame);
+		if (current.granted.contains(key))
+		{
+			return true;
+		}
+
+		Request request = current.requests.get(key);
+		if (request == null)
+		{
+			current.requests.put(key, new Request(key, bytes, priority));
+		}
+		else
+		{
+			request.bytes = bytes;
+			request.priority = Math.max(request.priority, priority);
+		}
+		return false;
+	}
+
+	/**
+	 * @param context
+	 *            Rendering context the texture is uploaded to
+	 * @param frame
+	 *            Current frame's timestamp
+	 * @param key
+	 *            Key identifying the texture
+	 * @return True if the texture has been granted an upload this frame
+	 */
+	public synchronized boolean isGranted(Object context, long frame, Object key)
+	{
+		if (!enabled)
+		{
+			return true;
+		}
+
+		return beginFrame(context, frame).granted.contains(key);
+	}
+
+	/**
+	 * Record that a texture has been uploaded.
+	 * 
+	 * @param context
+	 *            Rendering context the texture was uploaded to
+	 * @param frame
+	 *            Current frame's timestamp
+	 * @param key
+	 *            Key identifying the texture
+	 * @param bytes
+	 *            Size of the texture data uploaded
+	 * @param nanos
+	 *            Time taken to upload the texture, in nanoseconds
+	 */
+	public synchronized void uploaded(Object context, long frame, Object key, long bytes, long nanos)
+	{
+		ContextFrame current = beginFrame(context, frame);
+		current.granted.remove(key);
+		current.requests.remove(key);
+
+		current.uploads++;
+		current.bytes += bytes;
+		current.nanos += nanos;
+		totalUploads++;
+		totalBytes += bytes;
+
+		if (bytes > 0 && nanos > 0)
+		{
+			double rate = nanos / (double) bytes;
+			nanosPerByte = nanosPerByte <= 0 ? rate : nanosPerByte + (rate - nanosPerByte) * RATE_SMOOTHING;
+		}
+	}
+
+	/**
+	 * Start a new frame for the given context if its frame timestamp has
+	 * changed: record the context's previous frame's statistics, and grant
+	 * uploads to the highest priority requests made during the previous frame.
+	 * 
+	 * @return The context's current frame
+	 */
+	protected ContextFrame beginFrame(Object context, long frame)
+	{
+		ContextFrame current = frames.get(context);
+		if (current == null)
+		{
+			current = new ContextFrame(frame);
+			frames.put(context, current);
+			return current;
+		}
+		if (current.frame == frame)
+		{
+			return current;
+		}
+
+		Map<Object, Request> requests = current.requests;
+		Set<Object> granted = current.granted;
+		lastFrameStatistics = new FrameStatistics(current.uploads, current.bytes, current.nanos, requests.size());
+		totalDeferred += requests.size();
+		current.frame = frame;
+		current.uploads = 0;
+		current.bytes = 0;
+		current.nanos = 0;
+
+		granted.clear();
+		if (requests.isEmpty())
+		{
+			return current;
+		}
+
+		List<Request> ranked = new ArrayList<Request>(requests.values());
+		requests.clear();
+		Collections.sort(ranked, new Comparator<Request>()
+		{
+			@Override
+			public int compare(Request o1, Request o2)
+			{
+				return Double.compare(o2.priority, o1.priority);
+			}
+		});
+
+		long byteBudget = getByteBudget();
+		long bytes = 0;
+		for (Request request : ranked)
+		{
+			if (granted.size() >= maxUploadsPerFrame)
+			{
+				break;
+			}
+			//always grant the highest priority request, even if it is larger than the budget
+			if (!granted.isEmpty() && bytes + request.bytes > byteBudget)
+			{
+				continue;
+			}
+			granted.add(request.key);
+			bytes += request.bytes;
+		}
+		return current;
+	}
+
+	/**
+	 * @return Number of bytes that can be uploaded per frame, the smaller of
+	 *         the byte budget and the time budget converted to bytes using the
+	 *         measured upload rate
+	 */
+	protected long getByteBudget()
+	{
+		long budget = maxBytesPerFrame;
+		if (nanosPerByte > 0)
+		{
+			budget = Math.min(budget, (long) (maxMillisPerFrame * 1e6 / nanosPerByte));
+		}
+		return budget;
+	}
+
+	public synchronized boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Enable/disable upload scheduling. When disabled, every upload request is
+	 * granted immediately (uploads are still counted).
+	 */
+	public synchronized void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+		if (!enabled)
+		{
+			frames.clear();
+		}
+	}
+
+	public synchronized long getMaxBytesPerFrame()
+	{
+		return maxBytesPerFrame;
+	}
+
+	public synchronized void setMaxBytesPerFrame(long maxBytesPerFrame)
+	{
+		this.maxBytesPerFrame = maxBytesPerFrame;
+	}
+
+	public synchronized int getMaxUploadsPerFrame()
+	{
+		return maxUploadsPerFrame;
+	}
+
+	public synchronized void setMaxUploadsPerFrame(int maxUploadsPerFrame)
+	{
+		this.maxUploadsPerFrame = Math.max(1, maxUploadsPerFrame);
+	}
+
+	public synchronized double getMaxMillisPerFrame()
+	{
+		return maxMillisPerFrame;
+	}
+
+	public synchronized void setMaxMillisPerFrame(double maxMillisPerFrame)
+	{
+		this.maxMillisPerFrame = maxMillisPerFrame;
+	}
+
+	/**
+	 * @return Upload statistics for the last completed frame
+	 */
+	public synchronized FrameStatistics getLastFrameStatistics()
+	{
+		return lastFrameStatistics;
+	}
+
+	/**
+	 * @return Total number of textures uploaded
+	 */
+	public synchronized long getTotalUploads()
+	{
+		return totalUploads;
+	}
+
+	/**
+	 * @return Total number of bytes uploaded
+	 */
+	public synchronized long getTotalBytes()
+	{
+		return totalBytes;
+	}
+
+	/**
+	 * @return Total number of upload requests deferred to a later frame
+	 */
+	public synchronized long getTotalDeferred()
+	{
+		return totalDeferred;
+	}
+
+	/**
+	 * Upload statistics for a single frame.
+	 */
+	public static class FrameStatistics
+	{
+		public final int uploads;
+		public final long bytes;
+		public final long nanos;
+		public final int deferred;
+
+		public FrameStatistics(int uploads, long bytes, long nanos, int deferred)
+		{
+			this.uploads = uploads;
+			this.bytes = bytes;
+			this.nanos = nanos;
+			this.deferred = deferred;
+		}
+	}
+
+	/**
+	 * Requests and uploads for the current frame of a single context.
+	 */
+	protected static class ContextFrame
+	{
+		private long frame;
+		private final Map<Object, Request> requests = new HashMap<Object, Request>();
+		private final Set<Object> granted = new HashSet<Object>();
+		private int uploads;
+		private long bytes;
+		private long nanos;
+
+		private ContextFrame(long frame)
+		{
+			this.frame = frame;
+		}
+	}
+
+	private static class Request
+	{
+		public final Object key;
+		public long bytes;
+		public double priority;
+
+		public Request(Object key, long bytes, double priority)
+		{
+			this.key = key;
+			this.bytes = bytes;
+			this.priority = priority;
+		}
+	}
+}
@@ -0,0 +1,529 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.retrieve;
+
+import gov.nasa.worldwind.Model;
+import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.cache.MemoryCache;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.globes.ElevationModel;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.layers.Layer;
+import gov.nasa.worldwind.layers.TextureTile;
+import gov.nasa.worldwind.layers.TiledImageLayer;
+import gov.nasa.worldwind.retrieve.RetrievalService;
+import gov.nasa.worldwind.util.LevelSet;
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import au.gov.ga.worldwind.common.layers.delegate.IDelegatorTile;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * Requests the data required to render views that are known in advance (such
+ * as the places in a tour, or the frames of an animation) before they are
+ * displayed, so that the tiles are already available when the view arrives.
+ * <p/>
+ * Calling {@link #prefetch(Model, PrefetchView)} queues the view; a low
+ * priority background thread then asks each enabled {@link Prefetchable}
+ * layer, and the globe's elevation model, for the requests it needs for the
+ * view. Views are handled in the order they are queued, so callers should
+ * queue the nearest upcoming views first.
+ * <p/>
+ * Prefetching is limited so that it doesn't compete with the requests for the
+ * current view:
+ * <ul>
+ * <li>requests are run at most {@link #getMaxRequestsPerSecond()} times a
+ * second, and only while the retrieval service has fewer than
+ * {@link #getMaxPendingRetrievals()} retrievals pending (bandwidth budget)</li>
+ * <li>at most {@link #getMaxTilesPerView()} tiles are requested for each layer
+ * for each view, tiles are only requested while the tile memory cache is less
+ * than {@link #getMaxCacheFraction()} full, and at most
+ * {@link #getMaxQueuedRequests()} requests are queued at once (cache
+ * budget)</li>
+ * <li>remote tiles are retrieved with {@link #PREFETCH_PRIORITY}, after the
+ * tiles requested for the current view</li>
+ * </ul>
+ */
+public class PrefetchService
+{
+	public final static double DEFAULT_MAX_REQUESTS_PER_SECOND = 20;
+	public final static int DEFAULT_MAX_PENDING_RETRIEVALS = 10;
+	public final static int DEFAULT_MAX_TILES_PER_VIEW = 64;
+	public final static int DEFAULT_MAX_QUEUED_REQUESTS = 1024;
+	public final static double DEFAULT_MAX_CACHE_FRACTION = 0.75;
+
+	/**
+	 * Priority given to prefetched tiles. Tiles requested for the current
+	 * view are given their distance from the eye as a priority, so are
+	 * retrieved first.
+	 */
+	public final static double PREFETCH_PRIORITY = Double.MAX_VALUE;
+
+	/**
+	 * Number of elevations sampled along each side of a view's footprint when
+	 * prefetching elevation tiles.
+	 */
+	private final static int ELEVATION_SAMPLES = 8;
+
+	private final static PrefetchService instance = new PrefetchService();
+
+	/**
+	 * @return Prefetch service shared by the application
+	 */
+	public static PrefetchService getInstance()
+	{
+		return instance;
+	}
+
+	private volatile boolean enabled = true;
+	private volatile double maxRequestsPerSecond = DEFAULT_MAX_REQUESTS_PER_SECOND;
+	private volatile int maxPendingRetrievals = DEFAULT_MAX_PENDING_RETRIEVALS;
+	private volatile int maxTilesPerView = DEFAULT_MAX_TILES_PER_VIEW;
+	private volatile int maxQueuedRequests = DEFAULT_MAX_QUEUED_REQUESTS;
+	private volatile double maxCacheFraction = DEFAULT_MAX_CACHE_FRACTION;
+
+	private final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+	private Thread thread;
+	private long lastRequestTime;
+	private final AtomicLong requestCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	/**
+	 * Queue a view to prefetch the data for.
+	 * 
+	 * @param model
+	 *            Model containing the layers and globe to prefetch for
+	 * @param view
+	 *            Upcoming view
+	 */
+	public void prefetch(Model model, PrefetchView view)
+	{
+		if (!enabled || model == null || model.getGlobe() == null || view == null)
+		{
+			return;
+		}
+		enqueue(new Plan(model, view));
+	}
+
+	/**
+	 * Create the requests for the data required to render a view, without
+	 * queuing them: a task for each missing tile of each enabled
+	 * {@link Prefetchable} layer, and a task that requests the elevations
+	 * covering the view. Used by callers that run the requests themselves.
+	 * 
+	 * @param model
+	 *            Model containing the layers and globe to prefetch for
+	 * @param view
+	 *            Upcoming view
+	 * @param maxTilesPerLayer
+	 *            Maximum number of tile requests to create for each layer
+	 * @return Request tasks
+	 */
+	public static List<Runnable> createRequests(Model model, PrefetchView view, int maxTilesPerLayer)
+	{
+		List<Runnable> requests = new ArrayList<Runnable>();
+		Globe globe = model.getGlobe();
+		if (globe == null)
+		{
+			return requests;
+		}
+
+		if (model.getLayers() != null)
+		{
+			for (Layer layer : model.getLayers())
+			{
+				if (layer instanceof Prefetchable && layer.isEnabled())
+				{
+					requests.addAll(((Prefetchable) layer).createPrefetchTasks(globe, view, maxTilesPerLayer));
+				}
+			}
+		}
+
+		if (globe.getElevationModel() != null)
+		{
+			requests.add(new ElevationRequest(globe, view));
+		}
+		return requests;
+	}
+
+	/**
+	 * Remove all queued views and requests (for example, when a tour is
+	 * stopped). Requests already running are completed.
+	 */
+	public void clear()
+	{
+		queue.clear();
+	}
+
+	/**
+	 * @return Number of views and requests waiting to be run
+	 */
+	public int getQueuedCount()
+	{
+		return queue.size();
+	}
+
+	/**
+	 * @return Total number of prefetch requests run
+	 */
+	public long getRequestCount()
+	{
+		return requestCount.get();
+	}
+
+	/**
+	 * @return Total number of prefetch requests dropped because the queue was
+	 *         full
+	 */
+	public long getDroppedCount()
+	{
+		return droppedCount.get();
+	}
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+		if (!enabled)
+		{
+			clear();
+		}
+	}
+
+	public double getMaxRequestsPerSecond()
+	{
+		return maxRequestsPerSecond;
+	}
+
+	public void setMaxRequestsPerSecond(double maxRequestsPerSecond)
+	{
+		this.maxRequestsPerSecond = maxRequestsPerSecond;
+	}
+
+	public int getMaxPendingRetrievals()
+	{
+		return maxPendingRetrievals;
+	}
+
+	public void setMaxPendingRetrievals(int maxPendingRetrievals)
+	{
+		this.maxPendingRetrievals = maxPendingRetrievals;
+	}
+
+	public int getMaxTilesPerView()
+	{
+		return maxTilesPerView;
+	}
+
+	public void setMaxTilesPerView(int maxTilesPerView)
+	{
+		this.maxTilesPerView = maxTilesPerView;
+	}
+
+	public int getMaxQueuedRequests()
+	{
+		return maxQueuedRequests;
+	}
+
+	public void setMaxQueuedRequests(int maxQueuedRequests)
+	{
+		this.maxQueuedRequests = maxQueuedRequests;
+	}
+
+	public double getMaxCacheFraction()
+	{
+		return maxCacheFraction;
+	}
+
+	public void setMaxCacheFraction(double maxCacheFraction)
+	{
+		this.maxCacheFraction = maxCacheFraction;
+	}
+
+	/**
+	 * @return True if the cache has room for prefetched data within the cache
+	 *         budget
+	 */
+	public boolean hasCacheCapacity(MemoryCache cache)
+	{
+		return cache.getUsedCapacity() < cache.getCapacity() * maxCacheFraction;
+	}
+
+	/**
+	 * Select the tiles of a tiled image layer that should be prefetched for a
+	 * view: the tiles covering the view's footprint at the level whose texel
+	 * size matches the view's pixel size, that aren't already in the memory
+	 * cache or marked absent, nearest the view's center first.
+	 * 
+	 * @param layer
+	 *            Layer to select tiles from
+	 * @param globe
+	 *            Globe the view will be rendered on
+	 * @param view
+	 *            View to prefetch for
+	 * @param maxTiles
+	 *            Maximum number of tiles to return
+	 * @return Tiles to request
+	 */
+	public static List<TextureTile> selectTiles(TiledImageLayer layer, Globe globe, PrefetchView view, int maxTiles)
+	{
+		List<TextureTile> selected = new ArrayList<TextureTile>();
+
+		double altitude = view.getEyePosition().getElevation();
+		if (!layer.isEnabled() || altitude < layer.getMinActiveAltitude() || altitude > layer.getMaxActiveAltitude()
+				|| !getInstance().hasCacheCapacity(TextureTile.getMemoryCache()))
+		{
+			return selected;
+		}
+
+		LevelSet levels = layer.getLevels();
+		Sector sector = view.getFootprint(globe).intersection(levels.getSector());
+		if (sector == null)
+		{
+			return selected;
+		}
+
+		int levelNumber = selectLevel(levels, view.getTargetResolution(globe));
+		TextureTile[][] tiles = layer.getTilesInSector(sector, levelNumber);
+		for (TextureTile[] row : tiles)
+		{
+			for (TextureTile tile : row)
+			{
+				if (tile != null && !levels.isResourceAbsent(tile) && !isInMemoryCache(tile))
+				{
+					selected.add(tile);
+				}
+			}
+		}
+
+		final LatLon center = view.getCenterPosition();
+		Collections.sort(selected, new Comparator<TextureTile>()
+		{
+			@Override
+			public int compare(TextureTile t1, TextureTile t2)
+			{
+				double d1 = LatLon.greatCircleDistance(center, t1.getSector().getCentroid()).radians;
+				double d2 = LatLon.greatCircleDistance(center, t2.getSector().getCentroid()).radians;
+				return Double.compare(d1, d2);
+			}
+		});
+
+		if (selected.size() > maxTiles)
+		{
+			selected = new ArrayList<TextureTile>(selected.subList(0, maxTiles));
+		}
+		return selected;
+	}
+
+	/**
+	 * @return The number of the first level with a texel size no larger than
+	 *         the target resolution (or the last level if there is none)
+	 */
+	protected static int selectLevel(LevelSet levels, double targetResolution)
+	{
+		for (int i = 0; i < levels.getNumLevels(); i++)
+		{
+			if (levels.getLevel(i).getTexelSize() <= targetResolution)
+			{
+				return i;
+			}
+		}
+		return levels.getLastLevel().getLevelNumber();
+	}
+
+	protected static boolean isInMemoryCache(TextureTile tile)
+	{
+		Object key = tile instanceof IDelegatorTile ? ((IDelegatorTile) tile).getTransformedTileKey() : tile.getTileKey();
+		return TextureTile.getMemoryCache().getObject(key) != null;
+	}
+
+	protected synchronized void enqueue(Runnable job)
+	{
+		if (thread == null)
+		{
+			thread = DaemonThreadFactory.newThread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					runLoop();
+				}
+			}, "Prefetch service");
+			thread.start();
+		}
+		queue.add(job);
+	}
+
+	protected void enqueueRequest(Runnable task)
+	{
+		if (queue.size() >= maxQueuedRequests)
+		{
+			droppedCount.incrementAndGet();
+			return;
+		}
+		enqueue(new Request(task));
+	}
+
+	private void runLoop()
+	{
+		while (true)
+		{
+			Runnable job;
+			try
+			{
+				job = queue.take();
+				if (job instanceof Request)
+				{
+					waitForBandwidth();
+				}
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+
+			try
+			{
+				job.run();
+			}
+			catch (Exception e)
+			{
+				Logging.logger().log(java.util.logging.Level.WARNING, "Error prefetching: " + e.getLocalizedMessage(),
+						e);
+			}
+		}
+	}
+
+	/**
+	 * Block until the next request can be run within the bandwidth budget.
+	 */
+	private void waitForBandwidth() throws InterruptedException
+	{
+		RetrievalService retrievalService = WorldWind.getRetrievalService();
+		while (!retrievalService.isAvailable() || retrievalService.getNumRetrieversPending() >= maxPendingRetrievals)
+		{
+			Thread.sleep(100);
+		}
+
+		long interval = (long) (1e9 / Math.max(1e-3, maxRequestsPerSecond));
+		long wait = lastRequestTime + interval - System.nanoTime();
+		if (wait > 0)
+		{
+			Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+		}
+		lastRequestTime = System.nanoTime();
+	}
+
+	/**
+	 * Job that asks the layers and elevation model for the requests required
+	 * for a view.
+	 */
+	private class Plan implements Runnable
+	{
+		private final Model model;
+		private final PrefetchView view;
+
+		public Plan(Model model, PrefetchView view)
+		{
+			this.model = model;
+			this.view = view;
+		}
+
+		@Override
+		public void run()
+		{
+			for (Runnable task : createRequests(model, view, maxTilesPerView))
+			{
+				enqueueRequest(task);
+			}
+		}
+	}
+
+	/**
+	 * Marks a queued job as a request, which is limited by the bandwidth
+	 * budget.
+	 */
+	private class Request implements Runnable
+	{
+		private final Runnable task;
+
+		public Request(Runnable task)
+		{
+			this.task = task;
+		}
+
+		@Override
+		public void run()
+		{
+			requestCount.incrementAndGet();
+			task.run();
+		}
+	}
+
+	/**
+	 * Requests the elevation tiles for a view, by asking the elevation model
+	 * for a grid of elevations over the view's footprint at the view's
+	 * resolution. Elevation models request the tiles they are missing in the
+	 * background.
+	 */
+	private static class ElevationRequest implements Runnable
+	{
+		private final Globe globe;
+		private final PrefetchView view;
+
+		public ElevationRequest(Globe globe, PrefetchView view)
+		{
+			this.globe = globe;
+			this.view = view;
+		}
+
+		@Override
+		public void run()
+		{
+			ElevationModel elevationModel = globe.getElevationModel();
+			Sector sector = view.getFootprint(globe);
+			if (elevationModel == null || elevationModel.intersects(sector) < 0)
+			{
+				return;
+			}
+
+			List<LatLon> latlons = new ArrayList<LatLon>(ELEVATION_SAMPLES * ELEVATION_SAMPLES);
+			double dLat = sector.getDeltaLatDegrees() / (ELEVATION_SAMPLES - 1);
+			double dLon = sector.getDeltaLonDegrees() / (ELEVATION_SAMPLES - 1);
+			for (int y = 0; y < ELEVATION_SAMPLES; y++)
+			{
+				for (int x = 0; x < ELEVATION_SAMPLES; x++)
+				{
+					latlons.add(LatLon.fromDegrees(sector.getMinLatitude().degrees + y * dLat, sector
+							.getMinLongitude().degrees + x * dLon));
+				}
+			}
+			elevationModel.getElevations(sector, latlons, view.getTargetResolution(globe), new double[latlons.size()]);
+		}
+	}
+}
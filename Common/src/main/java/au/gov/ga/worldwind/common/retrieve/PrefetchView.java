@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.retrieve;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
+
+/**
+ * Describes a view that is expected to be displayed in the future, such as the
+ * destination of a place tour or an upcoming frame of an animation. Used by the
+ * {@link PrefetchService} to calculate the data that should be requested
+ * before the view is displayed.
+ */
+public class PrefetchView
+{
+	private final Position eyePosition;
+	private final Position centerPosition;
+	private final Angle fieldOfView;
+	private final int viewportWidth;
+
+	/**
+	 * @param eyePosition
+	 *            Position of the eye
+	 * @param centerPosition
+	 *            Position the eye is looking at (if null, the position on the
+	 *            surface below the eye is used)
+	 * @param fieldOfView
+	 *            Horizontal field of view
+	 * @param viewportWidth
+	 *            Width of the viewport in pixels
+	 */
+	public PrefetchView(Position eyePosition, Position centerPosition, Angle fieldOfView, int viewportWidth)
+	{
+		this.eyePosition = eyePosition;
+		this.centerPosition = centerPosition != null ? centerPosition : new Position(eyePosition, 0);
+		this.fieldOfView = fieldOfView;
+		this.viewportWidth = Math.max(1, viewportWidth);
+	}
+
+	public Position getEyePosition()
+	{
+		return eyePosition;
+	}
+
+	public Position getCenterPosition()
+	{
+		return centerPosition;
+	}
+
+	public Angle getFieldOfView()
+	{
+		return fieldOfView;
+	}
+
+	public int getViewportWidth()
+	{
+		return viewportWidth;
+	}
+
+	/**
+	 * @return Distance between the eye and the center position, in meters
+	 */
+	public double getCenterDistance(Globe globe)
+	{
+		Vec4 eye = globe.computePointFromPosition(eyePosition);
+		Vec4 center = globe.computePointFromPosition(centerPosition);
+		return Math.max(1, eye.distanceTo3(center));
+	}
+
+	/**
+	 * @return Size of a pixel at the center position, in meters
+	 */
+	public double getPixelSize(Globe globe)
+	{
+		return 2 * getCenterDistance(globe) * fieldOfView.tanHalfAngle() / viewportWidth;
+	}
+
+	/**
+	 * @return Resolution required at the center position, in radians per
+	 *         pixel (comparable with a level's texel size)
+	 */
+	public double getTargetResolution(Globe globe)
+	{
+		return getPixelSize(globe) / globe.getRadius();
+	}
+
+	/**
+	 * Calculate the sector covered by the view. The view is approximated by a
+	 * circle around the center position with a radius of half the view's width
+	 * at the center distance; the far parts of strongly tilted views are
+	 * ignored, as they are rendered at coarser levels anyway.
+	 * 
+	 * @return Sector covered by the view
+	 */
+	public Sector getFootprint(Globe globe)
+	{
+		double radius = getCenterDistance(globe) * fieldOfView.tanHalfAngle();
+		return Sector.boundingSector(globe, centerPosition, radius);
+	}
+}
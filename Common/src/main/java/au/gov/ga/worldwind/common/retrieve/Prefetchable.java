@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.retrieve;
+
+import gov.nasa.worldwind.globes.Globe;
+
+import java.util.List;
+
+/**
+ * Represents an object (usually a layer) that can request the data it will
+ * need to render a future view ahead of time. See {@link PrefetchService}.
+ */
+public interface Prefetchable
+{
+	/**
+	 * Create tasks that request the data required to render the given view.
+	 * The tasks are run on the {@link PrefetchService}'s thread, so should not
+	 * be run by this method.
+	 * 
+	 * @param globe
+	 *            Globe the view will be rendered on
+	 * @param view
+	 *            View to prefetch data for
+	 * @param maxTasks
+	 *            Maximum number of tasks to return
+	 * @return Request tasks, most important first (empty if there's nothing
+	 *         to request)
+	 */
+	List<Runnable> createPrefetchTasks(Globe globe, PrefetchView view, int maxTasks);
+}
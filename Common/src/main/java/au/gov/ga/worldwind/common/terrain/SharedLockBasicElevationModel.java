@@ -36,6 +36,7 @@ import javax.xml.xpath.XPath;
 import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer.SharedLock;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 import au.gov.ga.worldwind.common.util.IOUtil;
 
@@ -50,7 +51,7 @@ import au.gov.ga.worldwind.common.util.IOUtil;
  */
 public class SharedLockBasicElevationModel extends URLTransformerBasicElevationModel
 {
-	protected final Object fileLock;
+	protected final SharedLock fileLock;
 	protected boolean extractZipEntry = false;
 
 	public SharedLockBasicElevationModel(Element domElement, AVList params)
@@ -118,7 +119,7 @@ public class SharedLockBasicElevationModel extends URLTransformerBasicElevationM
 		@Override
 		protected Object getFileLock()
 		{
-			return em.fileLock;
+			return em.fileLock.getTileLock(tile.getPath());
 		}
 	}
 
@@ -131,7 +132,7 @@ public class SharedLockBasicElevationModel extends URLTransformerBasicElevationM
 	{
 		try
 		{
-			synchronized (this.fileLock)
+			synchronized (this.fileLock.getTileLock(url))
 			{
 				return IOUtil.readByteBuffer(url, getElevationDataType(), getElevationDataByteOrder());
 			}
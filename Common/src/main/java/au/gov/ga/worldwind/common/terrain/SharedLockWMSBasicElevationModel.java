@@ -36,6 +36,7 @@ import javax.xml.xpath.XPath;
 import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer.SharedLock;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 import au.gov.ga.worldwind.common.util.IOUtil;
 
@@ -50,7 +51,7 @@ import au.gov.ga.worldwind.common.util.IOUtil;
  */
 public class SharedLockWMSBasicElevationModel extends BoundedWMSBasicElevationModel
 {
-	protected final Object fileLock;
+	protected final SharedLock fileLock;
 	protected boolean extractZipEntry = false;
 
 	public SharedLockWMSBasicElevationModel(Element domElement, AVList params)
@@ -117,7 +118,7 @@ public class SharedLockWMSBasicElevationModel extends BoundedWMSBasicElevationMo
 		@Override
 		protected Object getFileLock()
 		{
-			return em.fileLock;
+			return em.fileLock.getTileLock(tile.getPath());
 		}
 	}
 
@@ -130,7 +131,7 @@ public class SharedLockWMSBasicElevationModel extends BoundedWMSBasicElevationMo
 	{
 		try
 		{
-			synchronized (this.fileLock)
+			synchronized (this.fileLock.getTileLock(url))
 			{
 				return IOUtil.readByteBuffer(url, getElevationDataType(), getElevationDataByteOrder());
 			}
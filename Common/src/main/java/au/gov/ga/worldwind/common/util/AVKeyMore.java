@@ -87,6 +87,9 @@ public interface AVKeyMore extends AVKey
 	//elevation model
 	final static String EXTRACT_ZIP_ENTRY = "au.gov.ga.worldwind.AVKeyMore.ExtractZipEntry";
 
+	//delegator tiled image layer
+	final static String CACHE_PROCESSED_TEXTURES = "au.gov.ga.worldwind.AVKeyMore.CacheProcessedTextures";
+
 	//voxet model
 	final static String BILINEAR_MINIFICATION = "au.gov.ga.worldwind.AVKeyMore.BilinearMinification";
 	final static String SUBSAMPLING_U = "au.gov.ga.worldwind.AVKeyMore.SubsamplingU";
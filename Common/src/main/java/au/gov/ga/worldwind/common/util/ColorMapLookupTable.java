@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util;
+
+/**
+ * Precalculated lookup table of ARGB colors for a {@link ColorMap}, for
+ * coloring large numbers of values without the per-value map lookups and
+ * {@link java.awt.Color} allocations of {@link ColorMap#calculateColor(double)}.
+ * <p/>
+ * The table spans the range between the color map's first and last values
+ * (values outside this range map to the first/last colors, as they do in the
+ * color map). The table size is chosen so that there are at least
+ * {@value #SAMPLES_PER_INTERVAL} entries between the two closest values in the
+ * color map, within the limits of {@value #MIN_SIZE} and {@value #MAX_SIZE}
+ * entries (so color map entries closer together than 1/{@value #MAX_SIZE}th
+ * of the map's range are not resolved exactly).
+ */
+public class ColorMapLookupTable
+{
+	protected final static int SAMPLES_PER_INTERVAL = 16;
+	protected final static int MIN_SIZE = 4096;
+	protected final static int MAX_SIZE = 65536;
+
+	private final double minimum;
+	private final double scale;
+	private final int[] colors;
+
+	public ColorMapLookupTable(ColorMap colorMap)
+	{
+		if (colorMap.isEmpty())
+		{
+			minimum = 0;
+			scale = 0;
+			colors = new int[] { 0xff000000 };
+			return;
+		}
+
+		double first = colorMap.firstKey();
+		double last = colorMap.lastKey();
+		double range = last - first;
+		if (range <= 0)
+		{
+			minimum = first;
+			scale = 0;
+			colors = new int[] { colorMap.calculateColor(first).getRGB() };
+			return;
+		}
+
+		double minInterval = range;
+		Double previous = null;
+		for (Double key : colorMap.keySet())
+		{
+			if (previous != null && key - previous > 0)
+			{
+				minInterval = Math.min(minInterval, key - previous);
+			}
+			previous = key;
+		}
+
+		double size = Math.ceil(range / minInterval * SAMPLES_PER_INTERVAL) + 1;
+		int length = (int) Math.max(MIN_SIZE, Math.min(MAX_SIZE, size));
+
+		minimum = first;
+		scale = (length - 1) / range;
+		colors = new int[length];
+		for (int i = 0; i < length; i++)
+		{
+			double value = i == length - 1 ? last : first + i / scale;
+			colors[i] = colorMap.calculateColor(value).getRGB();
+		}
+	}
+
+	/**
+	 * Get the ARGB color for the given value.
+	 * 
+	 * @param value
+	 * @return ARGB color at value
+	 */
+	public int lookup(double value)
+	{
+		int index = (int) ((value - minimum) * scale + 0.5);
+		if (index <= 0)
+		{
+			return colors[0];
+		}
+		if (index >= colors.length)
+		{
+			return colors[colors.length - 1];
+		}
+		return colors[index];
+	}
+
+	/**
+	 * @return Number of entries in the lookup table
+	 */
+	public int size()
+	{
+		return colors.length;
+	}
+}
@@ -15,221 +15,362 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.util;
 
-import java.awt.Dimension;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Created on Jun 12, 2009 @ 11:39:16 AM.
+ * Decodes DXT1, DXT3 and DXT5 compressed DDS images into
+ * {@link BufferedImage#TYPE_INT_ARGB_PRE} images.
+ * <p/>
+ * Blocks are decoded directly into the image's <code>int[]</code> raster
+ * without allocating per-block or per-pixel objects. Large images are decoded
+ * in parallel, with each thread decoding a contiguous range of block rows.
+ * <p/>
+ * 5 and 6 bit color components are expanded to 8 bits by bit replication, and
+ * the 4 bit DXT3 alpha values by multiplying by 17, so that the extremes map to
+ * 0 and 255.
  * 
  * @author joel-cohen
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class DDSUncompressor
 {
-	private static final int DDPF_FOURCC = 0x0004;
-
-	private static final int DDSCAPS_TEXTURE = 0x1000;
-
-	protected static class Color
+	/**
+	 * Enum of the supported DXT compression formats.
+	 */
+	public enum Format
 	{
+		DXT1(8),
+		DXT3(16),
+		DXT5(16);
 
-		private int r, g, b;
+		private final int blockSize;
 
-		public Color()
+		private Format(int blockSize)
 		{
-			this.r = this.g = this.b = 0;
+			this.blockSize = blockSize;
 		}
 
-		public Color(int r, int g, int b)
+		/**
+		 * @return Number of bytes in each compressed 4x4 block
+		 */
+		public int getBlockSize()
 		{
-			this.r = r;
-			this.g = g;
-			this.b = b;
+			return blockSize;
 		}
 
-		@Override
-		public boolean equals(Object o)
+		/**
+		 * @param fourCC
+		 *            Four character code from the DDS pixel format header
+		 * @return Format for the four character code, or null if unsupported
+		 */
+		public static Format fromFourCC(String fourCC)
 		{
-			if (this == o)
-			{
-				return true;
-			}
-			if (o == null || getClass() != o.getClass())
-			{
-				return false;
-			}
-
-			final Color color = (Color) o;
-
-			if (b != color.b)
-			{
-				return false;
-			}
-			if (g != color.g)
-			{
-				return false;
-			}
-			//noinspection RedundantIfStatement
-			if (r != color.r)
+			for (Format format : values())
 			{
-				return false;
+				if (format.name().equals(fourCC))
+				{
+					return format;
+				}
 			}
-
-			return true;
-		}
-
-		@Override
-		public int hashCode()
-		{
-			int result;
-			result = r;
-			result = 29 * result + g;
-			result = 29 * result + b;
-			return result;
+			return null;
 		}
 	}
 
-	protected static Dimension readHeaderDxt3(ByteBuffer buffer)
+	private static final int HEADER_SIZE = 128;
+	private static final int HEIGHT_OFFSET = 12;
+	private static final int WIDTH_OFFSET = 16;
+	private static final int FOURCC_OFFSET = 84;
+
+	/**
+	 * Minimum number of block rows decoded per thread; smaller images are
+	 * decoded on the calling thread.
+	 */
+	private static final int MIN_ROWS_PER_THREAD = 32;
+
+	private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	private static ExecutorService executor;
+
+	/**
+	 * Read a DDS image (including its header) from a buffer. The buffer's
+	 * position is not modified.
+	 * 
+	 * @param buffer
+	 *            Buffer containing a DXT1, DXT3 or DXT5 compressed DDS file
+	 * @return Decoded image
+	 * @throws IllegalArgumentException
+	 *             If the buffer doesn't contain a supported DDS image
+	 */
+	public static BufferedImage readDds(ByteBuffer buffer)
 	{
-		buffer.rewind();
-
-		byte[] magic = new byte[4];
-		buffer.get(magic);
-		assert new String(magic).equals("DDS ");
-
-		int version = buffer.getInt();
-		assert version == 124;
-
-		/*int flags =*/buffer.getInt();
-		int height = buffer.getInt();
-		int width = buffer.getInt();
-		/*int pixels =*/buffer.getInt(); // ???
-		/*int depth =*/buffer.getInt();
-		/*int mipmaps =*/buffer.getInt();
-
-		buffer.position(buffer.position() + 44); // 11 unused double-words
-
-		/*int pixelFormatSize =*/buffer.getInt(); // ???
-		int fourCC = buffer.getInt();
-		assert fourCC == DDPF_FOURCC;
-
-		byte[] format = new byte[4];
-		buffer.get(format);
-		assert new String(format).equals("DXT3");
-
-		/*int bpp =*/buffer.getInt(); // bits per pixel for RGB (non-compressed) formats
-		buffer.getInt(); // rgb bit masks for RGB formats
-		buffer.getInt(); // rgb bit masks for RGB formats
-		buffer.getInt(); // rgb bit masks for RGB formats
-		buffer.getInt(); // alpha mask for RGB formats
+		ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		if (data.limit() < HEADER_SIZE || data.getInt(0) != 0x20534444) //"DDS "
+		{
+			throw new IllegalArgumentException("Buffer does not contain a DDS image");
+		}
 
-		int unknown = buffer.getInt();
-		assert unknown == DDSCAPS_TEXTURE;
-		/*int ddsCaps =*/buffer.getInt(); // ???
-		buffer.position(buffer.position() + 12);
+		byte[] fourCC = new byte[4];
+		data.position(FOURCC_OFFSET);
+		data.get(fourCC);
+		Format format = Format.fromFourCC(new String(fourCC));
+		if (format == null)
+		{
+			throw new IllegalArgumentException("Unsupported DDS format: " + new String(fourCC));
+		}
 
-		return new Dimension(width, height);
+		int height = data.getInt(HEIGHT_OFFSET);
+		int width = data.getInt(WIDTH_OFFSET);
+		data.position(HEADER_SIZE);
+		return decode(data.slice(), width, height, format);
 	}
 
+	/**
+	 * Read a DXT3 compressed DDS image (including its header) from a buffer.
+	 * 
+	 * @see #readDds(ByteBuffer)
+	 */
 	public static BufferedImage readDxt3(ByteBuffer buffer)
 	{
-		buffer.order(ByteOrder.LITTLE_ENDIAN);
-		Dimension dimension = readHeaderDxt3(buffer);
-
-		return readDxt3Buffer(buffer, dimension.width, dimension.height);
+		return readDds(buffer);
 	}
 
+	/**
+	 * Decode headerless DXT3 block data.
+	 * 
+	 * @see #decode(ByteBuffer, int, int, Format)
+	 */
 	public static BufferedImage readDxt3Buffer(ByteBuffer buffer, int width, int height)
 	{
-		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return decode(buffer, width, height, Format.DXT3);
+	}
 
-		int[] pixels = new int[16];
-		int[] alphas = new int[16];
+	/**
+	 * Decode headerless DXT block data, starting at the buffer's current
+	 * position (which is not modified). Partial blocks at the right and bottom
+	 * edges of images with dimensions that aren't a multiple of 4 are clipped.
+	 * 
+	 * @param buffer
+	 *            Compressed block data
+	 * @param width
+	 *            Image width
+	 * @param height
+	 *            Image height
+	 * @param format
+	 *            Compression format of the blocks
+	 * @return Decoded image
+	 */
+	public static BufferedImage decode(ByteBuffer buffer, int width, int height, final Format format)
+	{
+		final ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		final int[] raster = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		final int blocksWide = (width + 3) / 4;
+		final int blocksHigh = (height + 3) / 4;
+
+		int required = blocksWide * blocksHigh * format.getBlockSize();
+		if (data.remaining() < required)
+		{
+			throw new IllegalArgumentException("Buffer too small for " + width + "x" + height + " " + format
+					+ " image: " + data.remaining() + " < " + required + " bytes");
+		}
 
-		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		int threads = Math.min(THREAD_COUNT, blocksHigh / MIN_ROWS_PER_THREAD);
+		if (threads <= 1)
+		{
+			decodeRows(data, raster, width, height, blocksWide, format, 0, blocksHigh);
+			return image;
+		}
 
-		int numTilesWide = width / 4;
-		int numTilesHigh = height / 4;
-		for (int i = 0; i < numTilesHigh; i++)
+		List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+		ExecutorService executor = getExecutor();
+		for (int t = 0; t < threads; t++)
 		{
-			for (int j = 0; j < numTilesWide; j++)
+			final int startRow = blocksHigh * t / threads;
+			final int endRow = blocksHigh * (t + 1) / threads;
+			final int w = width, h = height;
+			futures.add(executor.submit(new Runnable()
 			{
-				// Read the alpha table.
-				long alphaData = buffer.getLong();
-				for (int k = alphas.length - 1; k >= 0; k--)
+				@Override
+				public void run()
 				{
-					alphas[k] = (int) (alphaData >>> (k * 4)) & 0xF; // Alphas are just 4 bits per pixel
-					alphas[k] <<= 4;
+					decodeRows(data, raster, w, h, blocksWide, format, startRow, endRow);
 				}
+			}));
+		}
+		try
+		{
+			for (Future<?> future : futures)
+			{
+				future.get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while decoding DDS image", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Error decoding DDS image", e.getCause());
+		}
+		return image;
+	}
 
-				short minColor = buffer.getShort();
-				short maxColor = buffer.getShort();
-				Color[] lookupTable = expandLookupTable(minColor, maxColor);
+	private static synchronized ExecutorService getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = Executors.newFixedThreadPool(THREAD_COUNT, new DaemonThreadFactory("DDS decoder"));
+		}
+		return executor;
+	}
 
-				int colorData = buffer.getInt();
+	/**
+	 * Decode the block rows in the range [startRow, endRow). Only uses
+	 * absolute buffer reads, so multiple threads can share the buffer.
+	 */
+	private static void decodeRows(ByteBuffer data, int[] raster, int width, int height, int blocksWide,
+			Format format, int startRow, int endRow)
+	{
+		int[] colors = new int[4];
+		int[] alphas = new int[8];
+		int blockSize = format.getBlockSize();
 
-				for (int k = pixels.length - 1; k >= 0; k--)
+		for (int by = startRow; by < endRow; by++)
+		{
+			int offset = by * blocksWide * blockSize;
+			int y0 = by * 4;
+			int rows = Math.min(4, height - y0);
+
+			for (int bx = 0; bx < blocksWide; bx++, offset += blockSize)
+			{
+				int x0 = bx * 4;
+				int columns = Math.min(4, width - x0);
+
+				long alphaBits = 0;
+				int colorOffset = offset;
+				if (format == Format.DXT3)
+				{
+					alphaBits = data.getLong(offset);
+					colorOffset += 8;
+				}
+				else if (format == Format.DXT5)
 				{
-					int colorCode = (colorData >>> k * 2) & 0x03;
-					pixels[k] =
-							(alphas[k] << 24)
-									| getPixel888(multiplyAlpha(lookupTable[colorCode], alphas[k]));
+					expandAlphaTable(data.get(offset) & 0xff, data.get(offset + 1) & 0xff, alphas);
+					//48 bits of 3 bit indices following the two reference alphas
+					alphaBits = data.getLong(offset) >>> 16;
+					colorOffset += 8;
 				}
 
-				result.setRGB(j * 4, i * 4, 4, 4, pixels, 0, 4);
+				int c0 = data.getShort(colorOffset) & 0xffff;
+				int c1 = data.getShort(colorOffset + 2) & 0xffff;
+				boolean opaqueMode = format != Format.DXT1 || c0 > c1;
+				expandColorTable(c0, c1, opaqueMode, colors);
+				int indices = data.getInt(colorOffset + 4);
+
+				for (int y = 0; y < rows; y++)
+				{
+					int rasterIndex = (y0 + y) * width + x0;
+					for (int x = 0; x < columns; x++)
+					{
+						int i = y * 4 + x;
+						int code = (indices >>> (i * 2)) & 0x3;
+						int rgb = colors[code];
+						int alpha;
+						if (format == Format.DXT3)
+						{
+							alpha = (int) ((alphaBits >>> (i * 4)) & 0xf) * 17;
+						}
+						else if (format == Format.DXT5)
+						{
+							alpha = alphas[(int) ((alphaBits >>> (i * 3)) & 0x7)];
+						}
+						else
+						{
+							//DXT1 3 color mode uses code 3 for transparent black
+							alpha = !opaqueMode && code == 3 ? 0 : 255;
+						}
+						raster[rasterIndex + x] = premultiply(rgb, alpha);
+					}
+				}
 			}
 		}
-		return result;
 	}
 
-	private static Color multiplyAlpha(Color color, int alpha)
+	private static void expandColorTable(int c0, int c1, boolean opaqueMode, int[] colors)
 	{
-		Color result = new Color();
-
-		double alphaF = alpha / 256.0;
+		int r0 = expand5((c0 >>> 11) & 0x1f), g0 = expand6((c0 >>> 5) & 0x3f), b0 = expand5(c0 & 0x1f);
+		int r1 = expand5((c1 >>> 11) & 0x1f), g1 = expand6((c1 >>> 5) & 0x3f), b1 = expand5(c1 & 0x1f);
 
-		result.r = (int) (color.r * alphaF);
-		result.g = (int) (color.g * alphaF);
-		result.b = (int) (color.b * alphaF);
-		return result;
+		colors[0] = (r0 << 16) | (g0 << 8) | b0;
+		colors[1] = (r1 << 16) | (g1 << 8) | b1;
+		if (opaqueMode)
+		{
+			colors[2] =
+					(((2 * r0 + r1 + 1) / 3) << 16) | (((2 * g0 + g1 + 1) / 3) << 8) | ((2 * b0 + b1 + 1) / 3);
+			colors[3] =
+					(((r0 + 2 * r1 + 1) / 3) << 16) | (((g0 + 2 * g1 + 1) / 3) << 8) | ((b0 + 2 * b1 + 1) / 3);
+		}
+		else
+		{
+			colors[2] = (((r0 + r1) / 2) << 16) | (((g0 + g1) / 2) << 8) | ((b0 + b1) / 2);
+			colors[3] = 0;
+		}
 	}
 
-	protected static Color getColor565(int pixel)
+	private static void expandAlphaTable(int a0, int a1, int[] alphas)
 	{
-		Color color = new Color();
-
-		color.r = (int) (((long) pixel) & 0xf800) >>> 8;
-		color.g = (int) (((long) pixel) & 0x07e0) >>> 3;
-		color.b = (int) (((long) pixel) & 0x001f) << 3;
-
-		return color;
+		alphas[0] = a0;
+		alphas[1] = a1;
+		if (a0 > a1)
+		{
+			for (int i = 1; i <= 6; i++)
+			{
+				alphas[i + 1] = ((7 - i) * a0 + i * a1 + 3) / 7;
+			}
+		}
+		else
+		{
+			for (int i = 1; i <= 4; i++)
+			{
+				alphas[i + 1] = ((5 - i) * a0 + i * a1 + 2) / 5;
+			}
+			alphas[6] = 0;
+			alphas[7] = 255;
+		}
 	}
 
-	private static Color[] expandLookupTable(short minColor, short maxColor)
+	private static int expand5(int value)
 	{
-		Color[] result =
-				new Color[] { getColor565(minColor), getColor565(maxColor), new Color(),
-						new Color() };
-
-		result[2].r = (2 * result[0].r + result[1].r + 1) / 3;
-		result[2].g = (2 * result[0].g + result[1].g + 1) / 3;
-		result[2].b = (2 * result[0].b + result[1].b + 1) / 3;
-
-		result[3].r = (result[0].r + 2 * result[1].r + 1) / 3;
-		result[3].g = (result[0].g + 2 * result[1].g + 1) / 3;
-		result[3].b = (result[0].b + 2 * result[1].b + 1) / 3;
-
-		return result;
+		return (value << 3) | (value >>> 2);
 	}
 
-	protected static int getPixel888(Color color)
+	private static int expand6(int value)
 	{
-		int r = color.r;
-		int g = color.g;
-		int b = color.b;
-		return r << 16 | g << 8 | b;
+		return (value << 2) | (value >>> 4);
 	}
 
-
+	private static int premultiply(int rgb, int alpha)
+	{
+		if (alpha == 255)
+		{
+			return 0xff000000 | rgb;
+		}
+		if (alpha == 0)
+		{
+			return 0;
+		}
+		int r = (((rgb >>> 16) & 0xff) * alpha + 127) / 255;
+		int g = (((rgb >>> 8) & 0xff) * alpha + 127) / 255;
+		int b = ((rgb & 0xff) * alpha + 127) / 255;
+		return (alpha << 24) | (r << 16) | (g << 8) | b;
+	}
 }
@@ -22,6 +22,7 @@ import gov.nasa.worldwind.util.BufferWrapper;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.WWIO;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -71,7 +72,8 @@ public class IOUtil extends WWIO
 	 * Read the bytes from the resource referenced by the provided url.
 	 * <p/>
 	 * If the URL references a zip archive, the returned buffer will contain the
-	 * contents of the un-zipped resource.
+	 * contents of the un-zipped resource. If the URL references an entry within
+	 * a local zip file, the entry is read using a cached {@link ZipIndex}.
 	 */
 	public static ByteBuffer readByteBuffer(URL url) throws IOException
 	{
@@ -98,6 +100,26 @@ public class IOUtil extends WWIO
 			}
 		}
 		if (byteBuffer == null)
+		{
+			File zipFile = ZipIndex.getZipFile(url);
+			if (zipFile != null)
+			{
+				try
+				{
+					ZipIndex index = ZipIndex.get(zipFile);
+					ZipIndex.Entry entry = index.getEntry(ZipIndex.getEntryName(url));
+					if (entry != null)
+					{
+						byteBuffer = ByteBuffer.wrap(index.read(entry));
+					}
+				}
+				catch (IOException e)
+				{
+					//index could not be read (eg Zip64), so read the URL normally below
+				}
+			}
+		}
+		if (byteBuffer == null)
 		{
 			byteBuffer = readURLContentToBuffer(url);
 		}
@@ -269,6 +269,32 @@ public class Util
 	 * @throws MalformedURLException
 	 */
 	private static URL zipEntryUrl(File zipFile, String... entries) throws MalformedURLException
+	{
+		//use the cached central directory index, rather than opening and parsing the zip for every tile
+		ZipIndex index;
+		try
+		{
+			index = ZipIndex.get(zipFile);
+		}
+		catch (IOException e)
+		{
+			//index could not be read (eg Zip64), so fall back to ZipFile
+			return zipFileEntryUrl(zipFile, entries);
+		}
+
+		for (String entry : entries)
+		{
+			entry = entry.replaceAll("\\\\", "/");
+			if (index.contains(entry))
+			{
+				URL zipFileUrl = zipFile.toURI().toURL();
+				return new URL("jar:" + zipFileUrl.toExternalForm() + "!/" + entry);
+			}
+		}
+		return null;
+	}
+
+	private static URL zipFileEntryUrl(File zipFile, String... entries) throws MalformedURLException
 	{
 		ZipFile zip = null;
 		try
@@ -0,0 +1,502 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipFile;
+
+/**
+ * Index of the entries in a zip file, parsed from the zip's central directory.
+ * Allows entries to be found without scanning the zip, and read by seeking
+ * directly to the entry's data through a {@link FileChannel}.
+ * <p/>
+ * Indexes are shared through a bounded cache (see {@link #get(File)}), keyed
+ * by file and invalidated when the file's modification time or length
+ * changes. Only indexes of archives with at least {@link #MIN_CACHED_ENTRIES}
+ * entries are cached, so that small per-tile zips (which are cheap to parse)
+ * don't evict the indexes of large packed archives. Zip64 archives are not
+ * supported; {@link #get(File)} throws an {@link IOException} for them, so
+ * callers can fall back to {@link ZipFile}.
+ */
+public class ZipIndex
+{
+	protected final static int MAX_CACHED = 64;
+	protected final static int MIN_CACHED_ENTRIES = 16;
+
+	private final static int END_SIGNATURE = 0x06054b50;
+	private final static int CENTRAL_SIGNATURE = 0x02014b50;
+	private final static int LOCAL_SIGNATURE = 0x04034b50;
+	private final static int END_SIZE = 22;
+	private final static int CENTRAL_SIZE = 46;
+	private final static int LOCAL_SIZE = 30;
+	private final static int MAX_COMMENT = 0xffff;
+
+	private final static Map<String, ZipIndex> cache = new LinkedHashMap<String, ZipIndex>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ZipIndex> eldest)
+		{
+			return size() > MAX_CACHED;
+		}
+	};
+
+	private final File file;
+	private final long lastModified;
+	private final long length;
+	private final Map<String, Entry> entries;
+	private final List<Entry> orderedEntries;
+
+	/**
+	 * An entry in a zip file.
+	 */
+	public static class Entry
+	{
+		private final String name;
+		private final int method;
+		private final long compressedSize;
+		private final long size;
+		private final long localHeaderOffset;
+
+		private Entry(String name, int method, long compressedSize, long size, long localHeaderOffset)
+		{
+			this.name = name;
+			this.method = method;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public boolean isDirectory()
+		{
+			return name.endsWith("/");
+		}
+
+		/**
+		 * @return Uncompressed size of the entry
+		 */
+		public long getSize()
+		{
+			return size;
+		}
+
+		/**
+		 * @return Offset of the entry's local file header within the zip file
+		 */
+		public long getLocalHeaderOffset()
+		{
+			return localHeaderOffset;
+		}
+	}
+
+	/**
+	 * Get the (possibly cached) index for the given zip file. Indexes with
+	 * fewer than {@link #MIN_CACHED_ENTRIES} entries are not cached.
+	 * 
+	 * @param file
+	 *            Zip file
+	 * @return Index of the zip file's entries
+	 * @throws IOException
+	 *             If the zip file's central directory could not be read
+	 */
+	public static ZipIndex get(File file) throws IOException
+	{
+		String key = file.getAbsolutePath();
+		long lastModified = file.lastModified();
+		long length = file.length();
+
+		synchronized (cache)
+		{
+			ZipIndex index = cache.get(key);
+			if (index != null && index.lastModified == lastModified && index.length == length)
+			{
+				return index;
+			}
+		}
+
+		//parse outside the lock, so that slow parses don't block other zips
+		ZipIndex index = new ZipIndex(file, lastModified, length);
+		synchronized (cache)
+		{
+			if (index.orderedEntries.size() >= MIN_CACHED_ENTRIES)
+			{
+				cache.put(key, index);
+			}
+			else
+			{
+				cache.remove(key);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Remove all cached indexes.
+	 */
+	public static void clearCache()
+	{
+		synchronized (cache)
+		{
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Open a stream to the resource referenced by the URL. If the URL points
+	 * to an entry within a local zip file (<code>jar:file:...!/entry</code>),
+	 * the entry is read using a cached {@link ZipIndex}; otherwise the URL is
+	 * opened normally.
+	 * 
+	 * @param url
+	 * @return Stream to the URL's content
+	 * @throws IOException
+	 *             If the URL could not be opened (including if the entry does
+	 *             not exist in the zip file)
+	 */
+	public static InputStream openStream(URL url) throws IOException
+	{
+		File zipFile = getZipFile(url);
+		if (zipFile == null)
+		{
+			return url.openStream();
+		}
+
+		ZipIndex index;
+		try
+		{
+			index = get(zipFile);
+		}
+		catch (IOException e)
+		{
+			//index could not be read (eg Zip64), so let the URL handler read it
+			return url.openStream();
+		}
+
+		String entryName = getEntryName(url);
+		Entry entry = index.getEntry(entryName);
+		if (entry == null)
+		{
+			throw new IOException("Entry " + entryName + " not found in " + zipFile);
+		}
+		return new ByteArrayInputStream(index.read(entry));
+	}
+
+	/**
+	 * @param url
+	 * @return The local zip file that the given <code>jar:</code> or
+	 *         <code>zip:</code> URL points into, or null if the URL doesn't
+	 *         point to an entry within a local file
+	 */
+	public static File getZipFile(URL url)
+	{
+		String protocol = url.getProtocol();
+		if (!"jar".equalsIgnoreCase(protocol) && !"zip".equalsIgnoreCase(protocol))
+		{
+			return null;
+		}
+
+		String s = url.toString();
+		int indexOfBang = s.lastIndexOf("!/");
+		if (indexOfBang < 0)
+		{
+			return null;
+		}
+		String inner = s.substring(protocol.length() + 1, indexOfBang);
+		try
+		{
+			URI uri = new URI(inner);
+			if (!"file".equalsIgnoreCase(uri.getScheme()))
+			{
+				return null;
+			}
+			File file = new File(uri);
+			return file.isFile() ? file : null;
+		}
+		catch (URISyntaxException e)
+		{
+			return null;
+		}
+		catch (IllegalArgumentException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @param url
+	 *            <code>jar:</code> or <code>zip:</code> URL
+	 * @return Name of the zip entry the URL points to
+	 */
+	public static String getEntryName(URL url)
+	{
+		String s = url.toString();
+		String entry = s.substring(s.lastIndexOf("!/") + 2);
+		try
+		{
+			return URLDecoder.decode(entry.replace("+", "%2B"), "UTF-8");
+		}
+		catch (IOException e)
+		{
+			return entry;
+		}
+	}
+
+	protected ZipIndex(File file, long lastModified, long length) throws IOException
+	{
+		this.file = file;
+		this.lastModified = lastModified;
+		this.length = length;
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			ByteBuffer end = findEndOfCentralDirectory(channel);
+			int count = end.getShort(10) & 0xffff;
+			long directorySize = end.getInt(12) & 0xffffffffL;
+			long directoryOffset = end.getInt(16) & 0xffffffffL;
+			if (count == 0xffff || directorySize == 0xffffffffL || directoryOffset == 0xffffffffL)
+			{
+				throw new IOException("Zip64 archives are not supported: " + file);
+			}
+
+			ByteBuffer directory = read(channel, directoryOffset, (int) directorySize);
+			Map<String, Entry> entries = new HashMap<String, Entry>(count * 2);
+			List<Entry> orderedEntries = new ArrayList<Entry>(count);
+			int position = 0;
+			for (int i = 0; i < count; i++)
+			{
+				if (position + CENTRAL_SIZE > directory.limit() || directory.getInt(position) != CENTRAL_SIGNATURE)
+				{
+					throw new IOException("Invalid zip central directory in " + file);
+				}
+				int method = directory.getShort(position + 10) & 0xffff;
+				long compressedSize = directory.getInt(position + 20) & 0xffffffffL;
+				long size = directory.getInt(position + 24) & 0xffffffffL;
+				int nameLength = directory.getShort(position + 28) & 0xffff;
+				int extraLength = directory.getShort(position + 30) & 0xffff;
+				int commentLength = directory.getShort(position + 32) & 0xffff;
+				long localHeaderOffset = directory.getInt(position + 42) & 0xffffffffL;
+				if (compressedSize == 0xffffffffL || size == 0xffffffffL || localHeaderOffset == 0xffffffffL)
+				{
+					throw new IOException("Zip64 archives are not supported: " + file);
+				}
+
+				byte[] nameBytes = new byte[nameLength];
+				directory.position(position + CENTRAL_SIZE);
+				directory.get(nameBytes);
+				//decode names as UTF-8, as ZipFile does by default
+				String name = new String(nameBytes, "UTF-8");
+
+				Entry entry = new Entry(name, method, compressedSize, size, localHeaderOffset);
+				entries.put(name, entry);
+				orderedEntries.add(entry);
+				position += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+			}
+
+			Collections.sort(orderedEntries, new Comparator<Entry>()
+			{
+				@Override
+				public int compare(Entry o1, Entry o2)
+				{
+					return o1.localHeaderOffset < o2.localHeaderOffset ? -1
+							: o1.localHeaderOffset == o2.localHeaderOffset ? 0 : 1;
+				}
+			});
+			this.entries = entries;
+			this.orderedEntries = Collections.unmodifiableList(orderedEntries);
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	public File getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * @param name
+	 * @return Entry with the given name, or null if not found
+	 */
+	public Entry getEntry(String name)
+	{
+		return entries.get(name);
+	}
+
+	/**
+	 * @param name
+	 * @return Does this zip contain an entry with the given name?
+	 */
+	public boolean contains(String name)
+	{
+		return entries.containsKey(name);
+	}
+
+	/**
+	 * @return Entries in the order they are stored in the zip file
+	 */
+	public List<Entry> getEntries()
+	{
+		return orderedEntries;
+	}
+
+	/**
+	 * Read and decompress an entry.
+	 * 
+	 * @param entry
+	 * @return Uncompressed entry data
+	 * @throws IOException
+	 */
+	public byte[] read(Entry entry) throws IOException
+	{
+		if (entry.compressedSize > Integer.MAX_VALUE || entry.size > Integer.MAX_VALUE)
+		{
+			throw new IOException("Zip entry " + entry.name + " is too large");
+		}
+
+		ByteBuffer compressed;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			ByteBuffer local = read(channel, entry.localHeaderOffset, LOCAL_SIZE);
+			if (local.getInt(0) != LOCAL_SIGNATURE)
+			{
+				throw new IOException("Invalid zip local header for " + entry.name + " in " + file);
+			}
+			int nameLength = local.getShort(26) & 0xffff;
+			int extraLength = local.getShort(28) & 0xffff;
+			long dataOffset = entry.localHeaderOffset + LOCAL_SIZE + nameLength + extraLength;
+			compressed = read(channel, dataOffset, (int) entry.compressedSize);
+		}
+		finally
+		{
+			raf.close();
+		}
+
+		if (entry.method == 0)
+		{
+			byte[] bytes = new byte[(int) entry.size];
+			compressed.get(bytes);
+			return bytes;
+		}
+		if (entry.method != 8)
+		{
+			throw new IOException("Unsupported zip compression method " + entry.method + " for " + entry.name);
+		}
+
+		byte[] input = new byte[compressed.remaining()];
+		compressed.get(input);
+		byte[] output = new byte[(int) entry.size];
+		Inflater inflater = new Inflater(true);
+		try
+		{
+			inflater.setInput(input);
+			int total = 0;
+			while (total < output.length)
+			{
+				int count = inflater.inflate(output, total, output.length - total);
+				if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+				{
+					break;
+				}
+				total += count;
+			}
+			if (total != output.length)
+			{
+				throw new IOException("Zip entry " + entry.name + " is truncated");
+			}
+		}
+		catch (DataFormatException e)
+		{
+			throw new IOException("Invalid compressed data for zip entry " + entry.name, e);
+		}
+		finally
+		{
+			inflater.end();
+		}
+		return output;
+	}
+
+	/**
+	 * Read an entry's data as a stream.
+	 * 
+	 * @param entry
+	 * @return Stream of the uncompressed entry data
+	 * @throws IOException
+	 */
+	public InputStream openStream(Entry entry) throws IOException
+	{
+		return new ByteArrayInputStream(read(entry));
+	}
+
+	private static ByteBuffer findEndOfCentralDirectory(FileChannel channel) throws IOException
+	{
+		long size = channel.size();
+		int searchLength = (int) Math.min(size, END_SIZE + MAX_COMMENT);
+		ByteBuffer tail = read(channel, size - searchLength, searchLength);
+		for (int i = searchLength - END_SIZE; i >= 0; i--)
+		{
+			if (tail.getInt(i) == END_SIGNATURE)
+			{
+				tail.position(i);
+				return tail.slice().order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+		throw new IOException("Zip end of central directory not found");
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining())
+		{
+			if (channel.read(buffer, position + buffer.position()) < 0)
+			{
+				throw new IOException("Unexpected end of zip file");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
@@ -0,0 +1,192 @@
+package au.gov.ga.worldwind.common.layers.delegate.reader;
+
+import static org.junit.Assert.*;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link MaskHelper} class
+ */
+public class MaskHelperTest
+{
+	private static final int SIZE = 37;
+
+	@Test
+	public void testComposeMatchesSrcIn()
+	{
+		int[] imageTypes =
+				{ BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR,
+						BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_USHORT_565_RGB };
+		int[] maskTypes =
+				{ BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_ARGB_PRE };
+
+		for (int imageType : imageTypes)
+		{
+			for (int maskType : maskTypes)
+			{
+				BufferedImage image = createImage(imageType, 1);
+				BufferedImage mask = createImage(maskType, 2);
+				int[] expected = composeUsingGraphics(image, mask);
+				BufferedImage composed = MaskHelper.compose(image, mask);
+				assertPixelsEqual(imageType + "/" + maskType, expected, getPixels(composed), 1);
+			}
+		}
+	}
+
+	@Test
+	public void testComposeIndexedMask()
+	{
+		byte[] values = new byte[256];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = (byte) i;
+		}
+		IndexColorModel icm = new IndexColorModel(8, 256, values, values, values, values);
+		BufferedImage mask = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_BYTE_INDEXED, icm);
+		Random random = new Random(3);
+		for (int y = 0; y < SIZE; y++)
+		{
+			for (int x = 0; x < SIZE; x++)
+			{
+				mask.getRaster().setSample(x, y, 0, random.nextInt(256));
+			}
+		}
+
+		BufferedImage image = createImage(BufferedImage.TYPE_INT_RGB, 4);
+		int[] argb = MaskHelper.composeARGB(image, mask, false);
+		for (int y = 0; y < SIZE; y++)
+		{
+			for (int x = 0; x < SIZE; x++)
+			{
+				int alpha = mask.getRaster().getSample(x, y, 0);
+				int expected = alpha == 0 ? 0 : (alpha << 24) | (image.getRGB(x, y) & 0xffffff);
+				assertEquals(expected, argb[y * SIZE + x]);
+			}
+		}
+	}
+
+	@Test
+	public void testComposeMaskWithoutAlpha()
+	{
+		BufferedImage image = createImage(BufferedImage.TYPE_INT_ARGB, 5);
+		BufferedImage mask = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_BYTE_GRAY);
+		int[] argb = MaskHelper.composeARGB(image, mask, false);
+		for (int y = 0; y < SIZE; y++)
+		{
+			for (int x = 0; x < SIZE; x++)
+			{
+				int pixel = image.getRGB(x, y);
+				assertEquals(pixel >>> 24 == 0 ? 0 : pixel, argb[y * SIZE + x]);
+			}
+		}
+	}
+
+	@Test
+	public void testComposePremultiplied()
+	{
+		BufferedImage image = createImage(BufferedImage.TYPE_3BYTE_BGR, 6);
+		BufferedImage mask = createImage(BufferedImage.TYPE_4BYTE_ABGR, 7);
+		int[] straight = MaskHelper.composeARGB(image, mask, false);
+		int[] premultiplied = MaskHelper.composeARGB(image, mask, true);
+		for (int i = 0; i < straight.length; i++)
+		{
+			int alpha = straight[i] >>> 24;
+			assertEquals(alpha, premultiplied[i] >>> 24);
+			for (int shift = 0; shift < 24; shift += 8)
+			{
+				int component = (straight[i] >> shift) & 0xff;
+				assertEquals((component * alpha + 127) / 255, (premultiplied[i] >> shift) & 0xff);
+			}
+		}
+	}
+
+	@Test
+	public void testComposeSmallerImage()
+	{
+		BufferedImage image = new BufferedImage(SIZE - 5, SIZE - 7, BufferedImage.TYPE_INT_RGB);
+		BufferedImage mask = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < SIZE; y++)
+		{
+			for (int x = 0; x < SIZE; x++)
+			{
+				mask.setRGB(x, y, 0xffffffff);
+				if (x < image.getWidth() && y < image.getHeight())
+				{
+					image.setRGB(x, y, 0x123456);
+				}
+			}
+		}
+
+		int[] argb = MaskHelper.composeARGB(image, mask, false);
+		for (int y = 0; y < SIZE; y++)
+		{
+			for (int x = 0; x < SIZE; x++)
+			{
+				boolean inside = x < image.getWidth() && y < image.getHeight();
+				assertEquals(inside ? 0xff123456 : 0, argb[y * SIZE + x]);
+			}
+		}
+	}
+
+	private static BufferedImage createImage(int type, long seed)
+	{
+		BufferedImage image = new BufferedImage(SIZE, SIZE, type);
+		Random random = new Random(seed);
+		for (int y = 0; y < SIZE; y++)
+		{
+			for (int x = 0; x < SIZE; x++)
+			{
+				//include fully opaque and fully transparent pixels
+				int alpha = x == 0 ? 0 : x == 1 ? 255 : random.nextInt(256);
+				image.setRGB(x, y, (alpha << 24) | random.nextInt(0x1000000));
+			}
+		}
+		return image;
+	}
+
+	private static int[] composeUsingGraphics(BufferedImage image, BufferedImage mask)
+	{
+		BufferedImage copy = new BufferedImage(mask.getWidth(), mask.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		copy.setRGB(0, 0, SIZE, SIZE, mask.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE), 0, SIZE);
+		Graphics2D g2d = copy.createGraphics();
+		g2d.setComposite(AlphaComposite.SrcIn);
+		g2d.drawImage(image, 0, 0, null);
+		g2d.dispose();
+		return getPixels(copy);
+	}
+
+	private static int[] getPixels(BufferedImage image)
+	{
+		return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+	}
+
+	private static void assertPixelsEqual(String message, int[] expected, int[] actual, int tolerance)
+	{
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++)
+		{
+			int expectedAlpha = expected[i] >>> 24;
+			int actualAlpha = actual[i] >>> 24;
+			assertTrue(message + " alpha at " + i, Math.abs(expectedAlpha - actualAlpha) <= tolerance);
+			if (expectedAlpha == 0)
+			{
+				continue;
+			}
+			//Java2D composites using premultiplied colour, which loses precision at low alpha
+			int colourTolerance = tolerance + 255 / expectedAlpha;
+			for (int shift = 0; shift < 24; shift += 8)
+			{
+				int e = (expected[i] >> shift) & 0xff;
+				int a = (actual[i] >> shift) & 0xff;
+				assertTrue(message + " colour at " + i + ": " + Integer.toHexString(expected[i]) + " != "
+						+ Integer.toHexString(actual[i]), Math.abs(e - a) <= colourTolerance);
+			}
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package au.gov.ga.worldwind.common.layers.delegate.transformer;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import au.gov.ga.worldwind.common.layers.delegate.IPixelTransformerDelegate;
+
+/**
+ * Compares the time taken to apply a chain of pixel transformers one after
+ * another (each creating a new image using per-pixel getRGB/setRGB, as the
+ * transformers did previously) against the fused {@link PixelTransformerChain}.
+ * <p/>
+ * Run as a Java application; arguments are the tile size (default 512) and the
+ * number of iterations (default 200).
+ */
+public class PixelTransformerChainBenchmark
+{
+	public static void main(String[] args)
+	{
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		BufferedImage image = PixelTransformerChainTest.createRandomImage(size, size, BufferedImage.TYPE_INT_RGB);
+		List<IPixelTransformerDelegate> transformers = PixelTransformerChainTest.createTransformers();
+		PixelTransformerChain fused = new PixelTransformerChain(transformers, new int[] { 0xffffff });
+
+		//warm up
+		for (int i = 0; i < iterations / 10 + 1; i++)
+		{
+			chained(image, transformers, 0xffffff);
+			fused.transform(image);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+		{
+			chained(image, transformers, 0xffffff);
+		}
+		double chainedMillis = (System.nanoTime() - start) / 1e6 / iterations;
+
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+		{
+			fused.transform(image);
+		}
+		double fusedMillis = (System.nanoTime() - start) / 1e6 / iterations;
+
+		System.out.println(transformers.size() + " transformers + transparency color, " + size + "x" + size
+				+ " tiles, " + iterations + " iterations");
+		System.out.println(String.format("Chained: %.3f ms/tile", chainedMillis));
+		System.out.println(String.format("Fused:   %.3f ms/tile", fusedMillis));
+		System.out.println(String.format("Speedup: %.1fx", chainedMillis / fusedMillis));
+	}
+
+	private static BufferedImage chained(BufferedImage image, List<IPixelTransformerDelegate> transformers,
+			int transparencyColor)
+	{
+		for (IPixelTransformerDelegate transformer : transformers)
+		{
+			image = copy(image, transformer);
+		}
+
+		//equivalent of ImageUtil.mapTransparencyColors
+		int width = image.getWidth();
+		int height = image.getHeight();
+		BufferedImage dst = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+		for (int i = 0; i < pixels.length; i++)
+		{
+			if ((pixels[i] & 0xffffff) == transparencyColor)
+			{
+				pixels[i] = 0;
+			}
+		}
+		dst.setRGB(0, 0, width, height, pixels, 0, width);
+		return dst;
+	}
+
+	private static BufferedImage copy(BufferedImage image, IPixelTransformerDelegate transformer)
+	{
+		BufferedImage dst = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+		for (int y = 0; y < image.getHeight(); y++)
+		{
+			for (int x = 0; x < image.getWidth(); x++)
+			{
+				dst.setRGB(x, y, transformer.transformPixel(image.getRGB(x, y)));
+			}
+		}
+		return dst;
+	}
+}
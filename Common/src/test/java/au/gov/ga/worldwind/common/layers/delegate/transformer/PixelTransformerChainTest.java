@@ -0,0 +1,142 @@
+package au.gov.ga.worldwind.common.layers.delegate.transformer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.layers.delegate.IPixelTransformerDelegate;
+
+/**
+ * Unit tests for the {@link PixelTransformerChain} class
+ */
+public class PixelTransformerChainTest
+{
+	@Test
+	public void testFusedMatchesSequential()
+	{
+		BufferedImage image = createRandomImage(64, 48, BufferedImage.TYPE_INT_RGB);
+		List<IPixelTransformerDelegate> transformers = createTransformers();
+
+		BufferedImage fused = new PixelTransformerChain(transformers, null).transform(image);
+
+		BufferedImage expected =
+				new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+		for (int y = 0; y < image.getHeight(); y++)
+		{
+			for (int x = 0; x < image.getWidth(); x++)
+			{
+				int argb = image.getRGB(x, y);
+				for (IPixelTransformerDelegate transformer : transformers)
+				{
+					argb = transformer.transformPixel(argb);
+				}
+				expected.setRGB(x, y, argb);
+			}
+		}
+		assertEquals(BufferedImage.TYPE_INT_ARGB_PRE, fused.getType());
+		assertEquals(Arrays.toString(getPixels(expected)), Arrays.toString(getPixels(fused)));
+	}
+
+	@Test
+	public void testPremultiplyMatchesSetRGB()
+	{
+		BufferedImage expected = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB_PRE);
+		int[] pixels = new int[256 * 256];
+		for (int alpha = 0; alpha < 256; alpha++)
+		{
+			for (int c = 0; c < 256; c++)
+			{
+				int argb = (alpha << 24) | (c << 16) | ((255 - c) << 8) | (c / 2);
+				expected.setRGB(c, alpha, argb);
+				pixels[alpha * 256 + c] = argb;
+			}
+		}
+
+		PixelTransformerChain.premultiply(pixels);
+
+		assertEquals(Arrays.toString(getPixels(expected)), Arrays.toString(pixels));
+	}
+
+	@Test
+	public void testSourceImageNotModified()
+	{
+		BufferedImage image = createRandomImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+		int[] before = image.getRGB(0, 0, 16, 16, null, 0, 16);
+
+		new PixelTransformerChain(createTransformers(), null).transform(image);
+
+		assertEquals(Arrays.toString(before), Arrays.toString(image.getRGB(0, 0, 16, 16, null, 0, 16)));
+	}
+
+	@Test
+	public void testTransparencyColors()
+	{
+		BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, 0xff123456);
+		image.setRGB(1, 0, 0xff654321);
+
+		PixelTransformerChain chain =
+				new PixelTransformerChain(new ArrayList<IPixelTransformerDelegate>(), new int[] { 0x123456 });
+		BufferedImage transformed = chain.transform(image);
+
+		assertEquals(0, transformed.getRGB(0, 0));
+		assertEquals(0xff654321, transformed.getRGB(1, 0));
+		assertEquals(0, getPixels(transformed)[0]);
+	}
+
+	@Test
+	public void testPartialTransparencyPremultiplied()
+	{
+		BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(0, 0, 0x80ff8040);
+
+		BufferedImage transformed =
+				new PixelTransformerChain(new ArrayList<IPixelTransformerDelegate>(), new int[] { 0x123456 })
+						.transform(image);
+
+		assertEquals(0x80804020, getPixels(transformed)[0]);
+	}
+
+	@Test
+	public void testEmptyChain()
+	{
+		assertEquals(true, new PixelTransformerChain(new ArrayList<IPixelTransformerDelegate>(), null).isEmpty());
+		assertEquals(true, new PixelTransformerChain(new ArrayList<IPixelTransformerDelegate>(), new int[0]).isEmpty());
+	}
+
+	private static int[] getPixels(BufferedImage image)
+	{
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+
+	static List<IPixelTransformerDelegate> createTransformers()
+	{
+		List<IPixelTransformerDelegate> transformers = new ArrayList<IPixelTransformerDelegate>();
+		transformers.add(new ColorToAlphaTransformerDelegate(Color.white));
+		transformers.add(new TransparentColorTransformerDelegate(new Color(20, 40, 60), 0.2));
+		transformers.add(new ColorLimitTransformerDelegate(new Color(240, 250, 230)));
+		return transformers;
+	}
+
+	static BufferedImage createRandomImage(int width, int height, int type)
+	{
+		Random random = new Random(width * 31 + height);
+		BufferedImage image = new BufferedImage(width, height, type);
+		for (int y = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++)
+			{
+				image.setRGB(x, y, random.nextInt());
+			}
+		}
+		return image;
+	}
+}
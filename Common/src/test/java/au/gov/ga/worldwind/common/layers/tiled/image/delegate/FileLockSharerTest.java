@@ -0,0 +1,146 @@
+package au.gov.ga.worldwind.common.layers.tiled.image.delegate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer.SharedLock;
+
+/**
+ * Unit tests for the {@link FileLockSharer} class
+ */
+public class FileLockSharerTest
+{
+	@Test
+	public void testSameCacheNameSharesLock()
+	{
+		SharedLock lock1 = FileLockSharer.getLock("test/shared");
+		SharedLock lock2 = FileLockSharer.getLock("test/shared");
+		SharedLock other = FileLockSharer.getLock("test/other");
+
+		assertSame(lock1, lock2);
+		assertNotSame(lock1, other);
+	}
+
+	@Test
+	public void testTileLockSameForPathAndUrl() throws Exception
+	{
+		SharedLock lock = FileLockSharer.getLock("test/tiles");
+
+		Object pathLock = lock.getTileLock("test/tiles/3/12/12_34.jpg");
+		Object urlLock = lock.getTileLock(new URL("file:/cache/test/tiles/3/12/12_34.zip"));
+		Object windowsLock = lock.getTileLock("C:\\cache\\test\\tiles\\3\\12\\12_34.jpg");
+
+		assertSame(pathLock, urlLock);
+		assertSame(pathLock, windowsLock);
+	}
+
+	@Test
+	public void testTileLocksStriped()
+	{
+		SharedLock lock = FileLockSharer.getLock("test/striped");
+
+		Set<Object> tileLocks = new HashSet<Object>();
+		for (int row = 0; row < 16; row++)
+		{
+			for (int col = 0; col < 16; col++)
+			{
+				tileLocks.add(lock.getTileLock("test/striped/5/" + row + "/" + row + "_" + col + ".png"));
+			}
+		}
+		assertTrue(tileLocks.size() > 32);
+	}
+
+	@Test
+	public void testNestedTileLocksOrdered()
+	{
+		SharedLock lock = FileLockSharer.getLock("test/nested");
+
+		String tile = "test/nested/5/7/7_7.bil";
+		for (int row = 6; row <= 8; row++)
+		{
+			for (int col = 6; col <= 8; col++)
+			{
+				String neighbor = "test/nested/5/" + row + "/" + row + "_" + col + ".bil";
+				Object nested = lock.getNestedTileLock(tile, neighbor);
+				Object reverse = lock.getNestedTileLock(neighbor, tile);
+
+				//at most one of two tiles can take the other's lock while holding its own
+				assertTrue(nested == null || reverse == null || nested == reverse);
+				if (nested != null)
+				{
+					assertSame(lock.getTileLock(neighbor), nested);
+				}
+			}
+		}
+		assertSame(lock.getTileLock(tile), lock.getNestedTileLock(tile, tile));
+	}
+
+	@Test
+	public void testConcurrentGetLock() throws Exception
+	{
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		try
+		{
+			Set<Future<SharedLock>> futures = new HashSet<Future<SharedLock>>();
+			for (int i = 0; i < threads; i++)
+			{
+				futures.add(executor.submit(new Callable<SharedLock>()
+				{
+					@Override
+					public SharedLock call() throws Exception
+					{
+						start.await();
+						return FileLockSharer.getLock("test/concurrent");
+					}
+				}));
+			}
+			start.countDown();
+
+			Set<SharedLock> locks = new HashSet<SharedLock>();
+			for (Future<SharedLock> future : futures)
+			{
+				locks.add(future.get());
+			}
+			assertEquals(1, locks.size());
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testUnusedLocksReleased() throws Exception
+	{
+		SharedLock held = FileLockSharer.getLock("test/held");
+		for (int i = 0; i < 100; i++)
+		{
+			FileLockSharer.getLock("test/unused/" + i);
+		}
+
+		int count = Integer.MAX_VALUE;
+		for (int i = 0; i < 50 && count > 10; i++)
+		{
+			System.gc();
+			Thread.sleep(20);
+			count = FileLockSharer.getLockCount();
+		}
+		assertTrue("Unused locks not released: " + count, count <= 10);
+		assertSame(held, FileLockSharer.getLock("test/held"));
+	}
+}
@@ -0,0 +1,101 @@
+package au.gov.ga.worldwind.common.layers.tiled.image.delegate.elevationreader;
+
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.util.BufferWrapper;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.nio.ShortBuffer;
+
+import au.gov.ga.worldwind.common.util.ColorMap;
+
+/**
+ * Measures the time taken by the shaded and color map elevation readers to
+ * generate an image from a 512x512 elevation tile, compared with per-pixel
+ * {@link ColorMap#calculateColor(double)} and
+ * {@link BufferedImage#setRGB(int, int, int)} calls.
+ * <p/>
+ * Run as a Java application; the argument is the number of iterations (default
+ * 100).
+ */
+public class ElevationImageReaderBenchmark
+{
+	private final static int SIZE = 512;
+
+	public static void main(String[] args)
+	{
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+
+		short[] values = new short[SIZE * SIZE];
+		for (int y = 0, i = 0; y < SIZE; y++)
+		{
+			for (int x = 0; x < SIZE; x++, i++)
+			{
+				values[i] = (short) (1000 * Math.sin(x * 0.02) * Math.cos(y * 0.03) + 200 * Math.sin(x * y * 1e-4));
+			}
+		}
+		final BufferWrapper elevations = new BufferWrapper.ShortBufferWrapper(ShortBuffer.wrap(values));
+		final Sector sector = Sector.fromDegrees(-30, -29, 130, 131);
+
+		final ColorMap colorMap = new ColorMap();
+		colorMap.put(-1000d, new Color(0, 0, 128));
+		colorMap.put(0d, new Color(0, 128, 255));
+		colorMap.put(1d, new Color(0, 160, 0));
+		colorMap.put(1200d, new Color(255, 255, 255));
+
+		final ShadedElevationImageReaderDelegate shaded =
+				new ShadedElevationImageReaderDelegate(AVKey.INT16, AVKey.LITTLE_ENDIAN, -32768, 10, new Vec4(-0.7,
+						0.7, -1).normalize3(), -Double.MAX_VALUE, Double.MAX_VALUE);
+		final ColorMapElevationImageReaderDelegate colored =
+				new ColorMapElevationImageReaderDelegate(AVKey.INT16, AVKey.LITTLE_ENDIAN, -32768d, colorMap);
+
+		time("Shaded", iterations, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				shaded.generateImage(elevations, SIZE, SIZE, null, sector);
+			}
+		});
+		time("Color map", iterations, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				colored.generateImage(elevations, SIZE, SIZE, null, sector);
+			}
+		});
+		time("Color map (per-pixel calculateColor/setRGB)", iterations, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+				for (int y = 0, i = 0; y < SIZE; y++)
+				{
+					for (int x = 0; x < SIZE; x++, i++)
+					{
+						image.setRGB(x, y, colorMap.calculateColor(elevations.getDouble(i)).getRGB());
+					}
+				}
+			}
+		});
+	}
+
+	private static void time(String name, int iterations, Runnable runnable)
+	{
+		for (int i = 0; i < iterations / 10 + 1; i++)
+		{
+			runnable.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+		{
+			runnable.run();
+		}
+		double millis = (System.nanoTime() - start) / 1e6 / iterations;
+		System.out.println(String.format("%s: %.3f ms/tile, %.1f tiles/s", name, millis, 1000 / millis));
+	}
+}
@@ -0,0 +1,363 @@
+package au.gov.ga.worldwind.common.layers.tiled.image.delegate.elevationreader;
+
+import static org.junit.Assert.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.util.BufferWrapper;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer.SharedLock;
+
+/**
+ * Unit tests for the {@link ShadedElevationImageReaderDelegate} class
+ */
+public class ShadedElevationImageReaderDelegateTest
+{
+	private static final short MISSING = -32768;
+	private static final int SIZE = 5;
+
+	private ShadedElevationImageReaderDelegate delegate;
+	private File directory;
+
+	@Before
+	public void setup() throws IOException
+	{
+		delegate =
+				new ShadedElevationImageReaderDelegate(AVKey.INT16, AVKey.LITTLE_ENDIAN, MISSING, 10, new Vec4(-0.7,
+						0.7, -1).normalize3(), -Double.MAX_VALUE, Double.MAX_VALUE, true);
+		directory = File.createTempFile("shadedelevationtest", "");
+		directory.delete();
+	}
+
+	@After
+	public void tearDown()
+	{
+		delete(directory);
+	}
+
+	@Test
+	public void testForwardShadingMatchesVectorShading()
+	{
+		int width = 32, height = 24;
+		short[] values = new short[width * height];
+		for (int y = 0, i = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++, i++)
+			{
+				values[i] = (short) (1000 * Math.sin(x * 0.3) * Math.cos(y * 0.2) + 50 * x);
+			}
+		}
+		values[5 * width + 7] = MISSING;
+		values[(height - 1) * width + 3] = MISSING;
+		BufferWrapper elevations = new BufferWrapper.ShortBufferWrapper(ShortBuffer.wrap(values));
+		Sector sector = Sector.fromDegrees(-30, -29, 130, 131);
+
+		BufferedImage image = delegate.generateImage(elevations, width, height, null, sector);
+		int[] expected = shadeWithVectors(elevations, width, height, sector);
+
+		assertEquals(width - 1, image.getWidth());
+		assertEquals(height - 1, image.getHeight());
+		for (int y = 0, i = 0; y < height - 1; y++)
+		{
+			for (int x = 0; x < width - 1; x++, i++)
+			{
+				int actual = image.getRGB(x, y);
+				assertEquals(expected[i] >>> 24, actual >>> 24);
+				//allow for rounding differences between the float grid and the Vec4 calculation
+				assertEquals(expected[i] & 0xff, actual & 0xff, 1);
+			}
+		}
+		assertEquals(0, image.getRGB(7, 5));
+		assertEquals(0, image.getRGB(6, 5));
+		assertEquals(0, image.getRGB(7, 4));
+		assertEquals(0, image.getRGB(3, height - 2));
+	}
+
+	@Test
+	public void testSeamlessPaddingReadsNeighbors() throws IOException
+	{
+		writeTiles();
+		URL url = tileFile(1, 1).toURI().toURL();
+		float[] grid = readGrid(1, 1);
+		float[] padded = delegate.padGrid(grid, SIZE, SIZE, url, null);
+
+		int stride = SIZE + 2;
+		for (int y = 0; y < SIZE + 2; y++)
+		{
+			for (int x = 0; x < SIZE + 2; x++)
+			{
+				boolean corner = (x == 0 || x == SIZE + 1) && (y == 0 || y == SIZE + 1);
+				if (!corner)
+				{
+					assertEquals(elevation(1, 1, x - 1, y - 1), padded[y * stride + x], 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSeamlessPaddingExtrapolatesMissingNeighbors() throws IOException
+	{
+		writeTiles();
+		assertTrue(tileFile(2, 1).delete());
+		assertTrue(tileFile(1, 0).delete());
+		URL url = tileFile(1, 1).toURI().toURL();
+		float[] grid = readGrid(1, 1);
+		float[] padded = delegate.padGrid(grid, SIZE, SIZE, url, null);
+
+		int stride = SIZE + 2;
+		for (int i = 1; i <= SIZE; i++)
+		{
+			//north border extrapolated, south border read from the neighbor
+			assertEquals(2 * padded[stride + i] - padded[2 * stride + i], padded[i], 0);
+			assertEquals(elevation(1, 1, i - 1, SIZE), padded[(SIZE + 1) * stride + i], 0);
+
+			//west border extrapolated, east border read from the neighbor
+			assertEquals(2 * padded[i * stride + 1] - padded[i * stride + 2], padded[i * stride], 0);
+			assertEquals(elevation(1, 1, SIZE, i - 1), padded[i * stride + SIZE + 1], 0);
+		}
+	}
+
+	@Test
+	public void testSeamlessPaddingReadsZippedNeighbors() throws IOException
+	{
+		writeTiles();
+		zipTiles();
+		URL url = tileFile(1, 1, "zip").toURI().toURL();
+		float[] grid = readGrid(1, 1);
+		SharedLock fileLock = FileLockSharer.getLock("test/zipped");
+		float[] padded = delegate.padGrid(grid, SIZE, SIZE, url, fileLock);
+
+		int stride = SIZE + 2;
+		for (int i = 1; i <= SIZE; i++)
+		{
+			assertEquals(elevation(1, 1, i - 1, -1), padded[i], 0);
+			assertEquals(elevation(1, 1, i - 1, SIZE), padded[(SIZE + 1) * stride + i], 0);
+			assertEquals(elevation(1, 1, -1, i - 1), padded[i * stride], 0);
+			assertEquals(elevation(1, 1, SIZE, i - 1), padded[i * stride + SIZE + 1], 0);
+		}
+	}
+
+	@Test
+	public void testSeamlessPaddingIgnoresIncompleteNeighbors() throws IOException
+	{
+		writeTiles();
+		RandomAccessFile raf = new RandomAccessFile(tileFile(2, 1), "rw");
+		try
+		{
+			raf.setLength(SIZE * 2);
+		}
+		finally
+		{
+			raf.close();
+		}
+		URL url = tileFile(1, 1).toURI().toURL();
+		float[] grid = readGrid(1, 1);
+		float[] padded = delegate.padGrid(grid, SIZE, SIZE, url, null);
+
+		int stride = SIZE + 2;
+		for (int i = 1; i <= SIZE; i++)
+		{
+			assertEquals(2 * padded[stride + i] - padded[2 * stride + i], padded[i], 0);
+		}
+	}
+
+	@Test
+	public void testSeamlessImageIsFullSize() throws IOException
+	{
+		writeTiles();
+		URL url = tileFile(1, 1).toURI().toURL();
+		BufferWrapper elevations = wrap(tileValues(1, 1));
+		BufferedImage image =
+				delegate.generateImage(elevations, SIZE, SIZE, null, Sector.fromDegrees(-30, -29, 130, 131), url,
+						null);
+		assertEquals(SIZE, image.getWidth());
+		assertEquals(SIZE, image.getHeight());
+	}
+
+	/**
+	 * Shading as calculated before the float grid refactoring, using vertex
+	 * and normal vectors.
+	 */
+	private int[] shadeWithVectors(BufferWrapper elevations, int width, int height, Sector sector)
+	{
+		double exaggeration = 10 * 0.000005;
+		Vec4 sun = new Vec4(-0.7, 0.7, -1).normalize3();
+		double dlon = sector.getDeltaLonDegrees() / width;
+		double dlat = sector.getDeltaLatDegrees() / height;
+
+		Vec4[] verts = new Vec4[width * height];
+		for (int y = 0, i = 0; y < height; y++)
+		{
+			Angle lat = sector.getMaxLatitude().subtractDegrees(dlat * y);
+			for (int x = 0; x < width; x++, i++)
+			{
+				Angle lon = sector.getMinLongitude().addDegrees(dlon * x);
+				double elevation = elevations.getDouble(i);
+				if (elevation != MISSING)
+				{
+					verts[i] = new Vec4(lat.degrees, lon.degrees, elevation * exaggeration);
+				}
+			}
+		}
+
+		int[] argb = new int[(width - 1) * (height - 1)];
+		for (int y = 0, i = 0; y < height - 1; y++)
+		{
+			for (int x = 0; x < width - 1; x++, i++)
+			{
+				int vertIndex = width * y + x;
+				Vec4 v0 = verts[vertIndex];
+				Vec4 v1 = verts[vertIndex + 1];
+				Vec4 v2 = verts[vertIndex + width];
+				if (v0 != null && v1 != null && v2 != null)
+				{
+					Vec4 normal = v1.subtract3(v0).cross3(v0.subtract3(v2)).normalize3();
+					int c = (int) (255.0 * Math.max(0d, normal.dot3(sun)));
+					argb[i] = 0xff << 24 | c << 16 | c << 8 | c;
+				}
+			}
+		}
+		return argb;
+	}
+
+	/**
+	 * Elevation of a vertex of the tile at the given row and column. Tiles
+	 * share their edge vertices, and rows increase northwards.
+	 */
+	private static float elevation(int row, int column, int x, int y)
+	{
+		int globalX = column * (SIZE - 1) + x;
+		int globalY = row * (SIZE - 1) + (SIZE - 1 - y);
+		return globalX * globalX + 3 * globalY * globalY;
+	}
+
+	private void writeTiles() throws IOException
+	{
+		for (int row = 0; row < 3; row++)
+		{
+			for (int column = 0; column < 3; column++)
+			{
+				short[] values = tileValues(row, column);
+				ByteBuffer buffer = ByteBuffer.allocate(values.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.asShortBuffer().put(values);
+				File file = tileFile(row, column);
+				file.getParentFile().mkdirs();
+				FileOutputStream fos = new FileOutputStream(file);
+				try
+				{
+					fos.write(buffer.array());
+				}
+				finally
+				{
+					fos.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replace each tile file with a zip file containing the tile's elevations,
+	 * as packed by the tiler.
+	 */
+	private void zipTiles() throws IOException
+	{
+		for (int row = 0; row < 3; row++)
+		{
+			for (int column = 0; column < 3; column++)
+			{
+				File file = tileFile(row, column);
+				byte[] data = new byte[(int) file.length()];
+				FileInputStream fis = new FileInputStream(file);
+				try
+				{
+					new DataInputStream(fis).readFully(data);
+				}
+				finally
+				{
+					fis.close();
+				}
+				assertTrue(file.delete());
+
+				ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(tileFile(row, column, "zip")));
+				try
+				{
+					zos.putNextEntry(new ZipEntry(row + "_" + column + ".bil"));
+					zos.write(data);
+					zos.closeEntry();
+				}
+				finally
+				{
+					zos.close();
+				}
+			}
+		}
+	}
+
+	private static short[] tileValues(int row, int column)
+	{
+		short[] values = new short[SIZE * SIZE];
+		for (int y = 0, i = 0; y < SIZE; y++)
+		{
+			for (int x = 0; x < SIZE; x++, i++)
+			{
+				values[i] = (short) elevation(row, column, x, y);
+			}
+		}
+		return values;
+	}
+
+	private float[] readGrid(int row, int column)
+	{
+		return delegate.toFloatGrid(wrap(tileValues(row, column)), SIZE * SIZE, -Double.MAX_VALUE, Double.MAX_VALUE);
+	}
+
+	private static BufferWrapper wrap(short[] values)
+	{
+		return new BufferWrapper.ShortBufferWrapper(ShortBuffer.wrap(values));
+	}
+
+	private File tileFile(int row, int column)
+	{
+		return tileFile(row, column, "bil");
+	}
+
+	private File tileFile(int row, int column, String extension)
+	{
+		return new File(directory, "0" + File.separator + row + File.separator + row + "_" + column + "."
+				+ extension);
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,177 @@
+package au.gov.ga.worldwind.common.render;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link TextureMemoryManager} class
+ */
+public class TextureMemoryManagerTest
+{
+	private TextureMemoryManager manager;
+	private List<Object> evicted;
+	private Set<Object> notResident;
+	private TextureMemoryManager.Evictor evictor;
+
+	@Before
+	public void setup()
+	{
+		manager = new TextureMemoryManager();
+		manager.setMaxBytes(1000);
+		evicted = new ArrayList<Object>();
+		notResident = new HashSet<Object>();
+		evictor = new TextureMemoryManager.Evictor()
+		{
+			@Override
+			public void evict(Object key)
+			{
+				evicted.add(key);
+				notResident.add(key);
+			}
+
+			@Override
+			public boolean isResident(Object key)
+			{
+				return !notResident.contains(key);
+			}
+		};
+	}
+
+	@Test
+	public void testTracksBytes()
+	{
+		manager.touch("layer", "a", 100, 0, 1, evictor);
+		manager.touch("layer", "b", 200, 0, 1, evictor);
+		manager.touch("layer", "a", 150, 0, 2, evictor);
+		assertEquals(350, manager.getTotalBytes());
+		assertEquals(2, manager.getTextureCount());
+
+		manager.remove("b");
+		assertEquals(150, manager.getTotalBytes());
+		assertTrue(evicted.isEmpty());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsedFirst()
+	{
+		manager.touch("layer", "old", 400, 0, 1, evictor);
+		manager.touch("layer", "newer", 400, 0, 2, evictor);
+		manager.touch("layer", "current", 100, 0, 10, evictor);
+		manager.touch("layer", "current2", 300, 0, 11, evictor);
+
+		//over budget; evicting the oldest texture is enough to get below the target
+		assertEquals(1, evicted.size());
+		assertEquals("old", evicted.get(0));
+		assertEquals(800, manager.getTotalBytes());
+	}
+
+	@Test
+	public void testHigherLevelsEvictedFirst()
+	{
+		//the level 4 texture was used more recently, but is weighted by its level
+		manager.touch("layer", "coarse", 400, 0, 1, evictor);
+		manager.touch("layer", "fine", 400, 4, 3, evictor);
+		manager.touch("layer", "current", 100, 0, 10, evictor);
+		manager.touch("layer", "current2", 300, 0, 11, evictor);
+
+		assertEquals(1, evicted.size());
+		assertEquals("fine", evicted.get(0));
+	}
+
+	@Test
+	public void testVisibleTexturesNotEvicted()
+	{
+		manager.touch("layer", "a", 600, 0, 1, evictor);
+		manager.touch("layer", "b", 600, 0, 2, evictor);
+
+		//a was used in the previous frame, so is still considered visible
+		assertTrue(evicted.isEmpty());
+		assertEquals(1200, manager.getTotalBytes());
+
+		manager.touch("layer", "c", 100, 0, 3, evictor);
+		assertEquals(1, evicted.size());
+		assertEquals("a", evicted.get(0));
+	}
+
+	@Test
+	public void testTexturesNoLongerInCacheForgotten()
+	{
+		manager.touch("layer", "a", 400, 0, 1, evictor);
+		manager.touch("layer", "b", 400, 0, 2, evictor);
+
+		//a was removed by the cache itself, so only needs forgetting, not evicting
+		notResident.add("a");
+		manager.touch("layer", "current", 100, 0, 10, evictor);
+		manager.touch("layer", "current2", 300, 0, 11, evictor);
+
+		assertTrue(evicted.isEmpty());
+		assertEquals(800, manager.getTotalBytes());
+		assertEquals(3, manager.getTextureCount());
+	}
+
+	@Test
+	public void testIdleTexturesEvicted()
+	{
+		manager.setMaxIdleFrames(10);
+		manager.touch("layer", "idle", 100, 0, 1, evictor);
+		manager.touch("layer", "gone", 100, 0, 1, evictor);
+		notResident.add("gone");
+		for (int frame = 2; frame <= 20; frame++)
+		{
+			manager.touch("layer", "current", 100, 0, frame, evictor);
+		}
+
+		assertEquals(1, evicted.size());
+		assertEquals("idle", evicted.get(0));
+		assertEquals(100, manager.getTotalBytes());
+		assertEquals(1, manager.getTextureCount());
+		assertEquals(1, manager.getStatistics().get(0).evictions);
+	}
+
+	@Test
+	public void testDisabled()
+	{
+		manager.setEnabled(false);
+		manager.touch("layer", "a", 600, 0, 1, evictor);
+		manager.touch("layer", "b", 600, 0, 5, evictor);
+		manager.touch("layer", "c", 600, 0, 10, evictor);
+		assertTrue(evicted.isEmpty());
+		assertEquals(1800, manager.getTotalBytes());
+	}
+
+	@Test
+	public void testStatistics()
+	{
+		String layer1 = "layer1";
+		String layer2 = "layer2";
+		manager.touch(layer1, "a", 500, 0, 1, evictor);
+		manager.touch(layer2, "b", 100, 0, 5, evictor);
+		manager.touch(layer2, "c", 100, 0, 9, evictor);
+		manager.touch(layer2, "d", 400, 0, 10, evictor);
+		manager.touch(layer2, "e", 100, 0, 10, evictor);
+
+		//layer1's texture was evicted
+		List<TextureMemoryManager.ResidencyStatistics> statistics = manager.getStatistics();
+		assertEquals(2, statistics.size());
+
+		TextureMemoryManager.ResidencyStatistics s2 = statistics.get(0);
+		assertEquals(layer2, s2.owner);
+		assertEquals(4, s2.textures);
+		assertEquals(700, s2.bytes);
+		assertEquals(3, s2.visibleTextures);
+		assertEquals(0, s2.evictions);
+
+		TextureMemoryManager.ResidencyStatistics s1 = statistics.get(1);
+		assertEquals(layer1, s1.owner);
+		assertEquals(0, s1.textures);
+		assertEquals(0, s1.bytes);
+		assertEquals(1, s1.evictions);
+	}
+}
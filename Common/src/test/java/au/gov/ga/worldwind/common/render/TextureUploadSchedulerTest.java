@@ -0,0 +1,160 @@
+package au.gov.ga.worldwind.common.render;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link TextureUploadScheduler} class
+ */
+public class TextureUploadSchedulerTest
+{
+	private static final Object CONTEXT = new Object();
+
+	private TextureUploadScheduler scheduler;
+
+	@Before
+	public void setup()
+	{
+		scheduler = new TextureUploadScheduler();
+		scheduler.setMaxUploadsPerFrame(2);
+		scheduler.setMaxBytesPerFrame(1000);
+		scheduler.setMaxMillisPerFrame(1000);
+	}
+
+	@Test
+	public void testRequestGrantedNextFrame()
+	{
+		assertFalse(scheduler.requestUpload(CONTEXT, 1, "a", 100, 1));
+		assertFalse(scheduler.isGranted(CONTEXT, 1, "a"));
+
+		assertTrue(scheduler.isGranted(CONTEXT, 2, "a"));
+		assertTrue(scheduler.requestUpload(CONTEXT, 2, "a", 100, 1));
+	}
+
+	@Test
+	public void testHighestPriorityGrantedFirst()
+	{
+		scheduler.requestUpload(CONTEXT, 1, "low", 100, 1);
+		scheduler.requestUpload(CONTEXT, 1, "high", 100, 3);
+		scheduler.requestUpload(CONTEXT, 1, "medium", 100, 2);
+
+		assertTrue(scheduler.requestUpload(CONTEXT, 2, "high", 100, 3));
+		assertTrue(scheduler.requestUpload(CONTEXT, 2, "medium", 100, 2));
+		assertFalse(scheduler.requestUpload(CONTEXT, 2, "low", 100, 1));
+	}
+
+	@Test
+	public void testLargestPriorityInFrameUsed()
+	{
+		scheduler.setMaxUploadsPerFrame(1);
+		scheduler.requestUpload(CONTEXT, 1, "a", 100, 2);
+		scheduler.requestUpload(CONTEXT, 1, "b", 100, 1);
+		scheduler.requestUpload(CONTEXT, 1, "b", 100, 5);
+
+		assertTrue(scheduler.isGranted(CONTEXT, 2, "b"));
+		assertFalse(scheduler.isGranted(CONTEXT, 2, "a"));
+	}
+
+	@Test
+	public void testByteBudget()
+	{
+		scheduler.setMaxUploadsPerFrame(10);
+		scheduler.requestUpload(CONTEXT, 1, "a", 600, 3);
+		scheduler.requestUpload(CONTEXT, 1, "b", 600, 2);
+		scheduler.requestUpload(CONTEXT, 1, "c", 300, 1);
+
+		assertTrue(scheduler.isGranted(CONTEXT, 2, "a"));
+		assertFalse(scheduler.isGranted(CONTEXT, 2, "b"));
+		assertTrue(scheduler.isGranted(CONTEXT, 2, "c"));
+	}
+
+	@Test
+	public void testOversizedUploadStillGranted()
+	{
+		scheduler.requestUpload(CONTEXT, 1, "huge", 5000, 1);
+		assertTrue(scheduler.isGranted(CONTEXT, 2, "huge"));
+	}
+
+	@Test
+	public void testTimeBudgetLimitsBytes()
+	{
+		scheduler.setMaxUploadsPerFrame(10);
+		scheduler.setMaxBytesPerFrame(1000000);
+		scheduler.setMaxMillisPerFrame(1);
+
+		//measured rate of 1000ns per byte gives a budget of 1000 bytes per millisecond
+		scheduler.uploaded(CONTEXT, 1, "measured", 1000, 1000000);
+		scheduler.requestUpload(CONTEXT, 1, "a", 800, 2);
+		scheduler.requestUpload(CONTEXT, 1, "b", 800, 1);
+
+		assertTrue(scheduler.isGranted(CONTEXT, 2, "a"));
+		assertFalse(scheduler.isGranted(CONTEXT, 2, "b"));
+	}
+
+	@Test
+	public void testUnrepeatedRequestsDropped()
+	{
+		scheduler.setMaxUploadsPerFrame(1);
+		scheduler.requestUpload(CONTEXT, 1, "a", 100, 2);
+		scheduler.requestUpload(CONTEXT, 1, "b", 100, 1);
+
+		//b isn't requested again in frame 2, so it isn't considered for frame 3
+		assertTrue(scheduler.requestUpload(CONTEXT, 2, "a", 100, 2));
+		scheduler.uploaded(CONTEXT, 2, "a", 100, 10);
+		scheduler.requestUpload(CONTEXT, 2, "c", 100, 1);
+		assertFalse(scheduler.isGranted(CONTEXT, 3, "b"));
+		assertTrue(scheduler.isGranted(CONTEXT, 3, "c"));
+	}
+
+	@Test
+	public void testStatistics()
+	{
+		scheduler.requestUpload(CONTEXT, 1, "a", 100, 3);
+		scheduler.requestUpload(CONTEXT, 1, "b", 200, 2);
+		scheduler.requestUpload(CONTEXT, 1, "c", 300, 1);
+
+		scheduler.requestUpload(CONTEXT, 2, "a", 100, 3);
+		scheduler.uploaded(CONTEXT, 2, "a", 100, 10);
+		scheduler.requestUpload(CONTEXT, 2, "b", 200, 2);
+		scheduler.uploaded(CONTEXT, 2, "b", 200, 20);
+		scheduler.requestUpload(CONTEXT, 2, "c", 300, 1);
+
+		scheduler.isGranted(CONTEXT, 3, "c");
+		TextureUploadScheduler.FrameStatistics statistics = scheduler.getLastFrameStatistics();
+		assertEquals(2, statistics.uploads);
+		assertEquals(300, statistics.bytes);
+		assertEquals(30, statistics.nanos);
+		assertEquals(1, statistics.deferred);
+		assertEquals(2, scheduler.getTotalUploads());
+		assertEquals(300, scheduler.getTotalBytes());
+	}
+
+	@Test
+	public void testContextsHaveSeparateFrames()
+	{
+		Object other = new Object();
+		scheduler.setMaxUploadsPerFrame(1);
+		scheduler.requestUpload(CONTEXT, 1, "a", 100, 1);
+		scheduler.requestUpload(other, 7, "b", 100, 1);
+
+		//a new frame in one context doesn't start a new frame in the other
+		assertTrue(scheduler.isGranted(CONTEXT, 2, "a"));
+		assertFalse(scheduler.isGranted(other, 7, "b"));
+		assertFalse(scheduler.isGranted(other, 7, "a"));
+		assertTrue(scheduler.isGranted(other, 8, "b"));
+		assertTrue(scheduler.isGranted(CONTEXT, 2, "a"));
+	}
+
+	@Test
+	public void testDisabled()
+	{
+		scheduler.setEnabled(false);
+		assertTrue(scheduler.requestUpload(CONTEXT, 1, "a", 100, 1));
+		assertTrue(scheduler.isGranted(CONTEXT, 1, "b"));
+
+		scheduler.uploaded(CONTEXT, 1, "a", 100, 10);
+		assertEquals(1, scheduler.getTotalUploads());
+	}
+}
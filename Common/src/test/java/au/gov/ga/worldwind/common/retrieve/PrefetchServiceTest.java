@@ -0,0 +1,291 @@
+package au.gov.ga.worldwind.common.retrieve;
+
+import static org.junit.Assert.*;
+import gov.nasa.worldwind.Model;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.avlist.AVListImpl;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.globes.Earth;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.layers.BasicTiledImageLayer;
+import gov.nasa.worldwind.layers.LayerList;
+import gov.nasa.worldwind.layers.RenderableLayer;
+import gov.nasa.worldwind.layers.TextureTile;
+import gov.nasa.worldwind.util.LevelSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link PrefetchService} class
+ */
+public class PrefetchServiceTest
+{
+	private static final Sector LAYER_SECTOR = Sector.fromDegrees(-45, -5, 110, 160);
+	private static final Angle FIELD_OF_VIEW = Angle.fromDegrees(45);
+	private static final int VIEWPORT_WIDTH = 1000;
+
+	private Mockery mockContext;
+	private PrefetchService classToBeTested;
+	private Model model;
+	private List<String> requested;
+	private CountDownLatch requestsRun;
+	private Globe earth;
+	private BasicTiledImageLayer layer;
+
+	@Before
+	public void setup()
+	{
+		mockContext = new Mockery();
+		classToBeTested = new PrefetchService();
+		classToBeTested.setMaxRequestsPerSecond(1000);
+		requested = Collections.synchronizedList(new ArrayList<String>());
+
+		final Globe globe = mockContext.mock(Globe.class);
+		final LayerList layers = new LayerList();
+		layers.add(new RecordingLayer());
+		model = mockContext.mock(Model.class);
+		mockContext.checking(new Expectations()
+		{
+			{
+				allowing(model).getGlobe();
+				will(returnValue(globe));
+				allowing(model).getLayers();
+				will(returnValue(layers));
+				allowing(globe).getElevationModel();
+				will(returnValue(null));
+			}
+		});
+
+		earth = new Earth();
+		AVList params = new AVListImpl();
+		params.setValue(AVKey.SECTOR, LAYER_SECTOR);
+		params.setValue(AVKey.LEVEL_ZERO_TILE_DELTA, LatLon.fromDegrees(10, 10));
+		params.setValue(AVKey.NUM_LEVELS, 8);
+		params.setValue(AVKey.TILE_WIDTH, 512);
+		params.setValue(AVKey.TILE_HEIGHT, 512);
+		params.setValue(AVKey.DATA_CACHE_NAME, "PrefetchServiceTest");
+		params.setValue(AVKey.DATASET_NAME, "PrefetchServiceTest");
+		params.setValue(AVKey.FORMAT_SUFFIX, ".png");
+		layer = new BasicTiledImageLayer(new LevelSet(params));
+	}
+
+	@After
+	public void tearDown()
+	{
+		classToBeTested.setEnabled(false);
+	}
+
+	@Test
+	public void testViewsRequestedInQueuedOrder() throws Exception
+	{
+		requestsRun = new CountDownLatch(6);
+		classToBeTested.prefetch(model, view(-20, 130));
+		classToBeTested.prefetch(model, view(-21, 131));
+		classToBeTested.prefetch(model, view(-22, 132));
+
+		assertTrue(requestsRun.await(10, TimeUnit.SECONDS));
+		assertEquals(listOf("-20.0 0", "-20.0 1", "-21.0 0", "-21.0 1", "-22.0 0", "-22.0 1"), requested);
+		assertEquals(6, classToBeTested.getRequestCount());
+	}
+
+	@Test
+	public void testClearCancelsQueuedViews() throws Exception
+	{
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		classToBeTested.enqueue(block(started, release));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		classToBeTested.prefetch(model, view(-20, 130));
+		classToBeTested.prefetch(model, view(-21, 131));
+		assertEquals(2, classToBeTested.getQueuedCount());
+		classToBeTested.clear();
+		assertEquals(0, classToBeTested.getQueuedCount());
+
+		requestsRun = new CountDownLatch(2);
+		classToBeTested.prefetch(model, view(-22, 132));
+		release.countDown();
+
+		assertTrue(requestsRun.await(10, TimeUnit.SECONDS));
+		assertEquals(listOf("-22.0 0", "-22.0 1"), requested);
+	}
+
+	@Test
+	public void testDisabledServiceIgnoresViews()
+	{
+		classToBeTested.setEnabled(false);
+		classToBeTested.prefetch(model, view(-20, 130));
+		assertEquals(0, classToBeTested.getQueuedCount());
+	}
+
+	@Test
+	public void testSelectLevelMatchesTargetResolution()
+	{
+		LevelSet levels = layer.getLevels();
+		double target = levels.getLevel(3).getTexelSize() * 1.5;
+
+		assertEquals(3, PrefetchService.selectLevel(levels, target));
+		assertEquals(2, PrefetchService.selectLevel(levels, levels.getLevel(2).getTexelSize()));
+		assertEquals(levels.getLastLevel().getLevelNumber(), PrefetchService.selectLevel(levels, 0));
+	}
+
+	@Test
+	public void testSelectTilesCoveringFootprint()
+	{
+		PrefetchView view = view(-25.1, 135.1);
+		Sector footprint = view.getFootprint(earth);
+		int levelNumber = PrefetchService.selectLevel(layer.getLevels(), view.getTargetResolution(earth));
+
+		List<TextureTile> tiles = PrefetchService.selectTiles(layer, earth, view, Integer.MAX_VALUE);
+
+		assertTrue(levelNumber > 0);
+		assertTrue(tiles.size() > 1);
+		int expectedCount = 0;
+		for (TextureTile[] row : layer.getTilesInSector(footprint, levelNumber))
+		{
+			expectedCount += row.length;
+		}
+		assertEquals(expectedCount, tiles.size());
+
+		double lastDistance = 0;
+		for (TextureTile tile : tiles)
+		{
+			assertEquals(levelNumber, tile.getLevelNumber());
+			assertTrue(tile.getSector().intersects(footprint));
+
+			double distance = LatLon.greatCircleDistance(view.getCenterPosition(), tile.getSector().getCentroid()).radians;
+			assertTrue(distance >= lastDistance);
+			lastDistance = distance;
+		}
+		assertTrue(tiles.get(0).getSector().contains(view.getCenterPosition()));
+	}
+
+	@Test
+	public void testSelectTilesLimitedToNearest()
+	{
+		PrefetchView view = view(-25.1, 135.1);
+		List<TextureTile> all = PrefetchService.selectTiles(layer, earth, view, Integer.MAX_VALUE);
+		List<TextureTile> limited = PrefetchService.selectTiles(layer, earth, view, 2);
+
+		assertEquals(2, limited.size());
+		assertEquals(all.get(0).getTileKey(), limited.get(0).getTileKey());
+		assertEquals(all.get(1).getTileKey(), limited.get(1).getTileKey());
+	}
+
+	@Test
+	public void testSelectTilesExcludesCachedAndAbsentTiles()
+	{
+		PrefetchView view = view(-25.1, 135.1);
+		List<TextureTile> all = PrefetchService.selectTiles(layer, earth, view, Integer.MAX_VALUE);
+		TextureTile cached = all.get(0);
+		TextureTile absent = all.get(1);
+
+		TextureTile.getMemoryCache().add(cached.getTileKey(), cached);
+		layer.getLevels().markResourceAbsent(absent);
+		try
+		{
+			List<TextureTile> tiles = PrefetchService.selectTiles(layer, earth, view, Integer.MAX_VALUE);
+
+			assertEquals(all.size() - 2, tiles.size());
+			for (TextureTile tile : tiles)
+			{
+				assertFalse(tile.getTileKey().equals(cached.getTileKey()));
+				assertFalse(tile.getTileKey().equals(absent.getTileKey()));
+			}
+		}
+		finally
+		{
+			TextureTile.getMemoryCache().remove(cached.getTileKey());
+			layer.getLevels().unmarkResourceAbsent(absent);
+		}
+	}
+
+	@Test
+	public void testSelectTilesOutsideLayer()
+	{
+		assertTrue(PrefetchService.selectTiles(layer, earth, view(30, 0), Integer.MAX_VALUE).isEmpty());
+	}
+
+	@Test
+	public void testSelectTilesOutsideActiveAltitudes()
+	{
+		layer.setMaxActiveAltitude(50000);
+		assertTrue(PrefetchService.selectTiles(layer, earth, view(-25.1, 135.1), Integer.MAX_VALUE).isEmpty());
+	}
+
+	/**
+	 * @return View looking straight down from 100km above the given location
+	 */
+	private PrefetchView view(double latitude, double longitude)
+	{
+		return new PrefetchView(Position.fromDegrees(latitude, longitude, 100000), null, FIELD_OF_VIEW,
+				VIEWPORT_WIDTH);
+	}
+
+	private static List<String> listOf(String... values)
+	{
+		List<String> list = new ArrayList<String>();
+		Collections.addAll(list, values);
+		return list;
+	}
+
+	private static Runnable block(final CountDownLatch started, final CountDownLatch release)
+	{
+		return new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				started.countDown();
+				try
+				{
+					release.await();
+				}
+				catch (InterruptedException e)
+				{
+				}
+			}
+		};
+	}
+
+	/**
+	 * Layer that creates two request tasks for each view, which record the
+	 * view's eye latitude and the task's index when run
+	 */
+	private class RecordingLayer extends RenderableLayer implements Prefetchable
+	{
+		@Override
+		public List<Runnable> createPrefetchTasks(Globe globe, final PrefetchView view, int maxTasks)
+		{
+			List<Runnable> tasks = new ArrayList<Runnable>();
+			for (int i = 0; i < 2; i++)
+			{
+				final int index = i;
+				tasks.add(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						requested.add(view.getEyePosition().getLatitude().degrees + " " + index);
+						requestsRun.countDown();
+					}
+				});
+			}
+			return tasks;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package au.gov.ga.worldwind.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ColorMapLookupTable} class
+ */
+public class ColorMapLookupTableTest
+{
+	@Test
+	public void testMatchesColorMap()
+	{
+		ColorMap colorMap = new ColorMap();
+		colorMap.put(-1000d, new Color(0, 0, 128));
+		colorMap.put(0d, new Color(0, 128, 255));
+		colorMap.put(500d, new Color(0, 200, 0, 200));
+		colorMap.put(3000d, new Color(255, 255, 255));
+
+		for (boolean interpolateHue : new boolean[] { false, true })
+		{
+			colorMap.setInterpolateHue(interpolateHue);
+			ColorMapLookupTable table = new ColorMapLookupTable(colorMap);
+			for (double value = -2000; value <= 4000; value += 0.37)
+			{
+				assertColorClose(colorMap.calculateColor(value).getRGB(), table.lookup(value), 3);
+			}
+		}
+	}
+
+	@Test
+	public void testExactAtEntries()
+	{
+		ColorMap colorMap = new ColorMap();
+		colorMap.put(0d, Color.red);
+		colorMap.put(1d, Color.green);
+		colorMap.put(1000d, Color.blue);
+
+		ColorMapLookupTable table = new ColorMapLookupTable(colorMap);
+
+		assertEquals(Color.red.getRGB(), table.lookup(0));
+		assertColorClose(colorMap.calculateColor(0.5).getRGB(), table.lookup(0.5), 3);
+		assertEquals(Color.green.getRGB(), table.lookup(1));
+		assertEquals(Color.blue.getRGB(), table.lookup(1000));
+		assertEquals(Color.red.getRGB(), table.lookup(-5));
+		assertEquals(Color.blue.getRGB(), table.lookup(5000));
+		assertTrue(table.size() <= 65536);
+	}
+
+	@Test
+	public void testEmptyAndSingleEntry()
+	{
+		ColorMap colorMap = new ColorMap();
+		assertEquals(Color.black.getRGB(), new ColorMapLookupTable(colorMap).lookup(10));
+
+		colorMap.put(5d, Color.orange);
+		ColorMapLookupTable table = new ColorMapLookupTable(colorMap);
+		assertEquals(Color.orange.getRGB(), table.lookup(-10));
+		assertEquals(Color.orange.getRGB(), table.lookup(10));
+	}
+
+	private static void assertColorClose(int expected, int actual, int tolerance)
+	{
+		for (int shift = 0; shift < 32; shift += 8)
+		{
+			int e = (expected >>> shift) & 0xff;
+			int a = (actual >>> shift) & 0xff;
+			assertTrue(String.format("Expected %08x but was %08x", expected, actual), Math.abs(e - a) <= tolerance);
+		}
+	}
+}
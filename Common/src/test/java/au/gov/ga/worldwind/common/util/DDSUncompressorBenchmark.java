@@ -0,0 +1,113 @@
+package au.gov.ga.worldwind.common.util;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import au.gov.ga.worldwind.common.util.DDSUncompressor.Format;
+
+/**
+ * Measures the throughput of the {@link DDSUncompressor} for each supported
+ * format, and compares DXT3 decoding against the previous implementation
+ * (which allocated color objects for each block and pixel, and wrote each
+ * block using {@link BufferedImage#setRGB(int, int, int, int, int[], int, int)}).
+ * <p/>
+ * Run as a Java application; arguments are the image size (default 2048) and
+ * the number of iterations (default 20).
+ */
+public class DDSUncompressorBenchmark
+{
+	public static void main(String[] args)
+	{
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		double megapixels = size * (double) size / 1e6;
+
+		System.out.println(size + "x" + size + " image, " + iterations + " iterations");
+		for (Format format : Format.values())
+		{
+			ByteBuffer data = DDSUncompressorTest.randomBlocks(size, size, format);
+			for (int i = 0; i < 3; i++)
+			{
+				DDSUncompressor.decode(data, size, size, format);
+			}
+			long start = System.nanoTime();
+			for (int i = 0; i < iterations; i++)
+			{
+				DDSUncompressor.decode(data, size, size, format);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9 / iterations;
+			System.out.println(String.format("%s: %.2f ms, %.1f Mpixels/s", format, seconds * 1e3, megapixels
+					/ seconds));
+		}
+
+		ByteBuffer data = DDSUncompressorTest.randomBlocks(size, size, Format.DXT3);
+		for (int i = 0; i < 3; i++)
+		{
+			legacyDxt3(data, size, size);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+		{
+			legacyDxt3(data, size, size);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9 / iterations;
+		System.out.println(String.format("DXT3 (previous implementation): %.2f ms, %.1f Mpixels/s", seconds * 1e3,
+				megapixels / seconds));
+	}
+
+	/**
+	 * The previous DXT3 decoder, kept for comparison. Allocates an int[3]
+	 * "color" for each lookup table entry and pixel, as the previous
+	 * implementation allocated a Color object.
+	 */
+	private static BufferedImage legacyDxt3(ByteBuffer source, int width, int height)
+	{
+		ByteBuffer buffer = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int[] pixels = new int[16];
+		int[] alphas = new int[16];
+		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+
+		for (int i = 0; i < height / 4; i++)
+		{
+			for (int j = 0; j < width / 4; j++)
+			{
+				long alphaData = buffer.getLong();
+				for (int k = alphas.length - 1; k >= 0; k--)
+				{
+					alphas[k] = ((int) (alphaData >>> (k * 4)) & 0xF) << 4;
+				}
+
+				int[][] lookupTable = new int[4][];
+				lookupTable[0] = color565(buffer.getShort());
+				lookupTable[1] = color565(buffer.getShort());
+				lookupTable[2] = new int[3];
+				lookupTable[3] = new int[3];
+				for (int c = 0; c < 3; c++)
+				{
+					lookupTable[2][c] = (2 * lookupTable[0][c] + lookupTable[1][c] + 1) / 3;
+					lookupTable[3][c] = (lookupTable[0][c] + 2 * lookupTable[1][c] + 1) / 3;
+				}
+
+				int colorData = buffer.getInt();
+				for (int k = pixels.length - 1; k >= 0; k--)
+				{
+					int[] color = lookupTable[(colorData >>> k * 2) & 0x03];
+					double alphaF = alphas[k] / 256.0;
+					int[] multiplied =
+							new int[] { (int) (color[0] * alphaF), (int) (color[1] * alphaF),
+									(int) (color[2] * alphaF) };
+					pixels[k] = (alphas[k] << 24) | multiplied[0] << 16 | multiplied[1] << 8 | multiplied[2];
+				}
+
+				result.setRGB(j * 4, i * 4, 4, 4, pixels, 0, 4);
+			}
+		}
+		return result;
+	}
+
+	private static int[] color565(int pixel)
+	{
+		return new int[] { (pixel & 0xf800) >>> 8, (pixel & 0x07e0) >>> 3, (pixel & 0x001f) << 3 };
+	}
+}
@@ -0,0 +1,228 @@
+package au.gov.ga.worldwind.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.util.DDSUncompressor.Format;
+
+/**
+ * Unit tests for the {@link DDSUncompressor} class
+ */
+public class DDSUncompressorTest
+{
+	private static final int RED = 0xf800;
+	private static final int BLUE = 0x001f;
+	private static final int WHITE = 0xffff;
+
+	@Test
+	public void testDxt1FourColorBlock()
+	{
+		ByteBuffer data = buffer(8);
+		data.putShort((short) RED).putShort((short) BLUE).putInt(codes(2, 3));
+		data.flip();
+
+		int[] pixels = pixels(DDSUncompressor.decode(data, 4, 4, Format.DXT1));
+
+		int[] palette = { 0xffff0000, 0xff0000ff, 0xffaa0055, 0xff5500aa };
+		for (int i = 0; i < 16; i++)
+		{
+			assertEquals(palette[i & 3], pixels[i]);
+		}
+	}
+
+	@Test
+	public void testDxt1ThreeColorBlock()
+	{
+		ByteBuffer data = buffer(8);
+		data.putShort((short) BLUE).putShort((short) RED).putInt(codes(2, 3));
+		data.flip();
+
+		int[] pixels = pixels(DDSUncompressor.decode(data, 4, 4, Format.DXT1));
+
+		int[] palette = { 0xff0000ff, 0xffff0000, 0xff7f007f, 0x00000000 };
+		for (int i = 0; i < 16; i++)
+		{
+			assertEquals(palette[i & 3], pixels[i]);
+		}
+	}
+
+	@Test
+	public void testDxt3Alpha()
+	{
+		ByteBuffer data = buffer(16);
+		long alphaBits = 0;
+		for (int i = 0; i < 16; i++)
+		{
+			alphaBits |= ((long) i) << (i * 4);
+		}
+		data.putLong(alphaBits).putShort((short) WHITE).putShort((short) 0).putInt(0);
+		data.flip();
+
+		int[] pixels = pixels(DDSUncompressor.decode(data, 4, 4, Format.DXT3));
+
+		for (int i = 0; i < 16; i++)
+		{
+			int a = i * 17;
+			//premultiplied white
+			assertEquals((a << 24) | (a << 16) | (a << 8) | a, pixels[i]);
+		}
+	}
+
+	@Test
+	public void testDxt5EightAlphaBlock()
+	{
+		int[] expected = { 255, 0, 219, 182, 146, 109, 73, 36 };
+		assertDxt5Alphas(255, 0, expected);
+	}
+
+	@Test
+	public void testDxt5SixAlphaBlock()
+	{
+		int[] expected = { 0, 255, 51, 102, 153, 204, 0, 255 };
+		assertDxt5Alphas(0, 255, expected);
+	}
+
+	@Test
+	public void testPartialBlocksClipped()
+	{
+		ByteBuffer data = buffer(16);
+		data.putShort((short) RED).putShort((short) BLUE).putInt(0);
+		data.putShort((short) RED).putShort((short) BLUE).putInt(0x55555555);
+		data.flip();
+
+		BufferedImage image = DDSUncompressor.decode(data, 5, 3, Format.DXT1);
+
+		assertEquals(5, image.getWidth());
+		assertEquals(3, image.getHeight());
+		for (int y = 0; y < 3; y++)
+		{
+			for (int x = 0; x < 5; x++)
+			{
+				assertEquals(x < 4 ? 0xffff0000 : 0xff0000ff, image.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testReadDdsHeader()
+	{
+		ByteBuffer data = buffer(128 + 8);
+		data.put("DDS ".getBytes());
+		data.putInt(124);
+		data.putInt(0);
+		data.putInt(4); //height
+		data.putInt(4); //width
+		data.position(84);
+		data.put("DXT1".getBytes());
+		data.position(128);
+		data.putShort((short) RED).putShort((short) BLUE).putInt(0);
+		data.flip();
+
+		int[] pixels = pixels(DDSUncompressor.readDds(data));
+		for (int i = 0; i < 16; i++)
+		{
+			assertEquals(0xffff0000, pixels[i]);
+		}
+		assertEquals(0, data.position());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReadDdsUnsupportedFormat()
+	{
+		ByteBuffer data = buffer(128 + 8);
+		data.put("DDS ".getBytes());
+		data.position(84);
+		data.put("ATI2".getBytes());
+		data.rewind();
+
+		DDSUncompressor.readDds(data);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBufferTooSmall()
+	{
+		DDSUncompressor.decode(buffer(8), 8, 8, Format.DXT1);
+	}
+
+	@Test
+	public void testParallelDecodeMatchesBlockDecode()
+	{
+		for (Format format : Format.values())
+		{
+			int size = 512;
+			ByteBuffer data = randomBlocks(size, size, format);
+			int[] pixels = pixels(DDSUncompressor.decode(data, size, size, format));
+
+			int blocksWide = size / 4;
+			int[] actual = new int[16];
+			for (int block = 0; block < blocksWide * blocksWide; block++)
+			{
+				data.position(block * format.getBlockSize());
+				int[] expected = pixels(DDSUncompressor.decode(data, 4, 4, format));
+
+				int x0 = (block % blocksWide) * 4;
+				int y0 = (block / blocksWide) * 4;
+				for (int y = 0; y < 4; y++)
+				{
+					System.arraycopy(pixels, (y0 + y) * size + x0, actual, y * 4, 4);
+				}
+				assertArrayEquals(format + " block " + block, expected, actual);
+			}
+		}
+	}
+
+	private static void assertDxt5Alphas(int a0, int a1, int[] expected)
+	{
+		ByteBuffer data = buffer(16);
+		long alphaBits = (a0 & 0xff) | ((a1 & 0xff) << 8);
+		for (int i = 0; i < 16; i++)
+		{
+			alphaBits |= ((long) (i & 7)) << (16 + i * 3);
+		}
+		data.putLong(alphaBits).putShort((short) WHITE).putShort((short) 0).putInt(0);
+		data.flip();
+
+		int[] pixels = pixels(DDSUncompressor.decode(data, 4, 4, Format.DXT5));
+
+		for (int i = 0; i < 16; i++)
+		{
+			assertEquals("pixel " + i, expected[i & 7], pixels[i] >>> 24);
+		}
+	}
+
+	static ByteBuffer randomBlocks(int width, int height, Format format)
+	{
+		byte[] bytes = new byte[((width + 3) / 4) * ((height + 3) / 4) * format.getBlockSize()];
+		new Random(width * 31 + height).nextBytes(bytes);
+		return ByteBuffer.wrap(bytes);
+	}
+
+	private static ByteBuffer buffer(int size)
+	{
+		return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static int codes(int bits, int mask)
+	{
+		int indices = 0;
+		for (int i = 0; i < 16; i++)
+		{
+			indices |= (i & mask) << (i * bits);
+		}
+		return indices;
+	}
+
+	private static int[] pixels(BufferedImage image)
+	{
+		//read the raster directly, as getRGB would convert from premultiplied alpha
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+}
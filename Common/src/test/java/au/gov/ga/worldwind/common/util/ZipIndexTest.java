@@ -0,0 +1,197 @@
+package au.gov.ga.worldwind.common.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ZipIndex} class
+ */
+public class ZipIndexTest
+{
+	private static final int ENTRY_COUNT = 200;
+
+	private File zipFile;
+
+	@Before
+	public void setup() throws IOException
+	{
+		ZipIndex.clearCache();
+		zipFile = File.createTempFile("zipindextest", ".zip");
+		writeZip(zipFile, ENTRY_COUNT, "");
+	}
+
+	@After
+	public void tearDown()
+	{
+		ZipIndex.clearCache();
+		zipFile.delete();
+	}
+
+	@Test
+	public void testEntriesListed() throws IOException
+	{
+		ZipIndex index = ZipIndex.get(zipFile);
+		List<ZipIndex.Entry> entries = index.getEntries();
+
+		//one directory entry plus the file entries
+		assertEquals(ENTRY_COUNT + 1, entries.size());
+		assertTrue(index.contains("0/"));
+		assertTrue(index.getEntry("0/").isDirectory());
+		assertTrue(index.contains("0/0_" + (ENTRY_COUNT - 1) + ".txt"));
+		assertFalse(index.contains("0/0_" + ENTRY_COUNT + ".txt"));
+
+		long lastOffset = -1;
+		for (ZipIndex.Entry entry : entries)
+		{
+			assertTrue(entry.getLocalHeaderOffset() > lastOffset);
+			lastOffset = entry.getLocalHeaderOffset();
+		}
+	}
+
+	@Test
+	public void testReadStoredAndDeflated() throws IOException
+	{
+		ZipIndex index = ZipIndex.get(zipFile);
+		for (int i = 0; i < ENTRY_COUNT; i++)
+		{
+			ZipIndex.Entry entry = index.getEntry("0/0_" + i + ".txt");
+			byte[] expected = content(i, "");
+			assertEquals(expected.length, entry.getSize());
+			assertArrayEquals(expected, index.read(entry));
+		}
+	}
+
+	@Test
+	public void testOpenJarUrl() throws IOException
+	{
+		URL url = new URL("jar:" + zipFile.toURI().toURL() + "!/0/0_7.txt");
+		assertEquals(zipFile.getAbsoluteFile(), ZipIndex.getZipFile(url).getAbsoluteFile());
+		assertEquals("0/0_7.txt", ZipIndex.getEntryName(url));
+		assertArrayEquals(content(7, ""), readFully(ZipIndex.openStream(url)));
+	}
+
+	@Test(expected = IOException.class)
+	public void testOpenMissingEntry() throws IOException
+	{
+		URL url = new URL("jar:" + zipFile.toURI().toURL() + "!/0/missing.txt");
+		ZipIndex.openStream(url);
+	}
+
+	@Test
+	public void testNonZipUrl() throws IOException
+	{
+		assertNull(ZipIndex.getZipFile(zipFile.toURI().toURL()));
+	}
+
+	@Test
+	public void testCached() throws IOException
+	{
+		assertSame(ZipIndex.get(zipFile), ZipIndex.get(zipFile));
+	}
+
+	@Test
+	public void testSmallZipsNotCached() throws IOException
+	{
+		File smallZip = File.createTempFile("zipindextest", ".zip");
+		try
+		{
+			writeZip(smallZip, 2, "");
+			ZipIndex first = ZipIndex.get(smallZip);
+			assertEquals(3, first.getEntries().size());
+			assertNotSame(first, ZipIndex.get(smallZip));
+		}
+		finally
+		{
+			smallZip.delete();
+		}
+	}
+
+	@Test
+	public void testCacheInvalidatedWhenFileChanges() throws IOException
+	{
+		ZipIndex first = ZipIndex.get(zipFile);
+		writeZip(zipFile, 10, "changed");
+		zipFile.setLastModified(first.getFile().lastModified() + 2000);
+
+		ZipIndex second = ZipIndex.get(zipFile);
+		assertNotSame(first, second);
+		assertEquals(11, second.getEntries().size());
+		assertArrayEquals(content(3, "changed"), second.read(second.getEntry("0/0_3.txt")));
+	}
+
+	private static void writeZip(File file, int count, String suffix) throws IOException
+	{
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file));
+		try
+		{
+			ZipEntry dir = new ZipEntry("0/");
+			zos.putNextEntry(dir);
+			zos.closeEntry();
+
+			for (int i = 0; i < count; i++)
+			{
+				byte[] data = content(i, suffix);
+				ZipEntry entry = new ZipEntry("0/0_" + i + ".txt");
+				if (i % 2 == 0)
+				{
+					CRC32 crc = new CRC32();
+					crc.update(data);
+					entry.setMethod(ZipEntry.STORED);
+					entry.setSize(data.length);
+					entry.setCompressedSize(data.length);
+					entry.setCrc(crc.getValue());
+				}
+				zos.putNextEntry(entry);
+				zos.write(data);
+				zos.closeEntry();
+			}
+		}
+		finally
+		{
+			zos.close();
+		}
+	}
+
+	private static byte[] content(int i, String suffix)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int j = 0; j <= i % 17; j++)
+		{
+			sb.append("entry ").append(i).append(suffix).append('\n');
+		}
+		return sb.toString().getBytes();
+	}
+
+	private static byte[] readFully(InputStream is) throws IOException
+	{
+		try
+		{
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int read;
+			while ((read = is.read(buffer)) >= 0)
+			{
+				baos.write(buffer, 0, read);
+			}
+			return baos.toByteArray();
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+}
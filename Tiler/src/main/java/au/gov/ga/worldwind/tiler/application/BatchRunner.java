@@ -0,0 +1,617 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.application;
+
+import jargs.gnu.CmdLineParser;
+import jargs.gnu.CmdLineParser.IllegalOptionValueException;
+import jargs.gnu.CmdLineParser.Option;
+import jargs.gnu.CmdLineParser.OptionException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import au.gov.ga.worldwind.tiler.gdal.GDALUtil;
+import au.gov.ga.worldwind.tiler.ribbon.RibbonTiler;
+import au.gov.ga.worldwind.tiler.ribbon.RibbonTilingContext;
+import au.gov.ga.worldwind.tiler.shapefile.ShapefileTiler;
+import au.gov.ga.worldwind.tiler.util.ImageEncoder;
+import au.gov.ga.worldwind.tiler.util.LatLon;
+import au.gov.ga.worldwind.tiler.util.ProgressReporter;
+import au.gov.ga.worldwind.tiler.util.TilingMetrics;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
+
+/**
+ * Headless runner for a batch of tiling jobs. Jobs are read from a manifest
+ * file, and run concurrently within a global CPU and IO budget.
+ * <p/>
+ * The manifest contains one job per line; blank lines and lines starting with
+ * <code>#</code> are ignored. The first word of each line is the job type, and
+ * the remainder are the job's arguments (double quotes can be used to group
+ * arguments containing spaces):
+ * <ul>
+ * <li><code>images</code>/<code>elevations</code> - {@link Console} arguments
+ * (the -i/-e switch is added automatically)</li>
+ * <li><code>shapefile</code> - <code>-l level [-z lzts] [-s lat,lon] input
+ * output</code></li>
+ * <li><code>ribbon</code> - {@link RibbonTilingContext} arguments</li>
+ * </ul>
+ * When each job finishes, a line containing a JSON object with the job's
+ * status, per stage timings and tiles per second (see {@link TilingMetrics}) is
+ * written to the metrics output.
+ */
+public class BatchRunner
+{
+	private final int concurrentJobs;
+	private final int threadsPerJob;
+	private final Semaphore ioPermits;
+	private final PrintStream metricsOutput;
+
+	/**
+	 * @param concurrentJobs
+	 *            Number of jobs to run at once
+	 * @param cpuBudget
+	 *            Total number of worker threads to share between the running
+	 *            jobs
+	 * @param ioBudget
+	 *            Maximum number of dataset reads and tile writes to run at once
+	 *            across all jobs
+	 * @param metricsOutput
+	 *            Stream to write job metrics to
+	 */
+	public BatchRunner(int concurrentJobs, int cpuBudget, int ioBudget, PrintStream metricsOutput)
+	{
+		this.concurrentJobs = Math.max(1, concurrentJobs);
+		this.threadsPerJob = Math.max(1, cpuBudget / this.concurrentJobs);
+		this.ioPermits = new Semaphore(Math.max(1, ioBudget), true);
+		this.metricsOutput = metricsOutput;
+	}
+
+	private static void printUsage()
+	{
+		// @formatter:off
+		String text =
+				"Usage: [{-h,--help}] [{-j,--jobs} count] [{-c,--cpus} count] [{-w,--io} count]\n"
+						+ "       [{-m,--metrics} file] manifest_file\n"
+						+ "\n"
+						+ "  -h         Show this help\n"
+						+ "  -j count   Number of jobs to run concurrently (default: 1)\n"
+						+ "  -c count   Number of worker threads shared between running jobs\n"
+						+ "             (default: number of processors)\n"
+						+ "  -w count   Number of concurrent dataset reads/tile writes (default: 2)\n"
+						+ "  -m file    File to append job metrics to (default: standard output)\n"
+						+ "\n"
+						+ "Manifest lines:\n"
+						+ "  images ...       Console arguments for an image tiling job\n"
+						+ "  elevations ...   Console arguments for an elevation tiling job\n"
+						+ "  shapefile -l level [-z lzts] [-s lat,lon] input output\n"
+						+ "  ribbon ...       Ribbon tiler arguments";
+		// @formatter:on
+		System.out.println(text);
+	}
+
+	public static void main(String[] args)
+	{
+		CmdLineParser parser = new CmdLineParser();
+		Option helpO = parser.addBooleanOption('h', "help");
+		Option jobsO = parser.addIntegerOption('j', "jobs");
+		Option cpusO = parser.addIntegerOption('c', "cpus");
+		Option ioO = parser.addIntegerOption('w', "io");
+		Option metricsO = parser.addStringOption('m', "metrics");
+
+		try
+		{
+			parser.parse(args);
+		}
+		catch (OptionException e)
+		{
+			exitWithMessage(e.getMessage());
+		}
+
+		Boolean help = (Boolean) parser.getOptionValue(helpO, false);
+		String[] otherArgs = parser.getRemainingArgs();
+		if (help || otherArgs.length < 1)
+		{
+			printUsage();
+			System.exit(0);
+		}
+
+		File manifest = new File(otherArgs[0]);
+		if (!manifest.exists())
+		{
+			exitWithMessage("File not found: " + otherArgs[0]);
+		}
+
+		Integer jobs = (Integer) parser.getOptionValue(jobsO, 1);
+		Integer cpus = (Integer) parser.getOptionValue(cpusO, Runtime.getRuntime().availableProcessors());
+		Integer io = (Integer) parser.getOptionValue(ioO, 2);
+		String metricsFile = (String) parser.getOptionValue(metricsO);
+
+		try
+		{
+			GDALUtil.init();
+		}
+		catch (Exception e)
+		{
+			System.out.println("WARNING: " + e.getLocalizedMessage());
+		}
+
+		PrintStream metricsOutput = System.out;
+		try
+		{
+			if (metricsFile != null)
+			{
+				metricsOutput = new PrintStream(new FileOutputStream(metricsFile, true), true, "UTF-8");
+			}
+			List<Job> manifestJobs = readManifest(manifest);
+			int failures = new BatchRunner(jobs, cpus, io, metricsOutput).run(manifestJobs);
+			if (failures > 0)
+			{
+				System.err.println(failures + " of " + manifestJobs.size() + " jobs failed");
+				System.exit(1);
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			System.exit(1);
+		}
+		finally
+		{
+			if (metricsOutput != System.out)
+			{
+				metricsOutput.close();
+			}
+		}
+	}
+
+	private static void exitWithMessage(String message)
+	{
+		System.err.println(message);
+		System.exit(2);
+	}
+
+	/**
+	 * Read the jobs from a manifest file.
+	 *
+	 * @param manifest
+	 * @return Jobs in the manifest
+	 * @throws IOException
+	 *             If the manifest cannot be read
+	 * @throws IllegalArgumentException
+	 *             If the manifest contains an unknown job type
+	 */
+	public static List<Job> readManifest(File manifest) throws IOException
+	{
+		List<Job> jobs = new ArrayList<Job>();
+		BufferedReader reader = null;
+		try
+		{
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), "UTF-8"));
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null)
+			{
+				lineNumber++;
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#"))
+				{
+					continue;
+				}
+
+				List<String> tokens = tokenize(line);
+				JobType type = JobType.fromString(tokens.get(0));
+				if (type == null)
+				{
+					throw new IllegalArgumentException("Unknown job type '" + tokens.get(0) + "' on line "
+							+ lineNumber + " of " + manifest.getAbsolutePath());
+				}
+				String[] args = tokens.subList(1, tokens.size()).toArray(new String[tokens.size() - 1]);
+				jobs.add(new Job(manifest.getName() + ":" + lineNumber, type, args));
+			}
+		}
+		finally
+		{
+			if (reader != null)
+				reader.close();
+		}
+		return jobs;
+	}
+
+	/**
+	 * Split a manifest line into words, treating text within double quotes as
+	 * a single word.
+	 */
+	static List<String> tokenize(String line)
+	{
+		List<String> tokens = new ArrayList<String>();
+		StringBuilder current = null;
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++)
+		{
+			char c = line.charAt(i);
+			if (c == '"')
+			{
+				quoted = !quoted;
+				if (current == null)
+				{
+					current = new StringBuilder();
+				}
+			}
+			else if (Character.isWhitespace(c) && !quoted)
+			{
+				if (current != null)
+				{
+					tokens.add(current.toString());
+					current = null;
+				}
+			}
+			else
+			{
+				if (current == null)
+				{
+					current = new StringBuilder();
+				}
+				current.append(c);
+			}
+		}
+		if (current != null)
+		{
+			tokens.add(current.toString());
+		}
+		return tokens;
+	}
+
+	/**
+	 * Run the jobs, blocking until they have all completed.
+	 *
+	 * @param jobs
+	 *            Jobs to run
+	 * @return Number of jobs that failed
+	 * @throws InterruptedException
+	 */
+	public int run(List<Job> jobs) throws InterruptedException
+	{
+		final int[] failures = new int[1];
+		ExecutorService executor = Executors.newFixedThreadPool(concurrentJobs);
+		for (final Job job : jobs)
+		{
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if (!runJob(job))
+					{
+						synchronized (failures)
+						{
+							failures[0]++;
+						}
+					}
+				}
+			});
+		}
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		return failures[0];
+	}
+
+	private boolean runJob(Job job)
+	{
+		TilingMetrics metrics = new TilingMetrics(threadsPerJob, ioPermits);
+		TilingMetrics.setCurrent(metrics);
+		//job threads are reused, so reset any state left by the previous job
+		ImageEncoder.setDefaultPngMode(null);
+
+		BatchProgressReporter reporter = new BatchProgressReporter(job.name);
+		Exception error = null;
+		metrics.start();
+		try
+		{
+			reporter.getLogger().info("Starting " + job.type.name().toLowerCase() + " job");
+			job.type.run(job.args, reporter);
+		}
+		catch (Exception e)
+		{
+			error = e;
+			reporter.getLogger().severe("Job failed: " + e);
+		}
+		finally
+		{
+			metrics.stop();
+			TilingMetrics.setCurrent(null);
+		}
+
+		reportMetrics(job, metrics, error);
+		return error == null;
+	}
+
+	private void reportMetrics(Job job, TilingMetrics metrics, Exception error)
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"job\":\"").append(escapeJson(job.name)).append("\"");
+		sb.append(",\"type\":\"").append(job.type.name().toLowerCase()).append("\"");
+		sb.append(",\"status\":\"").append(error == null ? "ok" : "failed").append("\"");
+		if (error != null)
+		{
+			sb.append(",\"error\":\"").append(escapeJson(String.valueOf(error.getMessage()))).append("\"");
+		}
+		sb.append(",\"threads\":").append(metrics.getThreadCount());
+		sb.append(",").append(metrics.toJsonFields());
+		sb.append("}");
+
+		synchronized (metricsOutput)
+		{
+			metricsOutput.println(sb.toString());
+			metricsOutput.flush();
+		}
+	}
+
+	private static String escapeJson(String s)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\')
+			{
+				sb.append('\\').append(c);
+			}
+			else if (c < 0x20)
+			{
+				sb.append(String.format("\\u%04x", (int) c));
+			}
+			else
+			{
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Tiling job read from a manifest line.
+	 */
+	public static class Job
+	{
+		public final String name;
+		public final JobType type;
+		public final String[] args;
+
+		public Job(String name, JobType type, String[] args)
+		{
+			this.name = name;
+			this.type = type;
+			this.args = args;
+		}
+	}
+
+	/**
+	 * Enum of the supported job types, and how each is run.
+	 */
+	public enum JobType
+	{
+		Images
+		{
+			@Override
+			public void run(String[] args, ProgressReporter reporter) throws Exception
+			{
+				Console.tile(prepend("-i", args), reporter);
+			}
+		},
+		Elevations
+		{
+			@Override
+			public void run(String[] args, ProgressReporter reporter) throws Exception
+			{
+				Console.tile(prepend("-e", args), reporter);
+			}
+		},
+		Shapefile
+		{
+			@Override
+			public void run(String[] args, ProgressReporter reporter) throws Exception
+			{
+				CmdLineParser parser = new CmdLineParser();
+				Option levelO = parser.addIntegerOption('l', "level");
+				Option lztsO = parser.addDoubleOption('z', "lzts");
+				Option originO = new Option('s', "origin", true)
+				{
+					@Override
+					protected Object parseValue(String arg, Locale locale) throws IllegalOptionValueException
+					{
+						return Console.parseOrigin(this, arg);
+					}
+				};
+				parser.addOption(originO);
+
+				try
+				{
+					parser.parse(args);
+				}
+				catch (OptionException e)
+				{
+					throw new IllegalArgumentException(e.getMessage());
+				}
+
+				Integer level = (Integer) parser.getOptionValue(levelO);
+				String[] otherArgs = parser.getRemainingArgs();
+				if (level == null || otherArgs.length < 2)
+				{
+					throw new IllegalArgumentException(
+							"Usage: shapefile -l level [-z lzts] [-s lat,lon] input output");
+				}
+				Double lzts = (Double) parser.getOptionValue(lztsO, 36d);
+				LatLon origin = (LatLon) parser.getOptionValue(originO, LatLon.DEFAULT_ORIGIN);
+
+				File input = new File(otherArgs[0]);
+				if (!input.exists())
+				{
+					throw new IllegalArgumentException("File not found: " + otherArgs[0]);
+				}
+				ShapefileTiler.tile(input, new File(otherArgs[1]), level, lzts, origin, reporter);
+			}
+		},
+		Ribbon
+		{
+			@Override
+			public void run(String[] args, ProgressReporter reporter) throws Exception
+			{
+				RibbonTilingContext context = new RibbonTilingContext();
+				try
+				{
+					JCommander jCommander = new JCommander();
+					jCommander.addObject(context);
+					jCommander.parse(args);
+				}
+				catch (ParameterException e)
+				{
+					throw new IllegalArgumentException(e.getMessage());
+				}
+				new RibbonTiler().tileRibbon(context);
+			}
+		};
+
+		/**
+		 * Run a job of this type.
+		 *
+		 * @param args
+		 *            Job arguments from the manifest
+		 * @param reporter
+		 *            Progress reporter for the job
+		 * @throws Exception
+		 */
+		public abstract void run(String[] args, ProgressReporter reporter) throws Exception;
+
+		/**
+		 * @return The job type with the given (case insensitive) name, or null
+		 *         if none exists
+		 */
+		public static JobType fromString(String name)
+		{
+			for (JobType type : values())
+			{
+				if (type.name().equalsIgnoreCase(name))
+				{
+					return type;
+				}
+			}
+			return null;
+		}
+
+		private static String[] prepend(String arg, String[] args)
+		{
+			String[] result = new String[args.length + 1];
+			result[0] = arg;
+			System.arraycopy(args, 0, result, 1, args.length);
+			return result;
+		}
+	}
+
+	/**
+	 * {@link ProgressReporter} that prefixes log messages with the job name,
+	 * and logs progress in 10% steps (so that output from concurrent jobs
+	 * remains readable).
+	 */
+	private static class BatchProgressReporter implements ProgressReporter
+	{
+		private final String jobName;
+		private final Logger logger;
+		private int lastTenth = -1;
+
+		public BatchProgressReporter(String jobName)
+		{
+			this.jobName = jobName;
+			this.logger = new BatchLogger(jobName);
+		}
+
+		@Override
+		public void cancel()
+		{
+		}
+
+		@Override
+		public void done()
+		{
+		}
+
+		@Override
+		public Logger getLogger()
+		{
+			return logger;
+		}
+
+		@Override
+		public boolean isCancelled()
+		{
+			return false;
+		}
+
+		@Override
+		public synchronized void progress(double percent)
+		{
+			int tenth = (int) (percent * 10);
+			if (tenth < lastTenth)
+			{
+				lastTenth = -1;
+			}
+			if (tenth != lastTenth)
+			{
+				lastTenth = tenth;
+				logger.info((tenth * 10) + "%");
+			}
+		}
+
+		private class BatchLogger extends Logger
+		{
+			public BatchLogger(String name)
+			{
+				super(name, null);
+			}
+
+			@Override
+			public void log(LogRecord record)
+			{
+				String msg = record.getMessage();
+				DateFormat df = new SimpleDateFormat("[HH:mm:ss]");
+				String text =
+						df.format(new Date()) + " - " + jobName + " - " + record.getLevel().getName() + " - "
+								+ (msg == null ? "Unknown" : msg);
+				if (record.getThrown() != null)
+					text += ": " + record.getThrown();
+				System.err.println(text);
+			}
+		}
+	}
+}
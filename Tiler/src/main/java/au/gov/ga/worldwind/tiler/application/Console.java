@@ -20,6 +20,7 @@ import jargs.gnu.CmdLineParser.IllegalOptionValueException;
 import jargs.gnu.CmdLineParser.Option;
 import jargs.gnu.CmdLineParser.OptionException;
 
+import java.awt.Dimension;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteOrder;
@@ -36,6 +37,9 @@ import org.gdal.gdalconst.gdalconst;
 
 import au.gov.ga.worldwind.tiler.application.Tiler.TilingType;
 import au.gov.ga.worldwind.tiler.gdal.GDALUtil;
+import au.gov.ga.worldwind.tiler.util.CoverageMask;
+import au.gov.ga.worldwind.tiler.util.ImageEncoder;
+import au.gov.ga.worldwind.tiler.util.ImageEncoder.PngMode;
 import au.gov.ga.worldwind.tiler.util.LatLon;
 import au.gov.ga.worldwind.tiler.util.MinMaxArray;
 import au.gov.ga.worldwind.tiler.util.NullableNumberArray;
@@ -62,7 +66,9 @@ public class Console
 						+ "       [{-d,--datatype} {BYTE|INT16|INT32|FLOAT32}] [{-a,--addalpha}]\n"
 						+ "       [{-b,--band} band] [{-n,--nooverviews}] [{-l,--levels} levels]\n"
 						+ "       [{-m,--nomagnification}] [{-g,--nominification}] [{-k,--includeblank}]\n"
-						+ "       [{-q,--quality} qual] [{-o,--setoutside} \"value[,value...]]\"\n"
+						+ "       [{-q,--quality} qual] [{-c,--pngmode} {DEFAULT|FAST|PALETTED}]\n"
+						+ "       [{-v,--coverage}] [{-u,--footprint} shapefile]\n"
+						+ "       [{-o,--setoutside} \"value[,value...]]\"\n"
 						+ "       [{-r,--replacevalues} \"min1[,min1...] max1[,max1...] min2[,min2...]\n"
 						+ "                              max2[,max2...] with[,with...] else[,else...]\"\n"
 						+ "       input_file output_directory\n"
@@ -92,6 +98,14 @@ public class Console
 						+ "Image specific switches:\n"
 						+ "  -f format  Image output format (default: JPG)\n"
 						+ "  -a         Add alpha band to image tiles if input has no alpha band\n"
+						+ "  -c mode    PNG encoding mode (default: DEFAULT); FAST trades file size for\n"
+						+ "             encoding speed, PALETTED writes indexed PNGs for images with\n"
+						+ "             256 colours or less (such as masks)\n"
+						+ "  -v         Calculate a low resolution coverage mask from the dataset's\n"
+						+ "             outside values/alpha band, and skip blank tiles without reading\n"
+						+ "             them (ignored with -k)\n"
+						+ "  -u file    Skip blank tiles outside the polygons in the given footprint\n"
+						+ "             shapefile (geographic coordinates, ignored with -k)\n"
 						+ "Elevation specific switches:\n"
 						+ "  -d type    Elevation output format (default: INT16)\n"
 						+ "  -b band    Band to read from for elevation data (default: 1)";
@@ -110,6 +124,36 @@ public class Console
 			System.out.println("WARNING: " + e.getLocalizedMessage());
 		}
 
+		try
+		{
+			tile(args, new ConsoleProgressReporter());
+		}
+		catch (IllegalArgumentException e)
+		{
+			exitWithMessage(e.getMessage());
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Run a tiling job described by console arguments (see
+	 * {@link #printUsage()}). Used by {@link #main(String[])} and by the
+	 * {@link BatchRunner}.
+	 * 
+	 * @param args
+	 *            Console arguments
+	 * @param reporter
+	 *            Progress reporter to report progress to
+	 * @throws IllegalArgumentException
+	 *             If the arguments are invalid
+	 * @throws Exception
+	 *             If tiling fails
+	 */
+	public static void tile(String[] args, ProgressReporter reporter) throws Exception
+	{
 		//-i --images
 		//-e --elevations
 		//-p --reproject
@@ -119,6 +163,9 @@ public class Console
 		//-d --datatype BYTE|INT16|INT32|FLOAT32     (elevations)
 		//-a --addalpha      (images)
 		//-q --quality 0.75
+		//-c --pngmode DEFAULT|FAST|PALETTED      (images)
+		//-v --coverage      (images)
+		//-u --footprint file      (images)
 		//-b --band 1      (elevations)
 		//-n --nooverviews
 		//-l --levels n
@@ -147,6 +194,9 @@ public class Console
 		Option bilinearOverviewsO = parser.addBooleanOption('g', "nominification");
 		Option includeBlankO = parser.addBooleanOption('k', "includeblank");
 		Option qualityO = parser.addDoubleOption('q', "quality");
+		Option pngModeO = parser.addStringOption('c', "pngmode");
+		Option coverageO = parser.addBooleanOption('v', "coverage");
+		Option footprintO = parser.addStringOption('u', "footprint");
 		Option originO = new Option('s', "origin", true)
 		{
 			@Override
@@ -180,7 +230,7 @@ public class Console
 		}
 		catch (OptionException e)
 		{
-			exitWithMessage(e.getMessage());
+			throw new IllegalArgumentException(e.getMessage());
 		}
 
 		Boolean help = (Boolean) parser.getOptionValue(helpO, false);
@@ -188,11 +238,11 @@ public class Console
 		if (help || otherArgs.length < 1)
 		{
 			printUsage();
-			System.exit(0);
+			return;
 		}
 		else if (otherArgs.length < 2)
 		{
-			exitWithMessage("Output directory not defined");
+			throw new IllegalArgumentException("Output directory not defined");
 		}
 
 		String inputFile = otherArgs[0];
@@ -201,13 +251,13 @@ public class Console
 		File input = new File(inputFile);
 		if (!input.exists())
 		{
-			exitWithMessage("File not found: " + inputFile);
+			throw new IllegalArgumentException("File not found: " + inputFile);
 		}
 
 		File output = new File(outputDir);
 		if (output.exists() && !output.isDirectory())
 		{
-			exitWithMessage("Not a directory: " + outputDir);
+			throw new IllegalArgumentException("Not a directory: " + outputDir);
 		}
 
 		Boolean images = (Boolean) parser.getOptionValue(imagesO, true);
@@ -227,7 +277,30 @@ public class Console
 		String imageFormat = ((String) parser.getOptionValue(formatO, "jpg")).toLowerCase();
 		if (!(imageFormat.equals("jpg") || imageFormat.equals("png")))
 		{
-			exitWithMessage("Unknown image format: " + imageFormat.toUpperCase());
+			throw new IllegalArgumentException("Unknown image format: " + imageFormat.toUpperCase());
+		}
+
+		String pngModeName = ((String) parser.getOptionValue(pngModeO, "DEFAULT")).toUpperCase();
+		PngMode pngMode = null;
+		for (PngMode mode : PngMode.values())
+		{
+			if (mode.name().toUpperCase().equals(pngModeName))
+			{
+				pngMode = mode;
+			}
+		}
+		if (pngMode == null)
+		{
+			throw new IllegalArgumentException("Unknown PNG mode: " + pngModeName);
+		}
+		ImageEncoder.setDefaultPngMode(pngMode);
+
+		Boolean coverage = (Boolean) parser.getOptionValue(coverageO, false);
+		String footprintFile = (String) parser.getOptionValue(footprintO);
+		File footprint = footprintFile == null ? null : new File(footprintFile);
+		if (footprint != null && !footprint.exists())
+		{
+			throw new IllegalArgumentException("File not found: " + footprintFile);
 		}
 
 		boolean isFloat = false;
@@ -252,7 +325,7 @@ public class Console
 		}
 		else
 		{
-			exitWithMessage("Unknown data type: " + dataType);
+			throw new IllegalArgumentException("Unknown data type: " + dataType);
 		}
 
 		Boolean addAlpha = (Boolean) parser.getOptionValue(addalphaO, false);
@@ -262,10 +335,9 @@ public class Console
 		NullableNumberArray outside = (NullableNumberArray) parser.getOptionValue(outsideO);
 		ReplaceValues replaces = (ReplaceValues) parser.getOptionValue(replaceO, new ReplaceValues());
 
+		Dataset dataset = GDALUtil.open(input);
 		try
 		{
-			GDALUtil.init();
-			Dataset dataset = GDALUtil.open(input);
 			Sector sector = GDALUtil.getSector(dataset);
 			if (levels == null)
 				levels = Util.levelCount(dataset, lzts, sector, tilesize);
@@ -276,17 +348,15 @@ public class Console
 
 			if (outside != null && outside.length() != bandCount)
 			{
-				exitWithMessage("Outside value count (" + outside.length() + ") doesn't equal output band count ("
-						+ bandCount + ")");
+				throw new IllegalArgumentException("Outside value count (" + outside.length()
+						+ ") doesn't equal output band count (" + bandCount + ")");
 			}
 			else if (replaces.replaceMinMaxs != null && replaces.valueCount != bandCount)
 			{
-				exitWithMessage("Replace group value count (" + replaces.valueCount
+				throw new IllegalArgumentException("Replace group value count (" + replaces.valueCount
 						+ ") doesn't equal output band count (" + bandCount + ")");
 			}
 
-			ConsoleProgressReporter reporter = new ConsoleProgressReporter();
-
 			LogWriter logWriter = null;
 			try
 			{
@@ -294,6 +364,7 @@ public class Console
 				logWriter = new LogWriter(output);
 				String infoText = GDALUtil.getInfoText(dataset, sector);
 				String tileText = GDALUtil.getTileText(sector, origin, lzts, levels, !nooverviews);
+				int failedTiles;
 
 				if (elevations)
 				{
@@ -302,7 +373,7 @@ public class Console
 							replaces.replaceMinMaxs, replaces.replace, replaces.otherwise, isFloat);
 
 					NumberArray minMax = new NumberArray(2);
-					Tiler.tileElevations(dataset, reproject, bilinear, sector, origin, level, tilesize, lzts,
+					failedTiles = Tiler.tileElevations(dataset, reproject, bilinear, sector, origin, level, tilesize, lzts,
 							bufferType, band, outside, replaces.replaceMinMaxs, replaces.replace, replaces.otherwise,
 							minMax, output, true, reporter);
 					if (!nooverviews)
@@ -319,15 +390,45 @@ public class Console
 							imageFormat, addAlpha, band, bufferType, bilinear, reproject, infoText, tileText, outside,
 							replaces.replaceMinMaxs, replaces.replace, replaces.otherwise, isFloat);
 
-					Tiler.tileImages(dataset, reproject, bilinear, sector, origin, level, tilesize, lzts, imageFormat,
-							addAlpha, quality.floatValue(), outside, !includeBlank, replaces.replaceMinMaxs,
-							replaces.replace, replaces.otherwise, output, true, reporter);
+					CoverageMask mask = null;
+					if (!includeBlank && (coverage || footprint != null))
+					{
+						reporter.getLogger().info("Calculating coverage mask...");
+						Dimension maskSize = CoverageMask.calculateSize(sector, level, lzts);
+						mask =
+								footprint != null ? CoverageMask.fromFootprint(footprint, sector, maskSize)
+										: CoverageMask.fromDataset(dataset, sector, maskSize, reproject, addAlpha,
+												outside);
+						if (mask == null)
+						{
+							reporter.getLogger().warning(
+									"Coverage mask requires outside values or an alpha band; no tiles will be skipped");
+						}
+						else
+						{
+							reporter.getLogger().info(
+									"Coverage mask contains data in " + Math.round(mask.getCoverage() * 100)
+											+ "% of the sector");
+						}
+					}
+
+					failedTiles =
+							Tiler.tileImages(dataset, reproject, bilinear, sector, origin, level, tilesize, lzts,
+									imageFormat, addAlpha, quality.floatValue(), outside, !includeBlank,
+									replaces.replaceMinMaxs, replaces.replace, replaces.otherwise, mask, output, true,
+									reporter);
 					if (!nooverviews)
 					{
 						Overviewer.createImageOverviews(output, imageFormat, tilesize, tilesize, outside, sector,
 								origin, lzts, bilinearOverviews, !includeBlank, quality.floatValue(), reporter);
 					}
 				}
+
+				//fail the job (eg in a batch) once the overviews of the other tiles have been created
+				if (failedTiles > 0)
+				{
+					throw new IOException(failedTiles + " tiles couldn't be generated");
+				}
 			}
 			finally
 			{
@@ -341,9 +442,9 @@ public class Console
 					}
 			}
 		}
-		catch (Exception e)
+		finally
 		{
-			e.printStackTrace();
+			dataset.delete();
 		}
 	}
 
@@ -353,7 +454,7 @@ public class Console
 		System.exit(2);
 	}
 
-	private static LatLon parseOrigin(Option option, String arg) throws IllegalOptionValueException
+	static LatLon parseOrigin(Option option, String arg) throws IllegalOptionValueException
 	{
 		try
 		{
@@ -53,6 +53,8 @@ import au.gov.ga.worldwind.tiler.util.LatLon;
 import au.gov.ga.worldwind.tiler.util.NullableNumberArray;
 import au.gov.ga.worldwind.tiler.util.ProgressReporter;
 import au.gov.ga.worldwind.tiler.util.Sector;
+import au.gov.ga.worldwind.tiler.util.TilingMetrics;
+import au.gov.ga.worldwind.tiler.util.TilingMetrics.Stage;
 import au.gov.ga.worldwind.tiler.util.Util;
 
 /**
@@ -169,6 +171,7 @@ public class Overviewer
 				}
 			}
 
+			TilingMetrics metrics = TilingMetrics.current();
 			int count = 0;
 			int size = 0;
 			for (int i = 0; i < maxlevel; i++)
@@ -210,15 +213,15 @@ public class Overviewer
 					int rowabove = row / 2;
 					int colabove = col / 2;
 
-					final File src0 = tileFile(dir, extension, rowabove * 2, colabove * 2);
-					final File src1 = tileFile(dir, extension, rowabove * 2 + 1, colabove * 2);
-					final File src2 = tileFile(dir, extension, rowabove * 2, colabove * 2 + 1);
-					final File src3 = tileFile(dir, extension, rowabove * 2 + 1, colabove * 2 + 1);
-
-					sourceFiles.remove(src0);
-					sourceFiles.remove(src1);
-					sourceFiles.remove(src2);
-					sourceFiles.remove(src3);
+					//the source set contains every tile in the level, so tiles not in the set don't exist (such as
+					//blank tiles that were skipped) and are passed as null, rather than checking the file system
+					final File src0 = removeSource(sourceFiles, tileFile(dir, extension, rowabove * 2, colabove * 2));
+					final File src1 =
+							removeSource(sourceFiles, tileFile(dir, extension, rowabove * 2 + 1, colabove * 2));
+					final File src2 =
+							removeSource(sourceFiles, tileFile(dir, extension, rowabove * 2, colabove * 2 + 1));
+					final File src3 =
+							removeSource(sourceFiles, tileFile(dir, extension, rowabove * 2 + 1, colabove * 2 + 1));
 
 					final File dst =
 							tileFile(new File(dir.getParent() + "/" + (level - 1)), extension, rowabove, colabove);
@@ -229,6 +232,7 @@ public class Overviewer
 					}
 					else
 					{
+						long start = metrics.begin(Stage.Overview);
 						try
 						{
 							overviewCreator.mix(src0, src1, src2, src3, dst, ignoreBlank);
@@ -237,6 +241,14 @@ public class Overviewer
 						{
 							progress.getLogger().severe(e.getMessage());
 						}
+						finally
+						{
+							metrics.end(Stage.Overview, start);
+						}
+						if (dst.exists())
+						{
+							metrics.tileWritten();
+						}
 					}
 				}
 			}
@@ -251,8 +263,17 @@ public class Overviewer
 				+ "_" + FileUtil.paddedInt(col, 4) + "." + extension);
 	}
 
+	private static File removeSource(Set<File> sourceFiles, File file)
+	{
+		return sourceFiles.remove(file) ? file : null;
+	}
+
 	private interface OverviewCreator
 	{
+		/**
+		 * Create an overview tile from the four source tiles. Source tiles
+		 * that don't exist are passed as null.
+		 */
 		void mix(File src0, File src1, File src2, File src3, File dst, boolean ignoreBlank) throws IOException;
 	}
 
@@ -318,7 +339,7 @@ public class Overviewer
 
 			try
 			{
-				if (src0.exists())
+				if (src0 != null)
 					i0 = ImageIO.read(src0);
 			}
 			catch (Exception e)
@@ -327,7 +348,7 @@ public class Overviewer
 			}
 			try
 			{
-				if (src1.exists())
+				if (src1 != null)
 					i1 = ImageIO.read(src1);
 			}
 			catch (Exception e)
@@ -336,7 +357,7 @@ public class Overviewer
 			}
 			try
 			{
-				if (src2.exists())
+				if (src2 != null)
 					i2 = ImageIO.read(src2);
 			}
 			catch (Exception e)
@@ -345,7 +366,7 @@ public class Overviewer
 			}
 			try
 			{
-				if (src3.exists())
+				if (src3 != null)
 					i3 = ImageIO.read(src3);
 			}
 			catch (Exception e)
@@ -480,11 +501,6 @@ public class Overviewer
 			FileInputStream src0fis = null, src1fis = null, src2fis = null, src3fis = null;
 			try
 			{
-				src0 = src0 != null && src0.exists() ? src0 : null;
-				src1 = src1 != null && src1.exists() ? src1 : null;
-				src2 = src2 != null && src2.exists() ? src2 : null;
-				src3 = src3 != null && src3.exists() ? src3 : null;
-
 				long length =
 						src0 != null ? src0.length() : src1 != null ? src1.length() : src2 != null ? src2.length()
 								: src3 != null ? src3.length() : -1;
@@ -23,26 +23,25 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel.MapMode;
-import java.util.Iterator;
 
-import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
-import javax.imageio.stream.FileImageOutputStream;
 
 import org.gdal.gdal.Dataset;
 
 import au.gov.ga.worldwind.tiler.gdal.GDALTile;
 import au.gov.ga.worldwind.tiler.gdal.GDALTileParameters;
 import au.gov.ga.worldwind.tiler.mapnik.MapnikUtil;
+import au.gov.ga.worldwind.tiler.util.CoverageMask;
+import au.gov.ga.worldwind.tiler.util.ImageEncoder;
+import au.gov.ga.worldwind.tiler.util.ImageWritePipeline;
 import au.gov.ga.worldwind.tiler.util.LatLon;
 import au.gov.ga.worldwind.tiler.util.MinMaxArray;
 import au.gov.ga.worldwind.tiler.util.NullableNumberArray;
 import au.gov.ga.worldwind.tiler.util.NumberArray;
 import au.gov.ga.worldwind.tiler.util.ProgressReporter;
 import au.gov.ga.worldwind.tiler.util.Sector;
+import au.gov.ga.worldwind.tiler.util.TilingMetrics;
+import au.gov.ga.worldwind.tiler.util.TilingMetrics.Stage;
 import au.gov.ga.worldwind.tiler.util.Util;
 
 /**
@@ -114,16 +113,41 @@ public class Tiler
 	 *            next tile)
 	 * @param progress
 	 *            Object to report progress to
+	 * @return Number of tiles that couldn't be generated
 	 */
-	public static void tileImages(Dataset dataset, boolean reprojectIfRequired, boolean linearInterpolationIfRequired,
+	public static int tileImages(Dataset dataset, boolean reprojectIfRequired, boolean linearInterpolationIfRequired,
 			Sector sector, LatLon origin, int level, int tilesize, double lzts, String imageFormat, boolean addAlpha,
 			float jpegQuality, NullableNumberArray outsideValues, boolean ignoreBlank, MinMaxArray[] replaceMinMaxs,
 			NullableNumberArray replace, NullableNumberArray otherwise, File outputDirectory, boolean resume,
 			ProgressReporter progress)
 	{
-		tile(TilingType.Images, dataset, reprojectIfRequired, linearInterpolationIfRequired, null, sector, origin,
+		return tileImages(dataset, reprojectIfRequired, linearInterpolationIfRequired, sector, origin, level, tilesize,
+				lzts, imageFormat, addAlpha, jpegQuality, outsideValues, ignoreBlank, replaceMinMaxs, replace, otherwise,
+				null, outputDirectory, resume, progress);
+	}
+
+	/**
+	 * Tile the given image dataset at the given level, skipping tiles that
+	 * don't intersect the given coverage mask.
+	 * 
+	 * @param coverage
+	 *            Mask of the areas of the sector that contain data; if
+	 *            ignoreBlank is true, tiles outside the mask are skipped
+	 *            without being read (may be null)
+	 * @see #tileImages(Dataset, boolean, boolean, Sector, LatLon, int, int,
+	 *      double, String, boolean, float, NullableNumberArray, boolean,
+	 *      MinMaxArray[], NullableNumberArray, NullableNumberArray, File,
+	 *      boolean, ProgressReporter)
+	 */
+	public static int tileImages(Dataset dataset, boolean reprojectIfRequired, boolean linearInterpolationIfRequired,
+			Sector sector, LatLon origin, int level, int tilesize, double lzts, String imageFormat, boolean addAlpha,
+			float jpegQuality, NullableNumberArray outsideValues, boolean ignoreBlank, MinMaxArray[] replaceMinMaxs,
+			NullableNumberArray replace, NullableNumberArray otherwise, CoverageMask coverage, File outputDirectory,
+			boolean resume, ProgressReporter progress)
+	{
+		return tile(TilingType.Images, dataset, reprojectIfRequired, linearInterpolationIfRequired, null, sector, origin,
 				level, tilesize, lzts, imageFormat, addAlpha, jpegQuality, -1, -1, outsideValues, ignoreBlank,
-				replaceMinMaxs, replace, otherwise, null, outputDirectory, resume, progress);
+				replaceMinMaxs, replace, otherwise, null, coverage, outputDirectory, resume, progress);
 	}
 
 	/**
@@ -173,16 +197,17 @@ public class Tiler
 	 *            next tile)
 	 * @param progress
 	 *            Object to report progress to
+	 * @return Number of tiles that couldn't be generated
 	 */
-	public static void tileElevations(Dataset dataset, boolean reprojectIfRequired,
+	public static int tileElevations(Dataset dataset, boolean reprojectIfRequired,
 			boolean linearInterpolationIfRequired, Sector sector, LatLon origin, int level, int tilesize, double lzts,
 			int bufferType, int band, NullableNumberArray outsideValues, MinMaxArray[] replaceMinMaxs,
 			NullableNumberArray replace, NullableNumberArray otherwise, NumberArray minMax, File outputDirectory,
 			boolean resume, ProgressReporter progress)
 	{
-		tile(TilingType.Elevations, dataset, reprojectIfRequired, linearInterpolationIfRequired, null, sector, origin,
+		return tile(TilingType.Elevations, dataset, reprojectIfRequired, linearInterpolationIfRequired, null, sector, origin,
 				level, tilesize, lzts, null, false, -1, bufferType, band, outsideValues, false, replaceMinMaxs,
-				replace, otherwise, minMax, outputDirectory, resume, progress);
+				replace, otherwise, minMax, null, outputDirectory, resume, progress);
 	}
 
 	/**
@@ -215,25 +240,34 @@ public class Tiler
 	 *            next tile)
 	 * @param progress
 	 *            Object to report progress to
+	 * @return Number of tiles that couldn't be generated
 	 */
-	public static void tileMapnik(File mapFile, Sector sector, LatLon origin, int level, int tilesize, double lzts,
+	public static int tileMapnik(File mapFile, Sector sector, LatLon origin, int level, int tilesize, double lzts,
 			String imageFormat, boolean ignoreBlank, boolean reprojectIfRequired, File outputDirectory, boolean resume,
 			ProgressReporter progress)
 	{
-		tile(TilingType.Mapnik, null, reprojectIfRequired, false, mapFile, sector, origin, level, tilesize, lzts,
-				imageFormat, false, -1, -1, -1, null, ignoreBlank, null, null, null, null, outputDirectory, resume,
-				progress);
+		return tile(TilingType.Mapnik, null, reprojectIfRequired, false, mapFile, sector, origin, level, tilesize, lzts,
+				imageFormat, false, -1, -1, -1, null, ignoreBlank, null, null, null, null, null, outputDirectory,
+				resume, progress);
 	}
 
-	private static void tile(TilingType type, Dataset dataset, boolean reprojectIfRequired,
+	private static int tile(TilingType type, Dataset dataset, boolean reprojectIfRequired,
 			boolean linearInterpolationIfRequired, File mapFile, Sector sector, LatLon origin, int level, int tilesize,
 			double lzts, String imageFormat, boolean addAlpha, float jpegQuality, int bufferType, int band,
 			NullableNumberArray outsideValues, boolean ignoreBlank, MinMaxArray[] replaceMinMaxs,
-			NullableNumberArray replace, NullableNumberArray otherwise, NumberArray minMax, File outputDirectory,
-			boolean resume, ProgressReporter progress)
+			NullableNumberArray replace, NullableNumberArray otherwise, NumberArray minMax, CoverageMask coverage,
+			File outputDirectory, boolean resume, ProgressReporter progress)
 	{
 		progress.getLogger().info("Generating tiles...");
 
+		//blank tiles can only be skipped if they wouldn't be saved anyway
+		if (!ignoreBlank)
+		{
+			coverage = null;
+		}
+		int skipped = 0;
+		int failed = 0;
+
 		String outputExt = type == TilingType.Elevations ? "bil" : imageFormat;
 
 		double tilesizedegrees = Math.pow(0.5, level) * lzts;
@@ -277,141 +311,198 @@ public class Tiler
 		int ysize = maxY - minY + 1;
 		int size = xsize * ysize;
 		int count = (startY - minY) * xsize + (startX - minX);
-		for (int Y = startY; Y <= maxY; Y++)
-		{
-			if (progress.isCancelled())
-				break;
 
-			File rowDir = new File(levelDir, Util.paddedInt(Y, 4));
-			if (!rowDir.exists())
-			{
-				rowDir.mkdirs();
-			}
+		TilingMetrics metrics = TilingMetrics.current();
 
-			for (int X = (Y == startY ? startX : minX); X <= maxX; X++)
+		//image encoding and writing is done in the background, overlapping with dataset reads
+		ImageWritePipeline pipeline = type == TilingType.Images ? new ImageWritePipeline(progress.getLogger()) : null;
+		try
+		{
+			for (int Y = startY; Y <= maxY; Y++)
 			{
-				if (progress.isCancelled())
+				if (progress.isCancelled() || (pipeline != null && pipeline.hasFailed()))
 					break;
 
-				count++;
-				progress.getLogger().fine(
-						"Tile (" + X + "," + Y + "), " + count + "/" + size + " (" + (count * 100 / size)
-								+ "%) (column " + (X - minX + 1) + "/" + xsize + ", row " + (Y - minY + 1) + "/"
-								+ ysize + ")");
-				progress.progress(count / (double) size);
-
-				final double lat1 = (Y * tilesizedegrees) + origin.getLatitude();
-				final double lon1 = (X * tilesizedegrees) + origin.getLongitude();
-				final double lat2 = lat1 + tilesizedegrees;
-				final double lon2 = lon1 + tilesizedegrees;
-				Sector s = new Sector(lat1, lon1, lat2, lon2);
-
-				final File dst = new File(rowDir, Util.paddedInt(Y, 4) + "_" + Util.paddedInt(X, 4) + "." + outputExt);
-				if (dst.exists())
+				File rowDir = new File(levelDir, Util.paddedInt(Y, 4));
+				if (!rowDir.exists())
 				{
-					progress.getLogger().warning(dst.getAbsolutePath() + " already exists");
+					rowDir.mkdirs();
 				}
-				else
+
+				for (int X = (Y == startY ? startX : minX); X <= maxX; X++)
 				{
-					try
-					{
-						if (type == TilingType.Mapnik)
-						{
-							MapnikUtil.tile(s, tilesize, tilesize, ignoreBlank, reprojectIfRequired, mapFile, dst,
-									progress.getLogger());
-						}
-						else
-						{
-							GDALTileParameters parameters =
-									new GDALTileParameters(dataset, new Dimension(tilesize, tilesize), s);
-							parameters.addAlpha = addAlpha;
-							parameters.selectedBand = band;
-							parameters.reprojectIfRequired = reprojectIfRequired;
-							parameters.bilinearInterpolationIfRequired = linearInterpolationIfRequired;
-							parameters.noData = outsideValues;
-							parameters.minMaxs = replaceMinMaxs;
-							parameters.replacement = replace;
-							parameters.otherwise = otherwise;
+					if (progress.isCancelled() || (pipeline != null && pipeline.hasFailed()))
+						break;
 
-							GDALTile tile = new GDALTile(parameters);
-							if (type == TilingType.Elevations)
-							{
-								tile = tile.convertToType(bufferType);
+					count++;
+					progress.getLogger().fine(
+							"Tile (" + X + "," + Y + "), " + count + "/" + size + " (" + (count * 100 / size)
+									+ "%) (column " + (X - minX + 1) + "/" + xsize + ", row " + (Y - minY + 1) + "/"
+									+ ysize + ")");
+					progress.progress(count / (double) size);
 
-								tile.updateMinMax(minMax, outsideValues);
+					final double lat1 = (Y * tilesizedegrees) + origin.getLatitude();
+					final double lon1 = (X * tilesizedegrees) + origin.getLongitude();
+					final double lat2 = lat1 + tilesizedegrees;
+					final double lon2 = lon1 + tilesizedegrees;
+					Sector s = new Sector(lat1, lon1, lat2, lon2);
 
-								ByteBuffer bb = tile.getBuffer();
-								bb.rewind();
-								RandomAccessFile raf = null;
-								try
-								{
-									raf = new RandomAccessFile(dst, "rw");
-									MappedByteBuffer mbb = raf.getChannel().map(MapMode.READ_WRITE, 0, bb.limit());
-									mbb.order(bb.order());
-									mbb.put(bb);
-								}
-								finally
-								{
-									if (raf != null)
-										raf.close();
-								}
+					if (coverage != null && !coverage.intersects(s))
+					{
+						skipped++;
+						continue;
+					}
+
+					final File dst =
+							new File(rowDir, Util.paddedInt(Y, 4) + "_" + Util.paddedInt(X, 4) + "." + outputExt);
+					if (dst.exists())
+					{
+						progress.getLogger().warning(dst.getAbsolutePath() + " already exists");
+					}
+					else
+					{
+						try
+						{
+							if (type == TilingType.Mapnik)
+							{
+								MapnikUtil.tile(s, tilesize, tilesize, ignoreBlank, reprojectIfRequired, mapFile, dst,
+										progress.getLogger());
 							}
 							else
 							{
-								if (!(ignoreBlank && tile.isBlank()))
+								GDALTileParameters parameters =
+										new GDALTileParameters(dataset, new Dimension(tilesize, tilesize), s);
+								parameters.addAlpha = addAlpha;
+								parameters.selectedBand = band;
+								parameters.reprojectIfRequired = reprojectIfRequired;
+								parameters.bilinearInterpolationIfRequired = linearInterpolationIfRequired;
+								parameters.noData = outsideValues;
+								parameters.minMaxs = replaceMinMaxs;
+								parameters.replacement = replace;
+								parameters.otherwise = otherwise;
+
+								GDALTile tile = new GDALTile(parameters);
+								if (type == TilingType.Elevations)
+								{
+									long start = metrics.begin(Stage.PostProcess);
+									try
+									{
+										tile = tile.convertToType(bufferType);
+										tile.updateMinMax(minMax, outsideValues);
+									}
+									finally
+									{
+										metrics.end(Stage.PostProcess, start);
+									}
+
+									ByteBuffer bb = tile.getBuffer();
+									bb.rewind();
+									RandomAccessFile raf = null;
+									start = metrics.begin(Stage.Write);
+									try
+									{
+										raf = new RandomAccessFile(dst, "rw");
+										MappedByteBuffer mbb = raf.getChannel().map(MapMode.READ_WRITE, 0, bb.limit());
+										mbb.order(bb.order());
+										mbb.put(bb);
+									}
+									finally
+									{
+										if (raf != null)
+											raf.close();
+										metrics.end(Stage.Write, start);
+									}
+									metrics.tileWritten();
+								}
+								else
 								{
-									BufferedImage image = tile.getAsImage();
-									writeImage(image, imageFormat, dst, jpegQuality);
+									if (!(ignoreBlank && tile.isBlank()))
+									{
+										BufferedImage image;
+										long start = metrics.begin(Stage.PostProcess);
+										try
+										{
+											image = tile.getAsImage();
+										}
+										finally
+										{
+											metrics.end(Stage.PostProcess, start);
+										}
+										pipeline.submit(image, imageFormat, jpegQuality, dst);
+									}
 								}
 							}
 						}
-					}
-					catch (Exception e)
-					{
-						progress.getLogger().severe(e.getMessage());
-						try
-						{
-							Thread.sleep(1);
-						}
-						catch (InterruptedException e1)
+						catch (Exception e)
 						{
-							e1.printStackTrace();
+							failed++;
+							progress.getLogger().severe(e.getMessage());
+							try
+							{
+								Thread.sleep(1);
+							}
+							catch (InterruptedException e1)
+							{
+								e1.printStackTrace();
+							}
 						}
 					}
 				}
 			}
 		}
-
-		progress.getLogger().info("Tile generation " + (progress.isCancelled() ? "cancelled" : "complete"));
-	}
-
-	public static void writeImage(BufferedImage image, String format, File file, float jpegQuality) throws IOException
-	{
-		if ("jpg".equalsIgnoreCase(format))
+		finally
 		{
-			Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
-			ImageWriter writer = writers.next();
-			JPEGImageWriteParam iwp = (JPEGImageWriteParam) writer.getDefaultWriteParam();
-			iwp.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-			iwp.setCompressionQuality(jpegQuality);
-			iwp.setOptimizeHuffmanTables(true);
-			FileImageOutputStream ios = null;
-			try
-			{
-				ios = new FileImageOutputStream(file);
-				writer.setOutput(ios);
-				IIOImage iioimage = new IIOImage(image, null, null);
-				writer.write(null, iioimage, iwp);
-			}
-			finally
+			if (pipeline != null)
 			{
-				if (ios != null)
-					ios.close();
+				try
+				{
+					pipeline.close();
+				}
+				catch (InterruptedException e)
+				{
+					progress.getLogger().severe(e.getMessage());
+				}
+				catch (IOException e)
+				{
+					progress.getLogger().severe(e.getMessage());
+				}
 			}
 		}
-		else
+
+		if (coverage != null)
+		{
+			progress.getLogger().info("Skipped " + skipped + " tiles outside the coverage mask");
+		}
+		if (pipeline != null && pipeline.hasFailed())
+		{
+			//the last images submitted may have failed after their tiles were counted as generated
+			failed = Math.max(failed, 1);
+		}
+		if (failed > 0)
 		{
-			ImageIO.write(image, format, file);
+			progress.getLogger().severe("Tile generation failed: " + failed + " tiles couldn't be generated");
+			return failed;
 		}
+		progress.getLogger().info("Tile generation " + (progress.isCancelled() ? "cancelled" : "complete"));
+		return 0;
+	}
+
+	/**
+	 * Write the image to a file, using the {@link ImageEncoder}'s cached
+	 * writers.
+	 * 
+	 * @param image
+	 *            Image to write
+	 * @param format
+	 *            Image format (must be supported by {@link ImageIO})
+	 * @param file
+	 *            File to write to
+	 * @param jpegQuality
+	 *            JPEG compression quality (if using the JPEG image format)
+	 * @throws IOException
+	 */
+	public static void writeImage(BufferedImage image, String format, File file, float jpegQuality) throws IOException
+	{
+		ImageEncoder.write(image, format, file, jpegQuality);
 	}
 }
@@ -51,6 +51,8 @@ import au.gov.ga.worldwind.tiler.util.NullableNumberArray;
 import au.gov.ga.worldwind.tiler.util.NumberArray;
 import au.gov.ga.worldwind.tiler.util.Sector;
 import au.gov.ga.worldwind.tiler.util.TilerException;
+import au.gov.ga.worldwind.tiler.util.TilingMetrics;
+import au.gov.ga.worldwind.tiler.util.TilingMetrics.Stage;
 
 /**
  * The heart of the Tiler. Represents a single tile of a GDAL dataset.
@@ -247,9 +249,20 @@ public class GDALTile
 		dst.SetGeoTransform(geoTransformArray);
 		dst.SetProjection(dstSR.ExportToWkt());
 
-		int returnVal =
-				gdal.ReprojectImage(parameters.dataset, dst, null, null, parameters.bilinearInterpolationIfRequired
-						? gdalconst.GRA_Bilinear : gdalconst.GRA_NearestNeighbour);
+		TilingMetrics metrics = TilingMetrics.current();
+		long start = metrics.begin(Stage.Reproject);
+		int returnVal;
+		try
+		{
+			returnVal =
+					gdal.ReprojectImage(parameters.dataset, dst, null, null,
+							parameters.bilinearInterpolationIfRequired ? gdalconst.GRA_Bilinear
+									: gdalconst.GRA_NearestNeighbour);
+		}
+		finally
+		{
+			metrics.end(Stage.Reproject, start);
+		}
 		if (returnVal != gdalconstConstants.CE_None)
 		{
 			throw new GDALException();
@@ -258,6 +271,20 @@ public class GDALTile
 	}
 
 	protected void readRectangle(Dataset dataset, Rectangle srcRect) throws GDALException, TilerException
+	{
+		TilingMetrics metrics = TilingMetrics.current();
+		long start = metrics.begin(Stage.Read);
+		try
+		{
+			readRectangleTimed(dataset, srcRect);
+		}
+		finally
+		{
+			metrics.end(Stage.Read, start);
+		}
+	}
+
+	private void readRectangleTimed(Dataset dataset, Rectangle srcRect) throws GDALException, TilerException
 	{
 		int width = parameters.size.width;
 		int height = parameters.size.height;
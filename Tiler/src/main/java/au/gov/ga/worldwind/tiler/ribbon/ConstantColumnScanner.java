@@ -0,0 +1,326 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.ribbon;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.gdal.gdal.Dataset;
+
+import au.gov.ga.worldwind.tiler.gdal.GDALTile;
+import au.gov.ga.worldwind.tiler.gdal.GDALTileParameters;
+
+/**
+ * Calculates the number of constant pixels at the top and bottom of each
+ * column of a ribbon image, for use when removing constant columns.
+ * <p/>
+ * The image is read in vertical strips, which are scanned directly on the raw
+ * band buffer read by GDAL (a pixel is constant if every band sample is equal
+ * to the first/last pixel in the column). Strips are read and scanned in
+ * parallel, each worker thread reading from its own {@link Dataset}.
+ * <p/>
+ * Results are written to the <code>.top.dat</code> and
+ * <code>.bottom.dat</code> files as each strip completes. Columns not yet
+ * calculated are stored as {@link #NOT_CALCULATED}, so that an interrupted
+ * calculation can be resumed.
+ */
+public class ConstantColumnScanner
+{
+	/**
+	 * Value stored in the column files for columns that haven't been
+	 * calculated yet.
+	 */
+	public static final int NOT_CALCULATED = -1;
+
+	private final RibbonTilingContext context;
+	private final int width;
+	private final int height;
+
+	public ConstantColumnScanner(RibbonTilingContext context, int width, int height)
+	{
+		this.context = context;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Calculate (or load previously calculated) constant pixel counts.
+	 *
+	 * @param topFile
+	 *            File to store constant pixels from top of each column in
+	 * @param bottomFile
+	 *            File to store constant pixels from bottom of each column in
+	 * @return Array containing the constant pixels from the top (index 0) and
+	 *         from the bottom (index 1) of each column
+	 */
+	public int[][] scan(File topFile, File bottomFile) throws Exception
+	{
+		int[] fromTop = loadOrCreate(topFile);
+		int[] fromBottom = loadOrCreate(bottomFile);
+
+		int stripWidth = Math.max(1, 10 * context.getTilesize() * context.getTilesize() / height);
+		List<Integer> strips = new ArrayList<Integer>();
+		for (int startX = 0; startX < width; startX += stripWidth)
+		{
+			int w = Math.min(stripWidth, width - startX);
+			for (int x = startX; x < startX + w; x++)
+			{
+				if (fromTop[x] == NOT_CALCULATED || fromBottom[x] == NOT_CALCULATED)
+				{
+					strips.add(startX);
+					break;
+				}
+			}
+		}
+
+		if (strips.isEmpty())
+		{
+			RibbonTiler.log(context, "Loaded removal columns from previous calculations", false);
+			return new int[][] { fromTop, fromBottom };
+		}
+		if (strips.size() * stripWidth < width)
+		{
+			RibbonTiler.log(context, "Resuming removal column calculation (" + strips.size() + " strips remaining)",
+					false);
+		}
+
+		final DatasetPool datasets = new DatasetPool(context.getSourceFile());
+		ExecutorService executor = Executors.newFixedThreadPool(context.getThreadCount());
+		RandomAccessFile topRaf = null, bottomRaf = null;
+		try
+		{
+			CompletionService<StripResult> completion = new ExecutorCompletionService<StripResult>(executor);
+			for (final Integer startX : strips)
+			{
+				final int w = Math.min(stripWidth, width - startX);
+				completion.submit(new Callable<StripResult>()
+				{
+					@Override
+					public StripResult call() throws Exception
+					{
+						return scanStrip(datasets.get(), startX, w);
+					}
+				});
+			}
+
+			topRaf = new RandomAccessFile(topFile, "rw");
+			bottomRaf = new RandomAccessFile(bottomFile, "rw");
+			for (int i = 0; i < strips.size(); i++)
+			{
+				StripResult result;
+				try
+				{
+					result = completion.take().get();
+				}
+				catch (ExecutionException e)
+				{
+					throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				}
+
+				System.arraycopy(result.fromTop, 0, fromTop, result.startX, result.fromTop.length);
+				System.arraycopy(result.fromBottom, 0, fromBottom, result.startX, result.fromBottom.length);
+				writeInts(topRaf, result.startX, result.fromTop);
+				writeInts(bottomRaf, result.startX, result.fromBottom);
+
+				RibbonTiler.log(context, (100 * (i + 1) / strips.size()) + "% done", false);
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			if (topRaf != null)
+				topRaf.close();
+			if (bottomRaf != null)
+				bottomRaf.close();
+			datasets.close();
+		}
+
+		return new int[][] { fromTop, fromBottom };
+	}
+
+	private int[] loadOrCreate(File file)
+	{
+		int[] array = RibbonTilerUtils.loadIntArrayFromFile(file);
+		if (array != null && array.length == width)
+		{
+			return array;
+		}
+
+		array = new int[width];
+		for (int i = 0; i < width; i++)
+		{
+			array[i] = NOT_CALCULATED;
+		}
+		RibbonTilerUtils.saveIntArrayToFile(array, file);
+		return array;
+	}
+
+	private static void writeInts(RandomAccessFile raf, int index, int[] values) throws IOException
+	{
+		ByteBuffer bb = ByteBuffer.allocate(values.length * 4);
+		bb.asIntBuffer().put(values);
+		raf.seek(index * 4l);
+		raf.write(bb.array());
+	}
+
+	private StripResult scanStrip(Dataset dataset, int startX, int w) throws Exception
+	{
+		Rectangle src = new Rectangle(context.getInsets().left + startX, context.getInsets().top, w, height);
+		GDALTileParameters parameters = new GDALTileParameters(dataset, src.getSize(), src);
+		GDALTile tile = new GDALTile(parameters);
+
+		StripResult result = new StripResult(startX, w);
+		scanColumns(tile.getBuffer().array(), w, height, tile.getBandCount(), tile.getBufferTypeSize(),
+				result.fromTop, result.fromBottom);
+		return result;
+	}
+
+	/**
+	 * Scan a band-sequential buffer (as read by {@link GDALTile}) for constant
+	 * pixels at the top and bottom of each column. The rows are traversed in
+	 * memory order, tracking which columns are still constant.
+	 *
+	 * @param data
+	 *            Raw sample data, each band stored one after another
+	 * @param w
+	 *            Width of the data
+	 * @param h
+	 *            Height of the data
+	 * @param bandCount
+	 *            Number of bands in the data
+	 * @param typeSize
+	 *            Size of each sample in bytes
+	 * @param fromTop
+	 *            Array to store constant pixel count from the top of each
+	 *            column in
+	 * @param fromBottom
+	 *            Array to store constant pixel count from the bottom of each
+	 *            column in
+	 */
+	static void scanColumns(byte[] data, int w, int h, int bandCount, int typeSize, int[] fromTop,
+			int[] fromBottom)
+	{
+		int bandStride = w * h * typeSize;
+		int rowStride = w * typeSize;
+
+		//from the top, comparing each row to the first row
+		int active = w;
+		boolean[] constant = new boolean[w];
+		for (int x = 0; x < w; x++)
+		{
+			constant[x] = true;
+			fromTop[x] = h > 0 ? 1 : 0;
+			fromBottom[x] = 0;
+		}
+		for (int y = 1; y < h && active > 0; y++)
+		{
+			for (int x = 0; x < w; x++)
+			{
+				if (!constant[x])
+				{
+					continue;
+				}
+				if (pixelsEqual(data, x * typeSize, y * rowStride + x * typeSize, bandCount, bandStride, typeSize))
+				{
+					fromTop[x]++;
+				}
+				else
+				{
+					constant[x] = false;
+					active--;
+				}
+			}
+		}
+
+		//from the bottom, comparing each row to the last row (only for columns that aren't entirely constant)
+		active = 0;
+		int lastRow = (h - 1) * rowStride;
+		for (int x = 0; x < w; x++)
+		{
+			constant[x] = fromTop[x] < h;
+			if (constant[x])
+			{
+				fromBottom[x] = 1;
+				active++;
+			}
+		}
+		for (int y = h - 2; y >= 0 && active > 0; y--)
+		{
+			for (int x = 0; x < w; x++)
+			{
+				if (!constant[x])
+				{
+					continue;
+				}
+				if (pixelsEqual(data, lastRow + x * typeSize, y * rowStride + x * typeSize, bandCount, bandStride,
+						typeSize))
+				{
+					fromBottom[x]++;
+				}
+				else
+				{
+					constant[x] = false;
+					active--;
+				}
+			}
+		}
+	}
+
+	private static boolean pixelsEqual(byte[] data, int offset1, int offset2, int bandCount, int bandStride,
+			int typeSize)
+	{
+		for (int b = 0; b < bandCount; b++)
+		{
+			int o1 = offset1 + b * bandStride;
+			int o2 = offset2 + b * bandStride;
+			for (int i = 0; i < typeSize; i++)
+			{
+				if (data[o1 + i] != data[o2 + i])
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static class StripResult
+	{
+		public final int startX;
+		public final int[] fromTop;
+		public final int[] fromBottom;
+
+		public StripResult(int startX, int width)
+		{
+			this.startX = startX;
+			this.fromTop = new int[width];
+			this.fromBottom = new int[width];
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.ribbon;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gdal.gdal.Dataset;
+
+import au.gov.ga.worldwind.tiler.gdal.GDALException;
+import au.gov.ga.worldwind.tiler.gdal.GDALUtil;
+
+/**
+ * Provides each thread with its own {@link Dataset} opened on the same file, as
+ * GDAL datasets cannot be read from multiple threads at once.
+ */
+class DatasetPool
+{
+	private final File file;
+	private final List<Dataset> datasets = new ArrayList<Dataset>();
+	private final ThreadLocal<Dataset> threadDataset = new ThreadLocal<Dataset>();
+
+	public DatasetPool(File file)
+	{
+		this.file = file;
+	}
+
+	/**
+	 * @return The calling thread's dataset, opening it if required
+	 */
+	public Dataset get() throws GDALException
+	{
+		Dataset dataset = threadDataset.get();
+		if (dataset == null)
+		{
+			dataset = GDALUtil.open(file);
+			threadDataset.set(dataset);
+			synchronized (datasets)
+			{
+				datasets.add(dataset);
+			}
+		}
+		return dataset;
+	}
+
+	/**
+	 * Close all datasets opened by this pool. Should only be called once the
+	 * threads using the pool have finished.
+	 */
+	public void close()
+	{
+		synchronized (datasets)
+		{
+			for (Dataset dataset : datasets)
+			{
+				dataset.delete();
+			}
+			datasets.clear();
+		}
+	}
+}
@@ -23,6 +23,7 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.Date;
+import java.util.concurrent.Callable;
 
 import javax.imageio.ImageIO;
 
@@ -32,6 +33,12 @@ import au.gov.ga.worldwind.tiler.gdal.GDALTile;
 import au.gov.ga.worldwind.tiler.gdal.GDALTileParameters;
 import au.gov.ga.worldwind.tiler.gdal.GDALUtil;
 import au.gov.ga.worldwind.tiler.ribbon.definition.LayerDefinitionCreator;
+import au.gov.ga.worldwind.tiler.util.DependencyScheduler;
+import au.gov.ga.worldwind.tiler.util.DependencyScheduler.Task;
+import au.gov.ga.worldwind.tiler.util.ImageEncoder;
+import au.gov.ga.worldwind.tiler.util.ImageWritePipeline;
+import au.gov.ga.worldwind.tiler.util.TilingMetrics;
+import au.gov.ga.worldwind.tiler.util.TilingMetrics.Stage;
 import au.gov.ga.worldwind.tiler.util.Util;
 
 import com.beust.jcommander.JCommander;
@@ -46,6 +53,9 @@ import com.beust.jcommander.ParameterException;
  */
 public class RibbonTiler
 {
+	/** The quality used by {@link ImageIO} when writing JPEGs with the default parameters */
+	private static final float DEFAULT_JPEG_QUALITY = 0.75f;
+
 	public static void main(String[] args) throws Exception
 	{
 		GDALUtil.init();
@@ -98,70 +108,9 @@ public class RibbonTiler
 			log(context, "Calculating columns to remove from the top and bottom of the image...", false);
 			File topFile = new File(context.getTilesetRoot(), context.getTilesetName() + ".top.dat");
 			File bottomFile = new File(context.getTilesetRoot(), context.getTilesetName() + ".bottom.dat");
-			constantPixelsFromTop = RibbonTilerUtils.loadIntArrayFromFile(topFile);
-			constantPixelsFromBottom = RibbonTilerUtils.loadIntArrayFromFile(bottomFile);
-			if (!(constantPixelsFromTop == null || constantPixelsFromBottom == null
-					|| constantPixelsFromTop.length != width || constantPixelsFromBottom.length != width))
-			{
-				log(context, "Loaded removal columns from previous calculations", false);
-			}
-			else
-			{
-				constantPixelsFromTop = new int[width];
-				constantPixelsFromBottom = new int[width];
-
-				int constantWidth = Math.max(1, 10 * context.getTilesize() * context.getTilesize() / height);
-				for (int startX = 0; startX < width; startX += constantWidth)
-				{
-					int w = Math.min(constantWidth, width - startX);
-
-					//get an image of the full height, 1 pixel wide at column x
-					Rectangle src =
-							new Rectangle(context.getInsets().left + startX, context.getInsets().top, w, height);
-					GDALTileParameters parameters = new GDALTileParameters(dataset, src.getSize(), src);
-					GDALTile tile = new GDALTile(parameters);
-					BufferedImage image = tile.getAsImage();
-
-					log(context, (100 * (startX + 1) / width) + "% done", false);
-
-					for (int x = 0; x < w; x++)
-					{
-						int fromTop = 0;
-						int fromBottom = 0;
-						int lastColor = 0;
-						for (int y = 0; y < height; y++)
-						{
-							int thisColor = image.getRGB(x, y);
-							if (y > 0 && lastColor != thisColor)
-							{
-								break;
-							}
-							lastColor = thisColor;
-							fromTop++;
-						}
-
-						if (fromTop < height)
-						{
-							for (int y = height - 1; y >= 0; y--)
-							{
-								int thisColor = image.getRGB(x, y);
-								if (y < height - 1 && lastColor != thisColor)
-								{
-									break;
-								}
-								lastColor = thisColor;
-								fromBottom++;
-							}
-						}
-
-						constantPixelsFromTop[startX + x] = fromTop;
-						constantPixelsFromBottom[startX + x] = fromBottom;
-					}
-				}
-
-				RibbonTilerUtils.saveIntArrayToFile(constantPixelsFromTop, topFile);
-				RibbonTilerUtils.saveIntArrayToFile(constantPixelsFromBottom, bottomFile);
-			}
+			int[][] constantPixels = new ConstantColumnScanner(context, width, height).scan(topFile, bottomFile);
+			constantPixelsFromTop = constantPixels[0];
+			constantPixelsFromBottom = constantPixels[1];
 		}
 
 		//calculate tiling parameters
@@ -171,40 +120,27 @@ public class RibbonTiler
 		int cols = (width - 1) / (context.getTilesize() * yStrips) + 1;
 		File levelDir = new File(context.getTilesetRoot(), String.valueOf(levels - 1));
 
-		//create top level tiles
+		//tiles are generated in parallel; each overview tile is started as soon as the tiles it is created from exist,
+		//ahead of any remaining tiles from higher levels
+		DependencyScheduler scheduler = new DependencyScheduler(context.getThreadCount());
+		DatasetPool datasets = new DatasetPool(context.getSourceFile());
+
+		//create top level tiles, in column order so that overview tiles become ready as early as possible
 		log(context, "Creating top level tiles...", false);
-		for (int y = 0, row = 0; y < height; y += context.getTilesize() * xStrips, row++)
+		Task[][] lastTasks = new Task[rows][cols];
+		for (int x = 0, col = 0; x < width; x += context.getTilesize() * yStrips, col++)
 		{
-			//create row directory
-			String rowPadded = Util.paddedInt(row, 4);
-			File rowDir = new File(levelDir, rowPadded);
-			rowDir.mkdirs();
+			int w = Math.min(context.getTilesize() * yStrips / xStrips, width - x);
 
-			int h = Math.min(context.getTilesize() * xStrips / yStrips, height - y);
-
-			for (int x = 0, col = 0; x < width; x += context.getTilesize() * yStrips, col++)
+			for (int y = 0, row = 0; y < height; y += context.getTilesize() * xStrips, row++)
 			{
-				File imageFile = tileFile(levelDir, row, col, context.getFormat());
-				if (imageFile.exists())
-				{
-					continue;
-				}
-
-				int w = Math.min(context.getTilesize() * yStrips / xStrips, width - x);
-
-				Rectangle src = new Rectangle(x + context.getInsets().left, y + context.getInsets().top, w, h);
-				GDALTileParameters parameters = new GDALTileParameters(dataset, src.getSize(), src);
-				GDALTile tile = new GDALTile(parameters);
-				BufferedImage image = tile.getAsImage();
+				int h = Math.min(context.getTilesize() * xStrips / yStrips, height - y);
 
-				if (context.isRemoveConstantColumns())
-				{
-					image =
-							removeConstantColumns(image, constantPixelsFromTop, constantPixelsFromBottom, x, y, width,
-									height, context.isMask());
-				}
-
-				ImageIO.write(image, context.getFormat(), imageFile);
+				File imageFile = tileFile(levelDir, row, col, context.getFormat());
+				Rectangle src = new Rectangle(x, y, w, h);
+				lastTasks[row][col] =
+						scheduler.add(0, new TopLevelTile(context, datasets, imageFile, src,
+								constantPixelsFromTop, constantPixelsFromBottom, width, height));
 			}
 		}
 
@@ -237,28 +173,25 @@ public class RibbonTiler
 
 			File lastLevelDir = levelDir;
 			levelDir = new File(context.getTilesetRoot(), String.valueOf(level));
-			levelDir.mkdirs();
 
 			int rowMultiplier = lastRows == 1 ? 0 : 1;
 			int rowDivisor = lastCols == 1 ? 1 : 2;
 			int colMultiplier = lastCols == 1 ? 0 : 1;
 			int colDelta = lastRows == 1 ? 2 : 0;
 
+			Task[][] tasks = new Task[rows][cols];
 			for (int row = 0; row < rows; row++)
 			{
 				//if lastRows == 1: 0,0,0,0 / 0,0,0,0
 				//if lastCols == 1: 0,1,2,3 / 4,5,6,7
 				//            else: 0,0,1,1 / 2,2,3,3
 
-				String rowPadded = Util.paddedInt(row, 4);
-				File rowDir = new File(levelDir, rowPadded);
-				rowDir.mkdirs();
-
 				int firstRow = row * 4;
-				int r0 = rowMultiplier * (firstRow + 0) / rowDivisor;
-				int r1 = rowMultiplier * (firstRow + 1) / rowDivisor;
-				int r2 = rowMultiplier * (firstRow + 2) / rowDivisor;
-				int r3 = rowMultiplier * (firstRow + 3) / rowDivisor;
+				int[] r = new int[4];
+				r[0] = rowMultiplier * (firstRow + 0) / rowDivisor;
+				r[1] = rowMultiplier * (firstRow + 1) / rowDivisor;
+				r[2] = rowMultiplier * (firstRow + 2) / rowDivisor;
+				r[3] = rowMultiplier * (firstRow + 3) / rowDivisor;
 
 				for (int col = 0; col < cols; col++)
 				{
@@ -266,74 +199,43 @@ public class RibbonTiler
 					//if lastRows == 1: 0,1,2,3 / 4,5,6,7
 					//            else: 0,1,0,1 / 2,3,2,3
 
-					File imageFile = tileFile(levelDir, row, col, context.getFormat());
-					if (imageFile.exists())
-					{
-						continue;
-					}
-
 					int firstCol = col * (lastRows == 1 ? 4 : 2);
-					int c0 = colMultiplier * (firstCol);
-					int c1 = colMultiplier * (firstCol + 1);
-					int c2 = colMultiplier * (firstCol + colDelta);
-					int c3 = colMultiplier * (firstCol + colDelta + 1);
-
-					File src0 = tileFile(lastLevelDir, r0, c0, context.getFormat());
-					File src1 = tileFile(lastLevelDir, r1, c1, context.getFormat());
-					File src2 = tileFile(lastLevelDir, r2, c2, context.getFormat());
-					File src3 = tileFile(lastLevelDir, r3, c3, context.getFormat());
-
-					BufferedImage img0 = src0.exists() ? ImageIO.read(src0) : null;
-					BufferedImage img1 = src1.exists() ? ImageIO.read(src1) : null;
-					BufferedImage img2 = src2.exists() ? ImageIO.read(src2) : null;
-					BufferedImage img3 = src3.exists() ? ImageIO.read(src3) : null;
-
-					int w0 = img0 == null ? 0 : (img0.getWidth() + 1) / 2;
-					int w1 = img1 == null ? 0 : (img1.getWidth() + 1) / 2;
-					int w2 = img2 == null ? 0 : (img2.getWidth() + 1) / 2;
-					int w3 = img3 == null ? 0 : (img3.getWidth() + 1) / 2;
-					int h0 = img0 == null ? 0 : (img0.getHeight() + 1) / 2;
-					int h1 = img1 == null ? 0 : (img1.getHeight() + 1) / 2;
-					int h2 = img2 == null ? 0 : (img2.getHeight() + 1) / 2;
-					int h3 = img3 == null ? 0 : (img3.getHeight() + 1) / 2;
-
-					int w = w0 + (lastCols == 1 ? 0 : w1) + (lastRows == 1 ? w2 + w3 : 0);
-					int h = h0 + (lastRows == 1 ? 0 : h2) + (lastCols == 1 ? h1 + h3 : 0);
-
-					int type = context.isMask() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
-					BufferedImage image = new BufferedImage(w, h, type);
-					Graphics2D g = image.createGraphics();
-					g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-
-					int x = 0;
-					int y = 0;
-					if (img0 != null)
+					int[] c = new int[4];
+					c[0] = colMultiplier * (firstCol);
+					c[1] = colMultiplier * (firstCol + 1);
+					c[2] = colMultiplier * (firstCol + colDelta);
+					c[3] = colMultiplier * (firstCol + colDelta + 1);
+
+					File[] sources = new File[4];
+					for (int i = 0; i < 4; i++)
 					{
-						g.drawImage(img0, x, y, w0, h0, null);
+						sources[i] = tileFile(lastLevelDir, r[i], c[i], context.getFormat());
 					}
-					x += lastCols == 1 ? 0 : w0;
-					y += lastCols == 1 ? h0 : 0;
-					if (img1 != null)
-					{
-						g.drawImage(img1, x, y, w1, h1, null);
-					}
-					x += lastCols == 1 ? 0 : lastRows == 1 ? w1 : -w0;
-					y += lastCols == 1 ? h1 : lastRows == 1 ? 0 : h0;
-					if (img2 != null)
-					{
-						g.drawImage(img2, x, y, w2, h2, null);
-					}
-					x += lastCols == 1 ? 0 : w2;
-					y += lastCols == 1 ? h2 : 0;
-					if (img3 != null)
+
+					File imageFile = tileFile(levelDir, row, col, context.getFormat());
+					Task task =
+							scheduler.add(levels - 1 - level, new OverviewTile(context, imageFile, sources, lastRows,
+									lastCols));
+					for (int i = 0; i < 4; i++)
 					{
-						g.drawImage(img3, x, y, w3, h3, null);
+						if (r[i] < lastRows && c[i] < lastCols)
+						{
+							scheduler.addDependency(task, lastTasks[r[i]][c[i]]);
+						}
 					}
-
-					g.dispose();
-					ImageIO.write(image, context.getFormat(), imageFile);
+					tasks[row][col] = task;
 				}
 			}
+			lastTasks = tasks;
+		}
+
+		try
+		{
+			scheduler.run();
+		}
+		finally
+		{
+			datasets.close();
 		}
 
 		if (context.isCopySource())
@@ -358,6 +260,200 @@ public class RibbonTiler
 		}
 	}
 
+	/**
+	 * Creates a top level tile by reading a region of the source dataset.
+	 */
+	private static class TopLevelTile implements Callable<Void>
+	{
+		private final RibbonTilingContext context;
+		private final DatasetPool datasets;
+		private final File imageFile;
+		private final Rectangle region;
+		private final int[] constantPixelsFromTop;
+		private final int[] constantPixelsFromBottom;
+		private final int width;
+		private final int height;
+
+		public TopLevelTile(RibbonTilingContext context, DatasetPool datasets, File imageFile, Rectangle region,
+				int[] constantPixelsFromTop, int[] constantPixelsFromBottom, int width, int height)
+		{
+			this.context = context;
+			this.datasets = datasets;
+			this.imageFile = imageFile;
+			this.region = region;
+			this.constantPixelsFromTop = constantPixelsFromTop;
+			this.constantPixelsFromBottom = constantPixelsFromBottom;
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public Void call() throws Exception
+		{
+			if (imageFile.exists())
+			{
+				return null;
+			}
+			imageFile.getParentFile().mkdirs();
+
+			Rectangle src =
+					new Rectangle(region.x + context.getInsets().left, region.y + context.getInsets().top,
+							region.width, region.height);
+			GDALTileParameters parameters = new GDALTileParameters(datasets.get(), src.getSize(), src);
+			GDALTile tile = new GDALTile(parameters);
+
+			BufferedImage image;
+			TilingMetrics metrics = TilingMetrics.current();
+			long start = metrics.begin(Stage.PostProcess);
+			try
+			{
+				image = tile.getAsImage();
+				if (context.isRemoveConstantColumns())
+				{
+					image =
+							removeConstantColumns(image, constantPixelsFromTop, constantPixelsFromBottom, region.x,
+									region.y, width, height, context.isMask());
+				}
+			}
+			finally
+			{
+				metrics.end(Stage.PostProcess, start);
+			}
+
+			writeTile(image, context, imageFile);
+			return null;
+		}
+	}
+
+	/**
+	 * Creates an overview tile by combining and downsampling the (up to) four
+	 * tiles it covers in the level above.
+	 */
+	private static class OverviewTile implements Callable<Void>
+	{
+		private final RibbonTilingContext context;
+		private final File imageFile;
+		private final File[] sources;
+		private final int lastRows;
+		private final int lastCols;
+
+		public OverviewTile(RibbonTilingContext context, File imageFile, File[] sources, int lastRows, int lastCols)
+		{
+			this.context = context;
+			this.imageFile = imageFile;
+			this.sources = sources;
+			this.lastRows = lastRows;
+			this.lastCols = lastCols;
+		}
+
+		@Override
+		public Void call() throws Exception
+		{
+			if (imageFile.exists())
+			{
+				return null;
+			}
+			imageFile.getParentFile().mkdirs();
+
+			BufferedImage image;
+			TilingMetrics metrics = TilingMetrics.current();
+			long start = metrics.begin(Stage.Overview);
+			try
+			{
+				image = combine();
+			}
+			finally
+			{
+				metrics.end(Stage.Overview, start);
+			}
+			writeTile(image, context, imageFile);
+			return null;
+		}
+
+		private BufferedImage combine() throws IOException
+		{
+			BufferedImage img0 = sources[0].exists() ? ImageIO.read(sources[0]) : null;
+			BufferedImage img1 = sources[1].exists() ? ImageIO.read(sources[1]) : null;
+			BufferedImage img2 = sources[2].exists() ? ImageIO.read(sources[2]) : null;
+			BufferedImage img3 = sources[3].exists() ? ImageIO.read(sources[3]) : null;
+
+			int w0 = img0 == null ? 0 : (img0.getWidth() + 1) / 2;
+			int w1 = img1 == null ? 0 : (img1.getWidth() + 1) / 2;
+			int w2 = img2 == null ? 0 : (img2.getWidth() + 1) / 2;
+			int w3 = img3 == null ? 0 : (img3.getWidth() + 1) / 2;
+			int h0 = img0 == null ? 0 : (img0.getHeight() + 1) / 2;
+			int h1 = img1 == null ? 0 : (img1.getHeight() + 1) / 2;
+			int h2 = img2 == null ? 0 : (img2.getHeight() + 1) / 2;
+			int h3 = img3 == null ? 0 : (img3.getHeight() + 1) / 2;
+
+			int w = w0 + (lastCols == 1 ? 0 : w1) + (lastRows == 1 ? w2 + w3 : 0);
+			int h = h0 + (lastRows == 1 ? 0 : h2) + (lastCols == 1 ? h1 + h3 : 0);
+
+			int type = context.isMask() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+			BufferedImage image = new BufferedImage(w, h, type);
+			Graphics2D g = image.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+			int x = 0;
+			int y = 0;
+			if (img0 != null)
+			{
+				g.drawImage(img0, x, y, w0, h0, null);
+			}
+			x += lastCols == 1 ? 0 : w0;
+			y += lastCols == 1 ? h0 : 0;
+			if (img1 != null)
+			{
+				g.drawImage(img1, x, y, w1, h1, null);
+			}
+			x += lastCols == 1 ? 0 : lastRows == 1 ? w1 : -w0;
+			y += lastCols == 1 ? h1 : lastRows == 1 ? 0 : h0;
+			if (img2 != null)
+			{
+				g.drawImage(img2, x, y, w2, h2, null);
+			}
+			x += lastCols == 1 ? 0 : w2;
+			y += lastCols == 1 ? h2 : 0;
+			if (img3 != null)
+			{
+				g.drawImage(img3, x, y, w3, h3, null);
+			}
+
+			g.dispose();
+			return image;
+		}
+	}
+
+	private static void writeTile(BufferedImage image, RibbonTilingContext context, File imageFile)
+			throws IOException
+	{
+		TilingMetrics metrics = TilingMetrics.current();
+		byte[] bytes;
+		long start = metrics.begin(Stage.Encode);
+		try
+		{
+			bytes =
+					ImageEncoder.encode(image, context.getFormat(), DEFAULT_JPEG_QUALITY,
+							ImageEncoder.getDefaultPngMode());
+		}
+		finally
+		{
+			metrics.end(Stage.Encode, start);
+		}
+
+		//written to a temporary file and renamed, so a tile left by a killed job isn't skipped on resume
+		start = metrics.begin(Stage.Write);
+		try
+		{
+			ImageWritePipeline.writeFile(imageFile, bytes);
+		}
+		finally
+		{
+			metrics.end(Stage.Write, start);
+		}
+		metrics.tileWritten();
+	}
+
 	private void printLevelsSummary(RibbonTilingContext context, int width, int height, int levels)
 	{
 		int printWidth = width, printHeight = height;
@@ -423,7 +519,7 @@ public class RibbonTiler
 		return newImage;
 	}
 
-	private static void log(RibbonTilingContext context, String msg, boolean addToTilingLog)
+	static synchronized void log(RibbonTilingContext context, String msg, boolean addToTilingLog)
 	{
 		try
 		{
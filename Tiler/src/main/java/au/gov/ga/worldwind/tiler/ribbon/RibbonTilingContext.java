@@ -27,6 +27,7 @@ import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
+import au.gov.ga.worldwind.tiler.util.TilingMetrics;
 import au.gov.ga.worldwind.tiler.util.Util;
 
 import com.beust.jcommander.Parameter;
@@ -55,6 +56,8 @@ public class RibbonTilingContext {
 	@Parameter(names="-format", description="Override the output format")
 	private String format = null;
 	private int numLevels;
+	@Parameter(names="-threads", description="The number of threads to use when tiling (defaults to the number of processors, or the job's share when run in a batch)")
+	private int threadCount = TilingMetrics.current().getThreadCount();
 	
 	// Flags
 	@Parameter(names="-removeConstantColumns", description="Remove constant colour from the top and bottom of the image")
@@ -474,6 +477,16 @@ public class RibbonTilingContext {
 		return elementCreatorClasses;
 	}
 
+	public int getThreadCount()
+	{
+		return Math.max(1, threadCount);
+	}
+
+	public void setThreadCount(int threadCount)
+	{
+		this.threadCount = threadCount;
+	}
+
 	public boolean isRemoveConstantColumns()
 	{
 		return removeConstantColumns;
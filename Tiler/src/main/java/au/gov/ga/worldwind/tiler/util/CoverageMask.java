@@ -0,0 +1,504 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import static au.gov.ga.worldwind.tiler.util.BufferUtil.getDoubleValue;
+import static au.gov.ga.worldwind.tiler.util.BufferUtil.getLongValue;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.gdal.gdal.Dataset;
+import org.gdal.gdalconst.gdalconstConstants;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.opengis.feature.simple.SimpleFeature;
+
+import au.gov.ga.worldwind.tiler.gdal.GDALTile;
+import au.gov.ga.worldwind.tiler.gdal.GDALTileParameters;
+import au.gov.ga.worldwind.tiler.gdal.GDALUtil;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Low resolution mask of the parts of a sector that contain data. Used by the
+ * {@link au.gov.ga.worldwind.tiler.application.Tiler} to skip tiles that would
+ * be blank without reading them from the dataset.
+ * <p/>
+ * The mask can be calculated from the dataset itself (pixels equal to the
+ * nodata values, or with a zero alpha, are considered empty), or from a
+ * footprint shapefile containing polygons of the dataset's coverage (in
+ * geographic coordinates).
+ * <p/>
+ * When calculating from a dataset, the dataset is read at (up to
+ * {@link #MAX_OVERSAMPLE} times) the mask resolution, at about the dataset's
+ * own resolution, and a cell is valid if any pixel within it is valid. Narrow
+ * features (lines, thin coastal strips) therefore still mark the cells they
+ * cross as valid. Each cell is also grown by {@link #MARGIN} cells when
+ * testing for intersection, so that tiles on the edges of the coverage aren't
+ * skipped.
+ */
+public class CoverageMask
+{
+	/**
+	 * Number of cells each valid cell is grown by when testing for
+	 * intersection.
+	 */
+	public final static int MARGIN = 1;
+
+	/**
+	 * Number of mask cells across each tile at the tiling level (when the mask
+	 * size isn't limited by {@link #MAX_SIZE}).
+	 */
+	private final static int CELLS_PER_TILE = 4;
+
+	/**
+	 * Maximum width/height of the mask.
+	 */
+	private final static int MAX_SIZE = 4096;
+
+	/**
+	 * Maximum number of dataset pixels read across each mask cell when
+	 * calculating the mask from a dataset.
+	 */
+	private final static int MAX_OVERSAMPLE = 64;
+
+	/**
+	 * Maximum number of pixels read from the dataset at once when calculating
+	 * the mask from a dataset.
+	 */
+	private final static int MAX_CHUNK_PIXELS = 1 << 22;
+
+	private final Sector sector;
+	private final int width;
+	private final int height;
+	private final boolean[] valid;
+
+	/**
+	 * @param sector
+	 *            Sector covered by the mask
+	 * @param width
+	 *            Number of cells in the longitude direction
+	 * @param height
+	 *            Number of cells in the latitude direction
+	 * @param valid
+	 *            Cell values (true if the cell contains data), in rows from
+	 *            north to south
+	 */
+	public CoverageMask(Sector sector, int width, int height, boolean[] valid)
+	{
+		if (valid.length != width * height)
+		{
+			throw new IllegalArgumentException("Array size does not equal mask size");
+		}
+		this.sector = sector;
+		this.width = width;
+		this.height = height;
+		this.valid = valid;
+	}
+
+	/**
+	 * Calculate a suitable mask size for tiling the given sector at the given
+	 * level.
+	 *
+	 * @param sector
+	 *            Sector being tiled
+	 * @param level
+	 *            Level being tiled
+	 * @param lzts
+	 *            Level zero tile size (in degrees)
+	 * @return Mask size
+	 */
+	public static Dimension calculateSize(Sector sector, int level, double lzts)
+	{
+		double cellsize = Math.pow(0.5, level) * lzts / CELLS_PER_TILE;
+		double w = Math.ceil(sector.getDeltaLongitude() / cellsize);
+		double h = Math.ceil(sector.getDeltaLatitude() / cellsize);
+		double scale = Math.min(1d, MAX_SIZE / Math.max(w, h));
+		return new Dimension(Math.max(1, (int) Math.ceil(w * scale)), Math.max(1, (int) Math.ceil(h * scale)));
+	}
+
+	/**
+	 * Create a mask by reading the dataset at about its own resolution (up to
+	 * {@link #MAX_OVERSAMPLE} pixels per cell), in chunks of cells of up to
+	 * {@link #MAX_CHUNK_PIXELS} pixels. A cell is valid if any pixel read
+	 * within it is valid.
+	 *
+	 * @param dataset
+	 *            Dataset to read
+	 * @param sector
+	 *            Sector to create the mask for
+	 * @param size
+	 *            Mask size
+	 * @param reprojectIfRequired
+	 *            If the dataset isn't in WGS84, should it be reprojected?
+	 * @param addAlpha
+	 *            Is an alpha channel being added to the tiles?
+	 * @param noData
+	 *            Values that represent no data (for each band), may be null
+	 * @return Coverage mask, or null if the dataset has no nodata values or
+	 *         alpha band to calculate the coverage from
+	 * @throws Exception
+	 *             If the dataset cannot be read
+	 */
+	public static CoverageMask fromDataset(Dataset dataset, Sector sector, Dimension size,
+			boolean reprojectIfRequired, boolean addAlpha, NullableNumberArray noData) throws Exception
+	{
+		return fromDataset(dataset, sector, size, reprojectIfRequired, addAlpha, noData, MAX_CHUNK_PIXELS);
+	}
+
+	/**
+	 * @param maxChunkPixels
+	 *            Maximum number of pixels read from the dataset at once
+	 * @see #fromDataset(Dataset, Sector, Dimension, boolean, boolean,
+	 *      NullableNumberArray)
+	 */
+	static CoverageMask fromDataset(Dataset dataset, Sector sector, Dimension size, boolean reprojectIfRequired,
+			boolean addAlpha, NullableNumberArray noData, int maxChunkPixels) throws Exception
+	{
+		int bandCount = dataset.getRasterCount();
+		int lastBandInterpretation = dataset.GetRasterBand(bandCount).GetRasterColorInterpretation();
+		boolean hasAlpha = (addAlpha && bandCount == 3) || lastBandInterpretation == gdalconstConstants.GCI_AlphaBand;
+		if (!hasAlpha && !hasValues(noData))
+		{
+			return null;
+		}
+
+		//split wide masks into chunks of columns as well as rows, so that no chunk exceeds the pixel limit
+		int oversample = calculateOversample(dataset, sector, size);
+		int cellPixels = oversample * oversample;
+		int columnsPerChunk = Math.max(1, Math.min(size.width, maxChunkPixels / cellPixels));
+		int rowsPerChunk = Math.max(1, maxChunkPixels / (columnsPerChunk * cellPixels));
+		double cellWidth = sector.getDeltaLongitude() / size.width;
+		double cellHeight = sector.getDeltaLatitude() / size.height;
+
+		boolean[] valid = new boolean[size.width * size.height];
+		for (int row = 0; row < size.height; row += rowsPerChunk)
+		{
+			int rows = Math.min(rowsPerChunk, size.height - row);
+			for (int column = 0; column < size.width; column += columnsPerChunk)
+			{
+				int columns = Math.min(columnsPerChunk, size.width - column);
+				Sector chunk =
+						new Sector(sector.getMaxLatitude() - (row + rows) * cellHeight, sector.getMinLongitude()
+								+ column * cellWidth, sector.getMaxLatitude() - row * cellHeight,
+								sector.getMinLongitude() + (column + columns) * cellWidth);
+				Dimension chunkSize = new Dimension(columns * oversample, rows * oversample);
+
+				GDALTileParameters parameters = new GDALTileParameters(dataset, chunkSize, chunk);
+				parameters.addAlpha = addAlpha;
+				parameters.reprojectIfRequired = reprojectIfRequired;
+				parameters.bilinearInterpolationIfRequired = false;
+				parameters.noData = noData;
+				GDALTile tile = new GDALTile(parameters);
+
+				markValidCells(tile, chunkSize, hasAlpha, noData, oversample, valid, row * size.width + column,
+						size.width);
+			}
+		}
+		return new CoverageMask(sector, size.width, size.height, valid);
+	}
+
+	/**
+	 * Calculate the number of pixels to read across each mask cell, so that
+	 * the dataset is read at about its own resolution.
+	 */
+	private static int calculateOversample(Dataset dataset, Sector sector, Dimension size)
+	{
+		try
+		{
+			Sector datasetSector = GDALUtil.getSector(dataset);
+			double pixelSize =
+					Math.min(datasetSector.getDeltaLongitude() / dataset.getRasterXSize(),
+							datasetSector.getDeltaLatitude() / dataset.getRasterYSize());
+			double cellSize =
+					Math.min(sector.getDeltaLongitude() / size.width, sector.getDeltaLatitude() / size.height);
+			if (pixelSize > 0)
+			{
+				return Math.max(1, Math.min(MAX_OVERSAMPLE, (int) Math.ceil(cellSize / pixelSize)));
+			}
+		}
+		catch (TilerException e)
+		{
+			//can't calculate the dataset resolution, so use the maximum
+		}
+		return MAX_OVERSAMPLE;
+	}
+
+	/**
+	 * Mark the cells containing valid pixels in the tile as valid.
+	 * 
+	 * @param offset
+	 *            Index of the first cell covered by the tile
+	 * @param stride
+	 *            Number of cells in each row of the mask
+	 */
+	private static void markValidCells(GDALTile tile, Dimension tileSize, boolean hasAlpha,
+			NullableNumberArray noData, int oversample, boolean[] valid, int offset, int stride)
+	{
+		ByteBuffer buffer = tile.getBuffer();
+		int bands = tile.getBandCount();
+		int bufferType = tile.getBufferType();
+		int typeSize = tile.getBufferTypeSize();
+		boolean floatingPoint = tile.isFloatingPoint();
+		int pixels = tileSize.width * tileSize.height;
+		if (!hasValues(noData) || noData.length() != bands)
+		{
+			noData = null;
+		}
+
+		for (int i = 0; i < pixels; i++)
+		{
+			int cell = offset + (i / tileSize.width / oversample) * stride + (i % tileSize.width) / oversample;
+			if (valid[cell])
+			{
+				continue;
+			}
+			if (hasAlpha)
+			{
+				int index = ((bands - 1) * pixels + i) * typeSize;
+				double alpha =
+						floatingPoint ? getDoubleValue(index, buffer, bufferType) : getLongValue(index, buffer,
+								bufferType);
+				if (alpha == 0)
+				{
+					continue;
+				}
+			}
+			valid[cell] =
+					noData == null || !isNoData(buffer, i, pixels, bands, bufferType, typeSize, floatingPoint, noData);
+		}
+	}
+
+	/**
+	 * Create a mask from the polygons in a footprint shapefile. The shapefile
+	 * must be in geographic coordinates.
+	 *
+	 * @param footprint
+	 *            Shapefile containing the coverage polygons
+	 * @param sector
+	 *            Sector to create the mask for
+	 * @param size
+	 *            Mask size
+	 * @return Coverage mask
+	 * @throws Exception
+	 *             If the shapefile cannot be read
+	 */
+	public static CoverageMask fromFootprint(File footprint, Sector sector, Dimension size) throws Exception
+	{
+		Path2D path = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+		ShapefileDataStore dataStore = null;
+		try
+		{
+			ShapefileDataStoreFactory factory = new ShapefileDataStoreFactory();
+			dataStore = (ShapefileDataStore) factory.createDataStore(footprint.toURI().toURL());
+			SimpleFeatureIterator iterator = dataStore.getFeatureSource().getFeatures().features();
+			try
+			{
+				while (iterator.hasNext())
+				{
+					SimpleFeature feature = iterator.next();
+					addToPath(path, (Geometry) feature.getDefaultGeometry());
+				}
+			}
+			finally
+			{
+				iterator.close();
+			}
+		}
+		finally
+		{
+			if (dataStore != null)
+				dataStore.dispose();
+		}
+
+		//draw the polygons into an image, with the outline stroked so that any cell touched by the footprint is valid
+		BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics2D g = image.createGraphics();
+		g.transform(new AffineTransform(size.width / sector.getDeltaLongitude(), 0, 0, -size.height
+				/ sector.getDeltaLatitude(), -sector.getMinLongitude() * size.width / sector.getDeltaLongitude(),
+				sector.getMaxLatitude() * size.height / sector.getDeltaLatitude()));
+		g.setColor(Color.white);
+		g.fill(path);
+		g.setStroke(new BasicStroke((float) (sector.getDeltaLongitude() / size.width)));
+		g.draw(path);
+		g.dispose();
+
+		Raster raster = image.getRaster();
+		boolean[] valid = new boolean[size.width * size.height];
+		for (int y = 0; y < size.height; y++)
+		{
+			for (int x = 0; x < size.width; x++)
+			{
+				valid[y * size.width + x] = raster.getSample(x, y, 0) != 0;
+			}
+		}
+		return new CoverageMask(sector, size.width, size.height, valid);
+	}
+
+	/**
+	 * Does the given sector intersect any valid cells in this mask (grown by
+	 * {@link #MARGIN} cells)?
+	 *
+	 * @param s
+	 *            Sector to test
+	 * @return True if the sector may contain data
+	 */
+	public boolean intersects(Sector s)
+	{
+		double cellWidth = sector.getDeltaLongitude() / width;
+		double cellHeight = sector.getDeltaLatitude() / height;
+		int minX = (int) Math.floor((s.getMinLongitude() - sector.getMinLongitude()) / cellWidth) - MARGIN;
+		int maxX = (int) Math.ceil((s.getMaxLongitude() - sector.getMinLongitude()) / cellWidth) - 1 + MARGIN;
+		int minY = (int) Math.floor((sector.getMaxLatitude() - s.getMaxLatitude()) / cellHeight) - MARGIN;
+		int maxY = (int) Math.ceil((sector.getMaxLatitude() - s.getMinLatitude()) / cellHeight) - 1 + MARGIN;
+
+		minX = Math.max(minX, 0);
+		minY = Math.max(minY, 0);
+		maxX = Math.min(maxX, width - 1);
+		maxY = Math.min(maxY, height - 1);
+
+		for (int y = minY; y <= maxY; y++)
+		{
+			for (int x = minX; x <= maxX; x++)
+			{
+				if (valid[y * width + x])
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return Does the cell at the given column and row (from the north-west
+	 *         corner) contain data?
+	 */
+	boolean isValid(int x, int y)
+	{
+		return valid[y * width + x];
+	}
+
+	/**
+	 * @return Fraction of the mask cells that contain data
+	 */
+	public double getCoverage()
+	{
+		int count = 0;
+		for (boolean v : valid)
+		{
+			if (v)
+				count++;
+		}
+		return count / (double) valid.length;
+	}
+
+	private static boolean hasValues(NullableNumberArray values)
+	{
+		if (values == null)
+		{
+			return false;
+		}
+		for (int b = 0; b < values.length(); b++)
+		{
+			if (values.getDouble(b) != null)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isNoData(ByteBuffer buffer, int pixel, int pixels, int bands, int bufferType,
+			int typeSize, boolean floatingPoint, NullableNumberArray noData)
+	{
+		for (int b = 0; b < bands; b++)
+		{
+			int index = (b * pixels + pixel) * typeSize;
+			if (floatingPoint)
+			{
+				Double value = noData.getDouble(b);
+				if (value != null && getDoubleValue(index, buffer, bufferType) != value)
+				{
+					return false;
+				}
+			}
+			else
+			{
+				Long value = noData.getLong(b);
+				if (value != null && getLongValue(index, buffer, bufferType) != value)
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static void addToPath(Path2D path, Geometry geometry)
+	{
+		if (geometry == null)
+		{
+			return;
+		}
+		if (geometry instanceof Polygon)
+		{
+			Polygon polygon = (Polygon) geometry;
+			addToPath(path, polygon.getExteriorRing());
+			for (int i = 0; i < polygon.getNumInteriorRing(); i++)
+			{
+				addToPath(path, polygon.getInteriorRingN(i));
+			}
+		}
+		else if (geometry instanceof LineString)
+		{
+			Coordinate[] coordinates = ((LineString) geometry).getCoordinates();
+			for (int i = 0; i < coordinates.length; i++)
+			{
+				if (i == 0)
+					path.moveTo(coordinates[i].x, coordinates[i].y);
+				else
+					path.lineTo(coordinates[i].x, coordinates[i].y);
+			}
+			path.closePath();
+		}
+		else
+		{
+			//multi geometries and geometry collections
+			for (int i = 0; i < geometry.getNumGeometries(); i++)
+			{
+				Geometry child = geometry.getGeometryN(i);
+				if (child != geometry)
+				{
+					addToPath(path, child);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Minimal PNG writer that compresses with a {@link Deflater} at a given
+ * compression level. The JDK's PNG {@link javax.imageio.ImageWriter} doesn't
+ * support setting the compression level (before Java 9), so this is used for
+ * {@link ImageEncoder.PngMode#Fast}.
+ * <p/>
+ * Images are written as 8 bit RGB, or RGBA if the image has an alpha channel,
+ * with the Sub filter applied to every row.
+ */
+class DeflaterPngWriter
+{
+	private final static byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+	private final static int FILTER_SUB = 1;
+
+	private final int level;
+
+	/**
+	 * @param level
+	 *            Deflate compression level (0-9)
+	 */
+	DeflaterPngWriter(int level)
+	{
+		this.level = level;
+	}
+
+	/**
+	 * Write the image as a PNG to the stream.
+	 */
+	void write(BufferedImage image, ImageOutputStream ios) throws IOException
+	{
+		int width = image.getWidth();
+		int height = image.getHeight();
+		boolean alpha = image.getColorModel().hasAlpha();
+		int channels = alpha ? 4 : 3;
+
+		ios.write(SIGNATURE);
+
+		byte[] header = new byte[13];
+		putInt(header, 0, width);
+		putInt(header, 4, height);
+		header[8] = 8; //bit depth
+		header[9] = (byte) (alpha ? 6 : 2); //colour type
+		writeChunk(ios, "IHDR", header, header.length);
+
+		Deflater deflater = new Deflater(level);
+		try
+		{
+			ByteArrayOutputStream idat = new ByteArrayOutputStream();
+			byte[] buffer = new byte[64 * 1024];
+			int[] argb = new int[width];
+			byte[] row = new byte[1 + width * channels];
+			row[0] = FILTER_SUB;
+			for (int y = 0; y < height; y++)
+			{
+				image.getRGB(0, y, width, 1, argb, 0, width);
+				int previousR = 0, previousG = 0, previousB = 0, previousA = 0;
+				for (int x = 0, i = 1; x < width; x++)
+				{
+					int color = argb[x];
+					int r = (color >> 16) & 0xff, g = (color >> 8) & 0xff, b = color & 0xff;
+					row[i++] = (byte) (r - previousR);
+					row[i++] = (byte) (g - previousG);
+					row[i++] = (byte) (b - previousB);
+					previousR = r;
+					previousG = g;
+					previousB = b;
+					if (alpha)
+					{
+						int a = color >>> 24;
+						row[i++] = (byte) (a - previousA);
+						previousA = a;
+					}
+				}
+				deflater.setInput(row);
+				while (!deflater.needsInput())
+				{
+					int count = deflater.deflate(buffer);
+					idat.write(buffer, 0, count);
+				}
+			}
+			deflater.finish();
+			while (!deflater.finished())
+			{
+				int count = deflater.deflate(buffer);
+				idat.write(buffer, 0, count);
+			}
+			writeChunk(ios, "IDAT", idat.toByteArray(), idat.size());
+		}
+		finally
+		{
+			deflater.end();
+		}
+
+		writeChunk(ios, "IEND", new byte[0], 0);
+	}
+
+	private static void writeChunk(ImageOutputStream ios, String type, byte[] data, int length) throws IOException
+	{
+		byte[] typeBytes = type.getBytes("US-ASCII");
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+
+		ios.writeInt(length);
+		ios.write(typeBytes);
+		ios.write(data, 0, length);
+		ios.writeInt((int) crc.getValue());
+	}
+
+	private static void putInt(byte[] array, int offset, int value)
+	{
+		array[offset] = (byte) (value >>> 24);
+		array[offset + 1] = (byte) (value >>> 16);
+		array[offset + 2] = (byte) (value >>> 8);
+		array[offset + 3] = (byte) value;
+	}
+}
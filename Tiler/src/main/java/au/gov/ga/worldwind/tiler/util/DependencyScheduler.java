@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a graph of tasks on a thread pool, starting each task as soon as all of
+ * the tasks it depends on have completed. Used for generating overview tiles
+ * as soon as their child tiles exist, rather than waiting for the whole level
+ * to finish.
+ * <p/>
+ * When more than one task is ready to run, tasks with a higher priority are
+ * run first, followed by tasks in the order they were added.
+ */
+public class DependencyScheduler
+{
+	private final int threadCount;
+	private final List<Task> tasks = new ArrayList<Task>();
+	private final AtomicInteger sequence = new AtomicInteger();
+
+	private ThreadPoolExecutor executor;
+	private CountDownLatch remaining;
+	private volatile Exception failure;
+
+	/**
+	 * @param threadCount
+	 *            Number of threads to run tasks on
+	 */
+	public DependencyScheduler(int threadCount)
+	{
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+	/**
+	 * Add a task to the graph. Must be called before {@link #run()}.
+	 *
+	 * @param priority
+	 *            Tasks with a higher priority are run first
+	 * @param work
+	 *            Work to perform
+	 * @return Task added
+	 */
+	public Task add(int priority, Callable<?> work)
+	{
+		Task task = new Task(priority, sequence.getAndIncrement(), work);
+		tasks.add(task);
+		return task;
+	}
+
+	/**
+	 * Make the dependent task wait for the dependency to complete before
+	 * running.
+	 *
+	 * @param dependent
+	 * @param dependency
+	 */
+	public void addDependency(Task dependent, Task dependency)
+	{
+		if (dependent == dependency || dependency.dependents.contains(dependent))
+		{
+			return;
+		}
+		dependency.dependents.add(dependent);
+		dependent.dependencies.incrementAndGet();
+	}
+
+	/**
+	 * Run all tasks, blocking until they have completed. If any task fails,
+	 * no further tasks are started and the first failure is thrown once the
+	 * running tasks have finished.
+	 *
+	 * @throws Exception
+	 */
+	public void run() throws Exception
+	{
+		executor =
+				new ThreadPoolExecutor(threadCount, threadCount, 0, TimeUnit.MILLISECONDS,
+						new PriorityBlockingQueue<Runnable>());
+		remaining = new CountDownLatch(tasks.size());
+		try
+		{
+			for (Task task : tasks)
+			{
+				if (task.dependencies.get() == 0)
+				{
+					executor.execute(task);
+				}
+			}
+			while (!remaining.await(100, TimeUnit.MILLISECONDS))
+			{
+				if (failure != null)
+				{
+					break;
+				}
+			}
+		}
+		finally
+		{
+			//wait for any running tasks to finish, so callers can release shared resources
+			executor.shutdownNow();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		if (failure != null)
+		{
+			throw failure;
+		}
+	}
+
+	private void completed(Task task)
+	{
+		remaining.countDown();
+		for (Task dependent : task.dependents)
+		{
+			if (dependent.dependencies.decrementAndGet() == 0 && failure == null && !executor.isShutdown())
+			{
+				try
+				{
+					executor.execute(dependent);
+				}
+				catch (RejectedExecutionException e)
+				{
+					//the executor was shut down (after a failure or interrupt) while this task was running
+				}
+			}
+		}
+	}
+
+	/**
+	 * A node in the task graph.
+	 */
+	public class Task implements Runnable, Comparable<Task>
+	{
+		private final int priority;
+		private final int order;
+		private final Callable<?> work;
+		private final AtomicInteger dependencies = new AtomicInteger();
+		private final List<Task> dependents = new ArrayList<Task>();
+
+		private Task(int priority, int order, Callable<?> work)
+		{
+			this.priority = priority;
+			this.order = order;
+			this.work = work;
+		}
+
+		@Override
+		public void run()
+		{
+			if (failure != null)
+			{
+				return;
+			}
+			try
+			{
+				work.call();
+			}
+			catch (Throwable t)
+			{
+				if (failure == null)
+				{
+					failure = t instanceof Exception ? (Exception) t : new Exception(t);
+				}
+				return;
+			}
+			completed(this);
+		}
+
+		@Override
+		public int compareTo(Task o)
+		{
+			if (priority != o.priority)
+			{
+				return priority > o.priority ? -1 : 1;
+			}
+			return order < o.order ? -1 : order == o.order ? 0 : 1;
+		}
+	}
+}
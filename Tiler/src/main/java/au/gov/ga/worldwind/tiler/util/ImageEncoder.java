@@ -0,0 +1,326 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Encodes tile images using {@link ImageWriter}s that are looked up and
+ * configured once per thread and format, instead of once per tile.
+ * <p/>
+ * PNG output can be written in one of the {@link PngMode}s; the mode used when
+ * none is specified can be changed with {@link #setDefaultPngMode(PngMode)}.
+ */
+public class ImageEncoder
+{
+	/**
+	 * Enum of the PNG encoding presets.
+	 */
+	public enum PngMode
+	{
+		/**
+		 * The writer's default filtering and compression.
+		 */
+		Default,
+		/**
+		 * Lowest deflate compression level; larger files but much quicker to
+		 * encode. Written by a {@link DeflaterPngWriter}, as the JDK's PNG
+		 * writer doesn't support setting the compression level.
+		 */
+		Fast,
+		/**
+		 * Images with 256 or fewer distinct colours (such as masks) are
+		 * quantised to an indexed image before writing. Images with more
+		 * colours are written as per {@link #Fast}.
+		 */
+		Paletted
+	}
+
+	private final static DeflaterPngWriter fastPngWriter = new DeflaterPngWriter(Deflater.BEST_SPEED);
+
+	//inherited by child threads, so that concurrently running jobs can use different modes
+	private final static InheritableThreadLocal<PngMode> defaultPngMode = new InheritableThreadLocal<PngMode>()
+	{
+		@Override
+		protected PngMode initialValue()
+		{
+			return PngMode.Default;
+		}
+	};
+
+	private final static ThreadLocal<Map<String, CachedWriter>> writers =
+			new ThreadLocal<Map<String, CachedWriter>>()
+			{
+				@Override
+				protected Map<String, CachedWriter> initialValue()
+				{
+					return new HashMap<String, CachedWriter>();
+				}
+			};
+
+	/**
+	 * @return The {@link PngMode} used when one isn't explicitly provided
+	 */
+	public static PngMode getDefaultPngMode()
+	{
+		return defaultPngMode.get();
+	}
+
+	/**
+	 * Set the {@link PngMode} used by the current thread (and threads it
+	 * subsequently creates) when one isn't explicitly provided.
+	 *
+	 * @param mode
+	 */
+	public static void setDefaultPngMode(PngMode mode)
+	{
+		defaultPngMode.set(mode == null ? PngMode.Default : mode);
+	}
+
+	/**
+	 * Write the image to a file.
+	 *
+	 * @param image
+	 *            Image to write
+	 * @param format
+	 *            Image format (jpg, png, or any other format supported by
+	 *            {@link ImageIO})
+	 * @param file
+	 *            File to write to
+	 * @param jpegQuality
+	 *            JPEG compression quality (only used for jpg format)
+	 * @throws IOException
+	 */
+	public static void write(BufferedImage image, String format, File file, float jpegQuality) throws IOException
+	{
+		FileImageOutputStream ios = null;
+		try
+		{
+			ios = new FileImageOutputStream(file);
+			encode(image, format, jpegQuality, getDefaultPngMode(), ios);
+		}
+		finally
+		{
+			if (ios != null)
+				ios.close();
+		}
+	}
+
+	/**
+	 * Encode the image to a byte array.
+	 *
+	 * @param image
+	 *            Image to encode
+	 * @param format
+	 *            Image format
+	 * @param jpegQuality
+	 *            JPEG compression quality (only used for jpg format)
+	 * @param pngMode
+	 *            PNG encoding preset (only used for png format)
+	 * @return Encoded image bytes
+	 * @throws IOException
+	 */
+	public static byte[] encode(BufferedImage image, String format, float jpegQuality, PngMode pngMode)
+			throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		MemoryCacheImageOutputStream ios = new MemoryCacheImageOutputStream(baos);
+		try
+		{
+			encode(image, format, jpegQuality, pngMode, ios);
+		}
+		finally
+		{
+			ios.close();
+		}
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Encode the image to the given output stream, using this thread's cached
+	 * writer for the format.
+	 *
+	 * @param image
+	 *            Image to encode
+	 * @param format
+	 *            Image format
+	 * @param jpegQuality
+	 *            JPEG compression quality (only used for jpg format)
+	 * @param pngMode
+	 *            PNG encoding preset (only used for png format)
+	 * @param ios
+	 *            Stream to write the encoded image to
+	 * @throws IOException
+	 */
+	public static void encode(BufferedImage image, String format, float jpegQuality, PngMode pngMode,
+			ImageOutputStream ios) throws IOException
+	{
+		String key = format.toLowerCase();
+		boolean jpeg = "jpg".equals(key) || "jpeg".equals(key);
+		boolean png = "png".equals(key);
+		if (jpeg)
+		{
+			key = "jpeg";
+		}
+
+		if (png && pngMode != null && pngMode != PngMode.Default)
+		{
+			BufferedImage quantised = pngMode == PngMode.Paletted ? quantise(image) : null;
+			if (quantised == null)
+			{
+				fastPngWriter.write(image, ios);
+				return;
+			}
+			image = quantised;
+		}
+
+		CachedWriter cached = getWriter(key);
+		ImageWriteParam param = cached.param;
+		if (jpeg)
+		{
+			param.setCompressionQuality(jpegQuality);
+		}
+
+		ImageWriter writer = cached.writer;
+		try
+		{
+			writer.setOutput(ios);
+			writer.write(null, new IIOImage(image, null, null), param);
+		}
+		finally
+		{
+			writer.reset();
+		}
+	}
+
+	/**
+	 * Convert the image to an indexed image, if it contains 256 or fewer
+	 * distinct colours (including alpha).
+	 *
+	 * @param image
+	 *            Image to quantise
+	 * @return Indexed image, or null if the image has too many colours
+	 */
+	public static BufferedImage quantise(BufferedImage image)
+	{
+		if (image.getType() == BufferedImage.TYPE_BYTE_INDEXED || image.getType() == BufferedImage.TYPE_BYTE_BINARY)
+		{
+			return image;
+		}
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+
+		Map<Integer, Integer> palette = new HashMap<Integer, Integer>();
+		int[] colors = new int[256];
+		byte[] indices = new byte[argb.length];
+		int lastColor = 0, lastIndex = -1;
+		for (int i = 0; i < argb.length; i++)
+		{
+			int color = argb[i];
+			if (lastIndex < 0 || color != lastColor)
+			{
+				Integer index = palette.get(color);
+				if (index == null)
+				{
+					if (palette.size() >= colors.length)
+					{
+						return null;
+					}
+					index = palette.size();
+					palette.put(color, index);
+					colors[index] = color;
+				}
+				lastColor = color;
+				lastIndex = index;
+			}
+			indices[i] = (byte) lastIndex;
+		}
+
+		IndexColorModel colorModel =
+				new IndexColorModel(8, Math.max(palette.size(), 1), colors, 0, true, -1, DataBuffer.TYPE_BYTE);
+		BufferedImage indexed = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+		WritableRaster raster = indexed.getRaster();
+		raster.setDataElements(0, 0, width, height, indices);
+		return indexed;
+	}
+
+	private static CachedWriter getWriter(String format) throws IOException
+	{
+		Map<String, CachedWriter> map = writers.get();
+		CachedWriter cached = map.get(format);
+		if (cached == null)
+		{
+			Iterator<ImageWriter> iterator = ImageIO.getImageWritersByFormatName(format);
+			if (!iterator.hasNext())
+			{
+				throw new IOException("No image writer found for format: " + format);
+			}
+			ImageWriter writer = iterator.next();
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			if ("jpeg".equals(format))
+			{
+				param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+				if (param instanceof JPEGImageWriteParam)
+				{
+					((JPEGImageWriteParam) param).setOptimizeHuffmanTables(true);
+				}
+			}
+			cached = new CachedWriter(writer, param);
+			map.put(format, cached);
+		}
+		return cached;
+	}
+
+	/**
+	 * Writer and write param pair cached per thread.
+	 */
+	private static class CachedWriter
+	{
+		public final ImageWriter writer;
+		public final ImageWriteParam param;
+
+		public CachedWriter(ImageWriter writer, ImageWriteParam param)
+		{
+			this.writer = writer;
+			this.param = param;
+		}
+	}
+
+	private ImageEncoder()
+	{
+	}
+}
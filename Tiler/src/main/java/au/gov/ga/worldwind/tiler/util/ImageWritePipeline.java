@@ -0,0 +1,346 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import au.gov.ga.worldwind.tiler.util.ImageEncoder.PngMode;
+import au.gov.ga.worldwind.tiler.util.TilingMetrics.Stage;
+
+/**
+ * Two stage background pipeline for writing tile images. Images submitted are
+ * encoded by a pool of encoder threads, and the encoded bytes are written to
+ * disk by a single writer thread in submission order (so that tiling can still
+ * be resumed from the last tile file written).
+ * <p/>
+ * The number of images waiting to be written is bounded; {@link #submit} blocks
+ * when the pipeline is full, so the reading thread can't run too far ahead of
+ * the encoders.
+ * <p/>
+ * Failures are logged per tile, and the first failure is rethrown from
+ * {@link #submit} and {@link #close()}, so that callers stop instead of
+ * continuing (or blocking) on a pipeline that can't write.
+ */
+public class ImageWritePipeline
+{
+	private final static PendingWrite END = new PendingWrite(null, null);
+
+	private final Logger logger;
+	private final TilingMetrics metrics;
+	private final ExecutorService encoders;
+	private final BlockingQueue<PendingWrite> writeQueue;
+	private final Thread writerThread;
+	private volatile boolean closed = false;
+	private volatile Throwable failure;
+
+	/**
+	 * Create a pipeline with an encoder thread for each thread available to
+	 * the current job (see {@link TilingMetrics#getThreadCount()}).
+	 *
+	 * @param logger
+	 *            Logger to report write failures to
+	 */
+	public ImageWritePipeline(Logger logger)
+	{
+		this(TilingMetrics.current().getThreadCount(), TilingMetrics.current().getThreadCount() * 2, logger);
+	}
+
+	/**
+	 * @param encoderThreads
+	 *            Number of threads to encode images on
+	 * @param queueCapacity
+	 *            Maximum number of images waiting to be encoded/written
+	 * @param logger
+	 *            Logger to report write failures to
+	 */
+	public ImageWritePipeline(int encoderThreads, int queueCapacity, Logger logger)
+	{
+		this.logger = logger;
+		this.metrics = TilingMetrics.current();
+		this.encoders = Executors.newFixedThreadPool(Math.max(1, encoderThreads), new ThreadFactory()
+		{
+			private int count = 0;
+
+			@Override
+			public synchronized Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "Tile encoder " + (++count));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.writeQueue = new ArrayBlockingQueue<PendingWrite>(Math.max(1, queueCapacity));
+		this.writerThread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				writeLoop();
+			}
+		}, "Tile writer");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	/**
+	 * Submit an image to be encoded and written. Blocks if the pipeline is
+	 * full.
+	 *
+	 * @param image
+	 *            Image to write
+	 * @param format
+	 *            Image format
+	 * @param jpegQuality
+	 *            JPEG compression quality (only used for jpg format)
+	 * @param file
+	 *            File to write to
+	 * @throws InterruptedException
+	 * @throws IOException
+	 *             If a previously submitted image failed to be written
+	 */
+	public void submit(BufferedImage image, String format, float jpegQuality, File file)
+			throws InterruptedException, IOException
+	{
+		submit(image, format, jpegQuality, ImageEncoder.getDefaultPngMode(), file);
+	}
+
+	/**
+	 * Submit an image to be encoded and written. Blocks if the pipeline is
+	 * full.
+	 *
+	 * @param image
+	 *            Image to write
+	 * @param format
+	 *            Image format
+	 * @param jpegQuality
+	 *            JPEG compression quality (only used for jpg format)
+	 * @param pngMode
+	 *            PNG encoding preset (only used for png format)
+	 * @param file
+	 *            File to write to
+	 * @throws InterruptedException
+	 * @throws IOException
+	 *             If a previously submitted image failed to be written
+	 */
+	public void submit(final BufferedImage image, final String format, final float jpegQuality,
+			final PngMode pngMode, File file) throws InterruptedException, IOException
+	{
+		if (closed)
+		{
+			throw new IllegalStateException("Pipeline has been closed");
+		}
+		checkFailure();
+
+		Future<byte[]> encoded = encoders.submit(new Callable<byte[]>()
+		{
+			@Override
+			public byte[] call() throws Exception
+			{
+				long start = metrics.begin(Stage.Encode);
+				try
+				{
+					return ImageEncoder.encode(image, format, jpegQuality, pngMode);
+				}
+				finally
+				{
+					metrics.end(Stage.Encode, start);
+				}
+			}
+		});
+		PendingWrite pending = new PendingWrite(file, encoded);
+		while (!writeQueue.offer(pending, 100, TimeUnit.MILLISECONDS))
+		{
+			//don't block forever if the writer thread has stopped
+			checkFailure();
+		}
+	}
+
+	/**
+	 * @return Has writing any of the submitted images failed?
+	 */
+	public boolean hasFailed()
+	{
+		return failure != null;
+	}
+
+	/**
+	 * Wait for all submitted images to be written, and release the pipeline's
+	 * threads. No more images can be submitted after calling this method.
+	 *
+	 * @throws InterruptedException
+	 * @throws IOException
+	 *             If any of the submitted images failed to be written
+	 */
+	public void close() throws InterruptedException, IOException
+	{
+		if (!closed)
+		{
+			closed = true;
+			while (writerThread.isAlive() && !writeQueue.offer(END, 100, TimeUnit.MILLISECONDS))
+			{
+				//wait for the writer to make room, unless it has stopped
+			}
+			writerThread.join();
+			encoders.shutdown();
+		}
+		checkFailure();
+	}
+
+	private void checkFailure() throws IOException
+	{
+		Throwable failure = this.failure;
+		if (failure != null)
+		{
+			throw new IOException("Error writing tiles: " + failure.getMessage(), failure);
+		}
+		if (!writerThread.isAlive() && !closed)
+		{
+			throw new IOException("Tile writer thread has stopped");
+		}
+	}
+
+	private void failed(Throwable t)
+	{
+		if (failure == null)
+		{
+			failure = t;
+		}
+	}
+
+	private void writeLoop()
+	{
+		try
+		{
+			writeTiles();
+		}
+		catch (Throwable t)
+		{
+			failed(t);
+			logger.severe("Tile writer stopped: " + t);
+		}
+	}
+
+	private void writeTiles()
+	{
+		while (true)
+		{
+			PendingWrite pending;
+			try
+			{
+				pending = writeQueue.take();
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+			if (pending == END)
+			{
+				return;
+			}
+
+			try
+			{
+				byte[] bytes = pending.encoded.get();
+				long start = metrics.begin(Stage.Write);
+				try
+				{
+					writeFile(pending.file, bytes);
+				}
+				finally
+				{
+					metrics.end(Stage.Write, start);
+				}
+				metrics.tileWritten();
+			}
+			catch (ExecutionException e)
+			{
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				failed(cause);
+				logger.severe("Error encoding " + pending.file.getAbsolutePath() + ": " + cause.getMessage());
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+			catch (IOException e)
+			{
+				failed(e);
+				logger.severe("Error writing " + pending.file.getAbsolutePath() + ": " + e.getMessage());
+			}
+			catch (RuntimeException e)
+			{
+				failed(e);
+				logger.severe("Error writing " + pending.file.getAbsolutePath() + ": " + e);
+			}
+		}
+	}
+
+	/**
+	 * Write the bytes to a temporary file which is then renamed, so that a
+	 * partially written tile is never mistaken for a complete one on resume.
+	 * 
+	 * @param file
+	 *            File to write to
+	 * @param bytes
+	 *            Bytes to write
+	 * @throws IOException
+	 */
+	public static void writeFile(File file, byte[] bytes) throws IOException
+	{
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		FileOutputStream fos = null;
+		try
+		{
+			fos = new FileOutputStream(temp);
+			fos.write(bytes);
+		}
+		finally
+		{
+			if (fos != null)
+				fos.close();
+		}
+		if (!temp.renameTo(file))
+		{
+			temp.delete();
+			throw new IOException("Could not rename " + temp.getAbsolutePath());
+		}
+	}
+
+	private static class PendingWrite
+	{
+		public final File file;
+		public final Future<byte[]> encoded;
+
+		public PendingWrite(File file, Future<byte[]> encoded)
+		{
+			this.file = file;
+			this.encoded = encoded;
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the time spent in each stage of a tiling job, and the number of
+ * tiles written. Also carries the job's resource budget: the number of worker
+ * threads the job may use, and an optional semaphore shared between jobs that
+ * limits how many IO stages run at once.
+ * <p/>
+ * The metrics for the current job are attached to the thread running the job
+ * (and inherited by threads it creates) using {@link #setCurrent(TilingMetrics)}.
+ * When no metrics are attached, {@link #current()} returns an instance that
+ * records nothing and imposes no IO limit.
+ * <p/>
+ * Stages are timed as follows:
+ *
+ * <pre>
+ * long start = metrics.begin(Stage.Read);
+ * try
+ * {
+ * 	...
+ * }
+ * finally
+ * {
+ * 	metrics.end(Stage.Read, start);
+ * }
+ * </pre>
+ */
+public class TilingMetrics
+{
+	/**
+	 * Enum of the timed tiling stages.
+	 */
+	public enum Stage
+	{
+		Read(true),
+		Reproject(false),
+		PostProcess(false),
+		Encode(false),
+		Write(true),
+		Overview(false);
+
+		private final boolean io;
+
+		private Stage(boolean io)
+		{
+			this.io = io;
+		}
+
+		/**
+		 * @return Is this stage limited by the IO budget?
+		 */
+		public boolean isIo()
+		{
+			return io;
+		}
+	}
+
+	private final static TilingMetrics DISABLED = new TilingMetrics(Runtime.getRuntime().availableProcessors(), null,
+			false);
+
+	private final static InheritableThreadLocal<TilingMetrics> current = new InheritableThreadLocal<TilingMetrics>();
+
+	private final boolean enabled;
+	private final int threadCount;
+	private final Semaphore ioPermits;
+	private final AtomicLong[] nanos = new AtomicLong[Stage.values().length];
+	private final AtomicLong[] counts = new AtomicLong[Stage.values().length];
+	private final AtomicLong tiles = new AtomicLong();
+	private volatile long startTime;
+	private volatile long endTime;
+
+	/**
+	 * @param threadCount
+	 *            Number of worker threads the job may use
+	 * @param ioPermits
+	 *            Semaphore limiting concurrent IO stages (may be null)
+	 */
+	public TilingMetrics(int threadCount, Semaphore ioPermits)
+	{
+		this(threadCount, ioPermits, true);
+	}
+
+	private TilingMetrics(int threadCount, Semaphore ioPermits, boolean enabled)
+	{
+		this.threadCount = Math.max(1, threadCount);
+		this.ioPermits = ioPermits;
+		this.enabled = enabled;
+		for (int i = 0; i < nanos.length; i++)
+		{
+			nanos[i] = new AtomicLong();
+			counts[i] = new AtomicLong();
+		}
+	}
+
+	/**
+	 * @return Metrics attached to the current thread
+	 */
+	public static TilingMetrics current()
+	{
+		TilingMetrics metrics = current.get();
+		return metrics == null ? DISABLED : metrics;
+	}
+
+	/**
+	 * Attach metrics to the current thread (and threads it creates).
+	 *
+	 * @param metrics
+	 *            Metrics to attach, or null to detach
+	 */
+	public static void setCurrent(TilingMetrics metrics)
+	{
+		current.set(metrics);
+	}
+
+	/**
+	 * @return Number of worker threads the job may use
+	 */
+	public int getThreadCount()
+	{
+		return threadCount;
+	}
+
+	/**
+	 * Mark the start of the job.
+	 */
+	public void start()
+	{
+		startTime = System.nanoTime();
+	}
+
+	/**
+	 * Mark the end of the job.
+	 */
+	public void stop()
+	{
+		endTime = System.nanoTime();
+	}
+
+	/**
+	 * Begin a stage, waiting for an IO permit if the stage is IO bound.
+	 *
+	 * @param stage
+	 * @return Start time to pass to {@link #end(Stage, long)}
+	 */
+	public long begin(Stage stage)
+	{
+		if (ioPermits != null && stage.isIo())
+		{
+			ioPermits.acquireUninterruptibly();
+		}
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * End a stage started with {@link #begin(Stage)}.
+	 *
+	 * @param stage
+	 * @param start
+	 *            Value returned from {@link #begin(Stage)}
+	 */
+	public void end(Stage stage, long start)
+	{
+		if (enabled)
+		{
+			nanos[stage.ordinal()].addAndGet(System.nanoTime() - start);
+			counts[stage.ordinal()].incrementAndGet();
+		}
+		if (ioPermits != null && stage.isIo())
+		{
+			ioPermits.release();
+		}
+	}
+
+	/**
+	 * Record that a tile has been written.
+	 */
+	public void tileWritten()
+	{
+		if (enabled)
+		{
+			tiles.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return Total time spent in the stage, in milliseconds (summed across
+	 *         threads)
+	 */
+	public double getMillis(Stage stage)
+	{
+		return nanos[stage.ordinal()].get() / 1e6;
+	}
+
+	/**
+	 * @return Number of times the stage was run
+	 */
+	public long getCount(Stage stage)
+	{
+		return counts[stage.ordinal()].get();
+	}
+
+	/**
+	 * @return Number of tiles written
+	 */
+	public long getTiles()
+	{
+		return tiles.get();
+	}
+
+	/**
+	 * @return Wall clock time between {@link #start()} and {@link #stop()} (or
+	 *         now, if not stopped), in seconds
+	 */
+	public double getElapsedSeconds()
+	{
+		long end = endTime == 0 ? System.nanoTime() : endTime;
+		return (end - startTime) / 1e9;
+	}
+
+	/**
+	 * @return Tiles written per second of wall clock time
+	 */
+	public double getTilesPerSecond()
+	{
+		double seconds = getElapsedSeconds();
+		return seconds > 0 ? tiles.get() / seconds : 0;
+	}
+
+	/**
+	 * @return The stage timings as the body of a JSON object (without the
+	 *         enclosing braces), for inclusion in a job report
+	 */
+	public String toJsonFields()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.US, "\"elapsedSeconds\":%.3f,\"tiles\":%d,\"tilesPerSecond\":%.3f",
+				getElapsedSeconds(), getTiles(), getTilesPerSecond()));
+		sb.append(",\"stages\":{");
+		Stage[] stages = Stage.values();
+		for (int i = 0; i < stages.length; i++)
+		{
+			if (i > 0)
+			{
+				sb.append(",");
+			}
+			sb.append(String.format(Locale.US, "\"%s\":{\"millis\":%.3f,\"count\":%d}", stages[i].name(),
+					getMillis(stages[i]), getCount(stages[i])));
+		}
+		sb.append("}");
+		return sb.toString();
+	}
+}
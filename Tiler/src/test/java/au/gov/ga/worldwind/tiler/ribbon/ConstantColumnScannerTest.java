@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.ribbon;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ConstantColumnScanner} class
+ */
+public class ConstantColumnScannerTest
+{
+	@Test
+	public void testSingleBandByteColumns()
+	{
+		//columns: constant top 2, constant bottom 1, fully constant, no constant
+		byte[] data = new byte[] {
+				5, 7, 3, 1,
+				5, 7, 3, 2,
+				6, 8, 3, 3,
+				6, 9, 3, 4 };
+		
+		int[] fromTop = new int[4];
+		int[] fromBottom = new int[4];
+		ConstantColumnScanner.scanColumns(data, 4, 4, 1, 1, fromTop, fromBottom);
+		
+		assertArrayEquals(new int[] { 2, 2, 4, 1 }, fromTop);
+		assertArrayEquals(new int[] { 2, 1, 0, 1 }, fromBottom);
+	}
+	
+	@Test
+	public void testAllBandsMustBeConstant()
+	{
+		//2 columns, 3 rows, 2 bands; column 0's second band changes on the last row
+		byte[] data = new byte[] {
+				1, 1,
+				1, 1,
+				1, 1,
+				
+				2, 2,
+				2, 2,
+				3, 2 };
+		
+		int[] fromTop = new int[2];
+		int[] fromBottom = new int[2];
+		ConstantColumnScanner.scanColumns(data, 2, 3, 2, 1, fromTop, fromBottom);
+		
+		assertArrayEquals(new int[] { 2, 3 }, fromTop);
+		assertArrayEquals(new int[] { 1, 0 }, fromBottom);
+	}
+	
+	@Test
+	public void testMultiByteSamples()
+	{
+		//1 column, 3 rows, 16-bit samples differing only in the high byte on the last row
+		byte[] data = new byte[] {
+				10, 0,
+				10, 0,
+				10, 1 };
+		
+		int[] fromTop = new int[1];
+		int[] fromBottom = new int[1];
+		ConstantColumnScanner.scanColumns(data, 1, 3, 1, 2, fromTop, fromBottom);
+		
+		assertArrayEquals(new int[] { 2 }, fromTop);
+		assertArrayEquals(new int[] { 1 }, fromBottom);
+	}
+}
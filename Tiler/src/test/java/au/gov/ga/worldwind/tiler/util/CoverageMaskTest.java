@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconstConstants;
+import org.gdal.osr.SpatialReference;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import au.gov.ga.worldwind.tiler.gdal.GDALUtil;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Unit tests for the {@link CoverageMask} class
+ */
+public class CoverageMaskTest
+{
+	private final Sector sector = new Sector(-10, 100, 10, 120);
+
+	@Test
+	public void testIntersectsIncludesMargin()
+	{
+		//10x10 mask of 2 degree cells, with only the north-west cell valid
+		boolean[] valid = new boolean[100];
+		valid[0] = true;
+		CoverageMask mask = new CoverageMask(sector, 10, 10, valid);
+
+		assertTrue(mask.intersects(new Sector(8, 100, 10, 102)));
+		assertTrue(mask.intersects(new Sector(6, 102, 8, 104)));
+		assertFalse(mask.intersects(new Sector(4, 104, 6, 106)));
+		assertFalse(mask.intersects(new Sector(-10, 110, -8, 112)));
+	}
+
+	@Test
+	public void testIntersectsOutsideMask()
+	{
+		boolean[] valid = new boolean[100];
+		for (int i = 0; i < valid.length; i++)
+		{
+			valid[i] = true;
+		}
+		CoverageMask mask = new CoverageMask(sector, 10, 10, valid);
+
+		assertFalse(mask.intersects(new Sector(20, 130, 30, 140)));
+		assertTrue(mask.intersects(new Sector(0, 90, 20, 110)));
+		assertEquals(1d, mask.getCoverage(), 0);
+	}
+
+	@Test
+	public void testCalculateSize()
+	{
+		//2.25 degree tiles at level 4 with 36 degree lzts, 4 cells per tile
+		assertEquals(36, CoverageMask.calculateSize(sector, 4, 36).width);
+		assertEquals(36, CoverageMask.calculateSize(sector, 4, 36).height);
+		assertEquals(4096, CoverageMask.calculateSize(sector, 20, 36).width);
+	}
+
+	@Test
+	public void testFromFootprint() throws Exception
+	{
+		//polygon edges lie a quarter of a cell from the cell edges, so the result doesn't depend on rounding
+		File directory = File.createTempFile("coveragemasktest", "");
+		directory.delete();
+		directory.mkdirs();
+		try
+		{
+			File footprint = new File(directory, "footprint.shp");
+			writeFootprint(footprint, polygon(104.5, 1.5, 108.5, 5.5), polygon(110.5, -6.5, 110.7, -2.5));
+			CoverageMask mask = CoverageMask.fromFootprint(footprint, sector, new Dimension(10, 10));
+
+			for (int y = 0; y < 10; y++)
+			{
+				for (int x = 0; x < 10; x++)
+				{
+					boolean inside = 2 <= x && x <= 4 && 2 <= y && y <= 4;
+					//the sliver is narrower than a cell, but the stroked outline still marks the cells it crosses
+					boolean sliver = x == 5 && 6 <= y && y <= 8;
+					assertEquals("Cell " + x + "," + y, inside || sliver, mask.isValid(x, y));
+				}
+			}
+			assertEquals(0.12, mask.getCoverage(), 1e-9);
+		}
+		finally
+		{
+			for (File file : directory.listFiles())
+			{
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	@Test
+	public void testFromDataset() throws Exception
+	{
+		GDALUtil.init();
+
+		//40x40 dataset of 0.5 degree pixels covering the sector, with 2 degree mask cells (4 pixels per cell)
+		Dataset dataset = createDataset(40, 40);
+		try
+		{
+			NullableNumberArray noData = new NullableNumberArray(1);
+			noData.setDouble(0, 0d);
+			Dimension size = new Dimension(10, 10);
+			CoverageMask mask = CoverageMask.fromDataset(dataset, sector, size, false, false, noData);
+			assertDatasetMask(mask);
+
+			//one chunk for every three cells, splitting the rows into columns
+			CoverageMask chunked = CoverageMask.fromDataset(dataset, sector, size, false, false, noData, 3 * 16);
+			assertDatasetMask(chunked);
+		}
+		finally
+		{
+			dataset.delete();
+		}
+	}
+
+	@Test
+	public void testFromDatasetWithoutNoData() throws Exception
+	{
+		GDALUtil.init();
+
+		Dataset dataset = createDataset(40, 40);
+		try
+		{
+			assertNull(CoverageMask.fromDataset(dataset, sector, new Dimension(10, 10), false, false, null));
+		}
+		finally
+		{
+			dataset.delete();
+		}
+	}
+
+	/**
+	 * Assert that only the cells containing the dataset's valid pixels (see
+	 * {@link #createDataset(int, int)}) are valid.
+	 */
+	private static void assertDatasetMask(CoverageMask mask)
+	{
+		for (int y = 0; y < 10; y++)
+		{
+			for (int x = 0; x < 10; x++)
+			{
+				boolean expected = (x == 1 && y == 0) || x == 7 || (x == 9 && y == 9);
+				assertEquals("Cell " + x + "," + y, expected, mask.isValid(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Create an in-memory single band WGS84 dataset covering the test sector,
+	 * that is nodata (0) apart from a single pixel, a one pixel wide line from
+	 * north to south, and the south-east corner pixel.
+	 */
+	private Dataset createDataset(int width, int height)
+	{
+		Dataset dataset = gdal.GetDriverByName("MEM").Create("", width, height, 1, gdalconstConstants.GDT_Byte);
+		dataset.SetGeoTransform(new double[] { sector.getMinLongitude(), sector.getDeltaLongitude() / width, 0,
+				sector.getMaxLatitude(), 0, -sector.getDeltaLatitude() / height });
+		SpatialReference srs = new SpatialReference();
+		srs.SetWellKnownGeogCS("WGS84");
+		dataset.SetProjection(srs.ExportToWkt());
+		srs.delete();
+
+		byte[] pixels = new byte[width * height];
+		pixels[6] = 1;
+		for (int y = 0; y < height; y++)
+		{
+			pixels[y * width + 29] = 1;
+		}
+		pixels[width * height - 1] = 1;
+		Band band = dataset.GetRasterBand(1);
+		band.SetNoDataValue(0);
+		band.WriteRaster(0, 0, width, height, pixels);
+		return dataset;
+	}
+
+	private static Polygon polygon(double minLon, double minLat, double maxLon, double maxLat)
+	{
+		GeometryFactory factory = new GeometryFactory();
+		Coordinate[] coordinates =
+				new Coordinate[] { new Coordinate(minLon, minLat), new Coordinate(maxLon, minLat),
+						new Coordinate(maxLon, maxLat), new Coordinate(minLon, maxLat),
+						new Coordinate(minLon, minLat) };
+		return factory.createPolygon(factory.createLinearRing(coordinates), null);
+	}
+
+	private static void writeFootprint(File file, Polygon... polygons) throws Exception
+	{
+		SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+		builder.setName("footprint");
+		builder.add("the_geom", Polygon.class);
+		SimpleFeatureType type = builder.buildFeatureType();
+		Map<String, Serializable> params = new HashMap<String, Serializable>();
+		params.put("url", file.toURI().toURL());
+		ShapefileDataStore dataStore = (ShapefileDataStore) new ShapefileDataStoreFactory().createNewDataStore(params);
+		try
+		{
+			dataStore.createSchema(type);
+			FeatureWriter<SimpleFeatureType, SimpleFeature> writer =
+					dataStore.getFeatureWriterAppend(Transaction.AUTO_COMMIT);
+			try
+			{
+				for (Polygon polygon : polygons)
+				{
+					writer.next().setDefaultGeometry(polygon);
+					writer.write();
+				}
+			}
+			finally
+			{
+				writer.close();
+			}
+		}
+		finally
+		{
+			dataStore.dispose();
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import au.gov.ga.worldwind.tiler.util.DependencyScheduler.Task;
+
+/**
+ * Unit tests for the {@link DependencyScheduler} class
+ */
+public class DependencySchedulerTest
+{
+	@Test
+	public void testDependentsRunAfterDependencies() throws Exception
+	{
+		final List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+		DependencyScheduler scheduler = new DependencyScheduler(4);
+
+		Task root = scheduler.add(2, new Record("root", completed));
+		for (int i = 0; i < 2; i++)
+		{
+			Task parent = scheduler.add(1, new Record("parent" + i, completed));
+			scheduler.addDependency(root, parent);
+			for (int j = 0; j < 4; j++)
+			{
+				Task child = scheduler.add(0, new Record("child" + i + j, completed));
+				scheduler.addDependency(parent, child);
+			}
+		}
+
+		scheduler.run();
+
+		assertEquals(11, completed.size());
+		assertEquals("root", completed.get(10));
+		for (int i = 0; i < 2; i++)
+		{
+			int parentIndex = completed.indexOf("parent" + i);
+			for (int j = 0; j < 4; j++)
+			{
+				assertTrue(completed.indexOf("child" + i + j) < parentIndex);
+			}
+		}
+	}
+
+	@Test
+	public void testFailureStopsDependents() throws Exception
+	{
+		final List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+		DependencyScheduler scheduler = new DependencyScheduler(2);
+
+		Task parent = scheduler.add(0, new Record("parent", completed));
+		Task child = scheduler.add(0, new Callable<Void>()
+		{
+			@Override
+			public Void call() throws Exception
+			{
+				throw new IllegalStateException("failed");
+			}
+		});
+		scheduler.addDependency(parent, child);
+
+		try
+		{
+			scheduler.run();
+			fail("Expected failure to be rethrown");
+		}
+		catch (IllegalStateException e)
+		{
+			assertEquals("failed", e.getMessage());
+		}
+		assertFalse(completed.contains("parent"));
+	}
+
+	@Test
+	public void testTaskCompletingAfterInterruptDoesNotStartDependents() throws Exception
+	{
+		final List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+		final List<Throwable> uncaught = Collections.synchronizedList(new ArrayList<Throwable>());
+		final CountDownLatch started = new CountDownLatch(1);
+		final DependencyScheduler scheduler = new DependencyScheduler(2);
+
+		Task parent = scheduler.add(0, new Record("parent", completed));
+		Task child = scheduler.add(0, new Callable<Void>()
+		{
+			@Override
+			public Void call() throws Exception
+			{
+				started.countDown();
+				try
+				{
+					//run until the scheduler shuts down, then complete normally
+					Thread.sleep(Long.MAX_VALUE);
+				}
+				catch (InterruptedException e)
+				{
+				}
+				return null;
+			}
+		});
+		scheduler.addDependency(parent, child);
+
+		final List<Throwable> thrown = Collections.synchronizedList(new ArrayList<Throwable>());
+		Thread runner = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					scheduler.run();
+				}
+				catch (Throwable t)
+				{
+					thrown.add(t);
+				}
+			}
+		};
+
+		Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+		Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler()
+		{
+			@Override
+			public void uncaughtException(Thread t, Throwable e)
+			{
+				uncaught.add(e);
+			}
+		});
+		try
+		{
+			runner.start();
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			runner.interrupt();
+			runner.join(10000);
+			//allow any exception thrown from the pool's threads to be reported
+			Thread.sleep(200);
+		}
+		finally
+		{
+			Thread.setDefaultUncaughtExceptionHandler(handler);
+		}
+
+		assertFalse(runner.isAlive());
+		assertEquals(1, thrown.size());
+		assertTrue(thrown.get(0) instanceof InterruptedException);
+		assertTrue(uncaught.isEmpty());
+		assertFalse(completed.contains("parent"));
+	}
+
+	private static class Record implements Callable<Void>
+	{
+		private final String name;
+		private final List<String> completed;
+
+		public Record(String name, List<String> completed)
+		{
+			this.name = name;
+			this.completed = completed;
+		}
+
+		@Override
+		public Void call() throws Exception
+		{
+			completed.add(name);
+			return null;
+		}
+	}
+}
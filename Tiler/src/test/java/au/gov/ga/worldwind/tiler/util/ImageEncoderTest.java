@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import au.gov.ga.worldwind.tiler.util.ImageEncoder.PngMode;
+
+/**
+ * Unit tests for the {@link ImageEncoder} class
+ */
+public class ImageEncoderTest
+{
+	@Test
+	public void testFastPngRgb() throws IOException
+	{
+		assertRoundTrip(createImage(BufferedImage.TYPE_INT_RGB), PngMode.Fast);
+	}
+
+	@Test
+	public void testFastPngArgb() throws IOException
+	{
+		assertRoundTrip(createImage(BufferedImage.TYPE_INT_ARGB), PngMode.Fast);
+	}
+
+	@Test
+	public void testPalettedPngWithTooManyColours() throws IOException
+	{
+		assertRoundTrip(createImage(BufferedImage.TYPE_INT_ARGB), PngMode.Paletted);
+	}
+
+	@Test
+	public void testFastPngMatchesDefault() throws IOException
+	{
+		BufferedImage image = createImage(BufferedImage.TYPE_INT_RGB);
+		byte[] fast = ImageEncoder.encode(image, "png", 0.8f, PngMode.Fast);
+		byte[] normal = ImageEncoder.encode(image, "png", 0.8f, PngMode.Default);
+		assertPixelsEqual(ImageIO.read(new ByteArrayInputStream(normal)), ImageIO.read(new ByteArrayInputStream(fast)));
+	}
+
+	private static BufferedImage createImage(int type)
+	{
+		BufferedImage image = new BufferedImage(67, 45, type);
+		for (int y = 0; y < image.getHeight(); y++)
+		{
+			for (int x = 0; x < image.getWidth(); x++)
+			{
+				int alpha = (x * 7 + y * 3) & 0xff;
+				image.setRGB(x, y, alpha << 24 | (x * 3) << 16 | (y * 5) << 8 | ((x * y) & 0xff));
+			}
+		}
+		return image;
+	}
+
+	private static void assertRoundTrip(BufferedImage image, PngMode mode) throws IOException
+	{
+		byte[] bytes = ImageEncoder.encode(image, "png", 0.8f, mode);
+		assertPixelsEqual(image, ImageIO.read(new ByteArrayInputStream(bytes)));
+	}
+
+	private static void assertPixelsEqual(BufferedImage expected, BufferedImage actual)
+	{
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		assertEquals(expected.getColorModel().hasAlpha(), actual.getColorModel().hasAlpha());
+		for (int y = 0; y < expected.getHeight(); y++)
+		{
+			for (int x = 0; x < expected.getWidth(); x++)
+			{
+				assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ImageWritePipeline} class
+ */
+public class ImageWritePipelineTest
+{
+	private File dir;
+
+	@Before
+	public void setup() throws IOException
+	{
+		dir = File.createTempFile("pipeline", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	@After
+	public void tearDown()
+	{
+		for (File file : dir.listFiles())
+		{
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void testImagesAreWritten() throws Exception
+	{
+		ImageWritePipeline pipeline = new ImageWritePipeline(2, 2, Logger.getAnonymousLogger());
+		for (int i = 0; i < 10; i++)
+		{
+			pipeline.submit(createImage(), "png", 0.8f, new File(dir, i + ".png"));
+		}
+		pipeline.close();
+
+		assertFalse(pipeline.hasFailed());
+		for (int i = 0; i < 10; i++)
+		{
+			assertTrue(new File(dir, i + ".png").isFile());
+			assertFalse(new File(dir, i + ".png.tmp").exists());
+		}
+	}
+
+	@Test
+	public void testFailureIsRethrown() throws Exception
+	{
+		ImageWritePipeline pipeline = new ImageWritePipeline(1, 1, Logger.getAnonymousLogger());
+		//the parent of this file doesn't exist, so writing it will fail
+		File missing = new File(new File(dir, "missing"), "0.png");
+		pipeline.submit(createImage(), "png", 0.8f, missing);
+
+		try
+		{
+			//keep submitting until the failure is reported; this must not block forever
+			for (int i = 0; i < 1000; i++)
+			{
+				pipeline.submit(createImage(), "png", 0.8f, missing);
+			}
+			pipeline.close();
+			fail("Expected the write failure to be rethrown");
+		}
+		catch (IOException e)
+		{
+			assertTrue(pipeline.hasFailed());
+		}
+	}
+
+	private static BufferedImage createImage()
+	{
+		return new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+	}
+}
@@ -69,6 +69,8 @@ import javax.swing.event.ListSelectionListener;
 
 import org.w3c.dom.Document;
 
+import au.gov.ga.worldwind.common.retrieve.PrefetchService;
+import au.gov.ga.worldwind.common.retrieve.PrefetchView;
 import au.gov.ga.worldwind.common.ui.BasicAction;
 import au.gov.ga.worldwind.common.ui.FileFilters;
 import au.gov.ga.worldwind.common.ui.SwingUtil;
@@ -698,6 +700,7 @@ public class PlacesPanel extends AbstractThemePanel
 		}
 		boolean wasPlaying = playing;
 		playing = false;
+		PrefetchService.getInstance().clear();
 		playAction.setIcon(Icons.run.getIcon());
 		playAction.setToolTipText(getMessage(getPlacesPlayTooltipKey()));
 		enableActions();
@@ -816,6 +819,13 @@ public class PlacesPanel extends AbstractThemePanel
 							{
 								break;
 							}
+
+							//request the next place's tiles while this place is being displayed
+							int nextIndex = getNextPlaylistIndex(index);
+							if (nextIndex >= 0)
+							{
+								prefetchPlace(places.get(nextIndex));
+							}
 							length += Settings.get().getPlacesPause();
 
 							// sleep for 'length' in 'jump' increments
@@ -829,24 +839,7 @@ public class PlacesPanel extends AbstractThemePanel
 							}
 						}
 
-						int nextIndex = index;
-						while (true)
-						{
-							if (++nextIndex >= places.size())
-							{
-								nextIndex = 0;
-							}
-							if (nextIndex == index)
-							{
-								index = -1;
-								break;
-							}
-							if (!places.get(nextIndex).isExcludeFromPlaylist())
-							{
-								index = nextIndex;
-								break;
-							}
-						}
+						index = getNextPlaylistIndex(index);
 					}
 					stopPlaces();
 				}
@@ -878,16 +871,81 @@ public class PlacesPanel extends AbstractThemePanel
 		}
 	}
 
+	/**
+	 * @return The index of the place played after the place at the given
+	 *         index, or -1 if there are no other places in the playlist
+	 */
+	private int getNextPlaylistIndex(int index)
+	{
+		int nextIndex = index;
+		while (true)
+		{
+			if (++nextIndex >= places.size())
+			{
+				nextIndex = 0;
+			}
+			if (nextIndex == index)
+			{
+				return -1;
+			}
+			if (!places.get(nextIndex).isExcludeFromPlaylist())
+			{
+				return nextIndex;
+			}
+		}
+	}
+
 	public long flyToPlace(Place place)
 	{
 		View view = wwd.getView();
 
-		double centerElevation = view.getGlobe().getElevation(place.getLatLon().latitude, place.getLatLon().longitude);
-		Position centerPosition = new Position(place.getLatLon(), centerElevation);
+		Position centerPosition = getCenterPosition(place);
+		Position eyePosition = getEyePosition(place, centerPosition);
+		prefetch(eyePosition, centerPosition);
+
+		wwd.getView().stopAnimations();
+		wwd.getView().stopMovement();
+		wwd.removeRenderingListener(opacityChanger);
+
+		long lengthMillis = AnimatorHelper.addAnimator(view, centerPosition, eyePosition, place.getUpVector());
+		animateLayers(place, lengthMillis);
+		animateVerticalExaggeration(place, lengthMillis);
+		wwd.redraw();
+
+		return lengthMillis;
+	}
+
+	/**
+	 * Request the tiles required to view the given place from the
+	 * {@link PrefetchService}, so that they are available by the time the view
+	 * arrives at the place.
+	 */
+	private void prefetchPlace(Place place)
+	{
+		Position centerPosition = getCenterPosition(place);
+		prefetch(getEyePosition(place, centerPosition), centerPosition);
+	}
+
+	private void prefetch(Position eyePosition, Position centerPosition)
+	{
+		View view = wwd.getView();
+		PrefetchService.getInstance().prefetch(wwd.getModel(),
+				new PrefetchView(eyePosition, centerPosition, view.getFieldOfView(), view.getViewport().width));
+	}
+
+	private Position getCenterPosition(Place place)
+	{
+		double centerElevation =
+				wwd.getView().getGlobe().getElevation(place.getLatLon().latitude, place.getLatLon().longitude);
+		return new Position(place.getLatLon(), centerElevation);
+	}
+
+	private Position getEyePosition(Place place, Position centerPosition)
+	{
 		Position eyePosition = place.getEyePosition();
 		if (!place.isSaveCamera() || eyePosition == null)
 		{
-			Position currentEyePosition = view.getCurrentEyePosition();
+			Position currentEyePosition = wwd.getView().getCurrentEyePosition();
 			double elevation = currentEyePosition.elevation;
 
 			double minZoom = place.getMinZoom();
@@ -904,17 +962,7 @@ public class PlacesPanel extends AbstractThemePanel
 
 			eyePosition = new Position(centerPosition, elevation);
 		}
-
-		wwd.getView().stopAnimations();
-		wwd.getView().stopMovement();
-		wwd.removeRenderingListener(opacityChanger);
-
-		long lengthMillis = AnimatorHelper.addAnimator(view, centerPosition, eyePosition, place.getUpVector());
-		animateLayers(place, lengthMillis);
-		animateVerticalExaggeration(place, lengthMillis);
-		wwd.redraw();
-
-		return lengthMillis;
+		return eyePosition;
 	}
 
 	private void animateLayers(Place place, final long lengthMillis)